@@ -21,6 +21,9 @@ package com.mucommander;
 import java.awt.GraphicsEnvironment;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,17 +44,20 @@ import com.mucommander.conf.MuConfigurations;
 import com.mucommander.conf.MuPreference;
 import com.mucommander.conf.MuPreferences;
 import com.mucommander.extension.ExtensionManager;
+import com.mucommander.job.TransferJournal;
 import com.mucommander.shell.ShellHistoryManager;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.action.ActionManager;
 import com.mucommander.ui.dialog.InformationDialog;
 import com.mucommander.ui.dialog.startup.CheckVersionDialog;
 import com.mucommander.ui.dialog.startup.InitialSetupDialog;
+import com.mucommander.ui.dialog.startup.ResumeTransferDialog;
 import com.mucommander.ui.main.SplashScreen;
 import com.mucommander.ui.main.WindowManager;
 import com.mucommander.ui.main.commandbar.CommandBarIO;
 import com.mucommander.ui.main.frame.CommandLineMainFrameBuilder;
 import com.mucommander.ui.main.frame.DefaultMainFramesBuilder;
+import com.mucommander.ui.main.tabs.FileTableTabsWarmUp;
 import com.mucommander.ui.main.toolbar.ToolBarIO;
 
 /**
@@ -72,6 +78,8 @@ public class Launcher {
     private static boolean       useSplash;
     /** Whether or not to display verbose error messages. */
     private static boolean       verbose;
+    /** Whether or not to print the time taken by each startup task, enabled by --verbose. */
+    private static boolean       printStartupTimings;
     /** true while the application is launching, false after it has finished launching */
     public static boolean isLaunching = true;
     /** Launch lock. */
@@ -165,7 +173,7 @@ public class Launcher {
         System.out.println(" -v, --version                     Print the version and exit");
 
         // muCommander will print verbose boot error messages.
-        System.out.println(" -V, --verbose                     Print verbose error messages (default)");
+        System.out.println(" -V, --verbose                     Print verbose error messages (default) and startup timings");
 
         // Pedantic mode.
         System.out.println(" -w, --fail-on-warnings            Quits when a warning is encountered during");
@@ -426,8 +434,10 @@ public class Launcher {
                     verbose = false;
 
                 // Verbose mode.
-                else if(args[i].equals("-V") || args[i].equals("--verbose"))
+                else if(args[i].equals("-V") || args[i].equals("--verbose")) {
                     verbose = true;
+                    printStartupTimings = true;
+                }
 
                 // Illegal argument.
                 else
@@ -508,51 +518,108 @@ public class Launcher {
             // Configure filesystems
             configureFilesystems();
             
+            // Loaders that don't depend on each other run concurrently, the main thread waits for all of them before
+            // creating the first window. Loaders that use the data loaded by others depend on them, and the data they
+            // share otherwise (preferences, action properties) is safe for concurrent access.
+            final boolean failOnWarnings = fatalWarnings;
+            final boolean firstBoot = isFirstBoot;
+            final StartupTasks startupTasks = new StartupTasks(Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())));
+
             // Initializes the desktop.
-            try {com.mucommander.desktop.DesktopManager.init(isFirstBoot);}
-            catch(Exception e) {printError("Could not initialize desktop", e, true);}
+            startupTasks.submit("desktop", new Runnable() {
+                public void run() {
+                    try {com.mucommander.desktop.DesktopManager.init(firstBoot);}
+                    catch(Exception e) {printError("Could not initialize desktop", e, true);}
+                }
+            });
 
             // Loads dictionary
-            printStartupMessage("Loading dictionary...");
-            try {com.mucommander.text.Translator.loadDictionaryFile();}
-            catch(Exception e) {printError("Could not load dictionary", e, true);}
-
-            // Loads custom commands
-            printStartupMessage("Loading file associations...");
-            try {com.mucommander.command.CommandManager.loadCommands();}
-            catch(Exception e) {
-                printFileError("Could not load custom commands", e, fatalWarnings);
-            }
+            startupTasks.submit("dictionary", new Runnable() {
+                public void run() {
+                    try {com.mucommander.text.Translator.loadDictionaryFile();}
+                    catch(Exception e) {printError("Could not load dictionary", e, true);}
+                }
+            });
+
+            // Loads custom commands and associations, after the desktop has registered its default commands
+            startupTasks.submit("commands", new Runnable() {
+                public void run() {
+                    try {com.mucommander.command.CommandManager.loadCommands();}
+                    catch(Exception e) {
+                        printFileError("Could not load custom commands", e, failOnWarnings);
+                    }
 
-            // Migrates the custom editor and custom viewer if necessary.
-            migrateCommand("viewer.use_custom", "viewer.custom_command", CommandManager.VIEWER_ALIAS);
-            migrateCommand("editor.use_custom", "editor.custom_command", CommandManager.EDITOR_ALIAS);
-            try {CommandManager.writeCommands();}
-            catch(Exception e) {
-                System.out.println("###############################");
-                LOGGER.debug("Caught exception", e);
-                // There's really nothing we can do about this...
-            }
+                    // Migrates the custom editor and custom viewer if necessary.
+                    migrateCommand("viewer.use_custom", "viewer.custom_command", CommandManager.VIEWER_ALIAS);
+                    migrateCommand("editor.use_custom", "editor.custom_command", CommandManager.EDITOR_ALIAS);
+                    try {CommandManager.writeCommands();}
+                    catch(Exception e) {
+                        System.out.println("###############################");
+                        LOGGER.debug("Caught exception", e);
+                        // There's really nothing we can do about this...
+                    }
 
-            try {com.mucommander.command.CommandManager.loadAssociations();}
-            catch(Exception e) {
-                printFileError("Could not load custom associations", e, fatalWarnings);
-            }
+                    try {com.mucommander.command.CommandManager.loadAssociations();}
+                    catch(Exception e) {
+                        printFileError("Could not load custom associations", e, failOnWarnings);
+                    }
+                }
+            }, "desktop");
 
             // Loads bookmarks
-            printStartupMessage("Loading bookmarks...");
-            try {com.mucommander.bookmark.BookmarkManager.loadBookmarks();}
-            catch(Exception e) {printFileError("Could not load bookmarks", e, fatalWarnings);}
+            startupTasks.submit("bookmarks", new Runnable() {
+                public void run() {
+                    try {com.mucommander.bookmark.BookmarkManager.loadBookmarks();}
+                    catch(Exception e) {printFileError("Could not load bookmarks", e, failOnWarnings);}
+                }
+            });
+
+            // Loads credentials. Note: they must be loaded before the first window is created, as it may open remote
+            // locations that require them.
+            startupTasks.submit("credentials", new Runnable() {
+                public void run() {
+                    try {com.mucommander.auth.CredentialsManager.loadCredentials();}
+                    catch(Exception e) {printFileError("Could not load credentials", e, failOnWarnings);}
+                }
+            });
 
-            // Loads credentials
-            printStartupMessage("Loading credentials...");
-            try {com.mucommander.auth.CredentialsManager.loadCredentials();}
-            catch(Exception e) {printFileError("Could not load credentials", e, fatalWarnings);}
+            // Register actions, including an action for each custom command
+            startupTasks.submit("actions", new Runnable() {
+                public void run() {
+                    ActionManager.registerActions();
+                }
+            }, "dictionary", "commands");
 
-            // Loads shell history
-            printStartupMessage("Loading shell history...");
-            try {ShellHistoryManager.loadHistory();}
-            catch(Exception e) {printFileError("Could not load shell history", e, fatalWarnings);}
+            // Loads the ActionKeymap file
+            startupTasks.submit("action shortcuts", new Runnable() {
+                public void run() {
+                    try {com.mucommander.ui.action.ActionKeymapIO.loadActionKeymap();}
+                    catch(Exception e) {printFileError("Could not load actions shortcuts", e, failOnWarnings);}
+                }
+            }, "actions");
+
+            // Loads the ToolBar's description file
+            startupTasks.submit("toolbar", new Runnable() {
+                public void run() {
+                    try {ToolBarIO.loadDescriptionFile();}
+                    catch(Exception e) {printFileError("Could not load toolbar description", e, failOnWarnings);}
+                }
+            }, "actions");
+
+            // Loads the CommandBar's description file
+            startupTasks.submit("command bar", new Runnable() {
+                public void run() {
+                    try {CommandBarIO.loadCommandBar();}
+                    catch(Exception e) {printFileError("Could not load commandbar description", e, failOnWarnings);}
+                }
+            }, "actions");
+
+            // Loads the themes.
+            startupTasks.submit("theme", new Runnable() {
+                public void run() {
+                    com.mucommander.ui.theme.ThemeManager.loadCurrentTheme();
+                }
+            }, "dictionary");
 
             // Inits CustomDateFormat to make sure that its ConfigurationListener is added
             // before FileTable, so CustomDateFormat gets notified of date format changes first
@@ -560,49 +627,52 @@ public class Launcher {
 
             // Initialize file icons
             printStartupMessage("Loading icons...");
-            // Initialize the SwingFileIconProvider from the main thread, see method Javadoc for an explanation on why we do this now
-            SwingFileIconProvider.forceInit();
-            // The math.max(1.0f, ...) part is to workaround a bug which cause(d) this value to be set to 0.0 in the configuration file.
-            com.mucommander.ui.icon.FileIcons.setScaleFactor(Math.max(1.0f, MuConfigurations.getPreferences().getVariable(MuPreference.TABLE_ICON_SCALE,
-                                                                                              MuPreferences.DEFAULT_TABLE_ICON_SCALE)));
-            com.mucommander.ui.icon.FileIcons.setSystemIconsPolicy(MuConfigurations.getPreferences().getVariable(MuPreference.USE_SYSTEM_FILE_ICONS, MuPreferences.DEFAULT_USE_SYSTEM_FILE_ICONS));
-
-            // Register actions
-            printStartupMessage("Registering actions...");
-            ActionManager.registerActions();
+            startupTasks.run("icons", new Runnable() {
+                public void run() {
+                    // Initialize the SwingFileIconProvider from the main thread, see method Javadoc for an explanation on why we do this now
+                    SwingFileIconProvider.forceInit();
+                    // The math.max(1.0f, ...) part is to workaround a bug which cause(d) this value to be set to 0.0 in the configuration file.
+                    com.mucommander.ui.icon.FileIcons.setScaleFactor(Math.max(1.0f, MuConfigurations.getPreferences().getVariable(MuPreference.TABLE_ICON_SCALE,
+                                                                                                      MuPreferences.DEFAULT_TABLE_ICON_SCALE)));
+                    com.mucommander.ui.icon.FileIcons.setSystemIconsPolicy(MuConfigurations.getPreferences().getVariable(MuPreference.USE_SYSTEM_FILE_ICONS, MuPreferences.DEFAULT_USE_SYSTEM_FILE_ICONS));
+                }
+            });
 
-            // Loads the ActionKeymap file
+            // Waits for the loaders, in the order in which they are likely to complete
+            printStartupMessage("Initializing desktop...");
+            startupTasks.await("desktop");
+            printStartupMessage("Loading dictionary...");
+            startupTasks.await("dictionary");
+            printStartupMessage("Loading file associations...");
+            startupTasks.await("commands");
+            printStartupMessage("Loading bookmarks...");
+            startupTasks.await("bookmarks");
+            printStartupMessage("Loading credentials...");
+            startupTasks.await("credentials");
+            printStartupMessage("Registering actions...");
+            startupTasks.await("actions");
             printStartupMessage("Loading actions shortcuts...");
-            try {com.mucommander.ui.action.ActionKeymapIO.loadActionKeymap();}
-            catch(Exception e) {printFileError("Could not load actions shortcuts", e, fatalWarnings);}
-
-            // Loads the ToolBar's description file
+            startupTasks.await("action shortcuts");
             printStartupMessage("Loading toolbar description...");
-            try {ToolBarIO.loadDescriptionFile();}
-            catch(Exception e) {printFileError("Could not load toolbar description", e, fatalWarnings);}
-
-            // Loads the CommandBar's description file
+            startupTasks.await("toolbar");
             printStartupMessage("Loading command bar description...");
-            try {CommandBarIO.loadCommandBar();}
-            catch(Exception e) {printFileError("Could not load commandbar description", e, fatalWarnings);}
-
-            // Loads the themes.
+            startupTasks.await("command bar");
             printStartupMessage("Loading theme...");
-            com.mucommander.ui.theme.ThemeManager.loadCurrentTheme();
-
-            // Starts Bonjour services discovery (only if enabled in prefs)
-            printStartupMessage("Starting Bonjour services discovery...");
-            com.mucommander.bonjour.BonjourDirectory.setActive(MuConfigurations.getPreferences().getVariable(MuPreference.ENABLE_BONJOUR_DISCOVERY, MuPreferences.DEFAULT_ENABLE_BONJOUR_DISCOVERY));
+            startupTasks.await("theme");
 
             // Creates the initial main frame using any initial path specified by the command line.
             printStartupMessage("Initializing window...");
-            String[] folders = new String[args.length - i];
+            final String[] folders = new String[args.length - i];
             System.arraycopy(args, i, folders, 0, folders.length);
-            WindowManager.createNewMainFrame(new CommandLineMainFrameBuilder(folders));
+            startupTasks.run("window", new Runnable() {
+                public void run() {
+                    WindowManager.createNewMainFrame(new CommandLineMainFrameBuilder(folders));
 
-            // If no initial path was specified, start a default main window.
-            if(WindowManager.getCurrentMainFrame() == null)
-                WindowManager.createNewMainFrame(new DefaultMainFramesBuilder());
+                    // If no initial path was specified, start a default main window.
+                    if(WindowManager.getCurrentMainFrame() == null)
+                        WindowManager.createNewMainFrame(new DefaultMainFramesBuilder());
+                }
+            });
 
             // Done launching, wake up threads waiting for the application being launched.
             // Important: this must be done before disposing the splash screen, as this would otherwise create a deadlock
@@ -624,6 +694,60 @@ public class Launcher {
             if(splashScreen!=null)
                 splashScreen.dispose();
 
+            // - Deferred initialization ----------------------------------
+            // ------------------------------------------------------------
+            // The following is not needed to display the first window, and is done in the background once it is shown
+
+            // Loads shell history
+            startupTasks.submit("shell history", new Runnable() {
+                public void run() {
+                    try {ShellHistoryManager.loadHistory();}
+                    catch(Exception e) {printFileError("Could not load shell history", e, failOnWarnings);}
+                }
+            });
+
+            // Starts Bonjour services discovery (only if enabled in prefs)
+            startupTasks.submit("bonjour", new Runnable() {
+                public void run() {
+                    com.mucommander.bonjour.BonjourDirectory.setActive(MuConfigurations.getPreferences().getVariable(MuPreference.ENABLE_BONJOUR_DISCOVERY, MuPreferences.DEFAULT_ENABLE_BONJOUR_DISCOVERY));
+                }
+            });
+
+            // Lists the locations of the restored tabs that are not displayed (only if enabled in prefs)
+            startupTasks.submit("tabs warm-up", new Runnable() {
+                public void run() {
+                    FileTableTabsWarmUp.start(WindowManager.getMainFrames());
+                }
+            });
+
+            // Offers to resume the file transfers that were interrupted the last time the application ran
+            startupTasks.submit("transfer journals", new Runnable() {
+                public void run() {
+                    final List<TransferJournal> journals = TransferJournal.getInterruptedJournals();
+                    if(journals.isEmpty())
+                        return;
+
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            for(TransferJournal journal : journals)
+                                new ResumeTransferDialog(WindowManager.getCurrentMainFrame(), journal).showAndPerformAction();
+                        }
+                    });
+                }
+            });
+
+            // Reports startup timings once everything has been initialized
+            final boolean reportTimings = printStartupTimings;
+            startupTasks.submit("report", new Runnable() {
+                public void run() {
+                    if(reportTimings)
+                        System.out.println(startupTasks.getReport());
+                    else
+                        LOGGER.debug(startupTasks.getReport());
+                }
+            }, "shell history", "bonjour");
+            startupTasks.shutdown();
+
             // Check for newer version unless it was disabled
             if(MuConfigurations.getPreferences().getVariable(MuPreference.CHECK_FOR_UPDATE, MuPreferences.DEFAULT_CHECK_FOR_UPDATE))
                 new CheckVersionDialog(WindowManager.getCurrentMainFrame(), false);
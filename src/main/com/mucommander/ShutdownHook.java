@@ -25,6 +25,7 @@ import com.mucommander.auth.CredentialsManager;
 import com.mucommander.bookmark.BookmarkManager;
 import com.mucommander.command.CommandManager;
 import com.mucommander.conf.MuConfigurations;
+import com.mucommander.io.backup.SaveScheduler;
 import com.mucommander.shell.ShellHistoryManager;
 import com.mucommander.ui.action.ActionKeymapIO;
 import com.mucommander.ui.main.commandbar.CommandBarIO;
@@ -88,6 +89,9 @@ public class ShutdownHook extends Thread {
         
         TreeIOThreadManager.getInstance().interrupt();
 
+        // Run the saves that are still pending, so that they don't overlap with the ones below
+        SaveScheduler.flush();
+
         // Save snapshot
         try{MuConfigurations.saveSnapshot();}
         catch(Exception e) {LOGGER.warn("Failed to save snapshot", e);}
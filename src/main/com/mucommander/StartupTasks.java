@@ -0,0 +1,249 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the tasks that make up the application's startup on a small pool of threads, honouring the dependencies
+ * between them, and records how long each of them took.
+ * <p>
+ * A task is submitted along with the names of the tasks it depends on, which must have been submitted before it:
+ * the task is handed to the pool only once all of them have completed, so that the pool's threads are never taken by
+ * tasks waiting for others. Tasks that access the same data must either depend on one another or access it in a
+ * thread-safe way.
+ * Tasks can also be run on the calling thread with {@link #run(String, Runnable)}, in which case they are only timed.
+ * </p>
+ *
+ * @see Launcher
+ */
+class StartupTasks {
+
+    /** Time at which this instance was created, startup times are relative to it */
+    private final long startTime = System.currentTimeMillis();
+
+    /** Runs the submitted tasks */
+    private ExecutorService executor;
+
+    /** Submitted tasks, by name */
+    private Map<String, Task> tasks = new HashMap<String, Task>();
+
+    /** Timings of the tasks that have completed, in the order in which they completed */
+    private List<String> timings = new ArrayList<String>();
+
+    /** True once no more tasks are to be submitted */
+    private boolean shutdownRequested;
+
+
+    /**
+     * Creates a new <code>StartupTasks</code> running tasks on the given number of threads.
+     *
+     * @param nbThreads number of threads running the submitted tasks
+     */
+    StartupTasks(int nbThreads) {
+        executor = Executors.newFixedThreadPool(nbThreads, new ThreadFactory() {
+            private int nbCreatedThreads;
+
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Startup thread "+(++nbCreatedThreads));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Submits a task to be run by the pool once the given tasks have completed. If one of them has failed, the
+     * task is not run and fails with the same error.
+     *
+     * @param name name of the task, used to refer to it in dependencies and in the timing report
+     * @param task the task to run
+     * @param dependencies names of the tasks that must have completed before this one starts
+     */
+    synchronized void submit(String name, Runnable task, String... dependencies) {
+        List<Task> dependencyTasks = new ArrayList<Task>(dependencies.length);
+        for(String dependency : dependencies) {
+            Task dependencyTask = tasks.get(dependency);
+            if(dependencyTask==null)
+                throw new IllegalArgumentException("Unknown startup task: "+dependency);
+            dependencyTasks.add(dependencyTask);
+        }
+
+        Task newTask = new Task(name, task, dependencyTasks);
+        for(Task dependencyTask : dependencyTasks) {
+            // Completed tasks notify their dependents under this object's lock, so this one can't be missed
+            if(!dependencyTask.isDone()) {
+                newTask.nbPendingDependencies++;
+                dependencyTask.dependents.add(newTask);
+            }
+        }
+
+        tasks.put(name, newTask);
+        if(newTask.nbPendingDependencies==0)
+            executor.execute(newTask);
+    }
+
+    /**
+     * Hands the tasks that were waiting for the given one to the pool, once all their dependencies have completed.
+     */
+    private synchronized void taskDone(Task task) {
+        for(Task dependent : task.dependents) {
+            if(--dependent.nbPendingDependencies==0)
+                executor.execute(dependent);
+        }
+
+        shutdownIfIdle();
+    }
+
+    /**
+     * Runs the given task on the current thread and records how long it took.
+     *
+     * @param name name of the task, used in the timing report
+     * @param task the task to run
+     */
+    void run(String name, Runnable task) {
+        long start = System.currentTimeMillis();
+        try {
+            task.run();
+        }
+        finally {
+            long end = System.currentTimeMillis();
+            synchronized(timings) {
+                timings.add(String.format("%6d ms %6d ms  %-24s %s", start-startTime, end-start, name, Thread.currentThread().getName()));
+            }
+        }
+    }
+
+    /**
+     * Waits until the given task has completed. If the task failed, the error it threw is rethrown.
+     *
+     * @param name name of the task to wait for
+     */
+    void await(String name) {
+        Future<?> future;
+        synchronized(this) {
+            future = tasks.get(name);
+        }
+        if(future==null)
+            throw new IllegalArgumentException("Unknown startup task: "+name);
+
+        get(future);
+    }
+
+    /**
+     * Stops accepting tasks once the tasks that have been submitted have been handed to the pool, they keep running.
+     */
+    synchronized void shutdown() {
+        shutdownRequested = true;
+        shutdownIfIdle();
+    }
+
+    /**
+     * Shuts the pool down if shutdown has been requested and no task is waiting for its dependencies anymore.
+     */
+    private void shutdownIfIdle() {
+        if(!shutdownRequested)
+            return;
+
+        for(Task task : tasks.values()) {
+            if(task.nbPendingDependencies>0)
+                return;
+        }
+
+        executor.shutdown();
+    }
+
+    /**
+     * Returns a report of the startup timings: for each completed task, the time at which it started relative to the
+     * creation of this instance, the time it took, its name and the thread it ran on.
+     *
+     * @return a report of the startup timings
+     */
+    String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("Startup timings (").append(System.currentTimeMillis()-startTime).append(" ms):\n");
+        report.append(String.format("%9s %9s  %-24s %s\n", "start", "duration", "task", "thread"));
+        synchronized(timings) {
+            for(String timing : timings)
+                report.append(timing).append('\n');
+        }
+
+        return report.toString();
+    }
+
+    /**
+     * Waits for the given future and rethrows the error thrown by its task, if any.
+     */
+    private static void get(Future<?> future) {
+        try {
+            future.get();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a startup task", e);
+        }
+        catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if(cause instanceof Error)
+                throw (Error)cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+
+    /**
+     * A submitted task, run once the tasks it depends on have completed.
+     */
+    private class Task extends FutureTask<Object> {
+
+        /** Tasks waiting for this one to complete */
+        private final List<Task> dependents = new ArrayList<Task>();
+
+        /** Number of dependencies that have not completed yet */
+        private int nbPendingDependencies;
+
+        private Task(final String name, final Runnable task, final List<Task> dependencies) {
+            super(new Runnable() {
+                public void run() {
+                    // Fails with the same error as the first dependency that failed, if any
+                    for(Future<?> dependency : dependencies)
+                        StartupTasks.get(dependency);
+
+                    StartupTasks.this.run(name, task);
+                }
+            }, null);
+        }
+
+        @Override
+        protected void done() {
+            taskDone(this);
+        }
+    }
+}
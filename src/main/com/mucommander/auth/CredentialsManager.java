@@ -18,6 +18,7 @@
 
 package com.mucommander.auth;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -39,7 +40,9 @@ import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.FileURL;
 import com.mucommander.commons.file.util.Chmod;
 import com.mucommander.commons.runtime.OsFamily;
+import com.mucommander.io.backup.AtomicFileSaver;
 import com.mucommander.io.backup.BackupOutputStream;
+import com.mucommander.io.backup.SaveScheduler;
 
 
 /**
@@ -71,6 +74,9 @@ public class CredentialsManager {
     /** Singleton CredentialsManagerAuthenticator instance */
     private final static Authenticator AUTHENTICATOR = new CredentialsManagerAuthenticator();
 
+    /** Identifies the saves of the credentials file scheduled by {@link SaveScheduler} */
+    private final static Object CREDENTIALS_SAVE_KEY = new Object();
+
     /** Credentials file location */
     private static AbstractFile credentialsFile;
 
@@ -199,8 +205,14 @@ public class CredentialsManager {
             }
         }
 
-        // Under UNIX-based systems, change the credentials file's permissions so that the file can't be read by
-        // 'group' and 'other'.
+        secureCredentialsFile();
+    }
+
+    /**
+     * Changes the credentials file's permissions so that it can't be read by 'group' and 'other', under UNIX-based
+     * systems.
+     */
+    private static void secureCredentialsFile() {
         boolean fileSecured = !OsFamily.getCurrent().isUnixBased() || Chmod.chmod(credentialsFile, 0600);     // rw-------
 
         if(fileSecured)
@@ -209,6 +221,41 @@ public class CredentialsManager {
         	LOGGER.warn("Credentials file could not be chmod!");
     }
 
+    /**
+     * Writes the credentials file in the background if changes were made to persistent entries since last write.
+     * Calls made in quick succession result in a single write.
+     * @see SaveScheduler
+     */
+    public static void writeCredentialsLater() {
+        if(!saveNeeded)
+            return;
+
+        // Serializes the credentials right away, as they may be modified before they are written
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {CredentialsWriter.write(out);}
+        catch(IOException e) {
+            LOGGER.warn("Failed to save credentials", e);
+            return;
+        }
+        saveNeeded = false;
+
+        final byte[] content = out.toByteArray();
+        SaveScheduler.schedule(CREDENTIALS_SAVE_KEY, new Runnable() {
+            public void run() {
+                try {
+                    credentialsFile = getCredentialsFile();
+                    AtomicFileSaver.save(credentialsFile, content, content.length);
+                    secureCredentialsFile();
+                }
+                catch(IOException e) {
+                    LOGGER.warn("Failed to save credentials", e);
+                    // Let the next save try again
+                    saveNeeded = true;
+                }
+            }
+        });
+    }
+
 
     /**
      * Returns an array of {@link CredentialsMapping} that match the location designated by the given {@link FileURL}
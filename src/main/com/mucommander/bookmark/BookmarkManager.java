@@ -23,8 +23,12 @@ import com.mucommander.commons.collections.AlteredVector;
 import com.mucommander.commons.collections.VectorChangeListener;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileFactory;
+import com.mucommander.io.backup.AtomicFileSaver;
 import com.mucommander.io.backup.BackupInputStream;
 import com.mucommander.io.backup.BackupOutputStream;
+import com.mucommander.io.backup.SaveScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.WeakHashMap;
@@ -38,6 +42,8 @@ import java.util.WeakHashMap;
  * @author Maxence Bernard, Nicolas Rinaudo
  */
 public class BookmarkManager implements VectorChangeListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookmarkManager.class);
+
     /** Whether we're currently loading the bookmarks or not. */
     private static boolean isLoading = false;
 
@@ -65,6 +71,9 @@ public class BookmarkManager implements VectorChangeListener {
     /** Last event pause timestamp */
     private static long lastEventPauseTime;
 
+    /** Identifies the saves of the bookmarks file scheduled by {@link SaveScheduler} */
+    private static final Object BOOKMARKS_SAVE_KEY = new Object();
+
     /** Create a singleton instance, needs to be referenced so that it's not garbage collected (AlteredVector
      * stores VectorChangeListener as weak references) */
     private static BookmarkManager singleton = new BookmarkManager();
@@ -240,6 +249,41 @@ public class BookmarkManager implements VectorChangeListener {
     }
 
 
+    /**
+     * Writes the bookmarks file in the background if changes were made to bookmarks since last write. Calls made in
+     * quick succession result in a single write.
+     * @see SaveScheduler
+     */
+    public static void writeBookmarksLater() {
+        final byte[] content;
+
+        // Serializes the bookmarks right away, as they may be modified before they are written
+        synchronized(BookmarkManager.class) {
+            if(!saveNeeded)
+                return;
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {buildBookmarks(getBookmarkWriter(out));}
+            catch(Exception e) {
+                LOGGER.warn("Failed to save bookmarks", e);
+                return;
+            }
+            content = out.toByteArray();
+            saveNeeded = false;
+        }
+
+        SaveScheduler.schedule(BOOKMARKS_SAVE_KEY, new Runnable() {
+            public void run() {
+                try {AtomicFileSaver.save(getBookmarksFile(), content, content.length);}
+                catch(IOException e) {
+                    LOGGER.warn("Failed to save bookmarks", e);
+                    // Let the next save try again
+                    synchronized(BookmarkManager.class) {saveNeeded = true;}
+                }
+            }
+        });
+    }
+
 
     // - Bookmarks access ------------------------------------------------------
     // -------------------------------------------------------------------------
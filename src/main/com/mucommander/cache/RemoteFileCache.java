@@ -0,0 +1,496 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.cache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.PlatformManager;
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.Credentials;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.PermissionAccesses;
+import com.mucommander.commons.file.PermissionTypes;
+import com.mucommander.commons.file.impl.local.LocalFile;
+import com.mucommander.commons.runtime.JavaVersions;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+
+/**
+ * Persistent on-disk cache holding local copies of remote files, so that a remote file that is opened, viewed or
+ * edited several times is downloaded only once.
+ * <p>
+ * Entries are content-addressed: the key of a file is a digest of its URL, login, size and date, so
+ * that a file that has been modified on the server no longer matches its stale copy, which is eventually evicted.
+ * Each entry is stored in its own folder of the cache folder (located in the preferences folder) and keeps the
+ * original file name, so that external applications can recognize its type.
+ * </p>
+ * <p>
+ * The total size of the cache is bounded by the {@link MuPreference#FILE_CACHE_SIZE} preference: when the budget is
+ * exceeded, least recently used entries are evicted. The last access date of an entry is stored as the date of its
+ * folder, which allows the cache index to be rebuilt from the cache folder when muCommander starts.
+ * </p>
+ *
+ * @see #getInstance()
+ */
+public class RemoteFileCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteFileCache.class);
+
+    /** Name of the cache folder, located in the preferences folder */
+    private final static String CACHE_FOLDER_NAME = "file_cache";
+
+    /** Extension of the files that are being written to the cache */
+    private final static String PART_EXTENSION = ".part";
+
+    /** Size of the buffer used when copying files to the cache */
+    private final static int BUFFER_SIZE = 65536;
+
+    /** Digits used to format entry keys */
+    private final static char HEX_DIGITS[] = "0123456789abcdef".toCharArray();
+
+    /** Number of bytes in a megabyte, the unit of the cache size preference */
+    private final static long MEGABYTE = 1024*1024;
+
+    /** Shared instance */
+    private static RemoteFileCache instance;
+
+    /** Folder that contains the cache entries */
+    private File cacheFolder;
+
+    /** Cache entries keyed by their digest, in access order (least recently used first) */
+    private LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    /** Total size of the cached files, in bytes */
+    private long totalSize;
+
+    /** Number of files that were found in the cache */
+    private int nbHits;
+
+    /** Number of files that were looked up but not found in the cache */
+    private int nbMisses;
+
+    /** Number of entries that were evicted */
+    private int nbEvictions;
+
+    /** Number of bytes that were read from the cache instead of being downloaded */
+    private long nbBytesSaved;
+
+
+    /**
+     * Creates a new cache backed by the given folder, and indexes the entries it contains.
+     */
+    private RemoteFileCache(File cacheFolder) {
+        this.cacheFolder = cacheFolder;
+
+        if(!cacheFolder.exists() && !cacheFolder.mkdirs())
+            LOGGER.warn("Could not create file cache folder: "+cacheFolder.getAbsolutePath());
+
+        loadEntries();
+    }
+
+    /**
+     * Returns the shared instance of the remote file cache, creating it if necessary.
+     *
+     * @return the shared instance of the remote file cache
+     */
+    public static synchronized RemoteFileCache getInstance() {
+        if(instance==null)
+            instance = new RemoteFileCache(new File(PlatformManager.getPreferencesFolder().getAbsolutePath(), CACHE_FOLDER_NAME));
+
+        return instance;
+    }
+
+    /**
+     * Returns the maximum size of the cache in bytes, <code>0</code> if the cache is disabled.
+     *
+     * @return the maximum size of the cache in bytes
+     */
+    private long getMaxSize() {
+        return Math.max(0, MuConfigurations.getPreferences().getVariable(MuPreference.FILE_CACHE_SIZE, MuPreferences.DEFAULT_FILE_CACHE_SIZE))*MEGABYTE;
+    }
+
+    /**
+     * Returns <code>true</code> if the given file can be stored in this cache: the cache must be enabled, the file
+     * must be a regular file that is not located on a local filesystem, its size and date must be known and it must
+     * not take more than half the cache's budget.
+     *
+     * @param file the file to test
+     * @return true if the given file can be stored in this cache
+     */
+    public boolean isCacheable(AbstractFile file) {
+        long size = file.getSize();
+        return !file.hasAncestor(LocalFile.class)
+            && size>=0
+            && file.getDate()>0
+            && size<=getMaxSize()/2
+            && !file.isDirectory();
+    }
+
+    /**
+     * Returns the cached copy of the given file, <code>null</code> if the file is not cached or if the cached copy
+     * is out of date.
+     *
+     * @param file a remote file
+     * @return the cached copy of the given file, <code>null</code> if there is none
+     */
+    public AbstractFile getCachedFile(AbstractFile file) {
+        if(!isCacheable(file))
+            return null;
+
+        String key = getKey(file);
+        Entry entry;
+        synchronized(this) {
+            entry = entries.get(key);
+        }
+
+        // Disk accesses are made without holding the lock, so that they don't hold up other threads using the cache
+        boolean exists = entry!=null && entry.file.exists();
+        synchronized(this) {
+            if(!exists) {
+                // Forget the entry unless it has been replaced concurrently
+                if(entry!=null && entries.get(key)==entry) {
+                    entries.remove(key);
+                    totalSize -= entry.size;
+                }
+                else {
+                    entry = null;
+                }
+                nbMisses++;
+            }
+            else {
+                nbHits++;
+                nbBytesSaved += entry.size;
+            }
+        }
+
+        if(!exists) {
+            if(entry!=null)
+                deleteFiles(entry.file.getParentFile());
+            return null;
+        }
+
+        File cachedFile = entry.file;
+        // Record the access date, used to rebuild the LRU order at startup
+        cachedFile.getParentFile().setLastModified(System.currentTimeMillis());
+
+        LOGGER.info("Cache hit for "+file.getURL().toString(false)+": "+getStatistics());
+
+        return FileFactory.getFile(cachedFile.getAbsolutePath());
+    }
+
+    /**
+     * Returns a local copy of the given file. If the file is cacheable, the cached copy is returned if there is one,
+     * or the file is downloaded to the cache first. If the file is not cacheable, the file itself is returned.
+     *
+     * @param file a file
+     * @return a local copy of the given file, or the file itself if it is not cacheable
+     * @throws IOException if an error occurred while downloading the file
+     */
+    public AbstractFile getLocalCopy(AbstractFile file) throws IOException {
+        if(!isCacheable(file))
+            return file;
+
+        AbstractFile cachedFile = getCachedFile(file);
+        if(cachedFile!=null)
+            return cachedFile;
+
+        AbstractFile partFile = createPartFile(file);
+        InputStream in = file.getInputStream();
+        try {
+            OutputStream out = new FileOutputStream(partFile.getAbsolutePath());
+            try {
+                byte buffer[] = new byte[BUFFER_SIZE];
+                int nbRead;
+                while((nbRead=in.read(buffer))!=-1)
+                    out.write(buffer, 0, nbRead);
+            }
+            finally {
+                out.close();
+            }
+        }
+        catch(IOException e) {
+            partFile.delete();
+            throw e;
+        }
+        finally {
+            in.close();
+        }
+
+        return commit(file, partFile);
+    }
+
+    /**
+     * Creates and returns the temporary file in which the contents of the given file are to be written before the file
+     * is added to the cache by {@link #commit(AbstractFile, AbstractFile)}.
+     *
+     * @param file the remote file to cache
+     * @return the temporary file in which the contents of the remote file are to be written
+     * @throws IOException if the file could not be created
+     */
+    public AbstractFile createPartFile(AbstractFile file) throws IOException {
+        File entryFolder = new File(cacheFolder, getKey(file));
+        if(!entryFolder.exists() && !entryFolder.mkdirs())
+            throw new IOException("Could not create "+entryFolder.getAbsolutePath());
+
+        return FileFactory.getFile(File.createTempFile(file.getName(), PART_EXTENSION, entryFolder).getAbsolutePath());
+    }
+
+    /**
+     * Adds the contents written to the given temporary file to the cache, as a copy of the specified remote file.
+     * Least recently used entries are evicted if the cache exceeds its budget.
+     *
+     * @param file the remote file that has been copied to the temporary file
+     * @param partFile the temporary file created by {@link #createPartFile(AbstractFile)}
+     * @return the cached copy of the remote file
+     * @throws IOException if the temporary file could not be added to the cache
+     */
+    public AbstractFile commit(AbstractFile file, AbstractFile partFile) throws IOException {
+        String key = getKey(file);
+        File part = new File(partFile.getAbsolutePath());
+        File cachedFile = new File(part.getParentFile(), file.getName());
+        long size = part.length();
+
+        synchronized(this) {
+            Entry entry = entries.get(key);
+            if(entry!=null && entry.file.exists()) {
+                // The file has been cached concurrently
+                part.delete();
+            }
+            else {
+                if(entry!=null)
+                    removeEntry(key);
+
+                if(!part.renameTo(cachedFile)) {
+                    part.delete();
+                    throw new IOException("Could not rename "+part.getAbsolutePath());
+                }
+
+                entries.put(key, new Entry(cachedFile, size));
+                totalSize += size;
+                evictEntries(key);
+            }
+        }
+
+        LOGGER.info("Cached "+file.getURL().toString(false)+": "+getStatistics());
+
+        return FileFactory.getFile(cachedFile.getAbsolutePath());
+    }
+
+    /**
+     * Deletes all the entries of this cache.
+     */
+    public synchronized void clear() {
+        for(String key : new ArrayList<String>(entries.keySet()))
+            removeEntry(key);
+    }
+
+    /**
+     * Returns a description of the cache's contents and usage statistics, as displayed in the debug console.
+     *
+     * @return a description of the cache's contents and usage statistics
+     */
+    public synchronized String getStatistics() {
+        return entries.size()+" files, "+(totalSize/MEGABYTE)+"/"+(getMaxSize()/MEGABYTE)+" MB, "
+            +nbHits+" hits, "+nbMisses+" misses, "+nbEvictions+" evictions, "
+            +(nbBytesSaved/MEGABYTE)+" MB saved";
+    }
+
+    /**
+     * Evicts least recently used entries until the cache fits its budget. The entry with the specified key is never
+     * evicted.
+     */
+    private void evictEntries(String keptKey) {
+        long maxSize = getMaxSize();
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while(totalSize>maxSize && iterator.hasNext()) {
+            Map.Entry<String, Entry> mapEntry = iterator.next();
+            if(mapEntry.getKey().equals(keptKey))
+                continue;
+
+            iterator.remove();
+            deleteEntryFolder(mapEntry.getValue());
+            nbEvictions++;
+        }
+    }
+
+    /**
+     * Removes the entry with the given key and deletes its files.
+     */
+    private void removeEntry(String key) {
+        Entry entry = entries.remove(key);
+        if(entry!=null)
+            deleteEntryFolder(entry);
+    }
+
+    /**
+     * Deletes the folder of the given entry and updates the total size of the cache.
+     */
+    private void deleteEntryFolder(Entry entry) {
+        totalSize -= entry.size;
+        deleteFiles(entry.file.getParentFile());
+    }
+
+    /**
+     * Deletes the given entry folder and the files it contains.
+     */
+    private static void deleteFiles(File entryFolder) {
+        File children[] = entryFolder.listFiles();
+        if(children!=null) {
+            for(File child : children) {
+                // Cached files may have been made read-only, which prevents them from being deleted on some platforms
+                if(!child.delete()) {
+                    makeWritable(child);
+                    child.delete();
+                }
+            }
+        }
+        entryFolder.delete();
+    }
+
+    /**
+     * Gives the current user write permission on the given file.
+     */
+    private static void makeWritable(File file) {
+        // File#setWritable is only available in Java 1.6 and up
+        if(JavaVersions.JAVA_1_6.isCurrentOrHigher()) {
+            file.setWritable(true);
+            return;
+        }
+
+        try {
+            AbstractFile localFile = FileFactory.getFile(file.getAbsolutePath());
+            if(localFile!=null)
+                localFile.changePermission(PermissionAccesses.USER_ACCESS, PermissionTypes.WRITE_PERMISSION, true);
+        }
+        catch(IOException e) {
+            LOGGER.debug("Could not make "+file+" writable", e);
+        }
+    }
+
+    /**
+     * Indexes the entries found in the cache folder, in the order in which they were last accessed. Leftovers of
+     * interrupted downloads are deleted.
+     */
+    private void loadEntries() {
+        File entryFolders[] = cacheFolder.listFiles();
+        if(entryFolders==null)
+            return;
+
+        // Least recently accessed entries first
+        Arrays.sort(entryFolders, new Comparator<File>() {
+            public int compare(File f1, File f2) {
+                long date1 = f1.lastModified();
+                long date2 = f2.lastModified();
+                return date1<date2?-1:date1==date2?0:1;
+            }
+        });
+
+        for(File entryFolder : entryFolders) {
+            File children[] = entryFolder.listFiles();
+            if(children==null)
+                continue;
+
+            File cachedFile = null;
+            List<File> partFiles = new ArrayList<File>();
+            for(File child : children) {
+                if(child.getName().endsWith(PART_EXTENSION))
+                    partFiles.add(child);
+                else
+                    cachedFile = child;
+            }
+
+            for(File partFile : partFiles)
+                partFile.delete();
+
+            if(cachedFile==null) {
+                entryFolder.delete();
+                continue;
+            }
+
+            long size = cachedFile.length();
+            entries.put(entryFolder.getName(), new Entry(cachedFile, size));
+            totalSize += size;
+        }
+
+        LOGGER.info("Loaded file cache: "+getStatistics());
+    }
+
+    /**
+     * Returns the key of the given file: the hexadecimal SHA-1 digest of its URL, login, size and date. The login is
+     * part of the key as different users may see different files at the same location, but the password is not, so
+     * that it does not end up in the cache folder, even digested.
+     */
+    private static String getKey(AbstractFile file) {
+        Credentials credentials = file.getURL().getCredentials();
+        String identity = file.getURL().toString(false)+'\n'+(credentials==null?"":credentials.getLogin())
+            +'\n'+file.getSize()+'\n'+file.getDate();
+        try {
+            byte digest[] = MessageDigest.getInstance("SHA-1").digest(identity.getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder(digest.length*2);
+            for(byte b : digest) {
+                key.append(HEX_DIGITS[(b>>4)&0x0F]);
+                key.append(HEX_DIGITS[b&0x0F]);
+            }
+            return key.toString();
+        }
+        catch(NoSuchAlgorithmException e) {
+            // SHA-1 is always available
+            throw new IllegalStateException(e);
+        }
+        catch(UnsupportedEncodingException e) {
+            // UTF-8 is always available
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * A file stored in the cache.
+     */
+    private static class Entry {
+        private File file;
+        private long size;
+
+        private Entry(File file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+    }
+}
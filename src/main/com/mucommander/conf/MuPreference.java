@@ -49,6 +49,7 @@ public enum MuPreference {
 	COMMAND_BAR_VISIBLE(MuPreferences.COMMAND_BAR_VISIBLE),
 	COMMAND_BAR_ICON_SCALE(MuPreferences.COMMAND_BAR_ICON_SCALE),
 	STATUS_BAR_VISIBLE(MuPreferences.STATUS_BAR_VISIBLE),
+	JOB_MANAGER_VISIBLE(MuPreferences.JOB_MANAGER_VISIBLE),
 	TOOLBAR_VISIBLE(MuPreferences.TOOLBAR_VISIBLE),
 	TOOLBAR_ICON_SCALE(MuPreferences.TOOLBAR_ICON_SCALE),
 	VOLUME_EXCLUDE_REGEXP(MuPreferences.VOLUME_EXCLUDE_REGEXP),
@@ -65,17 +66,37 @@ public enum MuPreference {
 	STARTUP_FOLDERS(MuPreferences.STARTUP_FOLDERS),
 	LEFT_CUSTOM_FOLDER(MuPreferences.LEFT_CUSTOM_FOLDER),
 	RIGHT_CUSTOM_FOLDER(MuPreferences.RIGHT_CUSTOM_FOLDER),
+	WARM_UP_TABS(MuPreferences.WARM_UP_TABS),
+	WARM_UP_THREADS(MuPreferences.WARM_UP_THREADS),
+	WARM_UP_THREADS_PER_HOST(MuPreferences.WARM_UP_THREADS_PER_HOST),
 	REFRESH_CHECK_PERIOD(MuPreferences.REFRESH_CHECK_PERIOD),
 	WAIT_AFTER_REFRESH(MuPreferences.WAIT_AFTER_REFRESH),
 	PROGRESS_DIALOG_EXPANDED(MuPreferences.PROGRESS_DIALOG_EXPANDED),
 	PROGRESS_DIALOG_CLOSE_WHEN_FINISHED(MuPreferences.PROGRESS_DIALOG_CLOSE_WHEN_FINISHED),
+	UNPACK_THREADS(MuPreferences.UNPACK_THREADS),
+	DELETE_THREADS(MuPreferences.DELETE_THREADS),
+	MAX_RUNNING_JOBS(MuPreferences.MAX_RUNNING_JOBS),
+	MAX_JOBS_PER_VOLUME(MuPreferences.MAX_JOBS_PER_VOLUME),
+	MAX_JOBS_PER_HOST(MuPreferences.MAX_JOBS_PER_HOST),
+	BANDWIDTH_LIMIT(MuPreferences.BANDWIDTH_LIMIT),
+	BANDWIDTH_LIMIT_PER_HOST(MuPreferences.BANDWIDTH_LIMIT_PER_HOST),
+	TRANSFER_RETRIES(MuPreferences.TRANSFER_RETRIES),
+	RESUME_TAIL_CHECK(MuPreferences.RESUME_TAIL_CHECK),
+	FILE_CACHE_SIZE(MuPreferences.FILE_CACHE_SIZE),
+	THUMBNAIL_CACHE_SIZE(MuPreferences.THUMBNAIL_CACHE_SIZE),
+	LISTING_CACHE_MAX_FILES(MuPreferences.LISTING_CACHE_MAX_FILES),
+	LISTING_CACHE_TTL(MuPreferences.LISTING_CACHE_TTL),
+	CONNECTION_IDLE_TIMEOUT(MuPreferences.CONNECTION_IDLE_TIMEOUT),
+	CONNECTION_KEEP_ALIVE_PERIOD(MuPreferences.CONNECTION_KEEP_ALIVE_PERIOD),
 	THEME_TYPE(MuPreferences.THEME_TYPE),
 	THEME_NAME(MuPreferences.THEME_NAME),
 	ENABLE_BONJOUR_DISCOVERY(MuPreferences.ENABLE_BONJOUR_DISCOVERY),
 	LIST_HIDDEN_FILES(MuPreferences.LIST_HIDDEN_FILES),
 	SMB_LM_COMPATIBILITY(MuPreferences.SMB_LM_COMPATIBILITY),
 	SMB_USE_EXTENDED_SECURITY(MuPreferences.SMB_USE_EXTENDED_SECURITY),
-	SHOW_TAB_HEADER(MuPreferences.SHOW_SINGLE_TAB_HEADER);
+	SHOW_TAB_HEADER(MuPreferences.SHOW_SINGLE_TAB_HEADER),
+	TAB_SNAPSHOTS_MAX_FILES(MuPreferences.TAB_SNAPSHOTS_MAX_FILES),
+	QUICK_SEARCH_FILTER(MuPreferences.QUICK_SEARCH_FILTER);
 	
 	private String label;
 	
@@ -170,6 +170,17 @@ public class MuPreferences implements MuPreferencesAPI {
 
 
 
+	// - Job manager variables -----------------------------------------------
+	// -----------------------------------------------------------------------
+	/** Section describing the job manager panel CONFIGURATION. */
+	public static final String JOB_MANAGER_SECTION                = "job_manager";
+	/** Whether or not the job manager panel is visible. */
+	public static final String JOB_MANAGER_VISIBLE                = JOB_MANAGER_SECTION + '.' + "visible";
+	/** Default job manager panel visibility. */
+	public static final boolean DEFAULT_JOB_MANAGER_VISIBLE       = false;
+
+
+
 	// - Toolbar variables ---------------------------------------------------
 	// -----------------------------------------------------------------------
 	/** Section describing the toolbar CONFIGURATION. */
@@ -236,6 +247,14 @@ public class MuPreferences implements MuPreferencesAPI {
 	public static final String SHOW_SINGLE_TAB_HEADER			   = FILE_TABLE_SECTION + '.' + "show_single_tab_header";
 	/** Default value for 'Always show single tab header" */
 	public static final boolean DEFAULT_SHOW_TAB_HEADER	   = false;
+	/** Maximum number of files kept in the listing snapshots of the tabs that are not displayed, in each folder panel. */
+	public static final String  TAB_SNAPSHOTS_MAX_FILES            = FILE_TABLE_SECTION + '.' + "tab_snapshots_max_files";
+	/** Default maximum number of files kept in the listing snapshots of the tabs that are not displayed. */
+	public static final int     DEFAULT_TAB_SNAPSHOTS_MAX_FILES    = 20000;
+	/** Whether quick search hides the files that do not match the search string. */
+	public static final String  QUICK_SEARCH_FILTER                = FILE_TABLE_SECTION + '.' + "quick_search_filter";
+	/** Default value for 'Quick search hides non-matching files' option. */
+	public static final boolean DEFAULT_QUICK_SEARCH_FILTER        = false;
 
 	/** Name of the root element's attribute that contains the version of muCommander used to write the CONFIGURATION file. */
 	static final String VERSION_ATTRIBUTE = "version";
@@ -278,6 +297,18 @@ public class MuPreferences implements MuPreferencesAPI {
 	public static final String  RIGHT_CUSTOM_FOLDER      		  = CUSTOM_FOLDERS_SECTION + '.' + RIGHT;
 	/** Section describing the left panel's startup folder. */
 	public static final String  LEFT_CUSTOM_FOLDER			      = CUSTOM_FOLDERS_SECTION + '.' + LEFT;
+	/** Whether the locations of all restored tabs should be listed in the background after startup. */
+	public static final String  WARM_UP_TABS                      = STARTUP_FOLDER_SECTION + '.' + "warm_up_tabs";
+	/** Default value for 'Warm up tabs' option. */
+	public static final boolean DEFAULT_WARM_UP_TABS              = false;
+	/** Maximum number of tab locations that are listed concurrently when warming up tabs. */
+	public static final String  WARM_UP_THREADS                   = STARTUP_FOLDER_SECTION + '.' + "warm_up_threads";
+	/** Default maximum number of tab locations that are listed concurrently. */
+	public static final int     DEFAULT_WARM_UP_THREADS           = 4;
+	/** Maximum number of tab locations of a same host that are listed concurrently when warming up tabs. */
+	public static final String  WARM_UP_THREADS_PER_HOST          = STARTUP_FOLDER_SECTION + '.' + "warm_up_threads_per_host";
+	/** Default maximum number of tab locations of a same host that are listed concurrently. */
+	public static final int     DEFAULT_WARM_UP_THREADS_PER_HOST  = 2;
 	
 
 
@@ -311,6 +342,87 @@ public class MuPreferences implements MuPreferencesAPI {
 
 
 
+	// - File job variables --------------------------------------------------
+	// -----------------------------------------------------------------------
+	/** Section describing the behavior of file jobs. */
+	public static final String  FILE_JOB_SECTION                  = "file_job";
+	/** Number of threads used to unpack the entries of archives that can be randomly accessed, 1 to unpack them sequentially. */
+	public static final String  UNPACK_THREADS                    = FILE_JOB_SECTION + '.' + "unpack_threads";
+	/** Default number of threads used to unpack archives. */
+	public static final int     DEFAULT_UNPACK_THREADS            = Math.min(4, Runtime.getRuntime().availableProcessors());
+	/** Number of threads used to delete the contents of local folders, 1 to delete them sequentially. */
+	public static final String  DELETE_THREADS                    = FILE_JOB_SECTION + '.' + "delete_threads";
+	/** Default number of threads used to delete folders: deletions are bound by I/O latency rather than by CPU. */
+	public static final int     DEFAULT_DELETE_THREADS            = 8;
+	/** Maximum number of file jobs that run concurrently, 0 for no limit. */
+	public static final String  MAX_RUNNING_JOBS                  = FILE_JOB_SECTION + '.' + "max_running_jobs";
+	/** Default maximum number of file jobs that run concurrently. */
+	public static final int     DEFAULT_MAX_RUNNING_JOBS          = 0;
+	/** Maximum number of file jobs that access the same local volume concurrently, 0 for no limit. */
+	public static final String  MAX_JOBS_PER_VOLUME               = FILE_JOB_SECTION + '.' + "max_jobs_per_volume";
+	/** Default maximum number of file jobs that access the same local volume concurrently: no limit. */
+	public static final int     DEFAULT_MAX_JOBS_PER_VOLUME       = 0;
+	/** Maximum number of file jobs that access the same remote host concurrently, 0 for no limit. */
+	public static final String  MAX_JOBS_PER_HOST                 = FILE_JOB_SECTION + '.' + "max_jobs_per_host";
+	/** Default maximum number of file jobs that access the same remote host concurrently: no limit. */
+	public static final int     DEFAULT_MAX_JOBS_PER_HOST         = 0;
+	/** Maximum total throughput of file transfers in bytes per second, 0 for no limit. */
+	public static final String  BANDWIDTH_LIMIT                   = FILE_JOB_SECTION + '.' + "bandwidth_limit";
+	/** Default maximum total throughput of file transfers. */
+	public static final long    DEFAULT_BANDWIDTH_LIMIT           = 0;
+	/** Maximum total throughput of the file transfers that access the same remote server in bytes per second, 0 for no limit. */
+	public static final String  BANDWIDTH_LIMIT_PER_HOST          = FILE_JOB_SECTION + '.' + "bandwidth_limit_per_host";
+	/** Default maximum total throughput of the file transfers that access the same remote server. */
+	public static final long    DEFAULT_BANDWIDTH_LIMIT_PER_HOST  = 0;
+	/** Number of times a file transfer that failed because of a transient error is retried before asking the user, 0 to always ask. */
+	public static final String  TRANSFER_RETRIES                  = FILE_JOB_SECTION + '.' + "transfer_retries";
+	/** Default number of times a failed file transfer is retried before asking the user. */
+	public static final int     DEFAULT_TRANSFER_RETRIES          = 3;
+	/** Number of kilobytes before the resume offset that are compared when a transfer is resumed, 0 to disable the check. */
+	public static final String  RESUME_TAIL_CHECK                 = FILE_JOB_SECTION + '.' + "resume_tail_check";
+	/** Default number of kilobytes compared when a transfer is resumed. */
+	public static final int     DEFAULT_RESUME_TAIL_CHECK         = 64;
+
+
+
+	// - Remote file cache variables -----------------------------------------
+	// -----------------------------------------------------------------------
+	/** Section describing the cache of remote files that are opened, viewed or edited. */
+	public static final String  FILE_CACHE_SECTION                = "file_cache";
+	/** Maximum size of the remote file cache in megabytes, 0 to disable the cache. */
+	public static final String  FILE_CACHE_SIZE                   = FILE_CACHE_SECTION + '.' + "max_size";
+	/** Default maximum size of the remote file cache. */
+	public static final long    DEFAULT_FILE_CACHE_SIZE           = 512;
+	/** Maximum size of the thumbnails stored on disk in megabytes. */
+	public static final String  THUMBNAIL_CACHE_SIZE              = FILE_CACHE_SECTION + '.' + "thumbnails_max_size";
+	/** Default maximum size of the thumbnails stored on disk. */
+	public static final long    DEFAULT_THUMBNAIL_CACHE_SIZE      = 64;
+	/** Maximum number of files kept in the cached listings of remote folders, 0 to disable the listing cache. */
+	public static final String  LISTING_CACHE_MAX_FILES           = FILE_CACHE_SECTION + '.' + "listing_max_files";
+	/** Default maximum number of files kept in the cached listings of remote folders. */
+	public static final int     DEFAULT_LISTING_CACHE_MAX_FILES   = 50000;
+	/** Comma-separated <code>scheme:seconds</code> pairs giving how long a cached listing is used without being revalidated, for each remote protocol. */
+	public static final String  LISTING_CACHE_TTL                 = FILE_CACHE_SECTION + '.' + "listing_ttl";
+	/** Default time-to-live of the cached listings of remote folders. */
+	public static final String  DEFAULT_LISTING_CACHE_TTL         = "ftp:10,sftp:10,smb:10,nfs:10,http:30,https:30,hdfs:60,s3:120";
+
+
+
+	// - Server connections variables ----------------------------------------
+	// -----------------------------------------------------------------------
+	/** Section describing the management of server connections. */
+	public static final String  CONNECTIONS_SECTION               = "connections";
+	/** Number of seconds after which an idle server connection is closed, 0 to keep the protocol's default. */
+	public static final String  CONNECTION_IDLE_TIMEOUT           = CONNECTIONS_SECTION + '.' + "idle_timeout";
+	/** Default idle timeout of server connections. */
+	public static final long    DEFAULT_CONNECTION_IDLE_TIMEOUT   = 0;
+	/** Number of seconds of inactivity after which a keep-alive probe is sent to a server connection, 0 to disable probes. */
+	public static final String  CONNECTION_KEEP_ALIVE_PERIOD      = CONNECTIONS_SECTION + '.' + "keep_alive_period";
+	/** Default keep-alive period of server connections. */
+	public static final long    DEFAULT_CONNECTION_KEEP_ALIVE_PERIOD = 60;
+
+
+
 	// - Variables used for themes -------------------------------------------
 	// -----------------------------------------------------------------------
 	/** Section controlling which theme should be applied to muCommander. */
@@ -371,6 +483,8 @@ public class MuPreferences implements MuPreferencesAPI {
 
 	// - Instance fields -----------------------------------------------------
 	// -----------------------------------------------------------------------
+	/** Preferences are read and written under this object's lock, as they are accessed from several threads
+	 * (startup loaders, file jobs, the event dispatch thread) and the configuration is not safe for concurrent use */
 	private Configuration configuration;
 	
 	private String configurationVersion;
@@ -390,7 +504,7 @@ public class MuPreferences implements MuPreferencesAPI {
 	 * @throws IOException            if an I/O error occurs.
 	 * @throws ConfigurationException if a CONFIGURATION related error occurs.
 	 */
-	void read() throws IOException, ConfigurationException {
+	synchronized void read() throws IOException, ConfigurationException {
 		VersionedXmlConfigurationReader reader = new VersionedXmlConfigurationReader();
 		configuration.read(reader);
 
@@ -419,7 +533,7 @@ public class MuPreferences implements MuPreferencesAPI {
 	 * @throws IOException            if an I/O error occurs.
 	 * @throws ConfigurationException if a CONFIGURATION related error occurs.
 	 */
-	void write() throws IOException, ConfigurationException {
+	synchronized void write() throws IOException, ConfigurationException {
 		if(configurationVersion != null && !configurationVersion.equals(RuntimeConstants.VERSION)) {
 			// Clear the configuration before saving to drop preferences which are unused anymore
 			Configuration conf = new Configuration(MuPreferencesFile.getPreferencesFile(), new VersionedXmlConfigurationReaderFactory(),
@@ -482,84 +596,84 @@ public class MuPreferences implements MuPreferencesAPI {
 	// MuPreferencesAPI implementation //
 	/////////////////////////////////////
 
-	public boolean setVariable(MuPreference preference, String value) {
+	public synchronized boolean setVariable(MuPreference preference, String value) {
 		return configuration.setVariable(preference.toString(), value);
 	}
 
-	public boolean setVariable(MuPreference preference, int value) {
+	public synchronized boolean setVariable(MuPreference preference, int value) {
 		return configuration.setVariable(preference.toString(), value);
 	}
 
-	public boolean setVariable(MuPreference preference, List<String> value,
+	public synchronized boolean setVariable(MuPreference preference, List<String> value,
 			String separator) {
 		return configuration.setVariable(preference.toString(), value, separator);
 	}
 
-	public boolean setVariable(MuPreference preference, float value) {
+	public synchronized boolean setVariable(MuPreference preference, float value) {
 		return configuration.setVariable(preference.toString(), value);
 	}
 
-	public boolean setVariable(MuPreference preference, boolean value) {
+	public synchronized boolean setVariable(MuPreference preference, boolean value) {
 		return configuration.setVariable(preference.toString(), value);
 	}
 
-	public boolean setVariable(MuPreference preference, long value) {
+	public synchronized boolean setVariable(MuPreference preference, long value) {
 		return configuration.setVariable(preference.toString(), value);
 	}
 
-	public boolean setVariable(MuPreference preference, double value) {
+	public synchronized boolean setVariable(MuPreference preference, double value) {
 		return configuration.setVariable(preference.toString(), value);
 	}
 
-	public String getVariable(MuPreference preference) {
+	public synchronized String getVariable(MuPreference preference) {
 		return configuration.getVariable(preference.toString());
 	}
 	
-	public String getVariable(MuPreference preference, String value) {
+	public synchronized String getVariable(MuPreference preference, String value) {
 		return configuration.getVariable(preference.toString(), value);
 	}
 
-	public int getVariable(MuPreference preference, int value) {
+	public synchronized int getVariable(MuPreference preference, int value) {
 		return configuration.getVariable(preference.toString(), value);
 	}
 
-	public List<String> getVariable(MuPreference preference, List<String> value, String separator) {
+	public synchronized List<String> getVariable(MuPreference preference, List<String> value, String separator) {
 		return configuration.getVariable(preference.toString(), value, separator);
 	}
 
-	public float getVariable(MuPreference preference, float value) {
+	public synchronized float getVariable(MuPreference preference, float value) {
 		return configuration.getVariable(preference.toString(), value);
 	}
 
-	public boolean getVariable(MuPreference preference, boolean value) { 
+	public synchronized boolean getVariable(MuPreference preference, boolean value) { 
 		return configuration.getVariable(preference.toString(), value);
 	}
 
-	public long getVariable(MuPreference preference, long value) {
+	public synchronized long getVariable(MuPreference preference, long value) {
 		return configuration.getVariable(preference.toString(), value);
 	}
 
-	public double getVariable(MuPreference preference, double value) {
+	public synchronized double getVariable(MuPreference preference, double value) {
 		return configuration.getVariable(preference.toString(), value);
 	}
 	
-	public ValueList getListVariable(MuPreference preference, String separator) {
+	public synchronized ValueList getListVariable(MuPreference preference, String separator) {
 		return configuration.getListVariable(preference.toString(), separator);
 	}
 	
-	public boolean getBooleanVariable(String name) {
+	public synchronized boolean getBooleanVariable(String name) {
 		return configuration.getBooleanVariable(name);
 	}
 	
-	public String  getVariable(String name) {
+	public synchronized String  getVariable(String name) {
 		return configuration.getVariable(name);
 	}
 	
-	public boolean isVariableSet(MuPreference preference) {
+	public synchronized boolean isVariableSet(MuPreference preference) {
 		return configuration.isVariableSet(preference.toString());
 	}
 	
-	public String removeVariable(String name) {
+	public synchronized String removeVariable(String name) {
 		return configuration.removeVariable(name);
 	}
 }
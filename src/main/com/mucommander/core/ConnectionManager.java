@@ -0,0 +1,288 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.core;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mucommander.commons.file.Credentials;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.connection.ConnectionHandler;
+import com.mucommander.commons.file.connection.ConnectionPool;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+
+/**
+ * Looks after the server connections of the {@link ConnectionPool}, which are shared by folder changes, file jobs
+ * and the folders tree.
+ *
+ * <p>Connections are grouped by server, a server being identified by its realm and login: this is how the connection
+ * pool shares connections, and how {@link com.mucommander.job.JobScheduler} limits the number of jobs that run
+ * concurrently on a server. Connections are opened by the file layer, so the connection manager takes notice of them
+ * when a remote folder has been changed to or a job has finished, and when a connection is closed from the
+ * server connections dialog, see {@link #updateConnections()} and {@link #connectionClosed(ConnectionHandler)}.
+ * It then:</p>
+ * <ul>
+ *  <li>sets the idle timeout given by the {@link MuPreference#CONNECTION_IDLE_TIMEOUT} preference and the keep-alive
+ * period given by the {@link MuPreference#CONNECTION_KEEP_ALIVE_PERIOD} preference on new connections. Idle connections
+ * are then closed and kept alive by the monitor of the connection pool.</li>
+ *  <li>keeps {@link ServerStatistics statistics} about the connections of each server. The statistics of at most
+ * {@link #MAX_SERVERS} servers are kept, those of the servers that have no open connection being discarded first.</li>
+ * </ul>
+ *
+ * @see #getInstance()
+ */
+public class ConnectionManager {
+
+    /** Maximum number of servers whose statistics are kept */
+    private final static int MAX_SERVERS = 32;
+
+    /** Shared instance */
+    private static ConnectionManager instance;
+
+    /** Connections the connection manager has taken notice of, associated with the statistics of their server */
+    private Map<ConnectionHandler, ServerStatistics> connections = new IdentityHashMap<ConnectionHandler, ServerStatistics>();
+
+    /** Statistics of the servers that have been connected to, in the order in which they were first connected to */
+    private Map<String, ServerStatistics> statistics = new LinkedHashMap<String, ServerStatistics>();
+
+
+    private ConnectionManager() {
+    }
+
+    /**
+     * Returns the shared instance of the connection manager.
+     *
+     * @return the shared instance of the connection manager
+     */
+    public static synchronized ConnectionManager getInstance() {
+        if(instance==null)
+            instance = new ConnectionManager();
+
+        return instance;
+    }
+
+    /**
+     * Returns the key that identifies the server of the given URL: its scheme, login, host and port. Connections to
+     * the same server are pooled together.
+     *
+     * @param url a URL located on the server
+     * @return the key of the server
+     */
+    public static String getServerKey(FileURL url) {
+        return getServerKey(url, url.getCredentials());
+    }
+
+    private static String getServerKey(FileURL url, Credentials credentials) {
+        StringBuilder key = new StringBuilder();
+        key.append(url.getScheme()).append("://");
+        if(credentials!=null && credentials.getLogin()!=null && credentials.getLogin().length()>0)
+            key.append(credentials.getLogin()).append('@');
+
+        String host = url.getHost();
+        if(host!=null)
+            key.append(host);
+
+        int port = url.getPort();
+        if(port!=-1)
+            key.append(':').append(port);
+
+        return key.toString();
+    }
+
+    /**
+     * Returns the statistics of the servers that have been connected to since the application was started, in the
+     * order in which they were first connected to. The statistics of servers that have no open connection may have
+     * been discarded, see {@link #MAX_SERVERS}.
+     *
+     * @return the statistics of the servers
+     */
+    public synchronized List<ServerStatistics> getStatistics() {
+        updateConnections();
+
+        for(ServerStatistics serverStatistics : statistics.values())
+            serverStatistics.nbBusyConnections = 0;
+
+        for(Map.Entry<ConnectionHandler, ServerStatistics> entry : connections.entrySet()) {
+            if(entry.getKey().isLocked())
+                entry.getValue().nbBusyConnections++;
+        }
+
+        List<ServerStatistics> list = new ArrayList<ServerStatistics>(statistics.size());
+        for(ServerStatistics serverStatistics : statistics.values())
+            list.add(serverStatistics.clone());
+
+        return list;
+    }
+
+    /**
+     * Returns the statistics of the given server, creating them if needed.
+     */
+    private ServerStatistics getStatistics(String server) {
+        ServerStatistics serverStatistics = statistics.get(server);
+        if(serverStatistics==null) {
+            serverStatistics = new ServerStatistics(server);
+            statistics.put(server, serverStatistics);
+        }
+
+        return serverStatistics;
+    }
+
+    /**
+     * Takes notice of the connections that have been opened or closed since the last call: sets the idle timeout and
+     * the keep-alive period of the new connections and updates the statistics. This method is meant to be called
+     * after remote files have been accessed, i.e. when a remote folder has been changed to or a job has finished.
+     */
+    public synchronized void updateConnections() {
+        long idleTimeout = MuConfigurations.getPreferences().getVariable(MuPreference.CONNECTION_IDLE_TIMEOUT, MuPreferences.DEFAULT_CONNECTION_IDLE_TIMEOUT);
+        long keepAlivePeriod = MuConfigurations.getPreferences().getVariable(MuPreference.CONNECTION_KEEP_ALIVE_PERIOD, MuPreferences.DEFAULT_CONNECTION_KEEP_ALIVE_PERIOD);
+
+        Map<ConnectionHandler, ServerStatistics> previousConnections = connections;
+        connections = new IdentityHashMap<ConnectionHandler, ServerStatistics>();
+        for(ConnectionHandler handler : ConnectionPool.getConnectionHandlersSnapshot()) {
+            // Connections that have been closed remain in the pool until its monitor removes them
+            if(!handler.isConnected())
+                continue;
+
+            ServerStatistics serverStatistics = previousConnections.remove(handler);
+            if(serverStatistics==null) {
+                // New connection
+                serverStatistics = getStatistics(getServerKey(handler.getRealm(), handler.getCredentials()));
+                serverStatistics.nbOpened++;
+                serverStatistics.nbConnections++;
+
+                if(idleTimeout!=0)
+                    handler.setCloseOnInactivityPeriod(idleTimeout);
+                handler.setKeepAlivePeriod(keepAlivePeriod==0?-1:keepAlivePeriod);
+            }
+
+            connections.put(handler, serverStatistics);
+        }
+
+        // Connections that are no longer in the pool have been closed
+        for(ServerStatistics serverStatistics : previousConnections.values())
+            closed(serverStatistics);
+
+        // Discard the statistics of the servers that have no open connection, oldest first
+        Iterator<ServerStatistics> iterator = statistics.values().iterator();
+        while(statistics.size()>MAX_SERVERS && iterator.hasNext()) {
+            if(iterator.next().nbConnections==0)
+                iterator.remove();
+        }
+    }
+
+    /**
+     * Takes notice of a connection that has been closed by the user.
+     *
+     * @param handler the connection that has been closed
+     */
+    public synchronized void connectionClosed(ConnectionHandler handler) {
+        ServerStatistics serverStatistics = connections.remove(handler);
+        if(serverStatistics!=null)
+            closed(serverStatistics);
+    }
+
+    /**
+     * Records that a connection to the given server has been closed.
+     */
+    private void closed(ServerStatistics serverStatistics) {
+        serverStatistics.nbConnections--;
+        serverStatistics.nbClosed++;
+    }
+
+
+    /**
+     * Statistics about the connections to a server.
+     */
+    public static class ServerStatistics implements Cloneable {
+
+        private String server;
+
+        int nbConnections;
+        int nbBusyConnections;
+        int nbOpened;
+        int nbClosed;
+
+        private ServerStatistics(String server) {
+            this.server = server;
+        }
+
+        /**
+         * Returns the key of the server, as returned by {@link ConnectionManager#getServerKey(FileURL)}.
+         *
+         * @return the key of the server
+         */
+        public String getServer() {
+            return server;
+        }
+
+        /**
+         * Returns the number of connections to the server that are currently open.
+         *
+         * @return the number of connections to the server that are currently open
+         */
+        public int getConnectionCount() {
+            return nbConnections;
+        }
+
+        /**
+         * Returns the number of connections to the server that are currently in use.
+         *
+         * @return the number of connections to the server that are currently in use
+         */
+        public int getBusyConnectionCount() {
+            return nbBusyConnections;
+        }
+
+        /**
+         * Returns the number of connections to the server that have been opened, i.e. negotiated with the server.
+         *
+         * @return the number of connections to the server that have been opened
+         */
+        public int getOpenedCount() {
+            return nbOpened;
+        }
+
+        /**
+         * Returns the number of connections to the server that have been closed.
+         *
+         * @return the number of connections to the server that have been closed
+         */
+        public int getClosedCount() {
+            return nbClosed;
+        }
+
+        @Override
+        public ServerStatistics clone() {
+            try {
+                return (ServerStatistics)super.clone();
+            }
+            catch(CloneNotSupportedException e) {
+                // Should never happen
+                return null;
+            }
+        }
+    }
+}
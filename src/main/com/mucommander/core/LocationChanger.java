@@ -23,6 +23,8 @@ import java.awt.EventQueue;
 import java.io.IOException;
 import java.net.MalformedURLException;
 
+import javax.swing.SwingUtilities;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +51,7 @@ import com.mucommander.ui.dialog.file.DownloadDialog;
 import com.mucommander.ui.event.LocationManager;
 import com.mucommander.ui.main.FolderPanel;
 import com.mucommander.ui.main.MainFrame;
+import com.mucommander.ui.main.table.ListingSnapshot;
 import com.mucommander.utils.Callback;
 
 /**
@@ -126,6 +129,92 @@ public class LocationChanger {
     		setLocationThread.run();
 	}
 
+	/**
+	 * This method is triggered internally (i.e not by user request) to present the folder of the given
+	 * snapshot instantly, without listing it. Once the snapshot has been presented, the folder is listed in
+	 * the background, and the presented folder is refreshed if it has changed since the snapshot was taken.
+	 *
+	 * @param snapshot the snapshot of the folder to switch to
+	 * @param callback the {@link Callback#call()} method will be called when the snapshot has been presented
+	 */
+	public void tryRestoreListingSnapshot(final ListingSnapshot snapshot, final Callback callback) {
+		mainFrame.setNoEventsMode(true);
+		// Set cursor to hourglass/wait
+		mainFrame.setCursor(new Cursor(Cursor.WAIT_CURSOR));
+
+		Thread restoreSnapshotThread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					lastFolderChangeTime = System.currentTimeMillis();
+					locationManager.restoreListingSnapshot(snapshot);
+				} finally {
+					mainFrame.setNoEventsMode(false);
+					// Restore default cursor
+					mainFrame.setCursor(Cursor.getDefaultCursor());
+					// Notify callback that the folder has been set 
+					callback.call();
+				}
+
+				revalidateListingSnapshot(snapshot);
+			}
+		};
+
+		if (EventQueue.isDispatchThread())
+			restoreSnapshotThread.start();
+		else
+			restoreSnapshotThread.run();
+	}
+
+	/**
+	 * Lists the folder of the given snapshot and refreshes the presented folder with the changes that occurred
+	 * since the snapshot was taken, if any. Nothing is done if the presented folder has changed in the meantime.
+	 */
+	private void revalidateListingSnapshot(ListingSnapshot snapshot) {
+		AbstractFile folder = snapshot.getFolder();
+		AbstractFile children[];
+		try {
+			children = locationManager.revalidateListingSnapshot(snapshot);
+		} catch (IOException e) {
+			// The folder can no longer be listed, let FolderChangeMonitor deal with it
+			LOGGER.debug("Could not revalidate listing of "+folder, e);
+			RemoteListingCache.getInstance().remove(folder.getURL());
+			return;
+		}
+
+		// The snapshot is up-to-date
+		if (children == null) {
+			synchronized(FOLDER_CHANGE_LOCK) {
+				if (changeFolderThread != null || locationManager.getCurrentFolder() != folder)
+					return;
+
+				folderPanel.getFileTable().listingRevalidated();
+			}
+
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					mainFrame.getStatusBar().updateSelectedFilesInfo();
+				}
+			});
+			return;
+		}
+
+		// Don't interfere with a folder change requested in the meantime. The new listing is set by a folder change
+		// thread, so that no other folder change can take place until it has been set.
+		// Note: the lock must not be held while the folder is set, as this requires the event dispatch thread
+		synchronized(FOLDER_CHANGE_LOCK) {
+			if (changeFolderThread != null || locationManager.getCurrentFolder() != folder)
+				return;
+
+			LOGGER.debug("Listing of "+folder+" has changed, refreshing");
+			ChangeFolderThread thread = new ChangeFolderThread(folder, false, true);
+			thread.setChildren(children);
+			thread.start();
+
+			changeFolderThread = thread;
+		}
+	}
+
 	/**
 	 * Tries to change the current folder to the new specified one and notifies the user in case of a problem.
 	 *
@@ -435,6 +524,7 @@ public class LocationChanger {
 		private FileURL folderURL;
 		private AbstractFile fileToSelect;
 		private CredentialsMapping credentialsMapping;
+		private AbstractFile children[];
 
 		/** True if this thread has been interrupted by the user using #tryKill */
 		private boolean killed;
@@ -486,6 +576,33 @@ public class LocationChanger {
 			this.fileToSelect = fileToSelect;
 		}
 
+		/**
+		 * Sets the children of the folder to change to, so that the folder is not listed. This is used for applying
+		 * a listing that has just been made, <code>null</code> to list the folder.
+		 *
+		 * @param children the children of the folder to change to
+		 */
+		void setChildren(AbstractFile children[]) {
+			this.children = children;
+		}
+
+		/**
+		 * Returns the cached listing of the folder to change to, <code>null</code> if there is none or if the folder
+		 * must be listed: when the current folder is being refreshed, or when credentials have been provided.
+		 *
+		 * @return the cached listing of the folder to change to, null if the folder must be listed
+		 */
+		private ListingSnapshot getCachedListing() {
+			if(credentialsMapping!=null)
+				return null;
+
+			AbstractFile currentFolder = locationManager.getCurrentFolder();
+			if(currentFolder!=null && (currentFolder.equals(folder) || currentFolder.getURL().equals(folderURL)))
+				return null;
+
+			return RemoteListingCache.getInstance().get(folderURL);
+		}
+
 		/**
 		 * Returns a 'workable' folder as a substitute for the given non-existing folder. This method will return the
 		 * first existing parent if there is one, to the first existing local volume otherwise. In the unlikely event
@@ -608,6 +725,54 @@ public class LocationChanger {
 			LOGGER.debug("starting folder change...");
 			boolean folderChangedSuccessfully = false;
 
+			// Present the given children without listing the folder again
+			if(children!=null) {
+				synchronized(KILL_LOCK) {
+					// From now on, thread cannot be killed (would comprise table integrity)
+					doNotKill = !killed;
+				}
+
+				if(doNotKill) {
+					lastFolderChangeTime = System.currentTimeMillis();
+					locationManager.setCurrentFolder(folder, children, fileToSelect, changeLockedTab);
+					folderChangedSuccessfully = true;
+				}
+
+				synchronized(KILL_LOCK) {
+					// Clean things up
+					cleanup(folderChangedSuccessfully);
+				}
+
+				return;
+			}
+
+			// Present the cached listing of the folder instantly if there is one, without connecting to the server
+			ListingSnapshot cachedListing = getCachedListing();
+			if(cachedListing!=null) {
+				synchronized(KILL_LOCK) {
+					// From now on, thread cannot be killed (would comprise table integrity)
+					doNotKill = !killed;
+				}
+
+				if(doNotKill) {
+					LOGGER.debug("restoring cached listing");
+					lastFolderChangeTime = System.currentTimeMillis();
+					locationManager.restoreListingSnapshot(cachedListing.withSelectedFile(fileToSelect));
+					folderChangedSuccessfully = true;
+				}
+
+				synchronized(KILL_LOCK) {
+					// Clean things up
+					cleanup(folderChangedSuccessfully);
+				}
+
+				// Refresh the folder in the background if its listing has expired
+				if(folderChangedSuccessfully && !RemoteListingCache.getInstance().isFresh(cachedListing))
+					revalidateListingSnapshot(cachedListing);
+
+				return;
+			}
+
 			// Show some progress in the progress bar to give hope
 			folderPanel.setProgressValue(10);
 
@@ -934,6 +1099,10 @@ public class LocationChanger {
 			// Make all actions active again
 			mainFrame.setNoEventsMode(false);
 
+			// Take notice of the connections that have been opened to list a remote folder
+			if(folderChangedSuccessfully && !(folder.getTopAncestor() instanceof LocalFile))
+				ConnectionManager.getInstance().updateConnections();
+
 			if(!folderChangedSuccessfully) {
 				FileURL failedURL = folder==null?folderURL:folder.getURL();
 				// Notifies listeners that location change has been cancelled by the user or has failed
@@ -0,0 +1,204 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+import com.mucommander.ui.main.table.ListingSnapshot;
+
+/**
+ * Keeps the listings of the remote folders that were recently displayed, so that going back to one of them doesn't
+ * require listing it again from the server.
+ * <p>
+ * Listings are kept as {@link ListingSnapshot} instances, keyed by the server of their folder (see
+ * {@link ConnectionManager#getServerKey(FileURL)}) and by its path, so that listings made with different logins are
+ * kept apart.
+ * Each remote protocol is given a time-to-live by the {@link MuPreference#LISTING_CACHE_TTL} preference: a listing that
+ * is younger than its time-to-live is considered fresh and is displayed as is, an older listing is displayed as well
+ * but is meant to be revalidated in the background. Folders of protocols that have no time-to-live, local folders in
+ * particular, are never cached.
+ * </p>
+ * <p>
+ * The total number of files kept by the cache is bounded by the {@link MuPreference#LISTING_CACHE_MAX_FILES}
+ * preference: when the budget is exceeded, least recently used listings are evicted.
+ * </p>
+ *
+ * @see LocationChanger
+ */
+public class RemoteListingCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteListingCache.class);
+
+    /** Shared instance */
+    private static RemoteListingCache instance;
+
+    /** Time-to-live of the listings in milliseconds, keyed by scheme */
+    private Map<String, Long> ttls = new HashMap<String, Long>();
+
+    /** Maximum number of files kept by the cache */
+    private int maxFiles;
+
+    /** Cached listings keyed by server and folder path, in access order (least recently used first) */
+    private LinkedHashMap<String, ListingSnapshot> listings = new LinkedHashMap<String, ListingSnapshot>(16, 0.75f, true);
+
+    /** Number of files contained by the cached listings */
+    private int nbFiles;
+
+
+    private RemoteListingCache() {
+        maxFiles = MuConfigurations.getPreferences().getVariable(MuPreference.LISTING_CACHE_MAX_FILES, MuPreferences.DEFAULT_LISTING_CACHE_MAX_FILES);
+
+        String entries[] = MuConfigurations.getPreferences().getVariable(MuPreference.LISTING_CACHE_TTL, MuPreferences.DEFAULT_LISTING_CACHE_TTL).split(",");
+        for(String entry : entries) {
+            int pos = entry.indexOf(':');
+            try {
+                if(pos!=-1)
+                    ttls.put(entry.substring(0, pos).trim().toLowerCase(), Long.parseLong(entry.substring(pos+1).trim())*1000);
+            }
+            catch(NumberFormatException e) {
+                LOGGER.info("Ignoring invalid listing cache time-to-live: "+entry);
+            }
+        }
+    }
+
+    /**
+     * Returns the shared instance of the listing cache.
+     *
+     * @return the shared instance of the listing cache
+     */
+    public static synchronized RemoteListingCache getInstance() {
+        if(instance==null)
+            instance = new RemoteListingCache();
+
+        return instance;
+    }
+
+    /**
+     * Returns the key of the given folder URL in the cache.
+     */
+    private static String getKey(FileURL url) {
+        String path = url.getPath();
+        // Folder paths may or may not end with a separator
+        if(path.length()>1 && path.endsWith("/"))
+            path = path.substring(0, path.length()-1);
+
+        return ConnectionManager.getServerKey(url)+path;
+    }
+
+    /**
+     * Returns <code>true</code> if the listing of the folder with the given URL can be cached, i.e. if the cache is
+     * enabled and the folder's protocol has a time-to-live.
+     *
+     * @param url URL of the folder to test
+     * @return true if the listing of the folder can be cached
+     */
+    public boolean isCacheable(FileURL url) {
+        return maxFiles>0 && ttls.containsKey(url.getScheme());
+    }
+
+    /**
+     * Returns <code>true</code> if the given listing is younger than the time-to-live of its folder's protocol and
+     * thus doesn't need to be revalidated.
+     *
+     * @param snapshot the listing to test
+     * @return true if the listing doesn't need to be revalidated
+     */
+    public boolean isFresh(ListingSnapshot snapshot) {
+        Long ttl = ttls.get(snapshot.getFolder().getURL().getScheme());
+        return ttl!=null && System.currentTimeMillis()-snapshot.getDate()<ttl;
+    }
+
+    /**
+     * Returns the cached listing of the folder with the given URL, <code>null</code> if there is none.
+     *
+     * @param url URL of the folder
+     * @return the cached listing of the folder, null if there is none
+     */
+    public synchronized ListingSnapshot get(FileURL url) {
+        if(!isCacheable(url))
+            return null;
+
+        ListingSnapshot snapshot = listings.get(getKey(url));
+        if(snapshot!=null)
+            LOGGER.debug("Found cached listing of "+url.toString(false));
+
+        return snapshot;
+    }
+
+    /**
+     * Stores the given listing in the cache, replacing the previous listing of the same folder, if any. Nothing is
+     * done if the folder cannot be cached or has more files than the cache can hold.
+     *
+     * @param snapshot the listing to store
+     */
+    public synchronized void put(ListingSnapshot snapshot) {
+        FileURL url = snapshot.getFolder().getURL();
+        if(!isCacheable(url) || snapshot.getFileCount()>maxFiles)
+            return;
+
+        ListingSnapshot previous = listings.put(getKey(url), snapshot);
+        if(previous!=null)
+            nbFiles -= previous.getFileCount();
+        nbFiles += snapshot.getFileCount();
+
+        // Evict least recently used listings until the budget is met
+        Iterator<ListingSnapshot> iterator = listings.values().iterator();
+        while(nbFiles>maxFiles && iterator.hasNext()) {
+            nbFiles -= iterator.next().getFileCount();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Returns the folders whose listing is cached.
+     *
+     * @return the folders whose listing is cached
+     */
+    public synchronized List<AbstractFile> getFolders() {
+        List<AbstractFile> folders = new ArrayList<AbstractFile>(listings.size());
+        for(ListingSnapshot snapshot : listings.values())
+            folders.add(snapshot.getFolder());
+
+        return folders;
+    }
+
+    /**
+     * Removes the listing of the folder with the given URL from the cache, if there is one.
+     *
+     * @param url URL of the folder
+     */
+    public synchronized void remove(FileURL url) {
+        ListingSnapshot snapshot = listings.remove(getKey(url));
+        if(snapshot!=null)
+            nbFiles -= snapshot.getFileCount();
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.desktop;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.impl.local.LocalFile;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.commons.runtime.JavaVersions;
+import com.mucommander.job.DeleteJob;
+import com.mucommander.process.ProcessRunner;
+import com.mucommander.text.Translator;
+import com.mucommander.ui.dialog.file.ProgressDialog;
+import com.mucommander.ui.main.MainFrame;
+import com.mucommander.ui.main.WindowManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FreeDesktopTrash is a {@link QueuedTrash} that manipulates a trash folder following the
+ * <a href="http://freedesktop.org/wiki/Specifications/trash-spec">freedesktop.org trash specification</a> directly,
+ * as used by the GNOME and Xfce desktops.
+ *
+ * <p>
+ * <b>Implementation notes:</b><br>
+ * <br>
+ * Moving a file to the trash consists in writing its <code>.trashinfo</code> file and renaming the file into the
+ * "files" subfolder, which resides on the same volume. As this is cheap, queued files are moved after a short idle
+ * period, and processed in parallel by a small pool of threads shared by all instances. The names of the items in the
+ * trash are kept in a {@link TrashIndex}, which allows the items to be counted and name collisions to be resolved
+ * without listing the trash folder.
+ * </p>
+ *
+ * @see TrashIndex
+ */
+public abstract class FreeDesktopTrash extends QueuedTrash {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FreeDesktopTrash.class);
+
+    /** Amount of time in milliseconds without any file being queued after which queued files are moved to the trash */
+    private final static int QUEUE_IDLE_PERIOD = 50;
+
+    /** Number of threads that move files to the trash */
+    private final static int NB_WORKER_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    /** Threads that move files to the trash, shared by all instances */
+    private final static ThreadPoolExecutor executor;
+
+    static {
+        executor = new ThreadPoolExecutor(NB_WORKER_THREADS, NB_WORKER_THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "Trash worker");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        // Let idle threads terminate, this is only available in Java 1.6 and up
+        if(JavaVersions.JAVA_1_6.isCurrentOrHigher())
+            executor.allowCoreThreadTimeOut(true);
+    }
+
+    /** Formats dates in trash info files */
+    private final static SimpleDateFormat INFO_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+
+    /** User trash folder, <code>null</code> if there is no usable trash folder */
+    private final AbstractFile trashFolder;
+
+    /** Volume on which the trash folder resides, used for checking whether a file can be moved to the trash or not */
+    private final AbstractFile trashVolume;
+
+    /** Index of the trash folder's contents, <code>null</code> if there is no usable trash folder */
+    private final TrashIndex index;
+
+
+    /**
+     * Creates a new <code>FreeDesktopTrash</code> operating on the given trash folder.
+     *
+     * @param trashFolder the user trash folder, <code>null</code> if there is no usable trash folder
+     */
+    protected FreeDesktopTrash(AbstractFile trashFolder) {
+        this.trashFolder = trashFolder;
+        if(trashFolder!=null) {
+            trashVolume = trashFolder.getVolume();
+            index = TrashIndex.getIndex(trashFolder);
+        }
+        else {
+            trashVolume = null;
+            index = null;
+        }
+    }
+
+    /**
+     * Returns the command that reveals the trash in the desktop's file manager.
+     *
+     * @return the command that reveals the trash in the desktop's file manager
+     */
+    protected abstract String getRevealTrashCommand();
+
+    /**
+     * Returns the first of the given folders that is a trash folder. If none of them is, the first folder is created
+     * along with its "info" and "files" subfolders, only if it doesn't already exist.
+     *
+     * @param paths paths of the candidate folders, relative to the user home folder, in order of preference
+     * @return the user Trash folder, <code>null</code> if no user trash folder could be found or created
+     */
+    protected static AbstractFile getTrashFolder(String... paths) {
+        AbstractFile userHome = LocalFile.getUserHome();
+
+        for(String path : paths) {
+            AbstractFile trashDir = userHome.getChildSilently(path);
+            if(isTrashFolder(trashDir))
+                return trashDir;
+        }
+
+        // No existing user trash was found: create the folder, only if it doesn't already exist.
+        AbstractFile trashDir = userHome.getChildSilently(paths[0]);
+        if(!trashDir.exists()) {
+            try {
+                trashDir.mkdirs();
+                trashDir.getChild("info").mkdir();
+                trashDir.getChild("files").mkdir();
+
+                return trashDir;
+            }
+            catch(IOException e) {
+                // Will return null
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Return <code>true</code> if the specified file is a trash folder, i.e. is a directory and has two
+     * subdirectories named "info" and "files".
+     *
+     * @param file the file to test
+     * @return <code>true</code> if the specified file is a trash folder
+     */
+    public static boolean isTrashFolder(AbstractFile file) {
+        try {
+            return file.isDirectory() && file.getChild("info").isDirectory() && file.getChild("files").isDirectory();
+        }
+        catch(IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Make a content of .trashinfo file
+     * @param file File for which the content is built
+     * @return Final content
+     */
+    private static String getFileInfoContent(AbstractFile file) {
+        synchronized(INFO_DATE_FORMAT) {        // SimpleDateFormat is not thread safe
+            return "[Trash Info]\n" +
+                    "Path=" + file.getAbsolutePath() + "\n" +
+                    "DeletionDate=" + INFO_DATE_FORMAT.format(new Date());
+        }
+    }
+
+    /**
+     * Moves the given file to the trash under the specified name: writes its info file and renames it into the
+     * "files" subfolder. Returns <code>true</code> if the file was moved.
+     */
+    private boolean moveFileToTrash(AbstractFile fileToDelete, String trashFileName) {
+        AbstractFile infoFile = null;
+        OutputStreamWriter infoWriter = null;
+        try {
+            // create info file
+            infoFile = index.getInfoFolder().getChild(trashFileName + TrashIndex.TRASHINFO_EXTENSION);
+            infoWriter = new OutputStreamWriter(infoFile.getOutputStream());
+            infoWriter.write(getFileInfoContent(fileToDelete));
+        } catch (IOException ex) {
+            LOGGER.debug("Failed to create trash info file: " + trashFileName, ex);
+
+            // do not move file, because info file wasn't properly created
+            return false;
+        }
+        finally {
+            if(infoWriter!=null) {
+                try {
+                    infoWriter.close();
+                }
+                catch(IOException e) {
+                    // Not much else to do
+                }
+            }
+        }
+
+        try {
+            // rename original file
+            fileToDelete.renameTo(index.getFilesFolder().getChild(trashFileName));
+        } catch (IOException ex) {
+            try {
+                // remove info file
+                infoFile.delete();
+            } catch (IOException ex1) {
+                // simply ignore
+            }
+
+            LOGGER.debug("Failed to move file to trash: " + trashFileName, ex);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Waits for the given tasks to complete and returns <code>true</code> if all of them returned <code>true</code>.
+     */
+    private static boolean getResults(List<Future<Boolean>> futures) {
+        boolean retVal = true;
+        for(Future<Boolean> future : futures) {
+            try {
+                retVal &= future.get();
+            }
+            catch(InterruptedException e) {
+                retVal = false;
+            }
+            catch(ExecutionException e) {
+                LOGGER.debug("Caught exception", e.getCause());
+                retVal = false;
+            }
+        }
+
+        return retVal;
+    }
+
+
+    //////////////////////////////////
+    // AbstractTrash implementation //
+    //////////////////////////////////
+
+    /**
+     * Implementation notes: returns <code>true</code> only for local files that are not archive entries and that
+     * reside on the same volume as the trash folder.
+     */
+    @Override
+    public boolean canMoveToTrash(AbstractFile file) {
+        return trashFolder!=null
+            && file.getTopAncestor() instanceof LocalFile
+            && file.getVolume().equals(trashVolume);
+    }
+
+    /**
+     * <b>Implementation notes:</b> returns <code>true</code> if there is a usable trash folder.
+     *
+     * @return True if trash can be emptied, otherwise false
+     */
+    @Override
+    public boolean canEmpty() {
+        return trashFolder!=null;
+    }
+
+    /**
+     * Empty the trash
+     * <p>
+     * <b>Implementation notes:</b><br>
+     * Deletes the contents of the "files" and "info" subfolders, in a job that shows its progress.
+     * </p>
+     *
+     * @return True if everything went well
+     */
+    @Override
+    public boolean empty() {
+        // Abort if there is no usable trash folder
+        if(trashFolder==null)
+            return false;
+
+        if (index.getItemCount() > 0) {
+            // Delete the contents of the folders holding the real files and their spec files, which are deleted
+            // concurrently, but keep the folders themselves
+            FileSet filesToDelete = new FileSet(trashFolder);
+            filesToDelete.add(index.getFilesFolder());
+            filesToDelete.add(index.getInfoFolder());
+
+            MainFrame mainFrame = WindowManager.getCurrentMainFrame();
+            ProgressDialog progressDialog = new ProgressDialog(mainFrame, Translator.get("delete_dialog.deleting"));
+            DeleteJob deleteJob = new DeleteJob(progressDialog, mainFrame, filesToDelete, false);
+            deleteJob.setContentsOnly(true);
+            progressDialog.start(deleteJob);
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean isTrashFile(AbstractFile file) {
+        return trashFolder!=null
+            && (file.getTopAncestor() instanceof LocalFile)
+            && trashFolder.isParentOf(file);
+    }
+
+    /**
+     * Return trash files count
+     * <p>
+     * We assume the count of items in trash equals the count of <code>.trashinfo</code> files in the
+     * <code>info</code> subfolder. The count is maintained by the trash index.
+     *
+     * @return Count of files in trash
+     */
+    @Override
+    public int getItemCount() {
+        // Abort if there is no usable trash folder
+        if(trashFolder==null)
+            return -1;
+
+        return index.getItemCount();
+    }
+
+    /**
+     * Opens the trash in the desktop's file manager.
+     */
+    @Override
+    public void open() {
+        String command = getRevealTrashCommand();
+        try {
+            ProcessRunner.execute(command).waitFor();
+        }
+        catch(Exception e) {    // IOException, InterruptedException
+            LOGGER.debug("Caught an exception running command \"" + command + "\"", e);
+        }
+    }
+
+    @Override
+    public boolean canOpen() {
+        return trashFolder!=null;
+    }
+
+
+    ////////////////////////////////
+    // QueuedTrash implementation //
+    ////////////////////////////////
+
+    /**
+     * Implementation notes: returns {@link #QUEUE_IDLE_PERIOD}, as moving a file to the trash only takes a rename.
+     */
+    @Override
+    protected int getQueueIdlePeriod() {
+        return QUEUE_IDLE_PERIOD;
+    }
+
+    /**
+     * Implementation of {@link com.mucommander.desktop.QueuedTrash} moveToTrash method.
+     * <p>
+     * Moves a collection of files to the trash, several files at a time. Each file gets a name that doesn't collide
+     * with any item of the trash, reserved in the trash index.
+     * </p>
+     * @param queuedFiles Collection of files to the trash
+     * @return <code>true</code> if movement has been successful or <code>false</code> otherwise
+     */
+    @Override
+    protected boolean moveToTrash(List<AbstractFile> queuedFiles) {
+        try {
+            index.beginBatch();
+        }
+        catch(IOException e) {
+            LOGGER.debug("Failed to list the trash folder", e);
+            return false;
+        }
+
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(queuedFiles.size());
+        for(final AbstractFile fileToDelete : queuedFiles) {
+            futures.add(executor.submit(new Callable<Boolean>() {
+                public Boolean call() {
+                    String trashFileName;
+                    try {
+                        trashFileName = index.reserveName(fileToDelete);
+                    } catch (IOException ex) {
+                        LOGGER.debug("Failed to create filename for new trash item: " + fileToDelete.getName(), ex);
+
+                        // do not move file, because info file cannot be properly created
+                        return true;
+                    }
+
+                    if(moveFileToTrash(fileToDelete, trashFileName)) {
+                        index.add(trashFileName);
+                        return true;
+                    }
+
+                    index.release(trashFileName);
+                    return false;
+                }
+            }));
+        }
+
+        return getResults(futures);
+    }
+}
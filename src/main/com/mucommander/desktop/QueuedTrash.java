@@ -34,7 +34,8 @@ import java.util.Vector;
  * The file is not moved to the trash immediately: the trash will wait a period of {@link #QUEUE_PERIOD} milliseconds
  * for additional files to be added. If files were added during that period, the trash will wait another period and
  * so on. When no more files are added were added during the period, {@link #moveToTrash(java.util.Vector)} is called
- * with the list of queued files to move to the trash.
+ * with the list of queued files to move to the trash. Subclasses for which moving files is cheap can shorten the
+ * waiting period by overriding {@link #getQueueIdlePeriod()}.
  * </p>
  *
  * <p>
@@ -71,6 +72,18 @@ public abstract class QueuedTrash extends AbstractTrash {
      */
     protected abstract boolean moveToTrash(List<AbstractFile> queuedFiles);
 
+    /**
+     * Returns the amount of time in milliseconds to wait for additional files before moving them to the trash. This
+     * implementation returns {@link #QUEUE_PERIOD}. Subclasses may return a shorter period, in which case queued files
+     * are moved at most {@link #QUEUE_PERIOD} milliseconds after the first of them was queued, even if more files keep
+     * being added.
+     *
+     * @return the amount of time in milliseconds to wait for additional files before moving them to the trash
+     */
+    protected int getQueueIdlePeriod() {
+        return QUEUE_PERIOD;
+    }
+
 
     //////////////////////////////////
     // AbstractTrash implementation //
@@ -133,17 +146,20 @@ public abstract class QueuedTrash extends AbstractTrash {
 
         @Override
         public void run() {
-            // Loops until no files were added during the sleep period
+            // Loops until no files were added during the sleep period, or until the maximum delay has elapsed when
+            // the sleep period is shorter than QUEUE_PERIOD
+            int idlePeriod = getQueueIdlePeriod();
+            long deadline = System.currentTimeMillis()+QUEUE_PERIOD;
             int queueSize;
             do {
                 queueSize = queuedFiles.size();
 
                 try {
-                    Thread.sleep(QUEUE_PERIOD);
+                    Thread.sleep(idlePeriod);
                 }
                 catch(InterruptedException e) {}
             }
-            while(queueSize!=queuedFiles.size());
+            while(queueSize!=queuedFiles.size() && (idlePeriod>=QUEUE_PERIOD || System.currentTimeMillis()<deadline));
 
             synchronized(moveToTrashLock) {     // Files can't be added to queue while files are moved to trash
                 if(!moveToTrash(queuedFiles))
@@ -0,0 +1,276 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.desktop;
+
+import com.mucommander.commons.file.AbstractFile;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the items contained by a trash folder that follows the
+ * <a href="http://freedesktop.org/wiki/Specifications/trash-spec">freedesktop.org trash specification</a>, i.e. that has
+ * an <code>info</code> subfolder containing a <code>.trashinfo</code> file for each item, and a <code>files</code>
+ * subfolder containing the items themselves.
+ * <p>
+ * The index lists both subfolders once and then maintains the names of the items in memory, so that counting items and
+ * finding a name that doesn't collide with an existing item do not require listing the trash. Changes made to the trash
+ * by other applications are detected by comparing the date of the subfolders with the one they had when the index was
+ * last synchronized: the subfolders are listed again when {@link #getItemCount()} is called or when a batch begins, if
+ * either of them has changed. As folder dates may have a coarse granularity, a listing made less than
+ * {@link #DATE_GRANULARITY} milliseconds after a subfolder was last modified is not trusted, and the subfolders are
+ * listed again the next time the index is used.
+ * </p>
+ * <p>
+ * The changes made through this index modify the subfolders' dates, so the trash folder is also listed again after
+ * files have been moved to the trash. This catches any change made by other applications in the meantime.
+ * </p>
+ * <p>
+ * Trash instances are typically created each time they are requested, so there is a single index per trash folder,
+ * shared by all instances and retrieved using {@link #getIndex(AbstractFile)}. All methods are thread-safe.
+ * </p>
+ *
+ * @see FreeDesktopTrash
+ */
+public class TrashIndex {
+
+    /** Extension of the files contained by the info subfolder */
+    public final static String TRASHINFO_EXTENSION = ".trashinfo";
+
+    /** Granularity in milliseconds of the folder dates, coarse enough for all common filesystems */
+    private final static long DATE_GRANULARITY = 2000;
+
+    /** Indexes of the trash folders that have been requested so far, keyed by their absolute path */
+    private final static Map<String, TrashIndex> indexes = new HashMap<String, TrashIndex>();
+
+    /** The "info" subfolder of the trash folder */
+    private final AbstractFile infoFolder;
+
+    /** The "files" subfolder of the trash folder */
+    private final AbstractFile filesFolder;
+
+    /** Names of the items that have a .trashinfo file, without the extension */
+    private Set<String> infoNames = new HashSet<String>();
+
+    /** Names of the files contained by the "files" subfolder, including those that lack a .trashinfo file */
+    private Set<String> fileNames = new HashSet<String>();
+
+    /** Names that have been handed out to items that are being moved to the trash */
+    private Set<String> reservedNames = new HashSet<String>();
+
+    /** Date of the info subfolder when the index was last synchronized, -1 if the index has never been synchronized */
+    private long infoFolderDate = -1;
+
+    /** Date of the files subfolder when the index was last synchronized */
+    private long filesFolderDate = -1;
+
+    /** Time at which the subfolders were last listed */
+    private long listingTime;
+
+
+    private TrashIndex(AbstractFile trashFolder) {
+        this.infoFolder = trashFolder.getChildSilently("info");
+        this.filesFolder = trashFolder.getChildSilently("files");
+    }
+
+    /**
+     * Returns the index of the given trash folder, creating it if it hasn't been requested before. The index is not
+     * populated until it is first used.
+     *
+     * @param trashFolder a trash folder with "info" and "files" subfolders
+     * @return the index of the given trash folder
+     */
+    public static TrashIndex getIndex(AbstractFile trashFolder) {
+        String path = trashFolder.getAbsolutePath(false);
+        synchronized(indexes) {
+            TrashIndex index = indexes.get(path);
+            if(index==null) {
+                index = new TrashIndex(trashFolder);
+                indexes.put(path, index);
+            }
+
+            return index;
+        }
+    }
+
+    /**
+     * Returns the "info" subfolder of the trash folder.
+     *
+     * @return the "info" subfolder of the trash folder
+     */
+    public AbstractFile getInfoFolder() {
+        return infoFolder;
+    }
+
+    /**
+     * Returns the "files" subfolder of the trash folder.
+     *
+     * @return the "files" subfolder of the trash folder
+     */
+    public AbstractFile getFilesFolder() {
+        return filesFolder;
+    }
+
+    /**
+     * Returns the number of items in the trash, i.e. the number of <code>.trashinfo</code> files, or <code>-1</code>
+     * if the trash folder could not be listed. The trash folder is listed only if it has changed since the index was
+     * last synchronized.
+     *
+     * @return the number of items in the trash, -1 if the trash folder could not be listed
+     */
+    public synchronized int getItemCount() {
+        try {
+            revalidate();
+        }
+        catch(IOException e) {
+            return -1;
+        }
+
+        return infoNames.size();
+    }
+
+    /**
+     * Prepares the index for a series of changes, listing the trash folder again if it has been changed by another
+     * application since the index was last synchronized.
+     *
+     * @throws IOException if the trash folder could not be listed
+     */
+    public synchronized void beginBatch() throws IOException {
+        revalidate();
+    }
+
+    /**
+     * Returns a name under which the given file can be moved to the trash without colliding with an existing item, or
+     * with a name that has already been reserved. As specified by the trash specification, colliding names are
+     * disambiguated by appending <code>_N</code> to the name (before the extension), <code>N</code> being the first
+     * integer for which the name is free.
+     * <p>
+     * The name is reserved until either {@link #add(String)} or {@link #release(String)} is called with it.
+     * </p>
+     *
+     * @param file the file to be moved to the trash
+     * @return a name that doesn't collide with any item in the trash
+     * @throws IOException if the trash folder could not be listed
+     */
+    public synchronized String reserveName(AbstractFile file) throws IOException {
+        if(infoFolderDate==-1)
+            revalidate();
+
+        String filename = file.getName();
+        if(isNameTaken(filename)) {
+            String rawName = file.getNameWithoutExtension();
+            String extension = file.getExtension();
+
+            // find first free filename in format filename_N.ext
+            int count = 1;
+            do {
+                filename = rawName + "_" + count++;
+                if(extension!=null)
+                    filename += "." + extension;
+            }
+            while(isNameTaken(filename));
+        }
+
+        reservedNames.add(filename);
+
+        return filename;
+    }
+
+    /**
+     * Records that an item has been moved to the trash under the given name, previously returned by
+     * {@link #reserveName(AbstractFile)}.
+     *
+     * @param name name of the item in the trash
+     */
+    public synchronized void add(String name) {
+        reservedNames.remove(name);
+        infoNames.add(name);
+        fileNames.add(name);
+    }
+
+    /**
+     * Releases a name returned by {@link #reserveName(AbstractFile)} that ended up not being used.
+     *
+     * @param name the name to release
+     */
+    public synchronized void release(String name) {
+        reservedNames.remove(name);
+    }
+
+    /**
+     * Records that the item with the given name has been removed from the trash.
+     *
+     * @param name name of the item in the trash
+     */
+    public synchronized void remove(String name) {
+        infoNames.remove(name);
+        fileNames.remove(name);
+    }
+
+    /**
+     * Discards the contents of the index, which will list the trash folder again the next time it is used.
+     * This method should be called after the trash has been modified without using this index.
+     */
+    public synchronized void invalidate() {
+        infoFolderDate = -1;
+        filesFolderDate = -1;
+    }
+
+    /**
+     * Returns <code>true</code> if the given name is used by an item in the trash, or has been reserved.
+     */
+    private boolean isNameTaken(String name) {
+        return fileNames.contains(name) || infoNames.contains(name) || reservedNames.contains(name);
+    }
+
+    /**
+     * Lists the trash subfolders again if they have changed since the index was last synchronized.
+     */
+    private void revalidate() throws IOException {
+        long infoDate = infoFolder.getDate();
+        long filesDate = filesFolder.getDate();
+        if(infoFolderDate!=-1 && infoDate==infoFolderDate && filesDate==filesFolderDate
+                && listingTime-Math.max(infoDate, filesDate)>=DATE_GRANULARITY)
+            return;
+
+        // Record the time before listing, so that changes made during the listing are not trusted to be included
+        long now = System.currentTimeMillis();
+
+        Set<String> newInfoNames = new HashSet<String>();
+        for(AbstractFile file : infoFolder.ls()) {
+            String name = file.getName();
+            if(name.endsWith(TRASHINFO_EXTENSION))
+                newInfoNames.add(name.substring(0, name.length()-TRASHINFO_EXTENSION.length()));
+        }
+
+        Set<String> newFileNames = new HashSet<String>();
+        for(AbstractFile file : filesFolder.ls())
+            newFileNames.add(file.getName());
+
+        infoNames = newInfoNames;
+        fileNames = newFileNames;
+        infoFolderDate = infoDate;
+        filesFolderDate = filesDate;
+        listingTime = now;
+    }
+}
@@ -25,7 +25,9 @@ import org.slf4j.LoggerFactory;
 
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.impl.local.LocalFile;
+import com.mucommander.desktop.FreeDesktopTrash;
 import com.mucommander.desktop.QueuedTrash;
+import com.mucommander.desktop.TrashIndex;
 import com.mucommander.process.ProcessRunner;
 
 /**
@@ -36,6 +38,8 @@ import com.mucommander.process.ProcessRunner;
  * <br>
  * This trash is implemented as a {@link com.mucommander.desktop.QueuedTrash} as it spawns a process to move a file to
  * the trash and it is thus more effective to group files to be moved instead of spawning multiple processes.<br>
+ * The trash itself is manipulated by KDE, but the number of items it contains is read from a {@link TrashIndex} of the
+ * user trash folder, which is invalidated whenever files are moved to the trash or the trash is emptied.
  * </p>
  *
  * @see Kde3TrashProvider
@@ -50,6 +54,9 @@ class KdeTrash extends QueuedTrash {
     /** Command that allows to interact with the trash */
     private String baseCommand;
 
+    /** Index of the user trash folder, <code>null</code> if the trash folder doesn't exist */
+    private TrashIndex index;
+
     /**
      * Creates a new <code>KDETrash</code> instance using the specified command for interacting with the trash.
      *
@@ -57,6 +64,10 @@ class KdeTrash extends QueuedTrash {
      */
     KdeTrash(String baseCommand) {
         this.baseCommand = baseCommand;
+
+        AbstractFile trashFolder = LocalFile.getUserHome().getChildSilently(".local/share/Trash/");
+        if(trashFolder!=null && FreeDesktopTrash.isTrashFolder(trashFolder))
+            index = TrashIndex.getIndex(trashFolder);
     }
 
     /**
@@ -117,7 +128,11 @@ class KdeTrash extends QueuedTrash {
 
     @Override
     public boolean empty() {
-        return executeAndWait(EMPTY_TRASH_COMMAND);
+        boolean success = executeAndWait(EMPTY_TRASH_COMMAND);
+        if(index!=null)
+            index.invalidate();
+
+        return success;
     }
 
     @Override
@@ -127,11 +142,12 @@ class KdeTrash extends QueuedTrash {
     }
 
     /**
-     * Implementation notes: always returns <code>-1</code> (information not available).
+     * Implementation notes: returns the number of items in the user trash folder, <code>-1</code> if the
+     * trash folder doesn't exist (information not available).
      */
     @Override
     public int getItemCount() {
-        return -1;
+        return index==null?-1:index.getItemCount();
     }
 
     @Override
@@ -166,6 +182,10 @@ class KdeTrash extends QueuedTrash {
 
         tokens[nbFiles+2] = "trash:/";
 
-        return executeAndWait(tokens);
+        boolean success = executeAndWait(tokens);
+        if(index!=null)
+            index.invalidate();
+
+        return success;
     }
 }
@@ -20,12 +20,11 @@ package com.mucommander.extension;
 
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.AbstractFileClassLoader;
-import com.mucommander.commons.file.filter.AttributeFileFilter;
-import com.mucommander.commons.file.filter.ExtensionFilenameFilter;
-import com.mucommander.commons.file.filter.OrFileFilter;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -42,6 +41,10 @@ import java.util.Vector;
  *     By using an {@link com.mucommander.commons.file.AbstractFileClassLoader}
  * </ul>
  * </p>
+ * <p>
+ * Classes are discovered through the {@link ClassIndex}, which reads their headers without loading them. If the
+ * class filter is a {@link ClassHeaderFilter}, only the classes whose header it accepts are loaded.
+ * </p>
  * @author Nicolas Rinaudo
  */
 public class ClassFinder {
@@ -49,8 +52,6 @@ public class ClassFinder {
     // -----------------------------------------------------------------------------------
     /** ClassLoader used to load classes from explored files. */
     private ClassLoader  loader;
-    /** Used to filter out files that are neither classes nor directories. */
-    private OrFileFilter filter;
     /** Used to filter out unwanted classes. */
     private ClassFilter  classFilter;
 
@@ -61,10 +62,6 @@ public class ClassFinder {
      * Creates a new instance of <code>ClassFinder</code>.
      */
     public ClassFinder() {
-        filter = new OrFileFilter(
-            new ExtensionFilenameFilter(".class"),
-            new AttributeFileFilter(AttributeFileFilter.DIRECTORY)
-        );
     }
 
 
@@ -72,33 +69,34 @@ public class ClassFinder {
     // - File exploring ------------------------------------------------------------------
     // -----------------------------------------------------------------------------------
     /**
-     * Explores the specified file for classes that match {@link #classFilter}.
-     * @param  currentPackage package we're currently exploring (with a trailing '.').
-     * @param  currentFile    file we're currently exploring.
+     * Loads the classes described by the specified headers that match {@link #classFilter}.
+     * @param  headers headers of the classes found in the explored file.
      * @return a vector containing all the classes that were found and matched <code>classFilter</code>.
-     * @throws IOException    if an error occurs while exploring <code>currentFile</code>.
      */
-    private List<Class<?>> find(String currentPackage, AbstractFile currentFile) throws IOException {
-        AbstractFile[]   files;        // All subfolders or child class files of currentFile.
-        Class<?>         currentClass; // Buffer for the current class.
-        List<Class<?>>   result = new Vector<Class<?>>();
-        
-        // Analyses all subdirectories and class files.
-        files = currentFile.ls(filter);
-        for (AbstractFile file : files) {
-            // Explores subdirectories recursively.
-            if (file.isDirectory())
-                result.addAll(find(currentPackage + file.getName() + '.', file));
-
-                // Passes each class through the class filter.
-                // Errors are treated as 'this class is not wanted'.
-            else {
-                try {
-                    if (classFilter.accept(currentClass = Class.forName(currentPackage + file.getNameWithoutExtension(), false, loader)))
-                        result.add(currentClass);
-                }
-                catch (Throwable e) {
-                }
+    private List<Class<?>> find(List<ClassHeader> headers) {
+        Map<String, ClassHeader> headersByName; // Headers of the explored file's classes, keyed by name.
+        ClassHeaderFilter        headerFilter;  // classFilter, if it can rule out classes from their headers.
+        Class<?>                 currentClass;  // Buffer for the current class.
+        List<Class<?>>           result = new Vector<Class<?>>();
+
+        headerFilter  = classFilter instanceof ClassHeaderFilter ? (ClassHeaderFilter)classFilter : null;
+        headersByName = new HashMap<String, ClassHeader>();
+        if(headerFilter != null)
+            for(ClassHeader header : headers)
+                headersByName.put(header.getName(), header);
+
+        for(ClassHeader header : headers) {
+            // Classes that the filter rules out from their header are not loaded.
+            if(headerFilter != null && !headerFilter.accept(header, headersByName))
+                continue;
+
+            // Passes each class through the class filter.
+            // Errors are treated as 'this class is not wanted'.
+            try {
+                if(classFilter.accept(currentClass = Class.forName(header.getName(), false, loader)))
+                    result.add(currentClass);
+            }
+            catch(Throwable e) {
             }
         }
         return result;
@@ -130,8 +128,8 @@ public class ClassFinder {
         loader           = classLoader;
         this.classFilter = classFilter;
 
-        // Looks for all matched classes in browsable.        
-        return find("", browsable);
+        // Looks for all matched classes in browsable.
+        return find(ClassIndex.getClassHeaders(browsable));
     }
 
     /**
@@ -0,0 +1,302 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.extension;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+
+/**
+ * Describes a class as found in its class file, without the class having to be loaded.
+ * <p>
+ * Only the information that {@link ClassHeaderFilter} implementations need to rule out classes is kept: the class'
+ * name, modifiers, superclass, declaring class and whether it has a public no-arg constructor.
+ * </p>
+ * @see ClassIndex
+ */
+public class ClassHeader {
+    // - Class fields --------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    /** Magic number that starts every class file. */
+    private static final int CLASS_MAGIC = 0xCAFEBABE;
+
+    // Constant pool tags.
+    private static final int CONSTANT_UTF8                = 1;
+    private static final int CONSTANT_INTEGER             = 3;
+    private static final int CONSTANT_FLOAT               = 4;
+    private static final int CONSTANT_LONG                = 5;
+    private static final int CONSTANT_DOUBLE              = 6;
+    private static final int CONSTANT_CLASS               = 7;
+    private static final int CONSTANT_STRING              = 8;
+    private static final int CONSTANT_FIELD_REF           = 9;
+    private static final int CONSTANT_METHOD_REF          = 10;
+    private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE       = 12;
+    private static final int CONSTANT_METHOD_HANDLE       = 15;
+    private static final int CONSTANT_METHOD_TYPE         = 16;
+    private static final int CONSTANT_DYNAMIC             = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC      = 18;
+    private static final int CONSTANT_MODULE              = 19;
+    private static final int CONSTANT_PACKAGE             = 20;
+
+
+
+    // - Instance fields -----------------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    /** Fully qualified name of the class. */
+    private String  name;
+    /** Fully qualified name of the class' superclass, <code>null</code> for <code>java.lang.Object</code>. */
+    private String  superclassName;
+    /** Fully qualified name of the class declaring this one, <code>null</code> if it's not a member class. */
+    private String  declaringClassName;
+    /** Class' modifiers, as returned by <code>Class.getModifiers()</code>. */
+    private int     modifiers;
+    /** Whether the class declares a public constructor that takes no argument. */
+    private boolean publicNoArgConstructor;
+
+
+
+    // - Initialization ------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    private ClassHeader() {}
+
+    /**
+     * Reads the header of the class file contained by the specified stream.
+     * <p>
+     * The stream is not closed by this method.
+     * </p>
+     * @param  in          stream on a class file.
+     * @return             the header of the class.
+     * @throws IOException if the stream could not be read or doesn't contain a valid class file.
+     */
+    public static ClassHeader read(InputStream in) throws IOException {
+        DataInputStream din;     // Stream on the class file.
+        ClassHeader     header;  // Header being read.
+        Object[]        pool;    // Constant pool: Strings for UTF8 entries, Integers for class entries.
+        int             thisClass;
+
+        din = new DataInputStream(in);
+        if(din.readInt() != CLASS_MAGIC)
+            throw new IOException("Not a class file");
+        din.readUnsignedShort(); // Minor version.
+        din.readUnsignedShort(); // Major version.
+
+        // Reads the constant pool, keeping only the entries that we need.
+        pool = new Object[din.readUnsignedShort()];
+        for(int i = 1; i < pool.length; i++) {
+            int tag = din.readUnsignedByte();
+            switch(tag) {
+            case CONSTANT_UTF8:
+                pool[i] = din.readUTF();
+                break;
+            case CONSTANT_CLASS:
+                pool[i] = din.readUnsignedShort();
+                break;
+            case CONSTANT_STRING:
+            case CONSTANT_METHOD_TYPE:
+            case CONSTANT_MODULE:
+            case CONSTANT_PACKAGE:
+                skip(din, 2);
+                break;
+            case CONSTANT_METHOD_HANDLE:
+                skip(din, 3);
+                break;
+            case CONSTANT_INTEGER:
+            case CONSTANT_FLOAT:
+            case CONSTANT_FIELD_REF:
+            case CONSTANT_METHOD_REF:
+            case CONSTANT_INTERFACE_METHOD_REF:
+            case CONSTANT_NAME_AND_TYPE:
+            case CONSTANT_DYNAMIC:
+            case CONSTANT_INVOKE_DYNAMIC:
+                skip(din, 4);
+                break;
+            case CONSTANT_LONG:
+            case CONSTANT_DOUBLE:
+                skip(din, 8);
+                // 8-byte constants take up two entries.
+                i++;
+                break;
+            default:
+                throw new IOException("Unknown constant pool tag: " + tag);
+            }
+        }
+
+        header = new ClassHeader();
+        header.modifiers      = din.readUnsignedShort();
+        thisClass             = din.readUnsignedShort();
+        header.name           = getClassName(pool, thisClass);
+        header.superclassName = getClassName(pool, din.readUnsignedShort());
+
+        // Interfaces.
+        skip(din, 2 * din.readUnsignedShort());
+
+        // Fields.
+        for(int i = din.readUnsignedShort(); i > 0; i--) {
+            skip(din, 6);
+            skipAttributes(din);
+        }
+
+        // Methods: looks for a public <init>()V.
+        for(int i = din.readUnsignedShort(); i > 0; i--) {
+            int access = din.readUnsignedShort();
+            String methodName = (String)pool[din.readUnsignedShort()];
+            String descriptor = (String)pool[din.readUnsignedShort()];
+            if("<init>".equals(methodName) && "()V".equals(descriptor) && Modifier.isPublic(access))
+                header.publicNoArgConstructor = true;
+            skipAttributes(din);
+        }
+
+        // Class attributes: the InnerClasses attribute tells whether the class is a member of another one, and holds
+        // its actual modifiers if it is.
+        for(int i = din.readUnsignedShort(); i > 0; i--) {
+            String attributeName = (String)pool[din.readUnsignedShort()];
+            int    length        = din.readInt();
+            if("InnerClasses".equals(attributeName)) {
+                for(int j = din.readUnsignedShort(); j > 0; j--) {
+                    int innerClass = din.readUnsignedShort();
+                    int outerClass = din.readUnsignedShort();
+                    skip(din, 2);
+                    int innerAccess = din.readUnsignedShort();
+                    if(innerClass == thisClass) {
+                        header.modifiers = innerAccess;
+                        if(outerClass != 0)
+                            header.declaringClassName = getClassName(pool, outerClass);
+                    }
+                }
+            }
+            else
+                skip(din, length);
+        }
+
+        // Class.getModifiers() doesn't report the ACC_SUPER flag, which shares its value with Modifier.SYNCHRONIZED.
+        header.modifiers &= ~Modifier.SYNCHRONIZED;
+
+        return header;
+    }
+
+    /**
+     * Returns the fully qualified name of the class referenced by the specified constant pool entry.
+     */
+    private static String getClassName(Object[] pool, int index) throws IOException {
+        if(index == 0)
+            return null;
+        try {return ((String)pool[(Integer)pool[index]]).replace('/', '.');}
+        catch(RuntimeException e) {throw new IOException("Invalid class reference: " + index);}
+    }
+
+    /**
+     * Skips the attributes of a field or method.
+     */
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        for(int i = in.readUnsignedShort(); i > 0; i--) {
+            skip(in, 2);
+            skip(in, in.readInt());
+        }
+    }
+
+    /**
+     * Skips the specified number of bytes, failing if the end of the stream is reached first.
+     */
+    private static void skip(DataInputStream in, int length) throws IOException {
+        while(length > 0) {
+            int skipped = in.skipBytes(length);
+            if(skipped <= 0) {
+                // skipBytes may skip fewer bytes without having reached the end of the stream.
+                in.readByte();
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+
+
+    // - Serialization -------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    /**
+     * Writes this header to the specified output, in a format that {@link #readFrom(DataInput)} understands.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(name);
+        out.writeUTF(superclassName == null ? "" : superclassName);
+        out.writeUTF(declaringClassName == null ? "" : declaringClassName);
+        out.writeInt(modifiers);
+        out.writeBoolean(publicNoArgConstructor);
+    }
+
+    /**
+     * Reads a header that was written by {@link #writeTo(DataOutput)}.
+     */
+    static ClassHeader readFrom(DataInput in) throws IOException {
+        ClassHeader header;
+
+        header                        = new ClassHeader();
+        header.name                   = in.readUTF();
+        header.superclassName         = in.readUTF();
+        header.declaringClassName     = in.readUTF();
+        header.modifiers              = in.readInt();
+        header.publicNoArgConstructor = in.readBoolean();
+        if(header.superclassName.length() == 0)
+            header.superclassName = null;
+        if(header.declaringClassName.length() == 0)
+            header.declaringClassName = null;
+
+        return header;
+    }
+
+
+
+    // - Getters -------------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    /**
+     * Returns the fully qualified name of the class, as expected by <code>Class.forName</code>.
+     * @return the fully qualified name of the class.
+     */
+    public String getName() {return name;}
+
+    /**
+     * Returns the fully qualified name of the class' superclass, as found in the class file: unlike
+     * <code>Class.getSuperclass()</code>, this is <code>java.lang.Object</code> for interfaces.
+     * @return the fully qualified name of the class' superclass, <code>null</code> for <code>java.lang.Object</code>.
+     */
+    public String getSuperclassName() {return superclassName;}
+
+    /**
+     * Returns the fully qualified name of the class that declares this one, if it is a member class.
+     * @return the fully qualified name of the declaring class, <code>null</code> if the class is not a member class.
+     */
+    public String getDeclaringClassName() {return declaringClassName;}
+
+    /**
+     * Returns the class' modifiers, which can be decoded with <code>java.lang.reflect.Modifier</code>.
+     * @return the class' modifiers.
+     */
+    public int getModifiers() {return modifiers;}
+
+    /**
+     * Returns <code>true</code> if the class declares a public constructor that takes no argument.
+     * @return <code>true</code> if the class declares a public constructor that takes no argument.
+     */
+    public boolean hasPublicNoArgConstructor() {return publicNoArgConstructor;}
+}
@@ -0,0 +1,43 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.extension;
+
+import java.util.Map;
+
+/**
+ * A {@link ClassFilter} that can rule out classes from their {@link ClassHeader header} alone.
+ * <p>
+ * {@link ClassFinder} only loads the classes whose header is accepted by {@link #accept(ClassHeader, Map)}, and then
+ * passes them to {@link #accept(Class)} for the final decision. Implementations should thus reject as many classes
+ * as possible from their header, but must never reject a class that {@link #accept(Class)} would accept.
+ * </p>
+ * @see ClassFinder
+ */
+public interface ClassHeaderFilter extends ClassFilter {
+    /**
+     * Returns <code>false</code> if the class described by the specified header can't be accepted by
+     * {@link #accept(Class)}.
+     * @param  header  header of the class that must be evaluated.
+     * @param  headers headers of all the classes found in the same file, keyed by class name. These can be used
+     *                 to explore the class' ancestors.
+     * @return         <code>false</code> if the class can't be accepted.
+     */
+    public boolean accept(ClassHeader header, Map<String, ClassHeader> headers);
+}
@@ -0,0 +1,258 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.extension;
+
+import com.mucommander.PlatformManager;
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.filter.AttributeFileFilter;
+import com.mucommander.commons.file.filter.ExtensionFilenameFilter;
+import com.mucommander.commons.file.filter.OrFileFilter;
+import com.mucommander.io.backup.BackupInputStream;
+import com.mucommander.io.backup.BackupOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * Keeps track of the classes contained by browsable files, such as extension JARs.
+ * <p>
+ * Files are explored once and the {@link ClassHeader headers} of the classes they contain are read from their class
+ * files, without the classes being loaded. The headers found in archives are persisted in the preferences folder,
+ * keyed by the archive's path, size and date, so that an archive is only explored again when it changes. Folders are
+ * explored every time, as their size and date don't reflect changes made to their content.
+ * </p>
+ * @see ClassFinder
+ */
+public class ClassIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassIndex.class);
+
+    // - Class fields --------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    /** Name of the file in which the index is persisted. */
+    private static final String INDEX_FILE_NAME = "class_index.dat";
+    /** Version of the index file format, incremented whenever it changes. */
+    private static final int    FORMAT_VERSION  = 1;
+    /** Maximum number of files kept in the index. */
+    private static final int    MAX_ENTRIES     = 32;
+
+    /** Used to filter out files that are neither classes nor directories. */
+    private static final OrFileFilter FILTER = new OrFileFilter(
+        new ExtensionFilenameFilter(".class"),
+        new AttributeFileFilter(AttributeFileFilter.DIRECTORY)
+    );
+
+    /** Indexed files, keyed by path, in least recently used order. <code>null</code> until the index is loaded. */
+    private static Map<String, Entry> entries;
+
+
+
+    // - Initialization ------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    /**
+     * Prevents instances of this class from being created.
+     */
+    private ClassIndex() {}
+
+
+
+    // - Index access --------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    /**
+     * Returns the headers of all the classes contained by the specified browsable file.
+     * <p>
+     * Class files that cannot be parsed are ignored.
+     * </p>
+     * @param  browsable   file in which to look for classes.
+     * @return             the headers of all the classes contained by <code>browsable</code>.
+     * @throws IOException if an error occurs while exploring <code>browsable</code>.
+     */
+    public static synchronized List<ClassHeader> getClassHeaders(AbstractFile browsable) throws IOException {
+        List<ClassHeader> headers;
+        String            path;
+        long              size;
+        long              date;
+        Entry             entry;
+
+        if(browsable.isDirectory()) {
+            headers = new Vector<ClassHeader>();
+            explore(browsable, headers);
+            return headers;
+        }
+
+        loadIndex();
+        path  = browsable.getAbsolutePath();
+        size  = browsable.getSize();
+        date  = browsable.getDate();
+        entry = entries.get(path);
+        if(entry != null && entry.size == size && entry.date == date)
+            return entry.headers;
+
+        headers = new Vector<ClassHeader>();
+        explore(browsable, headers);
+        headers = Collections.unmodifiableList(headers);
+
+        entries.put(path, new Entry(size, date, headers));
+        Iterator<String> paths = entries.keySet().iterator();
+        while(entries.size() > MAX_ENTRIES) {
+            paths.next();
+            paths.remove();
+        }
+        saveIndex();
+
+        return headers;
+    }
+
+    /**
+     * Explores the specified file and adds the headers of the classes it contains to <code>headers</code>.
+     */
+    private static void explore(AbstractFile currentFile, List<ClassHeader> headers) throws IOException {
+        for(AbstractFile file : currentFile.ls(FILTER)) {
+            // Explores subdirectories recursively.
+            if(file.isDirectory())
+                explore(file, headers);
+
+            // Class files that cannot be parsed are treated as 'this class is not wanted'.
+            else {
+                InputStream in = null;
+                try {headers.add(ClassHeader.read(in = new BufferedInputStream(file.getInputStream())));}
+                catch(IOException e) {LOGGER.debug("Could not read class file " + file.getAbsolutePath(), e);}
+                finally {
+                    if(in != null) {
+                        try {in.close();}
+                        catch(IOException e) {}
+                    }
+                }
+            }
+        }
+    }
+
+
+
+    // - Persistence ---------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    /**
+     * Returns the file in which the index is persisted.
+     */
+    private static AbstractFile getIndexFile() throws IOException {
+        return PlatformManager.getPreferencesFolder().getChild(INDEX_FILE_NAME);
+    }
+
+    /**
+     * Loads the index from its file, if it hasn't been loaded yet. An index that cannot be read is discarded.
+     */
+    private static void loadIndex() {
+        DataInputStream in;
+
+        if(entries != null)
+            return;
+
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+        in      = null;
+        try {
+            AbstractFile file = getIndexFile();
+            if(!file.exists())
+                return;
+
+            in = new DataInputStream(new BufferedInputStream(new BackupInputStream(file)));
+            if(in.readInt() != FORMAT_VERSION)
+                return;
+
+            for(int i = in.readInt(); i > 0; i--) {
+                String            path    = in.readUTF();
+                long              size    = in.readLong();
+                long              date    = in.readLong();
+                List<ClassHeader> headers = new Vector<ClassHeader>();
+                for(int j = in.readInt(); j > 0; j--)
+                    headers.add(ClassHeader.readFrom(in));
+                entries.put(path, new Entry(size, date, Collections.unmodifiableList(headers)));
+            }
+        }
+        catch(IOException e) {
+            LOGGER.debug("Could not load class index, discarding it", e);
+            entries.clear();
+        }
+        finally {
+            if(in != null) {
+                try {in.close();}
+                catch(IOException e) {}
+            }
+        }
+    }
+
+    /**
+     * Writes the index to its file. Failures are logged: the index will simply be rebuilt.
+     */
+    private static void saveIndex() {
+        DataOutputStream out;
+
+        out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new BackupOutputStream(getIndexFile())));
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for(Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().size);
+                out.writeLong(entry.getValue().date);
+                out.writeInt(entry.getValue().headers.size());
+                for(ClassHeader header : entry.getValue().headers)
+                    header.writeTo(out);
+            }
+        }
+        catch(IOException e) {LOGGER.debug("Could not save class index", e);}
+        finally {
+            if(out != null) {
+                try {out.close();}
+                catch(IOException e) {}
+            }
+        }
+    }
+
+
+
+    // - Index entry ---------------------------------------------------------------------
+    // -----------------------------------------------------------------------------------
+    /**
+     * Headers of the classes contained by a file, along with the file's size and date when it was explored.
+     */
+    private static class Entry {
+        private final long              size;
+        private final long              date;
+        private final List<ClassHeader> headers;
+
+        private Entry(long size, long date, List<ClassHeader> headers) {
+            this.size    = size;
+            this.date    = date;
+            this.headers = headers;
+        }
+    }
+}
@@ -20,6 +20,7 @@ package com.mucommander.extension;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
+import java.util.Map;
 
 import javax.swing.LookAndFeel;
 
@@ -40,7 +41,7 @@ import org.slf4j.LoggerFactory;
  * </p>
  * @author Nicolas Rinaudo
  */
-public class LookAndFeelFilter implements ClassFilter {
+public class LookAndFeelFilter implements ClassHeaderFilter {
 	private static final Logger LOGGER = LoggerFactory.getLogger(LookAndFeelFilter.class);
 	
 	/**
@@ -48,6 +49,45 @@ public class LookAndFeelFilter implements ClassFilter {
      */
     public LookAndFeelFilter() {}
 
+    /**
+     * Filters out classes that cannot be look and feels without loading them: inner classes, classes that are
+     * not public, abstract classes, classes without a public no-arg constructor and classes that don't extend
+     * <code>javax.swing.LookAndFeel</code>.
+     * @param  header  header of the class to check.
+     * @param  headers headers of the classes found in the same file, keyed by name.
+     * @return <code>false</code> if the class cannot be a look and feel.
+     */
+    public boolean accept(ClassHeader header, Map<String, ClassHeader> headers) {
+        String      ancestor; // Used to explore the class' ancestors.
+        ClassHeader buffer;
+
+        if(header.getDeclaringClassName() != null)
+            return false;
+
+        if(!Modifier.isPublic(header.getModifiers()) || Modifier.isAbstract(header.getModifiers()))
+            return false;
+
+        if(!header.hasPublicNoArgConstructor())
+            return false;
+
+        // Explores the class' ancestors within the file first. The number of steps is bounded in case the file
+        // contains a (bogus) inheritance cycle.
+        ancestor = header.getSuperclassName();
+        for(int i = headers.size(); ancestor != null && (buffer = headers.get(ancestor)) != null; i--) {
+            if(i == 0)
+                return false;
+            ancestor = buffer.getSuperclassName();
+        }
+
+        if(ancestor == null)
+            return false;
+
+        // Ancestors that are not part of the file are checked without loading the file's classes. If the ancestor is
+        // not available here, it might be in the file's class loader: let accept(Class) decide.
+        try {return LookAndFeel.class.isAssignableFrom(Class.forName(ancestor, false, LookAndFeelFilter.class.getClassLoader()));}
+        catch(Throwable e) {return true;}
+    }
+
     /**
      * Filters out everything but available look and feels.
      * @param c class to check.
@@ -0,0 +1,270 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.io.backup;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replaces the content of files in a crash-safe and atomic manner.
+ * <p>
+ * The new content is written to a temporary file located next to the target file, forced to the storage device and
+ * then renamed over the target file. At any time, the target file contains either its previous content or the new
+ * one, never a mix of both. On platforms where a file cannot be renamed over an existing one, the target file is
+ * first renamed to its backup name, which {@link BackupInputStream} reads when the target file is missing.
+ * </p>
+ * <p>
+ * Saving a file with the content it already has is a no-op: the digest of the last content saved to each file is
+ * remembered, along with the file's date and size at that time, so that configuration files that are saved
+ * repeatedly without having changed are not rewritten.
+ * </p>
+ * <p>
+ * Saves of the same file are serialized, saves of different files may run concurrently.
+ * </p>
+ * @see    BackupOutputStream
+ */
+public class AtomicFileSaver implements BackupConstants {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AtomicFileSaver.class);
+
+    // - Class fields -----------------------------------------------------------
+    // --------------------------------------------------------------------------
+    /** Fingerprints of the content last saved to each file, keyed by absolute path. */
+    private final static Map<String, Fingerprint> fingerprints = new HashMap<String, Fingerprint>();
+    /** Locks held while saving a file, keyed by absolute path. */
+    private final static Map<String, Object>      locks        = new HashMap<String, Object>();
+
+
+
+    // - Initialisation ---------------------------------------------------------
+    // --------------------------------------------------------------------------
+    /**
+     * Prevents instances of this class from being created.
+     */
+    private AtomicFileSaver() {}
+
+
+
+    // - Saving -----------------------------------------------------------------
+    // --------------------------------------------------------------------------
+    /**
+     * Replaces the content of the specified file with the specified bytes.
+     * @param  target      file whose content should be replaced.
+     * @param  data        buffer containing the new content.
+     * @param  length      number of bytes of <code>data</code> that make up the new content.
+     * @return             <code>false</code> if the file already had that content and was left untouched.
+     * @throws IOException if any IO related error occurs, in which case the target file is left untouched.
+     */
+    public static boolean save(AbstractFile target, byte[] data, int length) throws IOException {
+        byte[] digest = digest(data, length);
+        String path = target.getAbsolutePath();
+
+        // The temporary file has a fixed name: concurrent saves of the same file would overwrite each other's
+        synchronized(getLock(path)) {
+            return save(target, path, digest, data, length);
+        }
+    }
+
+    private static boolean save(AbstractFile target, String path, byte[] digest, byte[] data, int length) throws IOException {
+        if(isUnchanged(target, path, digest, data, length)) {
+            LOGGER.debug("Content of "+path+" hasn't changed, not saving");
+            return false;
+        }
+
+        Object underlyingFile = target.getUnderlyingFileObject();
+        if(underlyingFile instanceof File)
+            replace((File)underlyingFile, data, length);
+        else
+            copyBack(target, data, length);
+
+        synchronized(fingerprints) {
+            fingerprints.put(path, new Fingerprint(digest, target.getDate(), target.getSize()));
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the lock to hold while saving the file with the specified path.
+     */
+    private static Object getLock(String path) {
+        synchronized(locks) {
+            Object lock = locks.get(path);
+            if(lock==null) {
+                lock = new Object();
+                locks.put(path, lock);
+            }
+            return lock;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the specified file already has the specified content.
+     */
+    private static boolean isUnchanged(AbstractFile target, String path, byte[] digest, byte[] data, int length) throws IOException {
+        if(!target.exists() || target.getSize()!=length)
+            return false;
+
+        Fingerprint fingerprint;
+        synchronized(fingerprints) {
+            fingerprint = fingerprints.get(path);
+        }
+
+        // The file hasn't been touched since we last saved it, comparing digests is enough.
+        if(fingerprint!=null && fingerprint.date==target.getDate() && fingerprint.size==length)
+            return Arrays.equals(fingerprint.digest, digest);
+
+        // Otherwise, the file has to be read. This only happens once per file: the fingerprint is remembered below.
+        byte[] current = new byte[length];
+        InputStream in = target.getInputStream();
+        try {
+            int offset = 0;
+            int read;
+            while(offset<length && (read=in.read(current, offset, length-offset))!=-1)
+                offset += read;
+            if(offset!=length || in.read()!=-1)
+                return false;
+        }
+        finally {
+            in.close();
+        }
+
+        if(!Arrays.equals(digest(current, length), digest))
+            return false;
+
+        synchronized(fingerprints) {
+            fingerprints.put(path, new Fingerprint(digest, target.getDate(), length));
+        }
+        return true;
+    }
+
+    /**
+     * Atomically replaces the content of a local file.
+     */
+    private static void replace(File target, byte[] data, int length) throws IOException {
+        File temp   = new File(target.getPath() + TEMP_SUFFIX);
+        File backup = new File(target.getPath() + BACKUP_SUFFIX);
+
+        // Writes the new content and makes sure it has reached the disk before the target file is replaced:
+        // renaming a file whose data is still in the system's buffers would not survive a crash.
+        FileOutputStream out = new FileOutputStream(temp);
+        boolean written = false;
+        try {
+            out.write(data, 0, length);
+            out.flush();
+            out.getFD().sync();
+            written = true;
+        }
+        finally {
+            try {out.close();}
+            catch(IOException e) {written = false;}
+            if(!written)
+                temp.delete();
+        }
+
+        if(!temp.renameTo(target)) {
+            // Some platforms (Windows) won't rename a file over an existing one: move the target file out of the way
+            // first. Until the temporary file has been renamed, BackupInputStream will read the backup file.
+            backup.delete();
+            if(!target.renameTo(backup) || !temp.renameTo(target)) {
+                if(!target.exists())
+                    backup.renameTo(target);
+                temp.delete();
+                throw new IOException("Could not rename "+temp+" to "+target);
+            }
+        }
+
+        // Removes the backup file, if any: it would otherwise be preferred to the target file if it was bigger.
+        if(backup.exists())
+            backup.delete();
+    }
+
+    /**
+     * Replaces the content of a non-local file by writing it to the backup file, and then copying the backup file
+     * over the target one.
+     */
+    private static void copyBack(AbstractFile target, byte[] data, int length) throws IOException {
+        AbstractFile backup = FileFactory.getFile(target.getAbsolutePath() + BACKUP_SUFFIX);
+
+        OutputStream out = backup.getOutputStream();
+        try {out.write(data, 0, length);}
+        finally {out.close();}
+
+        // Deletes the destination file (AbstractFile.copyTo now fails when the destination exists).
+        if(target.exists())
+            target.delete();
+
+        // We're not using backup.moveTo(target) because we want to make absolutely sure
+        // that if an error occurs in the middle of the operation, at least one of the two files
+        // is complete.
+        backup.copyTo(target);
+        backup.delete();
+    }
+
+    /**
+     * Returns the digest of the specified content.
+     */
+    private static byte[] digest(byte[] data, int length) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            md.update(data, 0, length);
+            return md.digest();
+        }
+        catch(NoSuchAlgorithmException e) {
+            // MD5 is available in all Java runtimes
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+
+    // - Fingerprint ------------------------------------------------------------
+    // --------------------------------------------------------------------------
+    /**
+     * Identifies the content last saved to a file.
+     */
+    private static class Fingerprint {
+        /** Digest of the content. */
+        private final byte[] digest;
+        /** Date of the file right after the content was saved. */
+        private final long   date;
+        /** Size of the file right after the content was saved. */
+        private final long   size;
+
+        private Fingerprint(byte[] digest, long date, long size) {
+            this.digest = digest;
+            this.date   = date;
+            this.size   = size;
+        }
+    }
+}
@@ -25,4 +25,6 @@ package com.mucommander.io.backup;
 interface BackupConstants {
     /** Character to add suffix file names with in order to mark them as backup. */
     static final char BACKUP_SUFFIX = '~';
+    /** Suffix of the temporary files that new contents are written to before replacing the original files. */
+    static final String TEMP_SUFFIX = ".tmp";
 }
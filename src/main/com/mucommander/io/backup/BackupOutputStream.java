@@ -21,6 +21,7 @@ package com.mucommander.io.backup;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -31,22 +32,13 @@ import java.io.OutputStream;
  * In order to prevent system or muCommander failures to corrupt configuration files,
  * the BackupOutputStream implements the following algorithm:
  * <ul>
- *   <li>Write its content to a backup file instead of the requested file</li>
- *   <li>When close is called, copy the content of the backup file over the original file</li>
- * </ul>
- * This way, if a crash was to happen while configuration files are being saved, either of the
- * following will happen:
- * <ul>
- *   <li>
- *     The backup file is not properly saved, but the original configuration is left untouched.
- *     We have lost <i>some</i> information (modifications since last save) but not <i>all</i>.
- *   </li>
- *   <li>
- *     The original file is not properly saved, but the backup file is correct. This is easy to check,
- *     as the backup and original file should always have the same size. If they don't, then the backup
- *     file should be used rather than the original one.
- *   </li>
+ *   <li>Keep its content in memory instead of writing it to the requested file</li>
+ *   <li>When close is called, hand the content over to {@link AtomicFileSaver}, which writes it to a temporary file,
+ *   forces it to disk and renames it over the original file</li>
  * </ul>
+ * This way, if a crash was to happen while configuration files are being saved, the original file
+ * contains either its previous content or the new one, but never a truncated version of either.
+ * If the new content is the same as the file's current content, the file is not rewritten at all.
  * </p>
  * <p>
  * Files that have been saved by this class should be read with {@link BackupInputStream}
@@ -58,18 +50,17 @@ import java.io.OutputStream;
  * using the {@link #close(boolean)} method.
  * </p>
  * @see    BackupInputStream
+ * @see    AtomicFileSaver
  * @author Nicolas Rinaudo
  */
 public class BackupOutputStream extends OutputStream implements BackupConstants {
     // - Instance fields --------------------------------------------------------
     // --------------------------------------------------------------------------
-    /** The underlying OutputStream */
-    private OutputStream out;
+    /** The underlying OutputStream, holding the content until the stream is closed. */
+    private ContentBuffer    out;
     /** Path of the original file. */
     private AbstractFile     target;
-    /** Path to the backup file. */
-    private AbstractFile     backup;
-    /** Whether or not an error occured while writing to the backup file. */
+    /** Whether or not an error occured while writing to the stream. */
     private boolean          error;
 
 
@@ -95,18 +86,9 @@ public class BackupOutputStream extends OutputStream implements BackupConstants
      * @param     file        file on which to open a backup output stream.
      * @exception IOException thrown if any IO error occurs.
      */
-    public BackupOutputStream(AbstractFile file) throws IOException {this(file, FileFactory.getFile(file.getAbsolutePath() + BACKUP_SUFFIX));}
-
-    /**
-     * Opens an output stream on the specified file using the specified backup file.
-     * @param     file        file on which to open the backup output stream.
-     * @param     save        file that will be used for backup.
-     * @exception IOException thrown if any IO error occurs.
-     */
-    private BackupOutputStream(AbstractFile file, AbstractFile save) throws IOException {
-        out = save.getOutputStream();
+    public BackupOutputStream(AbstractFile file) throws IOException {
+        out = new ContentBuffer();
         target = file;
-        backup = save;
     }
 
 
@@ -219,19 +201,11 @@ public class BackupOutputStream extends OutputStream implements BackupConstants
     // - Backup -----------------------------------------------------------------
     // --------------------------------------------------------------------------
     /**
-     * Overwrites the target file with the backup one.
+     * Replaces the content of the target file with the one written to this stream.
      * @exception IOException thrown if any IO related error occurs.
      */
     private void backup() throws IOException {
-        // Deletes the destination file (AbstractFile.copyTo now fails when the destination exists).
-        if(target.exists())
-            target.delete();
-
-        // We're not using backup.moveTo(target) because we want to make absolutely sure
-        // that if an error occurs in the middle of the operation, at least one of the two files
-        // is complete.
-        backup.copyTo(target);
-        backup.delete();
+        AtomicFileSaver.save(target, out.getBuffer(), out.size());
     }
 
     /**
@@ -248,7 +222,7 @@ public class BackupOutputStream extends OutputStream implements BackupConstants
      * while writing to the stream: if it did, we don't want to propagate to the target
      * file, and thus should prevent the backup operation from being performed.
      * </p>
-     * @param     backup      whether or not to overwrite the target file by the backup one.
+     * @param     backup      whether or not to overwrite the target file with the content of this stream.
      * @exception IOException thrown if any IO related error occurs.
      */
     public void close(boolean backup) throws IOException {
@@ -259,4 +233,17 @@ public class BackupOutputStream extends OutputStream implements BackupConstants
         if(backup)
             backup();
     }
+
+
+
+    // - Content buffer ---------------------------------------------------------
+    // --------------------------------------------------------------------------
+    /**
+     * Gives access to the content of a <code>ByteArrayOutputStream</code> without copying it.
+     */
+    private static class ContentBuffer extends ByteArrayOutputStream {
+        private ContentBuffer() {super(8192);}
+
+        private byte[] getBuffer() {return buf;}
+    }
 }
@@ -0,0 +1,172 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.io.backup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces frequent saves of the same file into a single write.
+ * <p>
+ * A save task that is {@link #schedule(Object, Runnable) scheduled} is run by a background thread once no other task
+ * has been scheduled with the same key for {@link #DELAY} milliseconds, in which case only the last task is run. A
+ * series of changes made in quick succession, e.g. while editing bookmarks, thus results in the file being written
+ * once, off the event dispatch thread.
+ * </p>
+ * <p>
+ * Tasks should not access data that may be modified while they are waiting: the content to save should rather be
+ * serialized by the thread that schedules the task, leaving only the bytes to be written by the task.
+ * </p>
+ * <p>
+ * Tasks that are still pending when the application quits are run by {@link #flush()}, which must be called before
+ * the files they save are written for the last time.
+ * </p>
+ * @see    AtomicFileSaver
+ */
+public class SaveScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SaveScheduler.class);
+
+    // - Class fields -----------------------------------------------------------
+    // --------------------------------------------------------------------------
+    /** Number of milliseconds a task must not have been scheduled again for before it is run. */
+    public final static long DELAY = 1000;
+
+    /** Runs the save tasks. */
+    private final static ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Configuration writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    /** Tasks that are waiting to be run keyed by their key, in the order in which they were first scheduled. */
+    private final static Map<Object, PendingSave> pendingTasks = new LinkedHashMap<Object, PendingSave>();
+
+    /** Number of tasks that are being run by the background thread. */
+    private static int nbRunningTasks;
+
+
+
+    // - Initialisation ---------------------------------------------------------
+    // --------------------------------------------------------------------------
+    /**
+     * Prevents instances of this class from being created.
+     */
+    private SaveScheduler() {}
+
+
+
+    // - Scheduling -------------------------------------------------------------
+    // --------------------------------------------------------------------------
+    /**
+     * Schedules the specified save task to be run in {@link #DELAY} milliseconds. If a task with the same key is
+     * already pending, it is replaced by the specified one.
+     * @param key  identifies the file saved by the task.
+     * @param task task that saves a file. Exceptions it throws are logged.
+     */
+    public static synchronized void schedule(Object key, Runnable task) {
+        PendingSave pending = pendingTasks.remove(key);
+        if(pending!=null)
+            pending.future.cancel(false);
+
+        pending = new PendingSave(key, task);
+        pendingTasks.put(key, pending);
+        pending.future = executor.schedule(pending, DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs all pending tasks on the current thread, without waiting for their delay to expire. If a task is being
+     * run by the background thread, this method waits for it to finish first.
+     */
+    public static void flush() {
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        synchronized(SaveScheduler.class) {
+            for(PendingSave pending : pendingTasks.values()) {
+                pending.future.cancel(false);
+                tasks.add(pending.task);
+            }
+            pendingTasks.clear();
+
+            // Pending tasks are more recent than the ones being run, they must be run last
+            while(nbRunningTasks>0) {
+                try {SaveScheduler.class.wait();}
+                catch(InterruptedException e) {break;}
+            }
+        }
+
+        for(Runnable task : tasks)
+            runTask(task);
+    }
+
+    private static void runTask(Runnable task) {
+        try {task.run();}
+        catch(Exception e) {LOGGER.warn("Failed to save file", e);}
+    }
+
+
+
+    // - Pending save -----------------------------------------------------------
+    // --------------------------------------------------------------------------
+    /**
+     * Runs a task unless it has been replaced or flushed since it was scheduled.
+     */
+    private static class PendingSave implements Runnable {
+        /** Key of the task. */
+        private final Object       key;
+        /** Task to run. */
+        private final Runnable     task;
+        /** Result of the scheduling of this object. */
+        private ScheduledFuture<?> future;
+
+        private PendingSave(Object key, Runnable task) {
+            this.key  = key;
+            this.task = task;
+        }
+
+        public void run() {
+            synchronized(SaveScheduler.class) {
+                if(pendingTasks.get(key)!=this)
+                    return;
+                pendingTasks.remove(key);
+                nbRunningTasks++;
+            }
+
+            try {
+                runTask(task);
+            }
+            finally {
+                synchronized(SaveScheduler.class) {
+                    nbRunningTasks--;
+                    SaveScheduler.class.notifyAll();
+                }
+            }
+        }
+    }
+}
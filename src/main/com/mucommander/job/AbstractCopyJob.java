@@ -59,6 +59,9 @@ public abstract class AbstractCopyJob extends TransferFileJob {
     /** True when an archive is being optimized */
     protected boolean isOptimizingArchive;
 
+    /** Snapshot of the destination folders' contents, used to check for collisions without hitting the filesystem */
+    private DestinationListing destinationListing = new DestinationListing();
+
     /**
      * Creates a new <code>AbstractCopyJob</code>.
      *
@@ -109,6 +112,7 @@ public abstract class AbstractCopyJob extends TransferFileJob {
     
     /**
      * Checks if there is a file collision (file exists in the destination).
+     * The destination folder is listed only once, see {@link DestinationListing}.
      * If there is no collision this method returns destFile.
      * If there is a collision this method returns: <ul>
      *  <li>null if a user cancelled the transfer 
@@ -128,7 +132,7 @@ public abstract class AbstractCopyJob extends TransferFileJob {
         while (true) {
             // Check for file collisions (file exists in the destination, destination subfolder of source, ...)
             // if a default action hasn't been specified
-            int collision = FileCollisionChecker.checkForCollision(file, destFile);
+            int collision = destinationListing.checkForCollision(file, destFile);
             
             // If allowCaseVariation is true and both files are equal, test if the destination filename is a variation
             // of the original filename with a different case. If that is the case, do not warn about the source and
@@ -196,8 +200,36 @@ public abstract class AbstractCopyJob extends TransferFileJob {
             }
             break;    // no collision
         }
+
+        // Folders are recorded once they have been created, see #folderCreated(AbstractFile)
+        if(!file.isDirectory())
+            destinationListing.fileWritten(destFile);
+
         return destFile;
     }
+
+    /**
+     * Returns <code>true</code> if the given destination file exists and is a directory. This is equivalent to
+     * <code>destFile.exists() && destFile.isDirectory()</code> but is answered from the snapshot of the destination
+     * folder's contents.
+     *
+     * @param destFile a destination file
+     * @return true if the given destination file exists and is a directory
+     */
+    protected boolean isExistingFolder(AbstractFile destFile) {
+        return destinationListing.isExistingFolder(destFile);
+    }
+
+    /**
+     * Records that the given destination folder has been created by this job, so that its children can be checked
+     * for collisions without listing it. This method must be called after <code>mkdir()</code> or
+     * <code>mkdirs()</code> has succeeded.
+     *
+     * @param destFolder the destination folder that has been created
+     */
+    protected void folderCreated(AbstractFile destFolder) {
+        destinationListing.folderCreated(destFolder);
+    }
     
     /**
      * Optimizes the given writable archive file and notifies the user in case of an error.
@@ -225,4 +257,11 @@ public abstract class AbstractCopyJob extends TransferFileJob {
         isOptimizingArchive = false;
     }
 
+    /**
+     * Returns the base source folder and the base destination folder.
+     */
+    @Override
+    protected AbstractFile[] getAccessedFolders() {
+        return new AbstractFile[]{getBaseSourceFolder(), baseDestFolder};
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job;
+
+import com.mucommander.commons.file.ArchiveEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indexes a set of selected archive entries so that the entries of an archive can be matched against the selection
+ * in constant time with respect to the number of selected entries.
+ * <p>
+ * Regular file entries are kept in a hash map keyed by their path, and are removed from it as soon as they have been
+ * matched. Directory entries are kept in a hash set of paths (each ending with a <code>'/'</code>): an entry is
+ * matched by a selected directory if any of its parent paths is contained in that set, which costs one lookup per
+ * path fragment.
+ * </p>
+ * <p>
+ * Once all selected regular files have been matched and no directory was selected, {@link #isComplete()} returns
+ * <code>true</code>, allowing the caller to stop traversing the archive.
+ * </p>
+ *
+ * @see UnpackJob
+ */
+class ArchiveEntrySelection {
+
+    /** Selected regular file entries that haven't been matched yet, keyed by path */
+    private Map<String, ArchiveEntry> pendingFiles;
+
+    /** Paths of the selected directory entries, each ending with a '/' */
+    private Set<String> directoryPaths;
+
+    /** Selected regular file entries, in the order in which they were selected */
+    private List<ArchiveEntry> fileEntries;
+
+
+    /**
+     * Creates a new <code>ArchiveEntrySelection</code> indexing the given entries.
+     *
+     * @param selectedEntries the selected archive entries
+     */
+    ArchiveEntrySelection(List<ArchiveEntry> selectedEntries) {
+        int nbEntries = selectedEntries.size();
+        pendingFiles = new HashMap<String, ArchiveEntry>(Math.max(16, nbEntries*4/3+1));
+        directoryPaths = new HashSet<String>();
+        fileEntries = new ArrayList<ArchiveEntry>(nbEntries);
+
+        for(ArchiveEntry entry : selectedEntries) {
+            String path = entry.getPath();
+            if(entry.isDirectory()) {
+                // Note: paths of directory entries must end with '/'
+                directoryPaths.add(path.endsWith("/")?path:path+"/");
+            }
+            else if(!pendingFiles.containsKey(path)) {
+                pendingFiles.put(path, entry);
+                fileEntries.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the entry with the given path is part of the selection, either because it has
+     * been selected itself or because one of its parent directories has. A selected regular file is matched only once:
+     * subsequent calls with the same path return <code>false</code> unless the path is also located in a selected
+     * directory.
+     *
+     * @param entryPath path of the archive entry to test
+     * @return true if the entry should be processed
+     */
+    boolean matches(String entryPath) {
+        if(pendingFiles.remove(entryPath)!=null)
+            return true;
+
+        if(directoryPaths.isEmpty())
+            return false;
+
+        // Test every parent path of the entry (and the entry itself if it's a directory), from the shallowest one
+        int pos = 0;
+        while((pos=entryPath.indexOf('/', pos))!=-1) {
+            pos++;
+            if(directoryPaths.contains(entryPath.substring(0, pos)))
+                return true;
+        }
+
+        // The path of a selected directory may lack the trailing '/'
+        return !entryPath.endsWith("/") && directoryPaths.contains(entryPath+"/");
+    }
+
+    /**
+     * Returns <code>true</code> if the selection contains at least one directory entry, in which case the contents of
+     * the directory can only be found by traversing the archive's entries.
+     *
+     * @return true if the selection contains at least one directory entry
+     */
+    boolean containsDirectories() {
+        return !directoryPaths.isEmpty();
+    }
+
+    /**
+     * Returns <code>true</code> if all the selected entries have been matched, i.e. if no other entry of the archive
+     * can be part of the selection. This is never the case when the selection contains directories.
+     *
+     * @return true if all the selected entries have been matched
+     */
+    boolean isComplete() {
+        return pendingFiles.isEmpty() && directoryPaths.isEmpty();
+    }
+
+    /**
+     * Returns the selected regular file entries, in the order in which they were selected, regardless of whether they
+     * have been matched already.
+     *
+     * @return the selected regular file entries
+     */
+    List<ArchiveEntry> getFileEntries() {
+        return fileEntries;
+    }
+}
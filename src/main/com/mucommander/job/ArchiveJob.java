@@ -146,6 +146,12 @@ public class ArchiveJob extends TransferFileJob {
         return folder.equalsCanonical(destFile.getParent());     // Note: parent may be null
     }
 
+    // This job reads the source files and writes the archive
+    @Override
+    protected AbstractFile[] getAccessedFolders() {
+        return new AbstractFile[]{getBaseSourceFolder(), destFile.getParent()};
+    }
+
 
     ////////////////////////
     // Overridden methods //
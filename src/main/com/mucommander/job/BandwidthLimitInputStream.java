@@ -0,0 +1,183 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.job;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An <code>InputStream</code> that limits the rate at which bytes are read from the underlying stream according to
+ * one or several {@link TokenBucket token buckets}: a read proceeds only once all the buckets allow it. The buckets
+ * typically are the job's own, and those shared by all the jobs that access the same host and by all jobs, see
+ * {@link BandwidthManager}.
+ * <p>
+ * Each read is limited to a few milliseconds' worth of the most restrictive bucket, and waits are split into short
+ * sleeps, so that the throughput is smooth, rate changes apply promptly and concurrent readers of a shared bucket
+ * take turns. Reads can also be paused altogether, which is used to pause the job.
+ * </p>
+ *
+ * @see TransferFileJob#setCurrentInputStream(InputStream)
+ */
+class BandwidthLimitInputStream extends FilterInputStream {
+
+    /** Maximum duration of a single sleep, in nanoseconds */
+    private final static long MAX_SLEEP_NANOS = 20000000;
+
+    /** Number of nanoseconds in a millisecond */
+    private final static long NANOS_PER_MILLI = 1000000;
+
+    /** Buckets that limit the throughput of this stream */
+    private TokenBucket buckets[];
+
+    /** True if reads are paused */
+    private boolean paused;
+
+    /** True if this stream has been closed since the underlying stream was set */
+    private boolean closed;
+
+
+    /**
+     * Creates a new stream that reads from the given stream at a rate allowed by the given buckets.
+     *
+     * @param in the underlying stream
+     * @param buckets the buckets that limit the throughput of this stream
+     */
+    BandwidthLimitInputStream(InputStream in, TokenBucket buckets[]) {
+        super(in);
+
+        this.buckets = buckets;
+    }
+
+    /**
+     * Replaces the underlying stream, allowing this instance to be reused for another file.
+     *
+     * @param in the new underlying stream
+     */
+    synchronized void setUnderlyingInputStream(InputStream in) {
+        this.in = in;
+        closed = false;
+    }
+
+    /**
+     * Pauses or resumes reads. While paused, read methods block until reads are resumed or the stream is closed.
+     *
+     * @param paused true to pause reads, false to resume them
+     */
+    synchronized void setPaused(boolean paused) {
+        this.paused = paused;
+        notifyAll();
+    }
+
+    /**
+     * Blocks while reads are paused.
+     */
+    private synchronized void waitWhilePaused() {
+        while(paused && !closed) {
+            try {
+                wait();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of bytes to read at once, given the requested number of bytes.
+     */
+    private int getChunkSize(int len) {
+        for(TokenBucket bucket : buckets)
+            len = Math.min(len, bucket.getChunkSize());
+
+        return len;
+    }
+
+    /**
+     * Accounts for the given number of bytes that have been read, and waits until all buckets allow further reads.
+     */
+    private void throttle(int nbBytes) {
+        for(TokenBucket bucket : buckets)
+            bucket.consume(nbBytes);
+
+        while(true) {
+            long waitTime = 0;
+            for(TokenBucket bucket : buckets)
+                waitTime = Math.max(waitTime, bucket.getWaitTime());
+
+            if(waitTime<=0)
+                return;
+
+            // Wait in short steps so that rate changes are taken into account
+            waitTime = Math.min(waitTime, MAX_SLEEP_NANOS);
+            try {
+                Thread.sleep(waitTime/NANOS_PER_MILLI, (int)(waitTime%NANOS_PER_MILLI));
+            }
+            catch(InterruptedException e) {
+                // The job is being stopped, the stream is about to be closed
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+
+    ////////////////////////////////
+    // InputStream implementation //
+    ////////////////////////////////
+
+    @Override
+    public int read() throws IOException {
+        waitWhilePaused();
+
+        int b = in.read();
+        if(b!=-1)
+            throttle(1);
+
+        return b;
+    }
+
+    @Override
+    public int read(byte b[]) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte b[], int off, int len) throws IOException {
+        waitWhilePaused();
+
+        int nbRead = in.read(b, off, len==0?0:getChunkSize(len));
+        if(nbRead>0)
+            throttle(nbRead);
+
+        return nbRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized(this) {
+            closed = true;
+            notifyAll();
+        }
+
+        super.close();
+    }
+}
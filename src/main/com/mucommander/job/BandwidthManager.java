@@ -0,0 +1,189 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.job;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.conf.ConfigurationEvent;
+import com.mucommander.commons.conf.ConfigurationListener;
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.impl.local.LocalFile;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+import com.mucommander.core.ConnectionManager;
+
+/**
+ * Shares bandwidth budgets between the transfers of all {@link TransferFileJob file jobs}. On top of the limit each
+ * job may be given, the throughput of transfers is limited by:
+ * <ul>
+ *  <li>a global budget, shared by all transfers, controlled by the {@link MuPreference#BANDWIDTH_LIMIT} preference</li>
+ *  <li>a budget for each remote server, shared by the transfers that access it, controlled by the
+ * {@link MuPreference#BANDWIDTH_LIMIT_PER_HOST} preference</li>
+ * </ul>
+ * Each budget is a {@link TokenBucket} that concurrent transfers draw from: a budget is not split up beforehand, so the
+ * bandwidth that a transfer doesn't use, because it is slower or limited further, goes to the other transfers.
+ * <p>
+ * Budgets can be changed while transfers are running, by changing the preferences.
+ * </p>
+ *
+ * @see #getInstance()
+ */
+public class BandwidthManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BandwidthManager.class);
+
+    /** The single instance of this class */
+    private final static BandwidthManager instance = new BandwidthManager();
+
+    /** Budget shared by all transfers */
+    private final TokenBucket globalBucket;
+
+    /** Budgets of the remote servers, keyed by server */
+    private final Map<String, TokenBucket> hostBuckets = new HashMap<String, TokenBucket>();
+
+    /** Listens to changes of the budget preferences. A reference is kept, as listeners are weakly referenced. */
+    private final ConfigurationListener configurationListener;
+
+
+    private BandwidthManager() {
+        globalBucket = new TokenBucket(getGlobalLimit());
+
+        configurationListener = new ConfigurationListener() {
+            public void configurationChanged(ConfigurationEvent event) {
+                String var = event.getVariable();
+                if(var.equals(MuPreferences.BANDWIDTH_LIMIT) || var.equals(MuPreferences.BANDWIDTH_LIMIT_PER_HOST))
+                    updateLimits();
+            }
+        };
+        MuConfigurations.addPreferencesListener(configurationListener);
+    }
+
+    /**
+     * Returns the single instance of <code>BandwidthManager</code>.
+     *
+     * @return the single instance of BandwidthManager
+     */
+    public static BandwidthManager getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the throughput limit shared by all transfers, in bytes per second, 0 if there is none.
+     *
+     * @return the throughput limit shared by all transfers
+     */
+    public long getGlobalLimit() {
+        return Math.max(0, MuConfigurations.getPreferences().getVariable(MuPreference.BANDWIDTH_LIMIT, MuPreferences.DEFAULT_BANDWIDTH_LIMIT));
+    }
+
+    /**
+     * Changes the throughput limit shared by all transfers. The new limit applies immediately to running transfers,
+     * and is saved in the preferences.
+     *
+     * @param bytesPerSecond the throughput limit shared by all transfers, in bytes per second, 0 or less for none
+     */
+    public void setGlobalLimit(long bytesPerSecond) {
+        MuConfigurations.getPreferences().setVariable(MuPreference.BANDWIDTH_LIMIT, Math.max(0, bytesPerSecond));
+    }
+
+    /**
+     * Returns the throughput limit shared by the transfers that access a remote server, in bytes per second,
+     * 0 if there is none.
+     */
+    private long getHostLimit() {
+        return Math.max(0, MuConfigurations.getPreferences().getVariable(MuPreference.BANDWIDTH_LIMIT_PER_HOST, MuPreferences.DEFAULT_BANDWIDTH_LIMIT_PER_HOST));
+    }
+
+    /**
+     * Applies the budgets of the preferences to the buckets.
+     */
+    private synchronized void updateLimits() {
+        globalBucket.setRate(getGlobalLimit());
+
+        long hostLimit = getHostLimit();
+        for(TokenBucket bucket : hostBuckets.values())
+            bucket.setRate(hostLimit);
+    }
+
+    /**
+     * Returns the buckets that limit the throughput of a transfer that accesses the given folders: the global bucket,
+     * and the buckets of the remote servers the folders are located on.
+     *
+     * @param folders the folders the transfer accesses, may contain <code>null</code> elements
+     * @return the buckets that limit the throughput of the transfer
+     */
+    synchronized List<TokenBucket> getBuckets(AbstractFile folders[]) {
+        List<TokenBucket> buckets = new ArrayList<TokenBucket>();
+        buckets.add(globalBucket);
+
+        for(String server : getServers(folders)) {
+            TokenBucket bucket = hostBuckets.get(server);
+            if(bucket==null) {
+                bucket = new TokenBucket(getHostLimit());
+                hostBuckets.put(server, bucket);
+            }
+
+            if(!buckets.contains(bucket))
+                buckets.add(bucket);
+        }
+
+        return buckets;
+    }
+
+    /**
+     * Returns <code>true</code> if the throughput of a transfer that accesses the given folders is limited by a
+     * shared budget.
+     *
+     * @param folders the folders the transfer accesses, may contain <code>null</code> elements
+     * @return true if the transfer is limited by a shared budget
+     */
+    boolean isLimited(AbstractFile folders[]) {
+        return getGlobalLimit()>0 || (getHostLimit()>0 && !getServers(folders).isEmpty());
+    }
+
+    /**
+     * Returns the keys of the remote servers the given folders are located on.
+     */
+    private static List<String> getServers(AbstractFile folders[]) {
+        List<String> servers = new ArrayList<String>();
+        for(AbstractFile folder : folders) {
+            if(folder==null)
+                continue;
+
+            try {
+                AbstractFile topAncestor = folder.getTopAncestor();
+                if(!(topAncestor instanceof LocalFile))
+                    servers.add(ConnectionManager.getServerKey(topAncestor.getURL()));
+            }
+            catch(RuntimeException e) {
+                // The folder's server could not be resolved, the transfer won't be limited by it
+                LOGGER.debug("Failed to resolve the server of "+folder, e);
+            }
+        }
+
+        return servers;
+    }
+}
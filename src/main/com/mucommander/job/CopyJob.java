@@ -29,6 +29,7 @@ import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.AbstractRWArchiveFile;
 import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.FileOperation;
+import com.mucommander.commons.file.impl.local.LocalFile;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.dialog.file.ProgressDialog;
@@ -53,6 +54,9 @@ public class CopyJob extends AbstractCopyJob {
     public final static int COPY_MODE = 0;
     public final static int DOWNLOAD_MODE = 1;
 
+    /** Records the progress of this job so that it can be resumed, null if the job is not journaled */
+    private TransferJournal transferJournal;
+
 	
 	
     /**
@@ -73,6 +77,17 @@ public class CopyJob extends AbstractCopyJob {
         this.errorDialogTitle = Translator.get(mode==DOWNLOAD_MODE?"download_dialog.error_title":"copy_dialog.error_title");
     }
 
+    /**
+     * Sets the journal that records the progress of this job. The files that the journal records as transferred are
+     * skipped, and the transfer of the file it records as started is resumed. If no journal is set before the job
+     * starts, a new one is created.
+     *
+     * @param transferJournal the journal that records the progress of this job
+     */
+    void setTransferJournal(TransferJournal transferJournal) {
+        this.transferJournal = transferJournal;
+    }
+
 
 
     ////////////////////////////////////
@@ -116,18 +131,33 @@ public class CopyJob extends AbstractCopyJob {
         if(file.isSymlink())
             return true;
 
-        destFile = checkForCollision(file, destFolder, destFile, false);
-        if (destFile == null)
-            return false;
+        boolean isFile = !file.isDirectory();
+        // Skip the file if it was transferred before the job was interrupted, and resume its transfer without
+        // checking for collisions if it was being transferred, into the very file it was being written to
+        if(isFile && transferJournal!=null && transferJournal.isDone(file))
+            return true;
+
+        AbstractFile startedDestFile = isFile && transferJournal!=null?transferJournal.getStartedDestination(file, destFolder):null;
+        if(startedDestFile!=null && canResume(file, startedDestFile)) {
+            destFile = startedDestFile;
+            currentDestFile = destFile;
+            append = true;
+        }
+        else {
+            destFile = checkForCollision(file, destFolder, destFile, false);
+            if (destFile == null)
+                return false;
+        }
 
         // Copy directory recursively
         if(file.isDirectory()) {
             // Create the folder in the destination folder if it doesn't exist
-            if(!(destFile.exists() && destFile.isDirectory())) {
+            if(!isExistingFolder(destFile)) {
                 // Loop for retry
                 do {
                     try {
                         destFile.mkdir();
+                        folderCreated(destFile);
                     }
                     catch(IOException e) {
                         // Unable to create folder
@@ -185,8 +215,15 @@ public class CopyJob extends AbstractCopyJob {
         }
         // File is a regular file, copy it
         else  {
+            if(transferJournal!=null)
+                transferJournal.fileStarted(file, destFile);
+
             // Copy the file
-            return tryCopyFile(file, destFile, append, errorDialogTitle);
+            boolean copied = tryCopyFile(file, destFile, append, errorDialogTitle);
+            if(copied && transferJournal!=null)
+                transferJournal.fileDone(file);
+
+            return copied;
         }
     }
 
@@ -203,10 +240,41 @@ public class CopyJob extends AbstractCopyJob {
     // Overridden methods //
     ////////////////////////
 
+    @Override
+    protected void jobStarted() {
+        super.jobStarted();
+
+        // Journal the job so that it can be resumed if the application quits before it has finished. Only transfers
+        // from or to a remote location are journaled, local copies being fast enough to be started over. Files
+        // cannot be appended to inside archives, so there is no point in resuming those jobs either.
+        if(transferJournal==null && isRemoteTransfer() && baseDestFolder.getParentArchive()==null) {
+            try {
+                transferJournal = TransferJournal.create(files, baseDestFolder, newName, mode, defaultFileExistsAction, isIntegrityCheckEnabled());
+            }
+            catch(IOException e) {
+                LOGGER.info("Could not create transfer journal", e);
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the files are copied from or to a location that is not on a local filesystem.
+     */
+    private boolean isRemoteTransfer() {
+        AbstractFile baseSourceFolder = files.getBaseFolder();
+        return !baseDestFolder.hasAncestor(LocalFile.class)
+            || baseSourceFolder==null || !baseSourceFolder.hasAncestor(LocalFile.class);
+    }
+
     @Override
     protected void jobCompleted() {
         super.jobCompleted();
 
+        if(transferJournal!=null) {
+            transferJournal.delete();
+            transferJournal = null;
+        }
+
         // If the destination files are located inside an archive, optimize the archive file
         AbstractArchiveFile archiveFile = baseDestFolder.getParentArchive();
         if(archiveFile!=null && archiveFile.isArchive() && archiveFile.isWritable())
@@ -221,6 +289,22 @@ public class CopyJob extends AbstractCopyJob {
         }
     }
 
+    @Override
+    protected void jobStopped() {
+        super.jobStopped();
+
+        if(transferJournal!=null) {
+            // Keep the journal if the job was stopped after a transfer failed, or because its window was closed (for
+            // instance because the application is quitting), so that the job can be resumed later. Delete it if the
+            // job was stopped by the user.
+            MainFrame mainFrame = getMainFrame();
+            if(hasTransferFailed() || (mainFrame!=null && !mainFrame.isShowing()))
+                transferJournal.close();
+            else
+                transferJournal.delete();
+        }
+    }
+
     @Override
     public String getStatusString() {
         if(isCheckingIntegrity())
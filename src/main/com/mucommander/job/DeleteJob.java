@@ -20,6 +20,14 @@
 package com.mucommander.job;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,7 +35,11 @@ import org.slf4j.LoggerFactory;
 import com.mucommander.commons.file.AbstractArchiveFile;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.AbstractRWArchiveFile;
+import com.mucommander.commons.file.impl.local.LocalFile;
 import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
 import com.mucommander.desktop.AbstractTrash;
 import com.mucommander.desktop.DesktopManager;
 import com.mucommander.text.Translator;
@@ -42,6 +54,12 @@ import com.mucommander.ui.main.MainFrame;
  *  <li>moveToTrash disabled: files are permanently deleted, i.e deleted files cannot be recovered. In this mode,
  * folders are deleted recursively
  * </ul>
+ * <p>
+ * The contents of local folders are deleted concurrently by a number of threads controlled by the
+ * {@link MuPreference#DELETE_THREADS} preference: subfolders are listed in parallel, their files are deleted in
+ * batches, and each folder is deleted as soon as all of its contents have been. Whatever could not be deleted this way
+ * is then deleted sequentially on the job's thread, where the usual error dialogs can be displayed.
+ * </p>
  *
  * @author Maxence Bernard
  */
@@ -63,6 +81,21 @@ public class DeleteJob extends FileJob {
     /** True when an archive is being optimized */
     private boolean isOptimizingArchive;
 
+    /** Number of threads used to delete the contents of local folders */
+    private int nbDeleteThreads;
+
+    /** Deletes the contents of the current folder concurrently, <code>null</code> when no folder is being deleted that way */
+    private volatile ParallelDeleter parallelDeleter;
+
+    /** If true, the contents of the folders to delete are deleted but the folders themselves are kept */
+    private boolean contentsOnly;
+
+    /** Maximum number of files of a folder that are deleted by a single task */
+    private final static int FILE_BATCH_SIZE = 256;
+
+    /** Passed as <code>recurseParams</code> to delete a folder's contents on the job's thread only */
+    private final static Object SEQUENTIAL = new Object();
+
 
     /**
      * Creates a new DeleteJob without starting it.
@@ -81,6 +114,18 @@ public class DeleteJob extends FileJob {
         this.moveToTrash = moveToTrash;
         if(moveToTrash)
             trash = DesktopManager.getTrash();
+
+        this.nbDeleteThreads = MuConfigurations.getPreferences().getVariable(MuPreference.DELETE_THREADS, MuPreferences.DEFAULT_DELETE_THREADS);
+    }
+
+    /**
+     * Makes this job delete the contents of the folders it was given rather than the folders themselves, as when
+     * emptying a trash. Regular files are deleted as usual. This has no effect if files are moved to the trash.
+     *
+     * @param contentsOnly true to keep the folders this job was given
+     */
+    public void setContentsOnly(boolean contentsOnly) {
+        this.contentsOnly = contentsOnly;
     }
 
     /**
@@ -106,7 +151,7 @@ public class DeleteJob extends FileJob {
      * Deletes recursively the given file or folder. 
      *
      * @param file the file or folder to delete
-     * @param recurseParams not used
+     * @param recurseParams {@link #SEQUENTIAL} if the folder's contents must not be deleted concurrently, <code>null</code> otherwise
      * 
      * @return <code>true</code> if the file has been completely deleted.
      */
@@ -123,6 +168,21 @@ public class DeleteJob extends FileJob {
 
             // Important: symlinks must *not* be followed -- following symlinks could have disastrous effects.
             if(!file.isSymlink()) {
+                // Delete the folder concurrently if possible, then whatever is left of it sequentially
+                if(recurseParams!=SEQUENTIAL && nbDeleteThreads>1 && file.getTopAncestor() instanceof LocalFile) {
+                    parallelDeleter = new ParallelDeleter(nbDeleteThreads, contentsOnly);
+                    try {
+                        if(parallelDeleter.delete(file))
+                            return true;
+                    }
+                    finally {
+                        parallelDeleter = null;
+                    }
+
+                    if(getState()==INTERRUPTED)
+                        return false;
+                }
+
                 do {		// Loop for retry
                     // Delete each file in this folder
                     try {
@@ -130,7 +190,7 @@ public class DeleteJob extends FileJob {
                         for(int i=0; i<subFiles.length && getState()!=INTERRUPTED; i++) {
                             // Notify job that we're starting to process this file (needed for recursive calls to processFile)
                             nextFile(subFiles[i]);
-                            processFile(subFiles[i], null);
+                            processFile(subFiles[i], SEQUENTIAL);
                         }
                         break;
                     }
@@ -151,6 +211,10 @@ public class DeleteJob extends FileJob {
         if(getState()==INTERRUPTED)
             return false;
 
+        // Keep the folders this job was given if only their contents are to be deleted
+        if(contentsOnly && !moveToTrash && recurseParams==null && file.isDirectory() && !file.isSymlink())
+            return true;
+
         do {		// Loop for retry
             try {
                 deleteFile(file);
@@ -189,6 +253,11 @@ public class DeleteJob extends FileJob {
 
         if(moveToTrash)
             trash.waitForPendingOperations();
+
+        // Stop deleting files concurrently
+        ParallelDeleter deleter = parallelDeleter;
+        if(deleter!=null)
+            deleter.abort();
     }
 
     @Override
@@ -227,4 +296,231 @@ public class DeleteJob extends FileJob {
 
         return Translator.get("delete.deleting_file", getCurrentFilename());
     }
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * Deletes the contents of a folder and the folder itself on a fixed number of threads. Each subfolder is listed by
+     * its own task, and the files it contains are deleted by tasks of at most {@link #FILE_BATCH_SIZE} files. A folder
+     * is deleted by the thread that completes the last of its tasks, so that folders are deleted bottom-up.
+     * <p>
+     * Errors are not reported: a folder whose contents could not be entirely deleted is simply left in place, along
+     * with its parent folders, so that the job's thread can then process them sequentially and display the usual error
+     * dialogs.
+     * </p>
+     */
+    private class ParallelDeleter {
+
+        /** Threads that list folders and delete files */
+        private ExecutorService executor;
+
+        /** Released when the top folder has been processed, or when the deleter is aborted */
+        private CountDownLatch done = new CountDownLatch(1);
+
+        /** True if the top folder has been deleted, or emptied if it is to be kept */
+        private volatile boolean folderDeleted;
+
+        /** If true, the contents of the top folder are deleted but the folder itself is kept */
+        private boolean keepTopFolder;
+
+        private ParallelDeleter(int nbThreads, boolean keepTopFolder) {
+            this.keepTopFolder = keepTopFolder;
+            this.executor = Executors.newFixedThreadPool(nbThreads, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, DeleteJob.class.getName()+" deleter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        /**
+         * Deletes the given folder and its contents, and waits for the deletion to be over. The folder itself is kept
+         * if this deleter was created to keep it.
+         *
+         * @param folder the folder to delete
+         * @return <code>true</code> if the folder has been deleted, or emptied if it is to be kept
+         */
+        private boolean delete(AbstractFile folder) {
+            submitListing(new PendingFolder(folder, null));
+
+            while(true) {
+                try {
+                    done.await();
+                    break;
+                }
+                catch(InterruptedException e) {
+                    // Loop one more time
+                }
+            }
+
+            executor.shutdownNow();
+
+            return folderDeleted;
+        }
+
+        /**
+         * Discards the folders and files that are waiting to be deleted, and releases the job's thread.
+         */
+        private void abort() {
+            executor.shutdownNow();
+            done.countDown();
+        }
+
+        private void submit(final Runnable task, final PendingFolder folder) {
+            try {
+                executor.execute(task);
+            }
+            catch(RejectedExecutionException e) {
+                // The deleter has been aborted
+                folder.incomplete = true;
+                folder.taskDone();
+            }
+        }
+
+        private void submitListing(final PendingFolder folder) {
+            submit(new Runnable() {
+                public void run() {
+                    list(folder);
+                }
+            }, folder);
+        }
+
+        /**
+         * Lists the given folder, schedules the listing of its subfolders and the deletion of its files.
+         */
+        private void list(PendingFolder folder) {
+            try {
+                nextFile(folder.file);
+                if(getState()==INTERRUPTED) {
+                    folder.incomplete = true;
+                    return;
+                }
+
+                AbstractFile children[];
+                try {
+                    children = folder.file.ls();
+                }
+                catch(IOException e) {
+                    LOGGER.debug("Failed to list "+folder.file+", will be retried", e);
+                    folder.incomplete = true;
+                    return;
+                }
+
+                List<AbstractFile> batch = new ArrayList<AbstractFile>();
+                for(AbstractFile child : children) {
+                    // Important: symlinks must *not* be followed
+                    if(child.isDirectory() && !child.isSymlink()) {
+                        folder.pendingTasks.incrementAndGet();
+                        submitListing(new PendingFolder(child, folder));
+                    }
+                    else {
+                        batch.add(child);
+                        if(batch.size()==FILE_BATCH_SIZE) {
+                            submitFiles(batch, folder);
+                            batch = new ArrayList<AbstractFile>();
+                        }
+                    }
+                }
+
+                // Delete the remaining files right away
+                deleteFiles(batch, folder);
+            }
+            finally {
+                folder.taskDone();
+            }
+        }
+
+        private void submitFiles(final List<AbstractFile> files, final PendingFolder folder) {
+            folder.pendingTasks.incrementAndGet();
+            submit(new Runnable() {
+                public void run() {
+                    try {
+                        deleteFiles(files, folder);
+                    }
+                    finally {
+                        folder.taskDone();
+                    }
+                }
+            }, folder);
+        }
+
+        /**
+         * Deletes the given files, which are contained by the specified folder.
+         */
+        private void deleteFiles(List<AbstractFile> files, PendingFolder folder) {
+            for(AbstractFile file : files) {
+                nextFile(file);
+                if(getState()==INTERRUPTED) {
+                    folder.incomplete = true;
+                    return;
+                }
+
+                try {
+                    file.delete();
+                }
+                catch(IOException e) {
+                    LOGGER.debug("Failed to delete "+file+", will be retried", e);
+                    folder.incomplete = true;
+                }
+            }
+        }
+
+        /**
+         * A folder whose contents are being deleted.
+         */
+        private class PendingFolder {
+
+            /** The folder */
+            private AbstractFile file;
+
+            /** The folder that contains this one, <code>null</code> for the top folder */
+            private PendingFolder parent;
+
+            /** Number of tasks that have yet to complete before this folder can be deleted, including its listing */
+            private AtomicInteger pendingTasks = new AtomicInteger(1);
+
+            /** True if some of the folder's contents could not be deleted */
+            private volatile boolean incomplete;
+
+            private PendingFolder(AbstractFile file, PendingFolder parent) {
+                this.file = file;
+                this.parent = parent;
+            }
+
+            /**
+             * Called when one of this folder's tasks has completed. Once all of them have, the folder is deleted if all
+             * of its contents have been, and its parent folder is notified.
+             */
+            private void taskDone() {
+                if(pendingTasks.decrementAndGet()>0)
+                    return;
+
+                boolean deleted = false;
+                if(!incomplete && getState()!=INTERRUPTED) {
+                    try {
+                        if(parent!=null || !keepTopFolder)
+                            file.delete();
+                        deleted = true;
+                    }
+                    catch(IOException e) {
+                        LOGGER.debug("Failed to delete "+file+", will be retried", e);
+                    }
+                }
+
+                if(parent==null) {
+                    folderDeleted = deleted;
+                    done.countDown();
+                }
+                else {
+                    if(!deleted)
+                        parent.incomplete = true;
+                    parent.taskDone();
+                }
+            }
+        }
+    }
 }
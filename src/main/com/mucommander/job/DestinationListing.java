@@ -0,0 +1,285 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.job;
+
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.runtime.JavaVersions;
+
+/**
+ * Keeps a snapshot of the contents of the destination folders of a transfer, so that the existence of destination
+ * files and the collisions between source and destination files can be checked in memory rather than against the
+ * filesystem, which costs several round-trips per file on remote destinations.
+ * <p>
+ * A destination folder is listed the first time one of its children is checked, and its canonical path is resolved at
+ * the same time: this is the only I/O performed for the folder. A folder that is created by the job starts with an
+ * empty snapshot and costs no I/O at all. The snapshots are kept up to date as the job writes files and creates
+ * folders, by calling {@link #fileWritten(AbstractFile)} and {@link #folderCreated(AbstractFile)}.
+ * </p>
+ * <p>
+ * Only destination files that do not exist are checked in memory. A file that is present in the snapshot (or whose
+ * name differs only by its case or Unicode normalization from one that is) is checked against the filesystem with
+ * {@link FileCollisionChecker}, exactly as if there was no snapshot: the file may be a symlink to the source, and
+ * such a collision is then reported by the user or resolved by the job's default action anyway.
+ * </p>
+ * <p>
+ * This class is not thread-safe: it is meant to be used by the job's thread only.
+ * </p>
+ *
+ * @see AbstractCopyJob#checkForCollision(AbstractFile, AbstractFile, AbstractFile, boolean)
+ */
+class DestinationListing {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DestinationListing.class);
+
+    /** Maximum number of folder snapshots to keep, the least recently used ones are discarded first */
+    private final static int MAX_FOLDERS = 64;
+
+    /** Maximum number of canonical paths to keep, the least recently used ones are discarded first */
+    private final static int MAX_CANONICAL_PATHS = 256;
+
+    /** Marks a folder that couldn't be listed, whose children are checked against the filesystem */
+    private final static FolderSnapshot UNLISTABLE_FOLDER = new FolderSnapshot(null);
+
+    /** Snapshots of destination folders, keyed by absolute path */
+    private Map<String, FolderSnapshot> folders = new LinkedHashMap<String, FolderSnapshot>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FolderSnapshot> eldest) {
+            return size()>MAX_FOLDERS;
+        }
+    };
+
+    /** Canonical paths of source and destination folders (with a trailing separator), keyed by absolute path */
+    private Map<String, String> canonicalPaths = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size()>MAX_CANONICAL_PATHS;
+        }
+    };
+
+
+    /**
+     * Checks for a collision between the given source and destination files, see
+     * {@link FileCollisionChecker#checkForCollision(AbstractFile, AbstractFile)}.
+     *
+     * @param sourceFile source file, can be null in which case the only collision checked against is
+     * {@link FileCollisionChecker#DESTINATION_FILE_ALREADY_EXISTS}.
+     * @param destFile destination file, cannot be null
+     * @return an int describing the collision type, or {@link FileCollisionChecker#NO_COLLOSION} if no collision was
+     * detected
+     */
+    int checkForCollision(AbstractFile sourceFile, AbstractFile destFile) {
+        AbstractFile destFolder = destFile.getParent();
+        FolderSnapshot snapshot = destFolder==null?UNLISTABLE_FOLDER:getSnapshot(destFolder);
+        if(snapshot==UNLISTABLE_FOLDER || snapshot.mayContain(destFile.getName()))
+            return FileCollisionChecker.checkForCollision(sourceFile, destFile);
+
+        // The destination file doesn't exist, it can only collide with the source through its path
+        if(sourceFile!=null) {
+            String destPath = getFolderCanonicalPath(destFolder)+destFile.getName();
+            String sourcePath = getCanonicalPath(sourceFile);
+
+            // Source and destination are equal
+            if(destPath.equals(sourcePath))
+                return FileCollisionChecker.SAME_SOURCE_AND_DESTINATION;
+
+            // Source is a folder and destination is a subfolder of it
+            if(sourceFile.isBrowsable() && (destPath+destFile.getSeparator()).startsWith(sourcePath+sourceFile.getSeparator()))
+                return FileCollisionChecker.SOURCE_PARENT_OF_DESTINATION;
+        }
+
+        return FileCollisionChecker.NO_COLLOSION;
+    }
+
+    /**
+     * Returns <code>true</code> if the given destination file exists and is a directory. This method is equivalent to
+     * <code>destFile.exists() && destFile.isDirectory()</code>.
+     *
+     * @param destFile the destination file to test
+     * @return true if the given destination file exists and is a directory
+     */
+    boolean isExistingFolder(AbstractFile destFile) {
+        AbstractFile destFolder = destFile.getParent();
+        FolderSnapshot snapshot = destFolder==null?UNLISTABLE_FOLDER:getSnapshot(destFolder);
+        String name = destFile.getName();
+        if(snapshot==UNLISTABLE_FOLDER || (snapshot.mayContain(name) && !snapshot.contains(name)))
+            return destFile.exists() && destFile.isDirectory();
+
+        return Boolean.TRUE.equals(snapshot.isDirectory(name));
+    }
+
+    /**
+     * Records that the given regular file has been (or is about to be) written by the job.
+     *
+     * @param destFile the destination file that has been written
+     */
+    void fileWritten(AbstractFile destFile) {
+        AbstractFile destFolder = destFile.getParent();
+        if(destFolder==null)
+            return;
+
+        FolderSnapshot snapshot = folders.get(destFolder.getAbsolutePath(false));
+        if(snapshot!=null && snapshot!=UNLISTABLE_FOLDER)
+            snapshot.put(destFile.getName(), false);
+    }
+
+    /**
+     * Records that the given folder has been created by the job, along with any of its parent folders that didn't
+     * exist. The folder is known to be empty, so that its children can be checked without listing it.
+     *
+     * @param folder the destination folder that has been created
+     */
+    void folderCreated(AbstractFile folder) {
+        // Register the folder in its parent's snapshot, and do the same for each parent as mkdirs() may have created
+        // some of them
+        AbstractFile file = folder;
+        AbstractFile parent;
+        while((parent=file.getParent())!=null) {
+            FolderSnapshot snapshot = folders.get(parent.getAbsolutePath(false));
+            if(snapshot!=null && snapshot!=UNLISTABLE_FOLDER)
+                snapshot.put(file.getName(), true);
+
+            file = parent;
+        }
+
+        folders.put(folder.getAbsolutePath(false), new FolderSnapshot(new HashMap<String, Boolean>()));
+    }
+
+    /**
+     * Returns the snapshot of the given folder, listing it if it hasn't been yet. {@link #UNLISTABLE_FOLDER} is
+     * returned if the folder exists but couldn't be listed.
+     */
+    private FolderSnapshot getSnapshot(AbstractFile folder) {
+        String path = folder.getAbsolutePath(false);
+        FolderSnapshot snapshot = folders.get(path);
+        if(snapshot!=null)
+            return snapshot;
+
+        try {
+            AbstractFile children[] = folder.ls();
+            Map<String, Boolean> entries = new HashMap<String, Boolean>(Math.max(16, children.length*4/3+1));
+            for(AbstractFile child : children)
+                entries.put(child.getName(), child.isDirectory());
+
+            snapshot = new FolderSnapshot(entries);
+        }
+        catch(IOException e) {
+            // A folder that doesn't exist has no children, any other error is left to the filesystem
+            if(folder.exists()) {
+                LOGGER.debug("Could not list "+folder+", its children will be checked individually", e);
+                snapshot = UNLISTABLE_FOLDER;
+            }
+            else {
+                snapshot = new FolderSnapshot(new HashMap<String, Boolean>());
+            }
+        }
+
+        folders.put(path, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Returns the canonical path of the given file, without a trailing separator. The canonical path of a file that is
+     * not a symlink is derived from the one of its parent, which is resolved only once per folder.
+     */
+    private String getCanonicalPath(AbstractFile file) {
+        AbstractFile parent = file.getParent();
+        if(parent==null || file.isSymlink())
+            return file.getCanonicalPath(false);
+
+        return getFolderCanonicalPath(parent)+file.getName();
+    }
+
+    /**
+     * Returns the canonical path of the given folder, with a trailing separator.
+     */
+    private String getFolderCanonicalPath(AbstractFile folder) {
+        String path = folder.getAbsolutePath(false);
+        String canonicalPath = canonicalPaths.get(path);
+        if(canonicalPath==null) {
+            canonicalPath = folder.getCanonicalPath(true);
+            canonicalPaths.put(path, canonicalPath);
+        }
+
+        return canonicalPath;
+    }
+
+
+    /**
+     * The names of the children of a folder, and whether they are directories.
+     */
+    private static class FolderSnapshot {
+        /** Whether each child is a directory, keyed by name */
+        private Map<String, Boolean> entries;
+
+        /** Names of the children in lower case and Unicode normalization form C, to detect the names which a case
+         * or normalization insensitive filesystem considers equal */
+        private Set<String> looseNames;
+
+        private FolderSnapshot(Map<String, Boolean> entries) {
+            this.entries = entries;
+
+            if(entries!=null) {
+                looseNames = new HashSet<String>(Math.max(16, entries.size()*4/3+1));
+                for(String name : entries.keySet())
+                    looseNames.add(getLooseName(name));
+            }
+        }
+
+        private static String getLooseName(String name) {
+            // Normalizer is only available in Java 1.6 and up, names that differ only by normalization are not
+            // considered as possibly equal with earlier versions
+            if(JavaVersions.JAVA_1_6.isCurrentOrHigher())
+                name = Normalizer.normalize(name, Normalizer.Form.NFC);
+
+            return name.toLowerCase();
+        }
+
+        private boolean contains(String name) {
+            return entries.containsKey(name);
+        }
+
+        /**
+         * Returns <code>true</code> if a child with the given name may exist, i.e. if a child has that name or a
+         * name that differs only by case or normalization.
+         */
+        private boolean mayContain(String name) {
+            return entries.containsKey(name) || looseNames.contains(getLooseName(name));
+        }
+
+        private Boolean isDirectory(String name) {
+            return entries.get(name);
+        }
+
+        private void put(String name, boolean isDirectory) {
+            entries.put(name, isDirectory);
+            looseNames.add(getLooseName(name));
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.impl.CachedFile;
 import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.core.RemoteListingCache;
 import com.mucommander.job.progress.JobProgress;
 import com.mucommander.job.ui.DialogResult;
 import com.mucommander.job.ui.UserInputHelper;
@@ -47,17 +48,20 @@ import com.mucommander.ui.notifier.NotificationType;
  * will be used to display visual indications of the job's progress.
  * <p>
  * The actual processing is performed in a separate thread. A FileJob needs to be started explicitely using
- * {@link #start()}. The lifecycle of a FileJob is as follows:<br>
+ * {@link #start()}, which hands it to the {@link JobScheduler}: the job remains queued until the scheduler lets it
+ * run. The lifecycle of a FileJob is as follows:<br>
  * <br>
  * <pre>
- * {@link #NOT_STARTED} -> {@link #RUNNING} -> {@link #FINISHED}
- *                         ^                |
- *                         |                -> {@link #INTERRUPTED}
- *                         |                |                      
- *                         |                -> {@link #PAUSED} -|
- *                         |                                    |
- *                         -------------------------------------|
+ * {@link #NOT_STARTED} -> {@link #QUEUED} -> {@link #RUNNING} -> {@link #FINISHED}
+ *                                            ^                |
+ *                                            |                -> {@link #INTERRUPTED}
+ *                                            |                |                      
+ *                                            |                -> {@link #PAUSED} -|
+ *                                            |                                    |
+ *                                            -------------------------------------|
  * </pre>
+ * A queued job can also be paused, in which case the scheduler will not start it until it is resumed, and
+ * interrupted, in which case it is never started.
  * </p>
  *
  * @author Maxence Bernard
@@ -114,6 +118,9 @@ public abstract class FileJob implements Runnable {
     /** File to be selected after job has finished (can be null if not set) */
     private AbstractFile fileToSelect;
 
+    /** Priority of this job in the {@link JobScheduler}'s queue */
+    private int priority = JobScheduler.NORMAL_PRIORITY;
+
     
     /** Indicates that this job has not started yet, this is a temporary state */
     public final static int NOT_STARTED = 0;
@@ -130,6 +137,9 @@ public abstract class FileJob implements Runnable {
     /** Indicates that this job has naturally finished (i.e. without being interrupted), this is a permanent state */
     public final static int FINISHED = 4;
 
+    /** Indicates that this job has been started but is waiting for the {@link JobScheduler} to run it, this is a temporary state */
+    public final static int QUEUED = 5;
+
 
     /** Current state of this job */
     private int jobState = NOT_STARTED;
@@ -237,31 +247,95 @@ public abstract class FileJob implements Runnable {
 	
 	
     /**
-     * Starts file job in a separate thread.
+     * Returns the priority of this job in the {@link JobScheduler}'s queue, see the scheduler's constant fields for
+     * possible return values.
+     *
+     * @return the priority of this job
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the priority of this job in the {@link JobScheduler}'s queue. Jobs with a higher priority are started
+     * first when several queued jobs are allowed to run. Changing the priority of a queued job may cause it to be
+     * started right away.
+     *
+     * @param priority the new priority, see the scheduler's constant fields for allowed values
+     */
+    public void setPriority(int priority) {
+        this.priority = priority;
+
+        if(getState()==QUEUED)
+            JobScheduler.getInstance().dispatch();
+    }
+
+    /**
+     * Returns the folders this job reads from or writes to. The {@link JobScheduler} uses them to limit the number of
+     * jobs that access the same volume, or the same host, concurrently. This implementation returns the base source
+     * folder, jobs that write to another folder should override it. Jobs that return an empty array are never
+     * delayed by those limits.
+     *
+     * @return the folders this job reads from or writes to
+     */
+    protected AbstractFile[] getAccessedFolders() {
+        return new AbstractFile[]{getBaseSourceFolder()};
+    }
+
+    /**
+     * Starts file job: the job is queued and is run in a separate thread as soon as the {@link JobScheduler} allows.
      */
     public void start() {
         // Return if job has already been started
         if(getState()!=NOT_STARTED)
             return;
 
-        // Pause auto-refresh during file job as it potentially modifies the current folders contents
-        // and would potentially cause folder panel to auto-refresh
-        getMainFrame().getLeftPanel().getFolderChangeMonitor().setPaused(true);
-        getMainFrame().getRightPanel().getFolderChangeMonitor().setPaused(true);
+        setState(QUEUED);
+        JobScheduler.getInstance().schedule(this);
+    }
+
+    /**
+     * Performs this job in the current thread. This method is called by the {@link JobScheduler} once this job is
+     * allowed to run; it does nothing if this job is no longer queued, i.e. if it was interrupted or paused meanwhile.
+     *
+     * @return <code>true</code> if this job has been performed
+     */
+    boolean execute() {
+        synchronized(pauseLock) {
+            if(getState()!=QUEUED)
+                return false;
+
+            // Pause auto-refresh during file job as it potentially modifies the current folders contents
+            // and would potentially cause folder panel to auto-refresh
+            getMainFrame().getLeftPanel().getFolderChangeMonitor().setPaused(true);
+            getMainFrame().getRightPanel().getFolderChangeMonitor().setPaused(true);
+
+            jobThread = Thread.currentThread();
+            startDate = System.currentTimeMillis();
+            setState(RUNNING);
+        }
 
-        setState(RUNNING);
-        startDate = System.currentTimeMillis();
+        run();
+        return true;
+    }
 
-        jobThread = new Thread(this, getClass().getName());
-        jobThread.start();
+    /**
+     * Returns <code>true</code> if this job is waiting for the {@link JobScheduler} to run it, whether it is paused
+     * or not.
+     *
+     * @return true if this job is queued
+     */
+    public boolean isQueued() {
+        int state = getState();
+        return state==QUEUED || (state==PAUSED && startDate==0);
     }
 
 
 	/**
 	 * Returns the dialog showing progress of this job.
-	 * @return the progressDialog
+	 * @return the progressDialog, <code>null</code> if this job has no progress dialog
 	 */
-	protected ProgressDialog getProgressDialog() {
+	public ProgressDialog getProgressDialog() {
 		return progressDialog;
 	}
 
@@ -394,6 +468,16 @@ public abstract class FileJob implements Runnable {
      * Interrupts this job, changes the job state to {@link #INTERRUPTED} and notifies listeners.
      */	
     public void interrupt() {
+        // A job that hasn't been run yet is simply removed from the queue
+        synchronized(pauseLock) {
+            if(isQueued()) {
+                JobScheduler.getInstance().unschedule(this);
+                endDate = System.currentTimeMillis();
+                setState(INTERRUPTED);
+                return;
+            }
+        }
+
         int state = getState();
         if(state==INTERRUPTED || state==FINISHED)
             return;
@@ -435,15 +519,23 @@ public abstract class FileJob implements Runnable {
     public void setPaused(boolean paused) {
         // Lock the pause lock while updating paused status
         synchronized(pauseLock) {
+            // A queued job is merely held in the queue: it doesn't count as paused time
+            if(isQueued()) {
+                if(paused!=(getState()==PAUSED)) {
+                    setState(paused?PAUSED:QUEUED);
+                    if(!paused)
+                        JobScheduler.getInstance().dispatch();
+                }
+            }
             // Resume job if it was paused
-            if(!paused && getState()==PAUSED) {
+            else if(!paused && getState()==PAUSED) {
                 // Calculate pause time
                 calcPausedTime();                
                 // Call the jobResumed method to notify of the new job's state
                 jobResumed();
 
-                // Wake up the job's thread that is potentially waiting for pause to be over 
-                pauseLock.notify();
+                // Wake up the threads that are potentially waiting for pause to be over
+                pauseLock.notifyAll();
 
                 // Switch to RUNNING state and notify listeners
                 setState(RUNNING);
@@ -475,6 +567,17 @@ public abstract class FileJob implements Runnable {
 //        if(progressDialog!=null)
 //            progressDialog.notifyCurrentFileChanged();
         
+        waitWhilePaused();
+//        if(this.currentFile!=null)
+//            this.nbFilesProcessed++;
+    }
+
+    /**
+     * Blocks the calling thread for as long as this job is paused. This method is called by
+     * {@link #nextFile(AbstractFile)} but can also be used by threads other than the job's own thread that process
+     * files on behalf of this job.
+     */
+    protected void waitWhilePaused() {
         // Lock the pause lock
         synchronized(pauseLock) {
             // Loop while job is paused, there shouldn't normally be more than one loop
@@ -487,8 +590,6 @@ public abstract class FileJob implements Runnable {
                 }
             }
         }
-//        if(this.currentFile!=null)
-//            this.nbFilesProcessed++;
     }
 
 
@@ -675,6 +776,13 @@ public abstract class FileJob implements Runnable {
      * Check and if needed, refreshes both file tables's current folders, based on the job's refresh policy.
      */
     protected void refreshTables() {
+        // Discard the cached listings of the folders this job has modified
+        RemoteListingCache listingCache = RemoteListingCache.getInstance();
+        for(AbstractFile folder : listingCache.getFolders()) {
+            if(hasFolderChanged(folder))
+                listingCache.remove(folder.getURL());
+        }
+
     	FolderPanel activePanel = getMainFrame().getActivePanel();
     	FolderPanel inactivePanel = getMainFrame().getInactivePanel();
 
@@ -0,0 +1,304 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.job;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.impl.local.LocalFile;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+import com.mucommander.core.ConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JobScheduler decides when {@link FileJob file jobs} are run. Started jobs are queued, and are run as soon as the
+ * following limits allow it:
+ * <ul>
+ *  <li>the total number of running jobs, controlled by the {@link MuPreference#MAX_RUNNING_JOBS} preference</li>
+ *  <li>the number of running jobs that access the same local volume, controlled by the
+ * {@link MuPreference#MAX_JOBS_PER_VOLUME} preference</li>
+ *  <li>the number of running jobs that access the same remote server, i.e. the same host with the same login,
+ * controlled by the {@link MuPreference#MAX_JOBS_PER_HOST} preference. Jobs that access a server share the connections
+ * that are pooled for it, see {@link ConnectionManager}.</li>
+ * </ul>
+ * The volumes and hosts a job accesses are determined by the folders returned by {@link FileJob#getAccessedFolders()}.
+ * A job that accesses several of them (e.g. copies files from a volume to another) runs only when it is allowed to
+ * run on all of them.
+ * <p>
+ * Among the jobs that are allowed to run, those with the highest {@link FileJob#getPriority() priority} are started
+ * first, and jobs with the same priority are started in the order in which they were queued. Queued jobs that are
+ * paused are not started until they are resumed.
+ * </p>
+ *
+ * @see FileJob#start()
+ */
+public class JobScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobScheduler.class);
+
+    /** Priority of jobs that should run only once other jobs have started */
+    public final static int LOW_PRIORITY = 0;
+
+    /** Default priority of jobs */
+    public final static int NORMAL_PRIORITY = 1;
+
+    /** Priority of jobs the user is waiting for */
+    public final static int HIGH_PRIORITY = 2;
+
+    /** Prefix of the resources that designate a local volume */
+    final static String VOLUME_PREFIX = "volume:";
+
+    /** Prefix of the resources that designate a remote host */
+    final static String HOST_PREFIX = "host:";
+
+    /** The single instance of this class */
+    private final static JobScheduler instance = new JobScheduler();
+
+    /** Jobs waiting to be run, in the order in which they were queued */
+    private final List<FileJob> queuedJobs = new ArrayList<FileJob>();
+
+    /** Jobs currently running */
+    private final List<FileJob> runningJobs = new ArrayList<FileJob>();
+
+    /** Volumes and hosts accessed by queued and running jobs */
+    private final Map<FileJob, Set<String>> jobResources = new HashMap<FileJob, Set<String>>();
+
+    /** Number of running jobs per volume or host */
+    private final Map<String, Integer> resourceUsage = new HashMap<String, Integer>();
+
+    /** Threads that perform the jobs, created as needed */
+    private final ThreadPoolExecutor executor;
+
+
+    private JobScheduler() {
+        executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, FileJob.class.getName());
+                    }
+                });
+    }
+
+    /**
+     * Returns the single instance of <code>JobScheduler</code>.
+     *
+     * @return the single instance of JobScheduler
+     */
+    public static JobScheduler getInstance() {
+        return instance;
+    }
+
+    /**
+     * Queues the given job, and starts it right away if the limits allow it. This method is called by
+     * {@link FileJob#start()}.
+     *
+     * @param job the job to run
+     */
+    void schedule(FileJob job) {
+        // Resolve the resources outside the lock, this may involve some I/O
+        Set<String> resources = getResources(job);
+
+        synchronized(this) {
+            queuedJobs.add(job);
+            jobResources.put(job, resources);
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Removes the given job from the queue, if it is still there. This method is called when a queued job is
+     * interrupted.
+     *
+     * @param job the job to remove from the queue
+     */
+    synchronized void unschedule(FileJob job) {
+        if(queuedJobs.remove(job))
+            jobResources.remove(job);
+    }
+
+    /**
+     * Starts all the queued jobs that are allowed to run, highest priority first.
+     */
+    synchronized void dispatch() {
+        int maxRunningJobs = MuConfigurations.getPreferences().getVariable(MuPreference.MAX_RUNNING_JOBS, MuPreferences.DEFAULT_MAX_RUNNING_JOBS);
+        int maxJobsPerVolume = MuConfigurations.getPreferences().getVariable(MuPreference.MAX_JOBS_PER_VOLUME, MuPreferences.DEFAULT_MAX_JOBS_PER_VOLUME);
+        int maxJobsPerHost = MuConfigurations.getPreferences().getVariable(MuPreference.MAX_JOBS_PER_HOST, MuPreferences.DEFAULT_MAX_JOBS_PER_HOST);
+
+        for(int priority=HIGH_PRIORITY; priority>=LOW_PRIORITY; priority--) {
+            Iterator<FileJob> iterator = queuedJobs.iterator();
+            while(iterator.hasNext()) {
+                if(maxRunningJobs>0 && runningJobs.size()>=maxRunningJobs)
+                    return;
+
+                FileJob job = iterator.next();
+                // Jobs with an out-of-range priority are considered as having the closest valid priority
+                int jobPriority = Math.max(LOW_PRIORITY, Math.min(HIGH_PRIORITY, job.getPriority()));
+                if(jobPriority!=priority || job.getState()!=FileJob.QUEUED)
+                    continue;
+
+                Set<String> resources = jobResources.get(job);
+                if(!isAvailable(resources, resourceUsage, maxJobsPerVolume, maxJobsPerHost))
+                    continue;
+
+                iterator.remove();
+                acquire(resources, resourceUsage);
+                runningJobs.add(job);
+
+                run(job);
+            }
+        }
+    }
+
+    /**
+     * Runs the given job in a separate thread and releases its resources once it has been performed.
+     */
+    private void run(final FileJob job) {
+        executor.execute(new Runnable() {
+            public void run() {
+                Thread.currentThread().setName(job.getClass().getName());
+                try {
+                    job.execute();
+                }
+                catch(RuntimeException e) {
+                    LOGGER.warn("Caught exception running "+job, e);
+                }
+                finally {
+                    jobDone(job);
+                    Thread.currentThread().setName(FileJob.class.getName());
+                }
+            }
+        });
+    }
+
+    /**
+     * Releases the resources of a job that has been run, and starts the queued jobs that were waiting for them.
+     */
+    private void jobDone(FileJob job) {
+        boolean remote = false;
+        synchronized(this) {
+            runningJobs.remove(job);
+
+            Set<String> resources = jobResources.remove(job);
+            if(resources!=null) {
+                release(resources, resourceUsage);
+                for(String resource : resources)
+                    remote |= resource.startsWith(HOST_PREFIX);
+            }
+        }
+
+        // Take notice of the connections the job has opened to remote servers
+        if(remote)
+            ConnectionManager.getInstance().updateConnections();
+
+        dispatch();
+    }
+
+    /**
+     * Returns <code>true</code> if a job that accesses the given resources may run without exceeding the limits,
+     * <code>0</code> meaning no limit.
+     *
+     * @param resources the volumes and hosts accessed by the job
+     * @param resourceUsage number of running jobs per volume or host
+     * @param maxJobsPerVolume maximum number of running jobs per volume
+     * @param maxJobsPerHost maximum number of running jobs per host
+     * @return true if the job may run
+     */
+    static boolean isAvailable(Set<String> resources, Map<String, Integer> resourceUsage, int maxJobsPerVolume, int maxJobsPerHost) {
+        for(String resource : resources) {
+            int max = resource.startsWith(VOLUME_PREFIX)?maxJobsPerVolume:maxJobsPerHost;
+            Integer usage = resourceUsage.get(resource);
+            if(max>0 && usage!=null && usage>=max)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Records that a job that accesses the given resources has started.
+     *
+     * @param resources the volumes and hosts accessed by the job
+     * @param resourceUsage number of running jobs per volume or host
+     */
+    static void acquire(Set<String> resources, Map<String, Integer> resourceUsage) {
+        for(String resource : resources) {
+            Integer usage = resourceUsage.get(resource);
+            resourceUsage.put(resource, usage==null?1:usage+1);
+        }
+    }
+
+    /**
+     * Records that a job that accesses the given resources has finished. Resources that are no longer used are
+     * removed from the map.
+     *
+     * @param resources the volumes and hosts accessed by the job
+     * @param resourceUsage number of running jobs per volume or host
+     */
+    static void release(Set<String> resources, Map<String, Integer> resourceUsage) {
+        for(String resource : resources) {
+            Integer usage = resourceUsage.get(resource);
+            if(usage==null || usage<=1)
+                resourceUsage.remove(resource);
+            else
+                resourceUsage.put(resource, usage-1);
+        }
+    }
+
+    /**
+     * Returns the volumes and hosts accessed by the given job.
+     */
+    private static Set<String> getResources(FileJob job) {
+        Set<String> resources = new HashSet<String>();
+        for(AbstractFile folder : job.getAccessedFolders()) {
+            if(folder==null)
+                continue;
+
+            try {
+                AbstractFile topAncestor = folder.getTopAncestor();
+                if(topAncestor instanceof LocalFile) {
+                    AbstractFile volume = topAncestor.getVolume();
+                    resources.add(VOLUME_PREFIX+(volume==null?"":volume.getAbsolutePath(false)));
+                }
+                else {
+                    resources.add(HOST_PREFIX+ConnectionManager.getServerKey(topAncestor.getURL()));
+                }
+            }
+            catch(RuntimeException e) {
+                // The folder's volume could not be resolved, the job won't be limited by it
+                LOGGER.debug("Failed to resolve the volume of "+folder, e);
+            }
+        }
+
+        return resources;
+    }
+}
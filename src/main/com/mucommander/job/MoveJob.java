@@ -152,10 +152,11 @@ public class MoveJob extends AbstractCopyJob {
         // Move the directory and all its children recursively, by copying files to the destination and then deleting them.
         if(file.isDirectory()) {
             // create the destination folder if it doesn't exist
-            if(!(destFile.exists() && destFile.isDirectory())) {
+            if(!isExistingFolder(destFile)) {
                 do {		// Loop for retry
                     try {
                         destFile.mkdir();
+                        folderCreated(destFile);
                     }
                     catch(IOException e) {
                         int ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_create_folder", destFile.getAbsolutePath()));
@@ -117,4 +117,10 @@ public class PropertiesJob extends FileJob {
     protected boolean hasFolderChanged(AbstractFile folder) {
         return false;
     }
+
+    // This job only reads file attributes, it must not wait for other jobs
+    @Override
+    protected AbstractFile[] getAccessedFolders() {
+        return new AbstractFile[0];
+    }
 }
@@ -23,6 +23,7 @@ import java.io.IOException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.mucommander.cache.RemoteFileCache;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileFactory;
 import com.mucommander.commons.file.util.FileSet;
@@ -34,6 +35,9 @@ import com.mucommander.ui.main.MainFrame;
  * This job copies a file or a set of files to a temporary folder and makes the temporary file(s) read-only.
  * The temporary files are deleted when the JVM terminates.
  *
+ * <p>Top-level regular files that can be cached are not copied to the temporary folder but to the
+ * {@link RemoteFileCache}, and are not copied at all if the cache already holds an up-to-date copy of them.</p>
+ *
  * @author Maxence Bernard
  */
 public class TempCopyJob extends CopyJob {
@@ -48,6 +52,9 @@ public class TempCopyJob extends CopyJob {
      */
     public TempCopyJob(ProgressDialog progressDialog, MainFrame mainFrame, AbstractFile fileToCopy) {
         super(progressDialog, mainFrame, new FileSet(fileToCopy.getParent(), fileToCopy), FileFactory.getTemporaryFolder(), getTemporaryFileName(fileToCopy), COPY_MODE, FileCollisionDialog.OVERWRITE_ACTION);
+
+        // The user is waiting for the file to be opened
+        setPriority(JobScheduler.HIGH_PRIORITY);
     }
 
     /**
@@ -59,6 +66,57 @@ public class TempCopyJob extends CopyJob {
      */
     public TempCopyJob(ProgressDialog progressDialog, MainFrame mainFrame, FileSet filesToCopy) {
         super(progressDialog, mainFrame, filesToCopy, getTemporaryFolder(filesToCopy), null, COPY_MODE, FileCollisionDialog.OVERWRITE_ACTION);
+
+        // The user is waiting for the files to be opened
+        setPriority(JobScheduler.HIGH_PRIORITY);
+    }
+
+
+    ////////////////////////
+    // Overridden methods //
+    ////////////////////////
+
+    @Override
+    protected boolean processFile(AbstractFile file, Object recurseParams) {
+        RemoteFileCache cache = RemoteFileCache.getInstance();
+        if(recurseParams!=null || !cache.isCacheable(file))
+            return super.processFile(file, recurseParams);
+
+        // Stop if interrupted
+        if(getState()==INTERRUPTED)
+            return false;
+
+        AbstractFile cachedFile = cache.getCachedFile(file);
+        if(cachedFile==null) {
+            AbstractFile partFile;
+            try {
+                partFile = cache.createPartFile(file);
+            }
+            catch(IOException e) {
+                // The file can still be copied to the temporary folder
+                LOGGER.debug("Could not create cache file for "+file, e);
+                return super.processFile(file, recurseParams);
+            }
+
+            if(!tryCopyFile(file, partFile, false, errorDialogTitle)) {
+                try { partFile.delete(); }
+                catch(IOException e) {
+                    // Will be deleted the next time the cache is loaded
+                }
+                return false;
+            }
+
+            try {
+                cachedFile = cache.commit(file, partFile);
+            }
+            catch(IOException e) {
+                LOGGER.debug("Could not cache "+file, e);
+                return super.processFile(file, recurseParams);
+            }
+        }
+
+        currentDestFile = cachedFile;
+        return true;
     }
 
 
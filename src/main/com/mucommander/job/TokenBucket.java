@@ -0,0 +1,122 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.job;
+
+/**
+ * A token bucket that limits a throughput to a number of bytes per second. Tokens are added to the bucket continuously
+ * at the bucket's rate, up to a small capacity that bounds bursts after an idle period. Consuming more tokens than
+ * the bucket holds puts it into debt, which readers repay by waiting: this allows a read of any size to be accounted
+ * for once it has been performed, without having to split it up.
+ * <p>
+ * A bucket may be shared by several readers, which then share its throughput: the part of it that a reader doesn't
+ * use is naturally available to the others. This class is thread-safe.
+ * </p>
+ *
+ * @see BandwidthLimitInputStream
+ */
+class TokenBucket {
+
+    /** Number of nanoseconds in a second */
+    private final static double NANOS_PER_SECOND = 1000000000d;
+
+    /** Number of nanoseconds of throughput the bucket can hold, which bounds bursts */
+    private final static long CAPACITY_NANOS = 50000000;
+
+    /** Throughput limit in bytes per second, 0 or less for no limit */
+    private long rate;
+
+    /** Number of tokens (bytes) in the bucket, negative when the bucket is in debt */
+    private double tokens;
+
+    /** Time at which tokens were last added to the bucket, in nanoseconds */
+    private long lastRefillTime = System.nanoTime();
+
+
+    /**
+     * Creates a new bucket with the given rate.
+     *
+     * @param rate throughput limit in bytes per second, 0 or less for no limit
+     */
+    TokenBucket(long rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * Changes the rate of this bucket. The new rate applies immediately, including to the readers that are waiting
+     * for the bucket's debt to be repaid.
+     *
+     * @param rate throughput limit in bytes per second, 0 or less for no limit
+     */
+    synchronized void setRate(long rate) {
+        refill();
+        this.rate = rate;
+        if(rate<=0)
+            tokens = 0;
+    }
+
+    /**
+     * Returns the number of bytes that may be read at once without making other readers of the bucket wait for much
+     * longer than the capacity of the bucket, {@link Integer#MAX_VALUE} if there is no limit.
+     *
+     * @return the maximum number of bytes to read at once
+     */
+    synchronized int getChunkSize() {
+        if(rate<=0)
+            return Integer.MAX_VALUE;
+
+        return (int)Math.max(1, Math.min(Integer.MAX_VALUE, (long)(rate*(CAPACITY_NANOS/NANOS_PER_SECOND))));
+    }
+
+    /**
+     * Takes the given number of tokens from the bucket, putting it into debt if it doesn't hold enough tokens.
+     *
+     * @param nbBytes the number of bytes that have been read
+     */
+    synchronized void consume(long nbBytes) {
+        if(rate<=0)
+            return;
+
+        refill();
+        tokens -= nbBytes;
+    }
+
+    /**
+     * Returns the number of nanoseconds to wait for the debt of the bucket to be repaid, 0 if the bucket is not in debt.
+     *
+     * @return the number of nanoseconds to wait before reading further
+     */
+    synchronized long getWaitTime() {
+        if(rate<=0)
+            return 0;
+
+        refill();
+        return tokens>=0?0:(long)Math.ceil(-tokens*NANOS_PER_SECOND/rate);
+    }
+
+    /**
+     * Adds the tokens accumulated since the last refill to the bucket, up to its capacity.
+     */
+    private void refill() {
+        long now = System.nanoTime();
+        if(rate>0)
+            tokens = Math.min(tokens+(now-lastRefillTime)*(rate/NANOS_PER_SECOND), rate*(CAPACITY_NANOS/NANOS_PER_SECOND));
+        lastRefillTime = now;
+    }
+}
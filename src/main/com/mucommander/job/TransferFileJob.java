@@ -19,10 +19,13 @@
 
 package com.mucommander.job;
 
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,9 +40,11 @@ import com.mucommander.commons.io.ByteCounter;
 import com.mucommander.commons.io.ChecksumInputStream;
 import com.mucommander.commons.io.CounterInputStream;
 import com.mucommander.commons.io.FileTransferException;
-import com.mucommander.commons.io.ThroughputLimitInputStream;
 import com.mucommander.commons.io.security.MuProvider;
 import com.mucommander.commons.runtime.OsFamilies;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.dialog.file.ProgressDialog;
 import com.mucommander.ui.main.MainFrame;
@@ -69,11 +74,14 @@ public abstract class TransferFileJob extends FileJob {
     private ByteCounter totalSkippedByteCounter;
 
     /** InputStream currently being processed, may be null */
-    private ThroughputLimitInputStream tlin;
+    private BandwidthLimitInputStream tlin;
 
     /** ThroughputLimit in bytes per second, -1 initially (no limit) */
     private long throughputLimit = -1;
 
+    /** Limits the throughput of this job to {@link #throughputLimit} */
+    private TokenBucket throughputLimitBucket = new TokenBucket(-1);
+
     /** Has the file currently being processed been skipped ? */
     private boolean currentFileSkipped;
 
@@ -84,10 +92,20 @@ public abstract class TransferFileJob extends FileJob {
     /** True when the checksum of the source or destination file is being calculated. */
     private boolean isCheckingIntegrity;
 
+    /** True if the last call to {@link #tryCopyFile(AbstractFile, AbstractFile, boolean, String)} failed with a
+     * transfer error that was reported to the user. */
+    private boolean transferFailed;
+
     /** The checksum algorithm used for checking the integrity of transferred files. The algorithm has to be the fastest
      * possible (to have the minimum impact on transfer speed) and does not need to have a good resitance to collision. */
     private final static String CHECKSUM_VERIFICATION_ALGORITHM = "Adler32";
 
+    /** Delay before the first automatic retry of a failed transfer, doubled for each subsequent retry */
+    private final static long RETRY_INITIAL_DELAY = 1000;
+
+    /** Maximum delay between two automatic retries of a failed transfer */
+    private final static long RETRY_MAX_DELAY = 30000;
+
 
     static {
         // Register additional MessageDigest implementations provided by the muCommander API
@@ -143,9 +161,10 @@ public abstract class TransferFileJob extends FileJob {
             try {
                 long inLength = sourceFile.getSize();
 
+                long destFileSize = destFile.getSize();
+
                 // Try to open InputStream
                 try  {
-                    long destFileSize = destFile.getSize();
                     if(append && destFileSize!=-1) {
                         in = sourceFile.getInputStream(destFileSize);
                         // Do not calculate checksum, as it needs to be calculated on the whole file
@@ -262,6 +281,56 @@ public abstract class TransferFileJob extends FileJob {
         }
     }
 
+    /**
+     * Returns <code>true</code> if the bytes that precede the given offset are identical in the source and destination
+     * files. The number of bytes that are compared is controlled by the {@link MuPreferences#RESUME_TAIL_CHECK}
+     * preference, this method always returns <code>true</code> if the check is disabled.
+     *
+     * @param sourceFile the file being transferred
+     * @param destFile the partially transferred file
+     * @param offset the offset at which the transfer is to be resumed
+     * @return true if the transfer can be resumed at the given offset
+     * @throws FileTransferException if either file could not be read
+     */
+    private boolean isTailIdentical(AbstractFile sourceFile, AbstractFile destFile, long offset) throws FileTransferException {
+        int tailSize = (int)Math.min(offset, MuConfigurations.getPreferences().getVariable(MuPreference.RESUME_TAIL_CHECK, MuPreferences.DEFAULT_RESUME_TAIL_CHECK)*1024L);
+        if(tailSize<=0)
+            return true;
+
+        byte sourceTail[];
+        try {
+            sourceTail = readFully(sourceFile, offset-tailSize, tailSize);
+        }
+        catch(IOException e) {
+            LOGGER.debug("Could not read the end of "+sourceFile, e);
+            throw new FileTransferException(FileTransferException.OPENING_SOURCE);
+        }
+
+        byte destTail[];
+        try {
+            destTail = readFully(destFile, offset-tailSize, tailSize);
+        }
+        catch(IOException e) {
+            LOGGER.debug("Could not read the end of "+destFile, e);
+            throw new FileTransferException(FileTransferException.READING_DESTINATION);
+        }
+
+        return Arrays.equals(sourceTail, destTail);
+    }
+
+    private static byte[] readFully(AbstractFile file, long offset, int length) throws IOException {
+        byte bytes[] = new byte[length];
+        DataInputStream in = new DataInputStream(file.getInputStream(offset));
+        try {
+            in.readFully(bytes);
+        }
+        finally {
+            in.close();
+        }
+
+        return bytes;
+    }
+
     private String calculateChecksum(AbstractFile file) throws IOException, NoSuchAlgorithmException {
         currentFileByteCounter.reset();
         InputStream in = setCurrentInputStream(file.getInputStream());
@@ -278,13 +347,45 @@ public abstract class TransferFileJob extends FileJob {
      * displaying a generic error dialog {@link #showErrorDialog(String, String) #showErrorDialog()} if something went wrong, 
      * and giving the user the choice to skip the file, retry or cancel.
      *
+     * <p>Transfers that fail because of an error that is likely to be transient (e.g. a dropped connection) are first
+     * retried automatically, up to the number of times specified by the {@link MuPreferences#TRANSFER_RETRIES}
+     * preference and waiting a little longer before each retry. Retried transfers are resumed where they left off
+     * whenever possible, i.e. if the destination file was written by a previous attempt.</p>
+     *
      * @return true if the file was properly copied, false if the transfer was interrupted / aborted by the user
      *
      */
     protected boolean tryCopyFile(AbstractFile sourceFile, AbstractFile destFile, boolean append, String errorDialogTitle) {
+        transferFailed = false;
+        int maxRetries = MuConfigurations.getPreferences().getVariable(MuPreference.TRANSFER_RETRIES, MuPreferences.DEFAULT_TRANSFER_RETRIES);
+        int nbRetries = 0;
+        // True if the destination file contains data written by this job, which a retry can resume from, rather than
+        // a file that was there before
+        boolean destinationWritten = append;
+
         // Copy file to destination
         do {				// Loop for retry
             try {
+                // Make sure the data that was already transferred matches the source before resuming, and let the
+                // user decide whether to start over if it doesn't rather than overwriting the file
+                long destFileSize;
+                if(append && (destFileSize=destFile.getSize())>0 && !isTailIdentical(sourceFile, destFile, destFileSize)) {
+                    LOGGER.info("Destination file "+destFile+" differs from "+sourceFile+", transfer cannot be resumed");
+                    transferFailed = true;
+                    int choice = showErrorDialog(errorDialogTitle,
+                                                 Translator.get("cannot_resume_file", destFile.getName()),
+                                                 new String[]{SKIP_TEXT, SKIP_ALL_TEXT, RETRY_TEXT, CANCEL_TEXT},
+                                                 new int[]{SKIP_ACTION, SKIP_ALL_ACTION, RETRY_ACTION, CANCEL_ACTION}
+                                                 );
+                    // Skip or Cancel action (stop() is already called by showErrorDialog)
+                    if(choice!=RETRY_ACTION)
+                        return false;
+
+                    // Retry transfers the file from the beginning
+                    transferFailed = false;
+                    append = false;
+                }
+
                 copyFile(sourceFile, destFile, append);
                 return true;
             }
@@ -300,6 +401,28 @@ public abstract class TransferFileJob extends FileJob {
                 LOGGER.debug("Copy failed", e);
 
                 int reason = e.getReason();
+
+                if(currentFileByteCounter.getByteCount()>currentFileSkippedByteCounter.getByteCount())
+                    destinationWritten = true;
+
+                // Retry automatically if the error is likely to be transient
+                if(nbRetries<maxRetries && isTransientError(reason, sourceFile, destFile)) {
+                    nbRetries++;
+                    LOGGER.info("Transfer of "+sourceFile+" failed, retrying ("+nbRetries+"/"+maxRetries+")");
+
+                    if(!waitBeforeRetry(nbRetries))
+                        return false;
+
+                    currentFileByteCounter.reset();
+                    currentFileSkippedByteCounter.reset();
+                    // Resume the transfer if the destination file contains the part of the source file that was
+                    // transferred so far
+                    append = destinationWritten && canResume(sourceFile, destFile);
+                    continue;
+                }
+
+                transferFailed = true;
+
                 int choice;
                 switch(reason) {
                     // Could not open source file for read
@@ -329,11 +452,14 @@ public abstract class TransferFileJob extends FileJob {
 
                 // Retry action (append or retry)
                 if(choice==RETRY_ACTION || choice==APPEND_ACTION) {
+                    transferFailed = false;
                     // Reset current file byte counters
                     currentFileByteCounter.reset();
                     currentFileSkippedByteCounter.reset();
                     // Append resumes transfer
                     append = choice==APPEND_ACTION;
+                    if(append)
+                        destinationWritten = true;
                     continue;
                 }
 
@@ -343,13 +469,75 @@ public abstract class TransferFileJob extends FileJob {
         } while(true);
     }
 
+    /**
+     * Returns <code>true</code> if a transfer that failed for the given reason is worth retrying without asking the
+     * user. Only errors involving a remote file are considered transient, e.g. a dropped connection: errors between
+     * local files, such as a full disk, are reported right away.
+     */
+    private boolean isTransientError(int reason, AbstractFile sourceFile, AbstractFile destFile) {
+        switch(reason) {
+            case FileTransferException.READING_SOURCE:
+            case FileTransferException.WRITING_DESTINATION:
+            case FileTransferException.OPENING_SOURCE:
+            case FileTransferException.OPENING_DESTINATION:
+            case FileTransferException.READING_DESTINATION:
+                return !sourceFile.hasAncestor(LocalFile.class) || !destFile.hasAncestor(LocalFile.class);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Waits before the given retry of a failed transfer, the delay doubling with each retry.
+     *
+     * @return false if the job was interrupted or the current file skipped while waiting
+     */
+    private boolean waitBeforeRetry(int retry) {
+        long delay = Math.min(RETRY_INITIAL_DELAY<<Math.min(retry-1, 16), RETRY_MAX_DELAY);
+        long end = System.currentTimeMillis()+delay;
+        long remaining;
+        while((remaining=end-System.currentTimeMillis())>0) {
+            if(getState()==INTERRUPTED || wasCurrentFileSkipped())
+                return false;
+
+            try {
+                Thread.sleep(Math.min(remaining, 100));
+            }
+            catch(InterruptedException e) {
+                return false;
+            }
+        }
+
+        return getState()!=INTERRUPTED && !wasCurrentFileSkipped();
+    }
+
+    /**
+     * Returns <code>true</code> if the destination file contains the beginning of the source file, i.e. if a transfer
+     * between them can be resumed.
+     */
+    protected boolean canResume(AbstractFile sourceFile, AbstractFile destFile) {
+        long destFileSize = destFile.getSize();
+        return destFile.exists() && destFileSize>0 && destFileSize<=sourceFile.getSize();
+    }
+
+    /**
+     * Returns <code>true</code> if the last file transfer failed with an error that was reported to the user and that
+     * was not successfully retried.
+     *
+     * @return true if the last file transfer failed
+     */
+    protected boolean hasTransferFailed() {
+        return transferFailed;
+    }
+
 
     /**
      * Registers the given InputStream as currently in use, in order to:
      * <ul>
      * <li>count the number of bytes that have been read from it (see {@link #getCurrentFileByteCounter()})
      * <li>block read methods calls when the job is paused
-     * <li>limit the throughput if a limit has been specified (see {@link #setThroughputLimit(long)})
+     * <li>limit the throughput if a limit has been specified (see {@link #setThroughputLimit(long)}), or if the
+     * bandwidth shared with other jobs is limited (see {@link BandwidthManager})
      * <li>close the InputStream when the job is stopped
      * </ul>
      *
@@ -360,7 +548,10 @@ public abstract class TransferFileJob extends FileJob {
      */
     protected synchronized InputStream setCurrentInputStream(InputStream in) {
         if(tlin==null) {
-            tlin = new ThroughputLimitInputStream(new CounterInputStream(in, currentFileByteCounter), throughputLimit);
+            List<TokenBucket> buckets = BandwidthManager.getInstance().getBuckets(getAccessedFolders());
+            buckets.add(0, throughputLimitBucket);
+            tlin = new BandwidthLimitInputStream(new CounterInputStream(in, currentFileByteCounter), buckets.toArray(new TokenBucket[buckets.size()]));
+            tlin.setPaused(getState()==PAUSED);
         }
         else {
             tlin.setUnderlyingInputStream(new CounterInputStream(in, currentFileByteCounter));
@@ -490,6 +681,19 @@ public abstract class TransferFileJob extends FileJob {
         return totalByteCounter;
     }
 
+    /**
+     * Adds the given number of bytes to the total number of bytes processed by this job. This method is meant for
+     * bytes that were transferred without going through {@link #setCurrentInputStream(InputStream)}, for instance by
+     * threads that process files concurrently on behalf of this job. This method is thread-safe.
+     *
+     * @param nbBytes number of bytes to add to the total
+     */
+    protected void addTotalBytesProcessed(long nbBytes) {
+        synchronized(totalByteCounter) {
+            totalByteCounter.add(nbBytes);
+        }
+    }
+
     /**
      * Returns a {@link ByteCounter} that holds the total number of bytes that have been skipped by this job so far.
      * Bytes are skipped when file transfers are resumed.
@@ -513,14 +717,9 @@ public abstract class TransferFileJob extends FileJob {
      * @param bytesPerSecond new throughput limit in bytes per second, 0 or -1 to disable the limit
      */
     public void setThroughputLimit(long bytesPerSecond) {
-        // Note: ThroughputInputStream interprets 0 as a complete pause (blocks reads) which is different
-        // from what a user would expect when specifying 0 as a limit
         this.throughputLimit = bytesPerSecond<=0?-1:bytesPerSecond;
 
-        synchronized(this) {
-            if(getState()!=PAUSED && tlin !=null)
-                tlin.setThroughputLimit(throughputLimit);
-        }
+        throughputLimitBucket.setRate(throughputLimit);
     }
 
     /**
@@ -532,6 +731,16 @@ public abstract class TransferFileJob extends FileJob {
     public long getThroughputLimit() {
         return throughputLimit;
     }
+
+    /**
+     * Returns <code>true</code> if the throughput of this job is limited, either by its own limit or by a budget it
+     * shares with other jobs, see {@link BandwidthManager}.
+     *
+     * @return true if the throughput of this job is limited
+     */
+    protected boolean isThroughputLimited() {
+        return throughputLimit>0 || BandwidthManager.getInstance().isLimited(getAccessedFolders());
+    }
     
 
     ////////////////////////
@@ -565,7 +774,7 @@ public abstract class TransferFileJob extends FileJob {
 
         synchronized(this) {
             if(tlin !=null)
-                tlin.setThroughputLimit(0);
+                tlin.setPaused(true);
         }
     }
 
@@ -579,9 +788,8 @@ public abstract class TransferFileJob extends FileJob {
         super.jobResumed();
 
         synchronized(this) {
-            // Restore previous throughput limit (if any, -1 by default)
             if(tlin !=null)
-                tlin.setThroughputLimit(throughputLimit);
+                tlin.setPaused(false);
         }
     }
 
@@ -0,0 +1,483 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.job;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.PlatformManager;
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.ui.dialog.file.ProgressDialog;
+import com.mucommander.ui.main.MainFrame;
+
+/**
+ * Persistently records the progress of a {@link CopyJob}, so that the job can be resumed if the application quits
+ * before the job has finished.
+ * <p>
+ * A journal is a text file stored in the {@link #JOURNAL_FOLDER_NAME} folder of the preferences folder. It starts with
+ * the parameters of the job (destination folder, selected files...), followed by a line for each file whose transfer
+ * has started, along with the file it is written to, and a line for each file whose transfer has completed. Lines are
+ * only ever appended to the file, so that a journal remains consistent whenever the application stops. URLs are
+ * recorded without their credentials.
+ * </p>
+ * <p>
+ * Lines are flushed at most every {@link #FLUSH_PERIOD} milliseconds rather than for each file, so that transfers of
+ * many small files are not slowed down by the journal. The lines that are lost if the application stops abruptly only
+ * cause the corresponding files to be checked for collisions again when the job is resumed.
+ * </p>
+ * <p>
+ * The number of bytes of a partial file that have been transferred is not recorded: when a job is resumed, the
+ * transfer of that file is resumed at the current size of the destination file it was being written to, after
+ * checking that the end of the destination file matches the source file (see {@link TransferFileJob}).
+ * </p>
+ * <p>
+ * A journal is deleted when its job completes or is stopped by the user. It is kept if the job is stopped because
+ * of a transfer error or because the application quits, in which case {@link #getInterruptedJournals()} returns it
+ * the next time the application starts.
+ * </p>
+ */
+public class TransferJournal {
+	private static final Logger LOGGER = LoggerFactory.getLogger(TransferJournal.class);
+
+    /** Name of the folder where journals are stored, within the preferences folder */
+    private final static String JOURNAL_FOLDER_NAME = "transfer_journal";
+
+    /** Extension of journal files */
+    private final static String JOURNAL_EXTENSION = ".journal";
+
+    /** Minimum number of milliseconds between two flushes of the journal file */
+    private final static long FLUSH_PERIOD = 1000;
+
+    private final static String DESTINATION_KEY = "destination";
+    private final static String NEW_NAME_KEY = "new_name";
+    private final static String MODE_KEY = "mode";
+    private final static String FILE_EXISTS_ACTION_KEY = "file_exists_action";
+    private final static String INTEGRITY_CHECK_KEY = "integrity_check";
+    private final static String BASE_FOLDER_KEY = "base_folder";
+    private final static String FILE_KEY = "file";
+    private final static String STARTED_KEY = "started";
+    private final static String STARTED_DESTINATION_KEY = "started_destination";
+    private final static String DONE_KEY = "done";
+
+    /** The file the journal is stored in */
+    private File journalFile;
+
+    /** Appends lines to the journal file, null until the journal is attached to a job */
+    private Writer writer;
+
+    private String destinationURL;
+    private String newName;
+    private int mode;
+    private int fileExistsAction;
+    private boolean integrityCheckEnabled;
+    private String baseFolderURL;
+    private List<String> fileURLs = new ArrayList<String>();
+
+    /** URLs of the files whose transfer has completed */
+    private Set<String> doneFiles = new HashSet<String>();
+
+    /** URL of the file whose transfer has started but not completed, null if there is none */
+    private String startedFile;
+
+    /** URL of the destination file the started file was being written to, null if it is not known */
+    private String startedDestination;
+
+    /** Time at which the journal file was last flushed */
+    private long lastFlushTime;
+
+
+    private TransferJournal(File journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * Returns the folder where journals are stored.
+     */
+    private static File getJournalFolder() {
+        return new File(PlatformManager.getPreferencesFolder().getAbsolutePath(), JOURNAL_FOLDER_NAME);
+    }
+
+    /**
+     * Returns the key identifying the given file in a journal: its URL without credentials.
+     */
+    private static String getKey(AbstractFile file) {
+        return file.getURL().toString(false);
+    }
+
+    /**
+     * Creates a new journal for a job with the given parameters and records them.
+     *
+     * @param files the files to be transferred
+     * @param destFolder the destination folder
+     * @param newName the new filename in the destination folder, may be <code>null</code>
+     * @param mode the mode the job operates in, see {@link CopyJob}
+     * @param fileExistsAction the default action to be performed when a file already exists in the destination
+     * @param integrityCheckEnabled true if transferred files are checked for integrity
+     * @return the new journal
+     * @throws IOException if the journal could not be created
+     */
+    static TransferJournal create(FileSet files, AbstractFile destFolder, String newName, int mode, int fileExistsAction, boolean integrityCheckEnabled) throws IOException {
+        File folder = getJournalFolder();
+        if(!folder.isDirectory() && !folder.mkdirs())
+            throw new IOException("Could not create "+folder);
+
+        TransferJournal journal = new TransferJournal(File.createTempFile("transfer", JOURNAL_EXTENSION, folder));
+        journal.destinationURL = getKey(destFolder);
+        journal.newName = newName;
+        journal.mode = mode;
+        journal.fileExistsAction = fileExistsAction;
+        journal.integrityCheckEnabled = integrityCheckEnabled;
+        journal.baseFolderURL = getKey(files.getBaseFolder());
+
+        journal.open();
+        journal.writeLine(DESTINATION_KEY, journal.destinationURL);
+        if(newName!=null)
+            journal.writeLine(NEW_NAME_KEY, newName);
+        journal.writeLine(MODE_KEY, String.valueOf(mode));
+        journal.writeLine(FILE_EXISTS_ACTION_KEY, String.valueOf(fileExistsAction));
+        journal.writeLine(INTEGRITY_CHECK_KEY, String.valueOf(integrityCheckEnabled));
+        journal.writeLine(BASE_FOLDER_KEY, journal.baseFolderURL);
+        for(AbstractFile file : files) {
+            String url = getKey(file);
+            journal.fileURLs.add(url);
+            journal.writeLine(FILE_KEY, url);
+        }
+        journal.writer.flush();
+
+        return journal;
+    }
+
+    /**
+     * Returns the journals left by jobs that did not finish, skipping the ones that cannot be read.
+     *
+     * @return the journals left by jobs that did not finish
+     */
+    public static List<TransferJournal> getInterruptedJournals() {
+        List<TransferJournal> journals = new ArrayList<TransferJournal>();
+
+        File journalFiles[] = getJournalFolder().listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(JOURNAL_EXTENSION);
+            }
+        });
+        if(journalFiles==null)
+            return journals;
+
+        for(File journalFile : journalFiles) {
+            try {
+                journals.add(load(journalFile));
+            }
+            catch(IOException e) {
+                LOGGER.info("Could not read transfer journal "+journalFile, e);
+            }
+        }
+
+        return journals;
+    }
+
+    /**
+     * Reads the journal stored in the given file.
+     */
+    private static TransferJournal load(File journalFile) throws IOException {
+        TransferJournal journal = new TransferJournal(journalFile);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), "UTF-8"));
+        try {
+            String line;
+            while((line=reader.readLine())!=null) {
+                int pos = line.indexOf(' ');
+                if(pos==-1)
+                    continue;
+
+                String key = line.substring(0, pos);
+                String value = line.substring(pos+1);
+                if(key.equals(STARTED_KEY)) {
+                    journal.startedFile = value;
+                    journal.startedDestination = null;
+                }
+                else if(key.equals(STARTED_DESTINATION_KEY)) {
+                    journal.startedDestination = value;
+                }
+                else if(key.equals(DONE_KEY)) {
+                    journal.doneFiles.add(value);
+                    if(value.equals(journal.startedFile)) {
+                        journal.startedFile = null;
+                        journal.startedDestination = null;
+                    }
+                }
+                else if(key.equals(FILE_KEY)) {
+                    journal.fileURLs.add(value);
+                }
+                else if(key.equals(DESTINATION_KEY)) {
+                    journal.destinationURL = value;
+                }
+                else if(key.equals(NEW_NAME_KEY)) {
+                    journal.newName = value;
+                }
+                else if(key.equals(MODE_KEY)) {
+                    journal.mode = Integer.parseInt(value);
+                }
+                else if(key.equals(FILE_EXISTS_ACTION_KEY)) {
+                    journal.fileExistsAction = Integer.parseInt(value);
+                }
+                else if(key.equals(INTEGRITY_CHECK_KEY)) {
+                    journal.integrityCheckEnabled = Boolean.valueOf(value);
+                }
+                else if(key.equals(BASE_FOLDER_KEY)) {
+                    journal.baseFolderURL = value;
+                }
+            }
+        }
+        catch(NumberFormatException e) {
+            throw new IOException("Malformed transfer journal: "+e.getMessage());
+        }
+        finally {
+            reader.close();
+        }
+
+        if(journal.destinationURL==null || journal.baseFolderURL==null || journal.fileURLs.isEmpty())
+            throw new IOException("Incomplete transfer journal");
+
+        return journal;
+    }
+
+    /**
+     * Opens the journal file for appending lines.
+     */
+    private void open() throws IOException {
+        writer = new OutputStreamWriter(new FileOutputStream(journalFile, true), "UTF-8");
+    }
+
+    /**
+     * Appends a line to the journal file. The writer is not flushed.
+     */
+    private void writeLine(String key, String value) throws IOException {
+        writer.write(key);
+        writer.write(' ');
+        writer.write(value);
+        writer.write('\n');
+    }
+
+    /**
+     * Appends lines to the journal file, given as key/value pairs, and flushes it if it hasn't been for
+     * {@link #FLUSH_PERIOD} milliseconds. Errors are logged but otherwise ignored: the journal is a best effort that
+     * must not cause the job to fail.
+     */
+    private synchronized void record(String... keysAndValues) {
+        if(writer==null)
+            return;
+
+        try {
+            for(int i=0; i<keysAndValues.length; i+=2)
+                writeLine(keysAndValues[i], keysAndValues[i+1]);
+
+            long now = System.currentTimeMillis();
+            if(now-lastFlushTime>=FLUSH_PERIOD) {
+                writer.flush();
+                lastFlushTime = now;
+            }
+        }
+        catch(IOException e) {
+            LOGGER.info("Could not write to transfer journal "+journalFile, e);
+        }
+    }
+
+
+    /**
+     * Returns <code>true</code> if the journal records the transfer of the given file as completed.
+     */
+    boolean isDone(AbstractFile file) {
+        return doneFiles.contains(getKey(file));
+    }
+
+    /**
+     * Returns the destination file the journal records the given file as being transferred to, if the transfer of the
+     * file has started but not completed and if the destination file is located in the given folder.
+     *
+     * @param file the file being transferred
+     * @param destFolder the folder the file is to be transferred to
+     * @return the destination file the transfer is to be resumed into, null if there is none
+     */
+    AbstractFile getStartedDestination(AbstractFile file, AbstractFile destFolder) {
+        if(startedFile==null || startedDestination==null || !startedFile.equals(getKey(file)))
+            return null;
+
+        int pos = startedDestination.lastIndexOf('/');
+        if(pos==-1)
+            return null;
+
+        try {
+            AbstractFile destFile = destFolder.getDirectChild(startedDestination.substring(pos+1));
+            return getKey(destFile).equals(startedDestination)?destFile:null;
+        }
+        catch(IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records that the transfer of the given file to the specified destination file has started.
+     */
+    void fileStarted(AbstractFile file, AbstractFile destFile) {
+        record(STARTED_KEY, getKey(file), STARTED_DESTINATION_KEY, getKey(destFile));
+    }
+
+    /**
+     * Records that the transfer of the given file has completed.
+     */
+    void fileDone(AbstractFile file) {
+        record(DONE_KEY, getKey(file));
+    }
+
+    /**
+     * Closes the journal file, the journal is left on disk.
+     */
+    synchronized void close() {
+        if(writer==null)
+            return;
+
+        try {
+            writer.close();
+        }
+        catch(IOException e) {
+            // Nothing we can do about it
+        }
+        writer = null;
+    }
+
+    /**
+     * Closes and deletes the journal file.
+     */
+    public void delete() {
+        close();
+        if(!journalFile.delete() && journalFile.exists())
+            LOGGER.info("Could not delete transfer journal "+journalFile);
+    }
+
+
+    /**
+     * Returns the URL of the destination folder, without credentials.
+     *
+     * @return the URL of the destination folder
+     */
+    public String getDestinationURL() {
+        return destinationURL;
+    }
+
+    /**
+     * Returns the URL of the folder containing the files to be transferred, without credentials.
+     *
+     * @return the URL of the folder containing the files to be transferred
+     */
+    public String getBaseFolderURL() {
+        return baseFolderURL;
+    }
+
+    /**
+     * Returns the mode of the job, see {@link CopyJob}.
+     *
+     * @return the mode of the job
+     */
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the number of files whose transfer has completed.
+     *
+     * @return the number of files whose transfer has completed
+     */
+    public int getNbFilesDone() {
+        return doneFiles.size();
+    }
+
+    /**
+     * Resolves the destination folder. This method may access the network and should not be called from the event
+     * dispatch thread.
+     *
+     * @return the destination folder, null if it doesn't exist or is not available
+     */
+    public AbstractFile resolveDestinationFolder() {
+        AbstractFile destFolder = FileFactory.getFile(destinationURL);
+        return destFolder!=null && destFolder.isDirectory()?destFolder:null;
+    }
+
+    /**
+     * Resolves the files to be transferred, leaving out the ones that no longer exist. This method may access the
+     * network and should not be called from the event dispatch thread.
+     *
+     * @return the files to be transferred, null if their folder doesn't exist or is not available
+     */
+    public FileSet resolveFiles() {
+        AbstractFile baseFolder = FileFactory.getFile(baseFolderURL);
+        if(baseFolder==null || !baseFolder.exists())
+            return null;
+
+        FileSet files = new FileSet(baseFolder);
+        for(String url : fileURLs) {
+            AbstractFile file = FileFactory.getFile(url);
+            if(file!=null && file.exists())
+                files.add(file);
+        }
+
+        return files;
+    }
+
+    /**
+     * Creates a job that resumes the transfer recorded by this journal. The files that were transferred are skipped
+     * and the transfer of the file that was interrupted is resumed.
+     *
+     * @param progressDialog dialog which shows the job's progress
+     * @param mainFrame mainFrame the job is triggered by
+     * @param files the files to be transferred, see {@link #resolveFiles()}
+     * @param destFolder the destination folder, see {@link #resolveDestinationFolder()}
+     * @return a job that resumes the transfer recorded by this journal
+     */
+    public CopyJob createJob(ProgressDialog progressDialog, MainFrame mainFrame, FileSet files, AbstractFile destFolder) {
+        CopyJob job = new CopyJob(progressDialog, mainFrame, files, destFolder, newName, mode, fileExistsAction);
+        job.setIntegrityCheckEnabled(integrityCheckEnabled);
+
+        try {
+            open();
+        }
+        catch(IOException e) {
+            LOGGER.info("Could not open transfer journal "+journalFile, e);
+        }
+        job.setTransferJournal(this);
+
+        return job;
+    }
+}
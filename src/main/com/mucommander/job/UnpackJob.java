@@ -21,27 +21,60 @@ package com.mucommander.job;
 
 import com.mucommander.commons.file.*;
 import com.mucommander.commons.file.impl.ProxyFile;
+import com.mucommander.commons.file.impl.zip.ZipArchiveFile;
+import com.mucommander.commons.file.impl.zip.provider.ZipEntry;
+import com.mucommander.commons.file.impl.zip.provider.ZipFile;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.commons.file.util.PathUtils;
+import com.mucommander.commons.io.ByteCounter;
+import com.mucommander.commons.io.CounterInputStream;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.action.ActionManager;
 import com.mucommander.ui.action.impl.UnmarkAllAction;
 import com.mucommander.ui.dialog.file.ProgressDialog;
 import com.mucommander.ui.main.MainFrame;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 
 /**
  * This job unpacks a set of archive files to a base destination folder. Archive entries are extracted in their natural
  * order using {@link com.mucommander.commons.file.AbstractArchiveFile#getEntryIterator()}, to traverse the archive only once
  * and achieve optimal performance.
+ * <p>
+ * When only some entries are to be unpacked, they are matched against an {@link ArchiveEntrySelection} and the
+ * traversal stops as soon as all of them have been found. For archive formats that have a central directory (ZIP),
+ * selected regular files are read directly without traversing the archive at all.
+ * </p>
+ * <p>
+ * The regular files of archives that can be randomly accessed are unpacked concurrently by a number of threads
+ * controlled by the {@link MuPreference#UNPACK_THREADS} preference.
+ * </p>
  *
  * @author Maxence Bernard
  */
 public class UnpackJob extends AbstractCopyJob {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnpackJob.class);
 
     /** Archive entries to be unpacked */
     protected List<ArchiveEntry> selectedEntries;
@@ -49,6 +82,12 @@ public class UnpackJob extends AbstractCopyJob {
     /** Depth of the folder in which the top entries are located. 0 is the highest depth (archive's root folder) */
     protected int baseArchiveDepth;
 
+    /** Absolute paths of the destination folders that have been created or found to exist for the current archive */
+    private Set<String> createdFolders;
+
+    /** Unpacks regular files of the current archive concurrently, <code>null</code> if they are unpacked sequentially */
+    private volatile ParallelUnpacker parallelUnpacker;
+
 
     /**
      * Creates a new UnpackJob without starting it.
@@ -104,6 +143,7 @@ public class UnpackJob extends AbstractCopyJob {
             do {
                 try {
                     baseDestFolder.mkdir();
+                    folderCreated(baseDestFolder);
                 }
                 catch(IOException e) {
                     // Unable to create folder
@@ -174,132 +214,61 @@ public class UnpackJob extends AbstractCopyJob {
         AbstractArchiveFile archiveFile = file.getAncestor(AbstractArchiveFile.class);
         ArchiveEntryIterator iterator = null;
 
-        ArchiveEntry entry;
-        String entryPath;
-        AbstractFile entryFile;
-        AbstractFile destFile;
-        String destSeparator = destFolder.getSeparator();
-        String relDestPath;
+        // Index the selected entries (if any) so that each entry of the archive can be matched in constant time
+        ArchiveEntrySelection selection = selectedEntries==null?null:new ArchiveEntrySelection(selectedEntries);
 
-        // Unpack the archive, copying entries one by one, in the iterator's order
-        try {
-            iterator = archiveFile.getEntryIterator();
-            while((entry = iterator.nextEntry())!=null && getState()!=INTERRUPTED) {
-                entryPath = entry.getPath();
+        // Folders created while unpacking this archive
+        createdFolders = new HashSet<String>();
 
-                boolean processEntry = false;
-                if(selectedEntries ==null) {    // Entries are processed
-                    processEntry = true;
-                }
-                else {                          // We need to determine if the entry should be processed or not
-                    // Process this entry if the selectedEntries set contains this entry, or a parent of this entry
-                    int nbSelectedEntries = selectedEntries.size();
-                    for(int i=0; i<nbSelectedEntries; i++) {
-                        ArchiveEntry selectedEntry = selectedEntries.get(i);
-                        // Note: paths of directory entries must end with '/', so this compares whether
-                        // selectedEntry is a parent of the current entry.
-                        if(selectedEntry.isDirectory()) {
-                            if(entryPath.startsWith(selectedEntry.getPath())) {
-                                processEntry = true;
-                                break;
-                                // Note: we can't remove selectedEntryPath from the set, we still need it
-                            }
-                        }
-                        else if(entryPath.equals(selectedEntry.getPath())) {
-                            // If the (regular file) entry is in the set, remove it as we no longer need it (will speed up
-                            // subsequent searches)
-                            processEntry = true;
-                            selectedEntries.remove(i);
-                            break;
-                        }
-                    }
-                }
-
-                if(!processEntry)
-                    continue;
-
-                // Resolve the entry file
-                entryFile = archiveFile.getArchiveEntryFile(entryPath);
-
-                // Notify the job that we're starting to process this file
-                nextFile(entryFile);
+        // Regular files of random-access archives are unpacked concurrently, unless transfers need to be checked for
+        // integrity or throttled, which can only be done on the job's own thread
+        int nbThreads = MuConfigurations.getPreferences().getVariable(MuPreference.UNPACK_THREADS, MuPreferences.DEFAULT_UNPACK_THREADS);
+        if(nbThreads>1 && hasRandomEntryAccess(archiveFile) && !isIntegrityCheckEnabled() && !isThroughputLimited())
+            parallelUnpacker = new ParallelUnpacker(archiveFile, nbThreads);
 
-                // Figure out the destination file's path, relatively to the base destination folder
-                relDestPath = baseArchiveDepth==0
-                        ?entry.getPath()
-                        :PathUtils.removeLeadingFragments(entry.getPath(), "/", baseArchiveDepth);
-
-                if(newName!=null)
-                    relDestPath = newName+(PathUtils.getDepth(relDestPath, "/")<=1?"":"/"+PathUtils.removeLeadingFragments(relDestPath, "/", 1));
-
-                if(!"/".equals(destSeparator))
-                    relDestPath = relDestPath.replace("/", destSeparator);
-
-                // Create destination AbstractFile instance
-                destFile = destFolder.getChild(relDestPath);
+        try {
+            // Entries of archive formats that have a central directory can be accessed directly: if only regular
+            // files have been selected, go straight to them rather than traversing the whole archive
+            if(selection!=null && !selection.containsDirectories() && hasRandomEntryAccess(archiveFile)) {
+                for(ArchiveEntry entry : selection.getFileEntries()) {
+                    if(getState()==INTERRUPTED)
+                        break;
+
+                    if(!unpackEntry(archiveFile, entry, null, destFolder))
+                        return false;
+                }
 
-                // Do nothing if the file is a symlink (skip file and return)
-                if(entryFile.isSymlink())
-                    return true;
+                return parallelUnpacker==null || parallelUnpacker.finish();
+            }
 
-                // Check if the file does not already exist in the destination
-                destFile = checkForCollision(entryFile, destFolder, destFile, false);
-                if (destFile == null) {
-                    // A collision occurred and either the file was skipped, or the user cancelled the job
+            // Unpack the archive, copying entries one by one, in the iterator's order
+            ArchiveEntry entry;
+            iterator = archiveFile.getEntryIterator();
+            while((entry = iterator.nextEntry())!=null && getState()!=INTERRUPTED) {
+                // Process this entry only if it is part of the selection, or if one of its parents is
+                if(selection!=null && !selection.matches(entry.getPath()))
                     continue;
-                }
 
-                // It is noteworthy that the iterator returns entries in no particular order (consider it random).
-                // For that reason, we cannot assume that the parent directory of an entry will be processed
-                // before the entry itself.
-
-                // If the entry is a directory ...
-                if(entryFile.isDirectory()) {
-                    // Create the directory in the destination, if it doesn't already exist
-                    if(!(destFile.exists() && destFile.isDirectory())) {
-                        // Loop for retry
-                        do {
-                            try {
-                                // Use mkdirs() instead of mkdir() to create any parent folder that doesn't exist yet
-                                destFile.mkdirs();
-                            }
-                            catch(IOException e) {
-                                // Unable to create folder
-                                int ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_create_folder", entryFile.getName()));
-                                // Retry loops
-                                if(ret==RETRY_ACTION)
-                                    continue;
-                                // Cancel or close dialog return false
-                                return false;
-                                // Skip continues
-                            }
-                            break;
-                        } while(true);
-                    }
-                }
-                // The entry is a regular file, copy it
-                else  {
-                    // Create the file's parent directory(s) if it doesn't already exist
-                    AbstractFile destParentFile = destFile.getParent();
-                    if(!destParentFile.exists()) {
-                        // Use mkdirs() instead of mkdir() to create any parent folder that doesn't exist yet
-                        destParentFile.mkdirs();
-                    }
+                if(!unpackEntry(archiveFile, entry, iterator, destFolder))
+                    return false;
 
-                    // The entry is wrapped in a ProxyFile to override #getInputStream() and delegate it to
-                    // ArchiveFile#getEntryInputStream in order to take advantage of the ArchiveEntryIterator, which for
-                    // some archive file implementations (such as TAR) can speed things by an order of magnitude.
-                    if(!tryCopyFile(new ProxiedEntryFile(entryFile, entry, archiveFile, iterator), destFile, append, errorDialogTitle))
-                       return false;
-                }
+                // Stop traversing the archive as soon as all the selected entries have been found
+                if(selection!=null && selection.isComplete())
+                    break;
             }
 
-            return true;
+            return parallelUnpacker==null || parallelUnpacker.finish();
         }
         catch(IOException e) {
             showErrorDialog(errorDialogTitle, Translator.get("cannot_read_file", archiveFile.getName()));
         }
         finally {
+            // Stop any entry that is still being unpacked if the archive was not unpacked completely
+            if(parallelUnpacker!=null) {
+                parallelUnpacker.abort();
+                parallelUnpacker = null;
+            }
+
             // The ArchiveEntryIterator must be closed when finished
             if(iterator!=null) {
                 try { iterator.close(); }
@@ -312,6 +281,124 @@ public class UnpackJob extends AbstractCopyJob {
         return false;
     }
 
+    /**
+     * Unpacks the given archive entry to the destination folder.
+     *
+     * @param archiveFile the archive file that contains the entry
+     * @param entry the entry to unpack
+     * @param iterator the iterator that returned the entry, <code>null</code> if the entry was not obtained by
+     * traversing the archive
+     * @param destFolder the base destination folder
+     * @return <code>false</code> if the job should stop unpacking the archive, <code>true</code> otherwise
+     * @throws IOException if the entry file could not be resolved
+     */
+    private boolean unpackEntry(AbstractArchiveFile archiveFile, ArchiveEntry entry, ArchiveEntryIterator iterator, AbstractFile destFolder) throws IOException {
+        String entryPath = entry.getPath();
+
+        // Resolve the entry file
+        AbstractFile entryFile = archiveFile.getArchiveEntryFile(entryPath);
+
+        // Notify the job that we're starting to process this file
+        nextFile(entryFile);
+
+        // Figure out the destination file's path, relatively to the base destination folder
+        String relDestPath = baseArchiveDepth==0
+                ?entryPath
+                :PathUtils.removeLeadingFragments(entryPath, "/", baseArchiveDepth);
+
+        if(newName!=null)
+            relDestPath = newName+(PathUtils.getDepth(relDestPath, "/")<=1?"":"/"+PathUtils.removeLeadingFragments(relDestPath, "/", 1));
+
+        String destSeparator = destFolder.getSeparator();
+        if(!"/".equals(destSeparator))
+            relDestPath = relDestPath.replace("/", destSeparator);
+
+        // Create destination AbstractFile instance
+        AbstractFile destFile = destFolder.getChild(relDestPath);
+
+        // Do nothing if the file is a symlink (skip file)
+        if(entryFile.isSymlink())
+            return true;
+
+        // Check if the file does not already exist in the destination
+        destFile = checkForCollision(entryFile, destFolder, destFile, false);
+        if (destFile == null) {
+            // A collision occurred and either the file was skipped, or the user cancelled the job
+            return true;
+        }
+
+        // It is noteworthy that the iterator returns entries in no particular order (consider it random).
+        // For that reason, we cannot assume that the parent directory of an entry will be processed
+        // before the entry itself.
+
+        // If the entry is a directory ...
+        if(entryFile.isDirectory()) {
+            // Create the directory in the destination, if it hasn't been created already and doesn't exist
+            String destPath = destFile.getAbsolutePath(false);
+            if(!createdFolders.contains(destPath) && !isExistingFolder(destFile)) {
+                // Loop for retry
+                do {
+                    try {
+                        // Use mkdirs() instead of mkdir() to create any parent folder that doesn't exist yet
+                        destFile.mkdirs();
+                        folderCreated(destFile);
+                    }
+                    catch(IOException e) {
+                        // Unable to create folder
+                        int ret = showErrorDialog(errorDialogTitle, Translator.get("cannot_create_folder", entryFile.getName()));
+                        // Retry loops
+                        if(ret==RETRY_ACTION)
+                            continue;
+                        // Cancel or close dialog return false
+                        return false;
+                        // Skip continues
+                    }
+                    break;
+                } while(true);
+            }
+            createdFolders.add(destPath);
+
+            return true;
+        }
+
+        // The entry is a regular file, copy it
+
+        // Create the file's parent directory(s) if it hasn't been created already and doesn't exist
+        AbstractFile destParentFile = destFile.getParent();
+        String destParentPath = destParentFile.getAbsolutePath(false);
+        if(!createdFolders.contains(destParentPath)) {
+            if(!destParentFile.exists()) {
+                // Use mkdirs() instead of mkdir() to create any parent folder that doesn't exist yet
+                destParentFile.mkdirs();
+                folderCreated(destParentFile);
+            }
+            createdFolders.add(destParentPath);
+        }
+
+        // Hand the entry over to the unpacking threads, unless the transfer is to be resumed
+        if(parallelUnpacker!=null && !append) {
+            parallelUnpacker.submit(entry, entryFile, destFile);
+            return true;
+        }
+
+        // The entry is wrapped in a ProxyFile to override #getInputStream() and delegate it to
+        // ArchiveFile#getEntryInputStream in order to take advantage of the ArchiveEntryIterator, which for
+        // some archive file implementations (such as TAR) can speed things by an order of magnitude.
+        return tryCopyFile(new ProxiedEntryFile(entryFile, entry, archiveFile, iterator), destFile, append, errorDialogTitle);
+    }
+
+    /**
+     * Returns <code>true</code> if the entries of the given archive can be read in any order without traversing the
+     * archive, i.e. if the archive format has a central directory and the archive file itself can be randomly accessed.
+     *
+     * @param archiveFile the archive file to test
+     * @return true if the entries of the given archive can be accessed directly
+     */
+    protected static boolean hasRandomEntryAccess(AbstractArchiveFile archiveFile) {
+        return archiveFile instanceof ZipArchiveFile
+            && archiveFile.getProxiedFile().isFileOperationSupported(FileOperation.RANDOM_READ_FILE);
+    }
+
     // This job modifies the base destination folder and its subfolders
     @Override
     protected boolean hasFolderChanged(AbstractFile folder) {
@@ -323,6 +410,16 @@ public class UnpackJob extends AbstractCopyJob {
     // Overridden methods //
     ////////////////////////
 
+    @Override
+    protected void jobStopped() {
+        super.jobStopped();
+
+        // Interrupt the entries that are being unpacked concurrently
+        ParallelUnpacker unpacker = parallelUnpacker;
+        if(unpacker!=null)
+            unpacker.abort();
+    }
+
     @Override
     protected void jobCompleted() {
         super.jobCompleted();
@@ -354,6 +451,261 @@ public class UnpackJob extends AbstractCopyJob {
     // Inner classes //
     ///////////////////
 
+    /**
+     * Unpacks the regular file entries of a random-access archive on a fixed number of threads, so that entries are
+     * inflated on several cores at once. Each worker reads entries through a {@link ZipFile} of its own, i.e. with its
+     * own random access stream on the archive, so that workers neither wait for one another nor share the state of the
+     * archive file. The date of each file is set once the file has been written.
+     * <p>
+     * The job's thread keeps resolving destination files and handling collisions, and submits entries to this class.
+     * Entries that could not be unpacked are retried on the job's thread when {@link #finish()} is called, where the
+     * usual error dialogs can be displayed.
+     * </p>
+     */
+    private class ParallelUnpacker {
+
+        /** The archive file that contains the entries */
+        private AbstractArchiveFile archiveFile;
+
+        /** Threads that unpack the entries */
+        private ExecutorService executor;
+
+        /** Limits the number of entries waiting to be unpacked, so that the job's progress stays accurate */
+        private Semaphore pendingSlots;
+
+        /** Entries that failed to be unpacked and need to be retried on the job's thread */
+        private Queue<PendingEntry> failedEntries = new ConcurrentLinkedQueue<PendingEntry>();
+
+        /** Streams currently open on entries, closed when the job is interrupted */
+        private Set<InputStream> openStreams = Collections.synchronizedSet(new HashSet<InputStream>());
+
+        /** Readers of the archive opened by the workers, closed once the unpacker is finished or aborted */
+        private final List<ZipFile> zipFiles = new ArrayList<ZipFile>();
+
+        /** Readers of the archive that no worker is currently using */
+        private final List<ZipFile> idleZipFiles = new ArrayList<ZipFile>();
+
+        /** True once the readers of the archive have been closed */
+        private boolean zipFilesClosed;
+
+        private ParallelUnpacker(AbstractArchiveFile archiveFile, int nbThreads) {
+            this.archiveFile = archiveFile;
+            this.pendingSlots = new Semaphore(nbThreads*2);
+            this.executor = Executors.newFixedThreadPool(nbThreads, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, UnpackJob.class.getName()+" unpacker");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        /**
+         * Schedules the given entry to be unpacked to the specified destination file. This method blocks if too many
+         * entries are already waiting to be unpacked.
+         */
+        private void submit(ArchiveEntry entry, AbstractFile entryFile, AbstractFile destFile) {
+            final PendingEntry pendingEntry = new PendingEntry(entry, entryFile, destFile);
+
+            pendingSlots.acquireUninterruptibly();
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            unpack(pendingEntry);
+                        }
+                        finally {
+                            pendingSlots.release();
+                        }
+                    }
+                });
+            }
+            catch(RejectedExecutionException e) {
+                // The unpacker has been aborted
+                pendingSlots.release();
+            }
+        }
+
+        /**
+         * Returns a reader of the archive that no other worker is using, opening a new one if needed. The reader must
+         * be handed back using {@link #releaseZipFile(ZipFile)}.
+         */
+        private ZipFile acquireZipFile() throws IOException {
+            synchronized(zipFiles) {
+                if(!idleZipFiles.isEmpty())
+                    return idleZipFiles.remove(idleZipFiles.size()-1);
+            }
+
+            // Reading the central directory involves some I/O, don't hold the lock meanwhile
+            ZipFile zipFile = new ZipFile(archiveFile.getProxiedFile());
+            synchronized(zipFiles) {
+                if(zipFilesClosed) {
+                    zipFile.close();
+                    throw new IOException("Unpacker has been stopped");
+                }
+
+                zipFiles.add(zipFile);
+            }
+
+            return zipFile;
+        }
+
+        private void releaseZipFile(ZipFile zipFile) {
+            synchronized(zipFiles) {
+                if(!zipFilesClosed)
+                    idleZipFiles.add(zipFile);
+            }
+        }
+
+        /**
+         * Closes the readers of the archive opened by the workers.
+         */
+        private void closeZipFiles() {
+            synchronized(zipFiles) {
+                zipFilesClosed = true;
+                for(ZipFile zipFile : zipFiles) {
+                    try { zipFile.close(); }
+                    catch(IOException e) {
+                        // Not much we can do about it
+                    }
+                }
+                zipFiles.clear();
+                idleZipFiles.clear();
+            }
+        }
+
+        private void unpack(PendingEntry pendingEntry) {
+            // Honour pauses and interruptions between files
+            waitWhilePaused();
+            if(getState()==INTERRUPTED)
+                return;
+
+            AbstractFile destFile = pendingEntry.destFile;
+            ByteCounter byteCounter = new ByteCounter();
+            ZipFile zipFile = null;
+            InputStream in = null;
+            try {
+                zipFile = acquireZipFile();
+                ZipEntry zipEntry = zipFile.getEntry(pendingEntry.entry.getPath());
+                if(zipEntry==null)
+                    throw new IOException("Entry not found: "+pendingEntry.entry.getPath());
+
+                in = zipFile.getInputStream(zipEntry);
+                openStreams.add(in);
+
+                destFile.copyStream(new CounterInputStream(in, byteCounter), false, pendingEntry.entry.getSize());
+            }
+            catch(IOException e) {
+                LOGGER.debug("Failed to unpack "+pendingEntry.entry.getPath()+", will be retried", e);
+
+                if(getState()!=INTERRUPTED)
+                    failedEntries.add(pendingEntry);
+
+                return;
+            }
+            finally {
+                if(in!=null) {
+                    openStreams.remove(in);
+                    try { in.close(); }
+                    catch(IOException e) {
+                        // Not much we can do about it
+                    }
+                }
+
+                if(zipFile!=null)
+                    releaseZipFile(zipFile);
+
+                addTotalBytesProcessed(byteCounter.getByteCount());
+            }
+
+            // Now that the file has been written, preserve the entry's date and permissions
+            if(destFile.isFileOperationSupported(FileOperation.CHANGE_DATE)) {
+                try {
+                    destFile.changeDate(pendingEntry.entry.getDate());
+                }
+                catch(IOException e) {
+                    LOGGER.debug("failed to change the date of "+destFile, e);
+                    // Fail silently
+                }
+            }
+
+            if(destFile.isFileOperationSupported(FileOperation.CHANGE_PERMISSION)) {
+                try {
+                    destFile.importPermissions(pendingEntry.entryFile, FilePermissions.DEFAULT_FILE_PERMISSIONS);
+                }
+                catch(IOException e) {
+                    LOGGER.debug("failed to import "+pendingEntry.entryFile+" permissions into "+destFile, e);
+                    // Fail silently
+                }
+            }
+        }
+
+        /**
+         * Waits for all submitted entries to be unpacked, then retries the entries that failed on the job's thread.
+         *
+         * @return <code>false</code> if the job was interrupted or if an entry could not be unpacked
+         */
+        private boolean finish() {
+            executor.shutdown();
+            while(!executor.isTerminated()) {
+                try {
+                    executor.awaitTermination(1, TimeUnit.SECONDS);
+                }
+                catch(InterruptedException e) {
+                    // Loop one more time
+                }
+            }
+            closeZipFiles();
+
+            PendingEntry failedEntry;
+            while((failedEntry=failedEntries.poll())!=null) {
+                if(getState()==INTERRUPTED)
+                    return false;
+
+                nextFile(failedEntry.entryFile);
+                if(!tryCopyFile(new ProxiedEntryFile(failedEntry.entryFile, failedEntry.entry, archiveFile, null), failedEntry.destFile, false, errorDialogTitle))
+                    return false;
+            }
+
+            return getState()!=INTERRUPTED;
+        }
+
+        /**
+         * Discards the entries that are waiting to be unpacked and interrupts those being unpacked.
+         */
+        private void abort() {
+            // Release the slots of the entries that will never be unpacked
+            pendingSlots.release(executor.shutdownNow().size());
+
+            synchronized(openStreams) {
+                for(InputStream in : openStreams) {
+                    try { in.close(); }
+                    catch(IOException e) {
+                        // Not much we can do about it
+                    }
+                }
+            }
+
+            // Interrupts the entries being read, and releases the archive
+            closeZipFiles();
+        }
+    }
+
+    /**
+     * An archive entry waiting to be unpacked to its destination file.
+     */
+    private static class PendingEntry {
+        private ArchiveEntry entry;
+        private AbstractFile entryFile;
+        private AbstractFile destFile;
+
+        private PendingEntry(ArchiveEntry entry, AbstractFile entryFile, AbstractFile destFile) {
+            this.entry = entry;
+            this.entryFile = entryFile;
+            this.destFile = destFile;
+        }
+    }
+
     private static class ProxiedEntryFile extends ProxyFile {
 
         private ArchiveEntry entry;
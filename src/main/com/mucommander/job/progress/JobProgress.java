@@ -25,7 +25,10 @@ import com.mucommander.text.Translator;
 
 /**
  * Contains information about job progress.
- *
+ * <p>
+ * Progress is calculated by {@link JobProgressMonitor} on a background thread and read by listeners on the event
+ * dispatch thread, so access to it is synchronized.
+ * </p>
  */
 public class JobProgress {
 	private FileJob job;
@@ -43,6 +46,7 @@ public class JobProgress {
 	private long lastBytesTotal;
 	private String jobStatusString;
 	private long jobPauseStartDate;
+	private long totalRemainingTime = -1;
 
 	public JobProgress(FileJob job) {
 		this.job = job;
@@ -69,7 +73,7 @@ public class JobProgress {
 	 * @return <code>true</code> if full job progress has been updated,
 	 *         <code>false</code> if only label has been updated.
 	 */
-	public boolean calcJobProgress(boolean fullUpdate) {
+	public synchronized boolean calcJobProgress(boolean fullUpdate) {
 		int jobState = job.getState();
 		jobPauseStartDate = job.getPauseStartDate();
 		if (jobState == FileJob.FINISHED || jobState == FileJob.INTERRUPTED) {
@@ -78,6 +82,10 @@ public class JobProgress {
 			// components (progress bar in particular)
 			// reflect job completion
 			fullUpdate = true;
+		} else if (job.isQueued()) {
+			// Job hasn't started yet, there is no progress to report
+			jobStatusString = Translator.get("progress_dialog.queued");
+			return false;
 		} else {
 			jobStatusString = job.getStatusString();
 		}
@@ -96,7 +104,6 @@ public class JobProgress {
 		}
 
 		long currentFileRemainingTime = 0;
-		long totalRemainingTime;
 
 		effectiveJobTime = job.getEffectiveJobTime();
 		if (effectiveJobTime == 0) {
@@ -165,6 +172,7 @@ public class JobProgress {
 
 			// Avoid potential divisions by zero
 			if (totalPercentFloat == 0) {
+				totalRemainingTime = -1;
 				totalProgressText += "?";
 			} else {
 				// Make sure that total ETA is never smaller than current file
@@ -175,56 +183,67 @@ public class JobProgress {
 						currentFileRemainingTime);
 				totalProgressText += DurationFormat.format(totalRemainingTime);
 			}
+		} else {
+			totalRemainingTime = 0;
 		}
 		return true;
 	}
 
-	public String getJobStatusString() {
+	public synchronized String getJobStatusString() {
 		return jobStatusString;
 	}
 
-	public boolean isTransferFileJob() {
+	public synchronized boolean isTransferFileJob() {
 		return transferFileJob != null;
 	}
 
-	public int getFilePercentInt() {
+	public synchronized int getFilePercentInt() {
 		return filePercentInt;
 	}
 
-	public String getFileProgressText() {
+	public synchronized String getFileProgressText() {
 		return fileProgressText;
 	}
 
-	public long getBytesTotal() {
+	public synchronized long getBytesTotal() {
 		return bytesTotal;
 	}
 
-	public long getTotalBps() {
+	public synchronized long getTotalBps() {
 		return totalBps;
 	}
 
-	public long getLastTime() {
+	public synchronized long getLastTime() {
 		return lastTime;
 	}
 
-	public long getCurrentBps() {
+	public synchronized long getCurrentBps() {
 		return currentBps;
 	}
 
-	public int getTotalPercentInt() {
+	public synchronized int getTotalPercentInt() {
 		return totalPercentInt;
 	}
 
-	public String getTotalProgressText() {
+	public synchronized String getTotalProgressText() {
 		return totalProgressText;
 	}
 
-	public long getEffectiveJobTime() {
+	public synchronized long getEffectiveJobTime() {
 		return effectiveJobTime;
 	}
 
-	public long getJobPauseStartDate() {
+	public synchronized long getJobPauseStartDate() {
 		return jobPauseStartDate;
 	}
 
+	/**
+	 * Returns a rough estimate of the time remaining before the job is
+	 * finished, in milliseconds.
+	 * @return the estimated remaining time, <code>-1</code> if it is unknown
+	 */
+	public synchronized long getTotalRemainingTime() {
+		return totalRemainingTime;
+	}
+
 }
@@ -1,278 +1,343 @@
-/*
- * This file is part of muCommander, http://www.mucommander.com
- * Copyright (C) 2002-2012 Maxence Bernard
- *
- * muCommander is free software; you can redistribute it and/or modify
- * it under the terms of the GNU General Public License as published by
- * the Free Software Foundation; either version 3 of the License, or
- * (at your option) any later version.
- *
- * muCommander is distributed in the hope that it will be useful,
- * but WITHOUT ANY WARRANTY; without even the implied warranty of
- * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- * GNU General Public License for more details.
- *
- * You should have received a copy of the GNU General Public License
- * along with this program.  If not, see <http://www.gnu.org/licenses/>.
- */
-
-package com.mucommander.job.progress;
-
-import com.mucommander.job.FileJob;
-import com.mucommander.job.FileJobListener;
-
-import javax.swing.*;
-import javax.swing.event.EventListenerList;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.util.ArrayList;
-import java.util.List;
-
-/**
- * A class that monitors jobs progress.
- * @author Mariusz Jakubowski
- *
- */
-public class JobProgressMonitor implements FileJobListener {
-	
-    /** Controls how often should current file label be refreshed (in ms) */
-	private final static int CURRENT_FILE_LABEL_REFRESH_RATE = 100;
-	
-	/** Controls how often should progress information be refreshed */
-    private final static int MAIN_REFRESH_RATE = 10;
-    
-    /** Time after which remove finished job from a monitor */
-    private final static int FINISHED_JOB_REMOVE_TIME = 1500;
-
-    /** Timer used to monitor jobs progress */
-    private Timer progressTimer;
-	
-    /** List of listeners */
-	private EventListenerList listenerList = new EventListenerList();
-	
-	/** A list of monitored jobs. */
-	private List<FileJob> jobs = new ArrayList<FileJob>();
-
-	/** An instance of this class */
-	private static final JobProgressMonitor instance = new JobProgressMonitor();
-		
-	
-	/**
-	 * Creates a new JobProgressMonitor instance.
-	 */
-	private JobProgressMonitor() {
-		JobProgressTimer timerListener = new JobProgressTimer(); 
-    	progressTimer = new Timer(CURRENT_FILE_LABEL_REFRESH_RATE, timerListener);
-	}
-	
-	/**
-	 * Returns the instance of JobProgressMonitor.
-	 * @return the instance of JobProgressMonitor.
-	 */
-	public static JobProgressMonitor getInstance() {
-		return instance;
-	}
-    
-	
-    /**
-     * Adds a listener to the list that's notified each time a job 
-     * progress is updated.
-     *
-     * @param	l		the JobProgressListener
-     */
-    public void addJobProgressListener(JobProgressListener l) {
-    	listenerList.add(JobProgressListener.class, l);
-    }
-
-    /**
-     * Removes a listener from the list that's notified each time job
-     * progress is updated.
-     *
-     * @param	l		the JobProgressListener
-     */
-    public void removeJobProgressListener(JobProgressListener l) {
-    	listenerList.remove(JobProgressListener.class, l);
-    }
-
-    /**
-     * Forwards the progress notification event to all
-     * <code>JobProgressListeners</code> that registered
-     * themselves as listeners.
-     * @param source a job for which the progress has been updated
-     * @param fullUpdate if false only file label has been updated 
-     * 
-     * @see #addJobProgressListener
-     * @see JobProgressListener#jobProgress
-     */
-    private void fireJobProgress(FileJob source, boolean fullUpdate) {
-		int idx = jobs.indexOf(source);
-    	Object[] listeners = listenerList.getListenerList();
-    	for (int i = listeners.length-2; i>=0; i-=2) {
-    		((JobProgressListener)listeners[i+1]).jobProgress(source, idx, fullUpdate);
-    	}
-    }
-    
-    /**
-     * Forwards the job added notification event to all
-     * <code>JobProgressListeners</code> that registered
-     * themselves as listeners.
-     * @param source an added job 
-     * @param idx index of a job in a list 
-     * 
-     * @see #addJobProgressListener
-     * @see JobProgressListener#jobAdded(FileJob, int)
-     */
-    private void fireJobAdded(FileJob source, int idx) {
-    	Object[] listeners = listenerList.getListenerList();
-    	for (int i = listeners.length-2; i>=0; i-=2) {
-    		((JobProgressListener)listeners[i+1]).jobAdded(source, idx);
-    	}    	
-    }
-    
-    /**
-     * Forwards the job removed notification event to all
-     * <code>JobProgressListeners</code> that registered
-     * themselves as listeners.
-     * @param source a removed job
-     * @param idx index of a job in a list 
-     * 
-     * @see #addJobProgressListener
-     * @see JobProgressListener#jobRemoved(FileJob, int)
-     */
-    private void fireJobRemoved(FileJob source, int idx) {
-    	Object[] listeners = listenerList.getListenerList();
-    	for (int i = listeners.length-2; i>=0; i-=2) {
-    		((JobProgressListener)listeners[i+1]).jobRemoved(source, idx);
-    	}    	
-    }
-
-    /**
-     * Adds a new job to the list of monitored jobs. 
-     * This method is executed in Swing Thread (EDT).
-     * After adding a new job a {@link JobProgressListener#jobAdded(FileJob, int)} 
-     * event is fired.
-     * @param job a job to be added
-     */
-    public void addJob(final FileJob job) {
-    	// ensure that this method is called in EDT
-    	if (!SwingUtilities.isEventDispatchThread()) {
-    		SwingUtilities.invokeLater(new Runnable() {
-    			public void run() {
-    				addJob(job);
-    			}
-    		});
-    	}
-
-    	jobs.add(job);
-    	int idx = jobs.size() - 1;
-		fireJobAdded(job, idx);    			
-    	if (!progressTimer.isRunning()) {
-    		progressTimer.start();
-    	}
-    	job.addFileJobListener(this);
-    }
-    
-    /**
-     * Removes a job from a list of monitored jobs.
-     * This method is executed in Swing Thread (EDT).
-     * After adding a new job a {@link JobProgressListener#jobRemoved(FileJob, int)} 
-     * event is fired.
-     * @param job a job to be removed
-     */
-    public void removeJob(final FileJob job) {
-    	// ensure that this method is called in EDT
-    	if (!SwingUtilities.isEventDispatchThread()) {
-    		SwingUtilities.invokeLater(new Runnable() {
-    			public void run() {
-    				removeJob(job);
-    			}
-    		});
-    	}
-
-    	int idx = jobs.indexOf(job);
-		if (idx != -1) {
-			jobs.remove(idx);
-		}
-		if (jobs.isEmpty()) {
-			progressTimer.stop();
-		}
-		fireJobRemoved(job, idx);
-		job.removeFileJobListener(this);
-    }
-    
-	/**
-	 * Returns number of monitored jobs.
-	 * @return number of monitored jobs.
-	 */
-	public int getJobCount() {
-		return jobs.size();
-	}
-
-	
-	/**
-	 * Returns a progress of a job with specified index.
-	 * @param rowIndex an index of a job
-	 * @return a progress information or null if job doesn't exists
-	 */
-	public JobProgress getJobProgres(int rowIndex) {
-		if (rowIndex < jobs.size()) {
-			FileJob job = jobs.get(rowIndex);
-			return job.getJobProgress();
-		}
-		return null;
-	}
-
-	/**
-	 * A {@link FileJobListener} implementation.
-	 * Removes a finished job after a small delay.
-	 */
-	public void jobStateChanged(final FileJob source, int oldState, int newState) {
-		if (newState==FileJob.FINISHED || newState==FileJob.INTERRUPTED) {
-			ActionListener jobToRemove = new ActionListener() {
-				public void actionPerformed(ActionEvent e) {
-					removeJob(source);					
-				}
-			}; 
-			Timer timer = new Timer(FINISHED_JOB_REMOVE_TIME, jobToRemove);
-			timer.setRepeats(false);
-			timer.start();
-		}		
-	}
-	
-	
-	
-	/**
-     * 
-     * This class implements a listener for a job progress timer.
-     *
-     */
-	private class JobProgressTimer implements ActionListener {
-		
-		/** a loop index indicating if this refresh is partial (label only) or full */
-		private int loopCount = 0;
-
-		public void actionPerformed(ActionEvent e) {
-			loopCount++;
-
-			boolean fullUpdate;			
-			if (loopCount >= MAIN_REFRESH_RATE) {
-				fullUpdate = true;
-				loopCount = 0;
-			} else {
-				fullUpdate = false;
-			}
-			
-			// for each job calculate new progress and notify listeners
-			for(FileJob job : jobs) {
-				boolean updateFullUI;
-				JobProgress jobProgress = job.getJobProgress();
-				updateFullUI = jobProgress.calcJobProgress(fullUpdate);
-				fireJobProgress(job, updateFullUI);
-			}
-			
-		}
-
-	}
-
-
-}
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job.progress;
+
+import com.mucommander.job.FileJob;
+import com.mucommander.job.FileJobListener;
+
+import javax.swing.*;
+import javax.swing.event.EventListenerList;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A class that monitors jobs progress.
+ * <p>
+ * The progress of all monitored jobs is calculated at a fixed rate on a background thread, and the resulting
+ * notifications are then delivered to listeners on the event dispatch thread in a single batch. If the listeners
+ * haven't processed the previous batch yet, the next update is skipped, so that a busy event dispatch thread is never
+ * flooded with progress notifications.
+ * </p>
+ * @author Mariusz Jakubowski
+ *
+ */
+public class JobProgressMonitor implements FileJobListener {
+	
+    /** Controls how often should current file label be refreshed (in ms) */
+	private final static int CURRENT_FILE_LABEL_REFRESH_RATE = 100;
+	
+	/** Controls how often should progress information be refreshed */
+    private final static int MAIN_REFRESH_RATE = 10;
+    
+    /** Time after which remove finished job from a monitor */
+    private final static int FINISHED_JOB_REMOVE_TIME = 1500;
+
+    /** Thread that calculates jobs progress */
+    private ScheduledThreadPoolExecutor progressExecutor;
+
+    /** Periodic progress calculation, <code>null</code> when no job is monitored */
+    private ScheduledFuture<?> progressTask;
+
+    /** True while a batch of progress notifications is waiting to be delivered on the event dispatch thread */
+    private AtomicBoolean updatePending = new AtomicBoolean();
+	
+    /** List of listeners */
+	private EventListenerList listenerList = new EventListenerList();
+	
+	/** A list of monitored jobs. */
+	private List<FileJob> jobs = new CopyOnWriteArrayList<FileJob>();
+
+	/** An instance of this class */
+	private static final JobProgressMonitor instance = new JobProgressMonitor();
+		
+	
+	/**
+	 * Creates a new JobProgressMonitor instance.
+	 */
+	private JobProgressMonitor() {
+		progressExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Job progress monitor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Returns the instance of JobProgressMonitor.
+	 * @return the instance of JobProgressMonitor.
+	 */
+	public static JobProgressMonitor getInstance() {
+		return instance;
+	}
+    
+	
+    /**
+     * Adds a listener to the list that's notified each time a job 
+     * progress is updated.
+     *
+     * @param	l		the JobProgressListener
+     */
+    public void addJobProgressListener(JobProgressListener l) {
+    	listenerList.add(JobProgressListener.class, l);
+    }
+
+    /**
+     * Removes a listener from the list that's notified each time job
+     * progress is updated.
+     *
+     * @param	l		the JobProgressListener
+     */
+    public void removeJobProgressListener(JobProgressListener l) {
+    	listenerList.remove(JobProgressListener.class, l);
+    }
+
+    /**
+     * Forwards the progress notification event to all
+     * <code>JobProgressListeners</code> that registered
+     * themselves as listeners.
+     * @param source a job for which the progress has been updated
+     * @param fullUpdate if false only file label has been updated 
+     * 
+     * @see #addJobProgressListener
+     * @see JobProgressListener#jobProgress
+     */
+    private void fireJobProgress(FileJob source, boolean fullUpdate) {
+		int idx = jobs.indexOf(source);
+		if (idx == -1) {
+			// job has been removed since its progress was calculated
+			return;
+		}
+    	Object[] listeners = listenerList.getListenerList();
+    	for (int i = listeners.length-2; i>=0; i-=2) {
+    		((JobProgressListener)listeners[i+1]).jobProgress(source, idx, fullUpdate);
+    	}
+    }
+    
+    /**
+     * Forwards the job added notification event to all
+     * <code>JobProgressListeners</code> that registered
+     * themselves as listeners.
+     * @param source an added job 
+     * @param idx index of a job in a list 
+     * 
+     * @see #addJobProgressListener
+     * @see JobProgressListener#jobAdded(FileJob, int)
+     */
+    private void fireJobAdded(FileJob source, int idx) {
+    	Object[] listeners = listenerList.getListenerList();
+    	for (int i = listeners.length-2; i>=0; i-=2) {
+    		((JobProgressListener)listeners[i+1]).jobAdded(source, idx);
+    	}    	
+    }
+    
+    /**
+     * Forwards the job removed notification event to all
+     * <code>JobProgressListeners</code> that registered
+     * themselves as listeners.
+     * @param source a removed job
+     * @param idx index of a job in a list 
+     * 
+     * @see #addJobProgressListener
+     * @see JobProgressListener#jobRemoved(FileJob, int)
+     */
+    private void fireJobRemoved(FileJob source, int idx) {
+    	Object[] listeners = listenerList.getListenerList();
+    	for (int i = listeners.length-2; i>=0; i-=2) {
+    		((JobProgressListener)listeners[i+1]).jobRemoved(source, idx);
+    	}    	
+    }
+
+    /**
+     * Adds a new job to the list of monitored jobs. 
+     * This method is executed in Swing Thread (EDT).
+     * After adding a new job a {@link JobProgressListener#jobAdded(FileJob, int)} 
+     * event is fired.
+     * @param job a job to be added
+     */
+    public void addJob(final FileJob job) {
+    	// ensure that this method is called in EDT
+    	if (!SwingUtilities.isEventDispatchThread()) {
+    		SwingUtilities.invokeLater(new Runnable() {
+    			public void run() {
+    				addJob(job);
+    			}
+    		});
+    		return;
+    	}
+
+    	jobs.add(job);
+    	int idx = jobs.size() - 1;
+		fireJobAdded(job, idx);    			
+    	if (progressTask == null) {
+    		progressTask = progressExecutor.scheduleAtFixedRate(new JobProgressTask(), 
+    				CURRENT_FILE_LABEL_REFRESH_RATE, CURRENT_FILE_LABEL_REFRESH_RATE, TimeUnit.MILLISECONDS);
+    	}
+    	job.addFileJobListener(this);
+    }
+    
+    /**
+     * Removes a job from a list of monitored jobs.
+     * This method is executed in Swing Thread (EDT).
+     * After adding a new job a {@link JobProgressListener#jobRemoved(FileJob, int)} 
+     * event is fired.
+     * @param job a job to be removed
+     */
+    public void removeJob(final FileJob job) {
+    	// ensure that this method is called in EDT
+    	if (!SwingUtilities.isEventDispatchThread()) {
+    		SwingUtilities.invokeLater(new Runnable() {
+    			public void run() {
+    				removeJob(job);
+    			}
+    		});
+    		return;
+    	}
+
+    	int idx = jobs.indexOf(job);
+		if (idx != -1) {
+			jobs.remove(idx);
+		}
+		if (jobs.isEmpty() && progressTask != null) {
+			progressTask.cancel(false);
+			progressTask = null;
+		}
+		fireJobRemoved(job, idx);
+		job.removeFileJobListener(this);
+    }
+    
+	/**
+	 * Returns number of monitored jobs.
+	 * @return number of monitored jobs.
+	 */
+	public int getJobCount() {
+		return jobs.size();
+	}
+
+	
+	/**
+	 * Returns the monitored job with the specified index.
+	 * @param rowIndex an index of a job
+	 * @return a job or null if job doesn't exists
+	 */
+	public FileJob getJob(int rowIndex) {
+		if (rowIndex < jobs.size()) {
+			return jobs.get(rowIndex);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a progress of a job with specified index.
+	 * @param rowIndex an index of a job
+	 * @return a progress information or null if job doesn't exists
+	 */
+	public JobProgress getJobProgres(int rowIndex) {
+		if (rowIndex < jobs.size()) {
+			FileJob job = jobs.get(rowIndex);
+			return job.getJobProgress();
+		}
+		return null;
+	}
+
+	/**
+	 * A {@link FileJobListener} implementation.
+	 * Removes a finished job after a small delay.
+	 */
+	public void jobStateChanged(final FileJob source, int oldState, int newState) {
+		if (newState==FileJob.FINISHED || newState==FileJob.INTERRUPTED) {
+			ActionListener jobToRemove = new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					removeJob(source);					
+				}
+			}; 
+			Timer timer = new Timer(FINISHED_JOB_REMOVE_TIME, jobToRemove);
+			timer.setRepeats(false);
+			timer.start();
+		}		
+	}
+	
+	
+	
+	/**
+     * 
+     * This class calculates the progress of all monitored jobs, and hands the
+     * resulting notifications to the event dispatch thread.
+     *
+     */
+	private class JobProgressTask implements Runnable {
+		
+		/** a loop index indicating if this refresh is partial (label only) or full */
+		private int loopCount = 0;
+
+		public void run() {
+			// Skip this update if the previous one hasn't been delivered yet
+			if (updatePending.get()) {
+				return;
+			}
+
+			loopCount++;
+
+			boolean fullUpdate;			
+			if (loopCount >= MAIN_REFRESH_RATE) {
+				fullUpdate = true;
+				loopCount = 0;
+			} else {
+				fullUpdate = false;
+			}
+			
+			// for each job calculate new progress
+			final List<FileJob> updatedJobs = new ArrayList<FileJob>(jobs);
+			final boolean[] updateFullUI = new boolean[updatedJobs.size()];
+			for (int i = 0; i < updateFullUI.length; i++) {
+				JobProgress jobProgress = updatedJobs.get(i).getJobProgress();
+				updateFullUI[i] = jobProgress.calcJobProgress(fullUpdate);
+			}
+			if (updatedJobs.isEmpty()) {
+				return;
+			}
+
+			// and notify listeners in a single batch
+			updatePending.set(true);
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					try {
+						for (int i = 0; i < updateFullUI.length; i++) {
+							fireJobProgress(updatedJobs.get(i), updateFullUI[i]);
+						}
+					} finally {
+						updatePending.set(false);
+					}
+				}
+			});
+		}
+
+	}
+
+
+}
@@ -21,10 +21,14 @@ package com.mucommander.shell;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.NoSuchElementException;
+import java.util.List;
 import java.util.WeakHashMap;
 
+import javax.swing.SwingUtilities;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,6 +47,10 @@ import com.mucommander.io.backup.BackupOutputStream;
  * Using this class is fairly basic: you can add elements to the shell history through
  * {@link #add(String)} and browse it through {@link #getHistoryIterator()}.
  * </p>
+ * <p>
+ * The history is loaded in the background at startup, this class is thus thread-safe. Listeners are always notified
+ * from the event dispatch thread.
+ * </p>
  * @author Nicolas Rinaudo
  */
 public class ShellHistoryManager {
@@ -67,6 +75,8 @@ public class ShellHistoryManager {
     private static int                                  historyEnd;
     /** Path to the history file. */
     private static AbstractFile                         historyFile;
+    /** Whether the history has been loaded, the history must not be saved before that. */
+    private static volatile boolean                     historyLoaded;
 
 
 
@@ -93,15 +103,33 @@ public class ShellHistoryManager {
      * Registers a listener to changes in the shell history.
      * @param listener listener to register.
      */
-    public static void addListener(ShellHistoryListener listener) {listeners.put(listener, null);}
+    public static synchronized void addListener(ShellHistoryListener listener) {listeners.put(listener, null);}
 
     /**
-     * Propagates shell history events to all registered listeners.
-     * @param command command that was added to the shell history.
+     * Propagates shell history events to all registered listeners, from the event dispatch thread.
+     * @param command command that was added to the shell history, <code>null</code> if the history was cleared.
      */
-    private static void triggerEvent(String command) {
-        for(ShellHistoryListener listener : listeners.keySet())
-            listener.historyChanged(command);
+    private static void triggerEvent(final String command) {
+        final List<ShellHistoryListener> currentListeners;
+        synchronized(ShellHistoryManager.class) {
+            currentListeners = new ArrayList<ShellHistoryListener>(listeners.keySet());
+        }
+
+        Runnable notifier = new Runnable() {
+            public void run() {
+                for(ShellHistoryListener listener : currentListeners) {
+                    if(command==null)
+                        listener.historyCleared();
+                    else
+                        listener.historyChanged(command);
+                }
+            }
+        };
+
+        if(SwingUtilities.isEventDispatchThread())
+            notifier.run();
+        else
+            SwingUtilities.invokeLater(notifier);
     }
 
 
@@ -113,19 +141,29 @@ public class ShellHistoryManager {
      */
     public static void clear() {
         // Empties history.
-        historyStart = 0;
-        historyEnd   = 0;
+        synchronized(ShellHistoryManager.class) {
+            historyStart = 0;
+            historyEnd   = 0;
+        }
 
         // Notifies listeners.
-        for(ShellHistoryListener listener : listeners.keySet())
-            listener.historyCleared();
+        triggerEvent(null);
     }
 
     /**
-     * Returns a <b>non thread-safe</b> iterator on the history.
+     * Returns an iterator on a snapshot of the history, which is not affected by later changes.
      * @return an iterator on the history.
      */
-    public static Iterator<String> getHistoryIterator() {return new HistoryIterator();}
+    public static synchronized Iterator<String> getHistoryIterator() {
+        List<String> commands = new ArrayList<String>();
+        for(int index = historyStart; index != historyEnd; ) {
+            commands.add(history[index]);
+            if(++index == history.length)
+                index = 0;
+        }
+
+        return Collections.unmodifiableList(commands).iterator();
+    }
 
     /**
      * Adds the specified command to shell history.
@@ -135,6 +173,22 @@ public class ShellHistoryManager {
         // Ignores empty commands.
         if(command.trim().equals(""))
             return;
+
+        synchronized(ShellHistoryManager.class) {
+            if(!addToHistory(command))
+                return;
+        }
+
+        // Propagates the event.
+        triggerEvent(command);
+    }
+
+    /**
+     * Adds the specified command to the history buffer, unless it's the same as the last one.
+     * @param  command command to add to the shell history.
+     * @return         <code>true</code> if the command was added.
+     */
+    private static boolean addToHistory(String command) {
         // Ignores the command if it's the same as the last one.
         // There is no last command if history is empty.
         if(historyEnd != historyStart) {
@@ -147,7 +201,7 @@ public class ShellHistoryManager {
                 lastIndex = historyEnd - 1;
 
             if(command.equals(history[lastIndex]))
-                return;
+                return false;
         }
 
         LOGGER.debug("Adding  " + command + " to shell history.");
@@ -166,8 +220,7 @@ public class ShellHistoryManager {
                 historyStart = 0;
         }
 
-        // Propagates the event.
-        triggerEvent(command);
+        return true;
     }
 
 
@@ -246,6 +299,12 @@ public class ShellHistoryManager {
     public static void writeHistory() throws IOException {
         BackupOutputStream out;
 
+        // Do not overwrite the history file with a partial history if the application quits while it is being loaded
+        if(!historyLoaded) {
+            LOGGER.info("Shell history has not been loaded, not saving it");
+            return;
+        }
+
         out = null;
         try {ShellHistoryWriter.write(out = new BackupOutputStream(getHistoryFile()));}
         finally {
@@ -266,6 +325,7 @@ public class ShellHistoryManager {
         in = null;
         try {ShellHistoryReader.read(in = new BackupInputStream(getHistoryFile()));}
         finally {
+            historyLoaded = true;
             if(in != null) {
                 try {in.close();}
                 catch(Exception e2) {}
@@ -273,45 +333,4 @@ public class ShellHistoryManager {
         }
     }
 
-    /**
-     * Iterator used to browse history.
-     * @author Nicolas Rinaudo
-     */
-    static class HistoryIterator implements Iterator<String> {
-        /** Index in the history. */
-        private int index;
-
-        /**
-         * Creates a new history iterator.
-         */
-        public HistoryIterator() {index = ShellHistoryManager.historyStart;}
-
-        /**
-         * Returns <code>true</code> if there are more elements to iterate through.
-         * @return <code>true</code> if there are more elements to iterate through, <code>false</code> otherwise.
-         */
-        public boolean hasNext() {return index != ShellHistoryManager.historyEnd;}
-
-        /**
-         * Returns the next element in the history.
-         * @return the next element in the history.
-         */
-        public String next() throws NoSuchElementException {
-            String value;
-
-            if(!hasNext())
-                throw new NoSuchElementException();
-
-            value = ShellHistoryManager.history[index];
-            if(++index == ShellHistoryManager.history.length)
-                index = 0;
-            return value;
-        }
-
-        /**
-         * Operation not supported.
-         */
-        public void remove() throws UnsupportedOperationException {throw new UnsupportedOperationException();}
-    }
-
 }
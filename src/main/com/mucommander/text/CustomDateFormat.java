@@ -26,11 +26,18 @@ import com.mucommander.conf.MuPreferences;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.TimeZone;
 
 
 /**
  * CustomDateFormat allows custom date formatting, according to the date format stored in the preferences.
  *
+ * <p>Formatting methods are thread-safe and do not synchronize: each thread formats dates with its own
+ * <code>SimpleDateFormat</code> instance, which is replaced when the date format changes in the preferences.
+ * Each thread also remembers the strings it has recently returned, indexed by minute (or by second if the format
+ * displays seconds), so that dates that fall within the same minute -- typically, files that were written together --
+ * are formatted only once.</p>
+ *
  * @author Maxence Bernard
  */
 public class CustomDateFormat implements ConfigurationListener {
@@ -38,8 +45,11 @@ public class CustomDateFormat implements ConfigurationListener {
     /** Singleton instance */
     private static CustomDateFormat singleton;
 
-    /** Custom SimpleDateFormat instance */
-    private static SimpleDateFormat dateFormat;
+    /** Date format currently in use, in the format used by <code>SimpleDateFormat</code> */
+    private static volatile String dateFormatString;
+
+    /** Formatter confined to the current thread */
+    private final static ThreadLocal<ThreadDateFormat> THREAD_DATE_FORMAT = new ThreadLocal<ThreadDateFormat>();
 
 
     /**
@@ -58,7 +68,7 @@ public class CustomDateFormat implements ConfigurationListener {
         singleton = new CustomDateFormat();
         MuConfigurations.addPreferencesListener(singleton);
 
-        dateFormat = createDateFormat();
+        dateFormatString = getDateFormatString();
     }
 
 
@@ -99,16 +109,9 @@ public class CustomDateFormat implements ConfigurationListener {
     /**
      * Forces CustomDateFormat to update the date format by looking it up in the preferences.
      */
-    public static synchronized void updateDateFormat() {
-        dateFormat = createDateFormat();
-    }
-
-
-    /**
-     * Creates and returns a SimpleDateFormat instance using the date format stored in the preferences.
-     */
-    private static SimpleDateFormat createDateFormat() {
-        return new SimpleDateFormat(getDateFormatString());
+    public static void updateDateFormat() {
+        // Threads will replace their formatter the next time they format a date
+        dateFormatString = getDateFormatString();
     }
 	
 	
@@ -117,13 +120,30 @@ public class CustomDateFormat implements ConfigurationListener {
      *
      * @return a formatted string representing the given date.
      */
-    public static synchronized String format(Date date) {
-        // Calls to SimpleDateFormat MUST be synchronized otherwise it will start throwing exceptions (verified that!),
-        // that is why this method is synchronized.
+    public static String format(Date date) {
+        return format(date.getTime());
+    }
+
+    /**
+     * Formats the given date, expressed in milliseconds since the epoch, with custom date format and returns
+     * a formatted date string. Unlike {@link #format(Date)}, this method does not require a <code>Date</code> instance
+     * to be created.
+     *
+     * @param time the date to format, in milliseconds since the epoch
+     * @return a formatted string representing the given date.
+     */
+    public static String format(long time) {
+        String pattern = dateFormatString;
+
         // Quote from SimpleDateFormat's Javadoc: "Date formats are not synchronized. It is recommended to create
-        // separate format instances for each thread. If multiple threads access a format concurrently, 
-        // it must be synchronized externally."
-        return dateFormat.format(date);
+        // separate format instances for each thread."
+        ThreadDateFormat threadDateFormat = THREAD_DATE_FORMAT.get();
+        if(threadDateFormat==null || threadDateFormat.pattern!=pattern) {
+            threadDateFormat = new ThreadDateFormat(pattern);
+            THREAD_DATE_FORMAT.set(threadDateFormat);
+        }
+
+        return threadDateFormat.format(time);
     }
 	
 
@@ -140,4 +160,74 @@ public class CustomDateFormat implements ConfigurationListener {
         if (var.equals(MuPreferences.TIME_FORMAT) || var.equals(MuPreferences.DATE_FORMAT) || var.equals(MuPreferences.DATE_SEPARATOR))
             updateDateFormat();
     }
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * A <code>SimpleDateFormat</code> confined to a thread, along with the strings it has recently returned.
+     * Recent strings are kept in a direct-mapped table indexed by the local time bucket (minute or second) they
+     * belong to.
+     */
+    private static class ThreadDateFormat {
+
+        /** Number of recently formatted dates remembered, must be a power of 2 */
+        private final static int MEMO_SIZE = 256;
+
+        /** Pattern this formatter was created with */
+        private final String pattern;
+
+        private final SimpleDateFormat dateFormat;
+
+        private final TimeZone timeZone;
+
+        /** Reused for each date that is formatted */
+        private final Date date = new Date();
+
+        /** Length of a time bucket in milliseconds, 0 if the pattern displays milliseconds */
+        private final long bucketLength;
+
+        private final long memoBuckets[] = new long[MEMO_SIZE];
+
+        private final String memoStrings[] = new String[MEMO_SIZE];
+
+        private ThreadDateFormat(String pattern) {
+            this.pattern = pattern;
+            this.dateFormat = new SimpleDateFormat(pattern);
+            this.timeZone = dateFormat.getTimeZone();
+
+            // Dates that are in the same local minute (or second) are formatted the same way, unless the format
+            // displays seconds (or milliseconds), or the time zone which may differ for the same local time
+            if(pattern.indexOf('S')!=-1 || pattern.indexOf('z')!=-1 || pattern.indexOf('Z')!=-1)
+                bucketLength = 0;
+            else if(pattern.indexOf('s')!=-1)
+                bucketLength = 1000;
+            else
+                bucketLength = 60000;
+        }
+
+        private String format(long time) {
+            // Buckets are computed in local time, as time zone offsets are not always whole minutes
+            long localTime = time+timeZone.getOffset(time);
+            if(bucketLength==0 || localTime<0) {
+                date.setTime(time);
+                return dateFormat.format(date);
+            }
+
+            long bucket = localTime/bucketLength;
+            int slot = (int)bucket&(MEMO_SIZE-1);
+            String formatted = memoStrings[slot];
+            if(formatted!=null && memoBuckets[slot]==bucket)
+                return formatted;
+
+            date.setTime(time);
+            formatted = dateFormat.format(date);
+            memoBuckets[slot] = bucket;
+            memoStrings[slot] = formatted;
+
+            return formatted;
+        }
+    }
 }
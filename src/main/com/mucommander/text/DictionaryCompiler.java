@@ -0,0 +1,245 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.text;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiles a text dictionary file into compact binary tables, one per language, so that {@link Translator} only has
+ * to read the entries of the current and default languages on startup, without any parsing.
+ *
+ * <p>For a dictionary file named <code>dictionary.txt</code>, the following files are created:
+ * <ul>
+ *  <li><code>dictionary.bin</code>: lists the available languages</li>
+ *  <li><code>dictionary_&lt;lang&gt;.bin</code>: contains the entries of the <code>&lt;lang&gt;</code> language,
+ * with escape sequences already decoded</li>
+ * </ul>
+ * This class is run by the build; it also provides the methods that {@link Translator} uses to read those files.
+ * </p>
+ *
+ * @see Translator
+ */
+public class DictionaryCompiler {
+
+    /** Identifies compiled dictionary files */
+    private final static int MAGIC = 0x6D754443;
+    /** Version of the compiled dictionary format, incremented whenever it changes */
+    private final static int FORMAT_VERSION = 1;
+
+    /** Extension of the text dictionary file */
+    final static String TEXT_EXTENSION = ".txt";
+    /** Extension of compiled dictionary files */
+    final static String COMPILED_EXTENSION = ".bin";
+
+    /**
+     * Prevents instance creation.
+     */
+    private DictionaryCompiler() {}
+
+
+    /**
+     * Returns the name of the compiled file that lists available languages, for the given text dictionary name.
+     *
+     * @param textName name or path of the text dictionary file
+     * @return name or path of the corresponding index file
+     */
+    static String getIndexName(String textName) {
+        return getBaseName(textName)+COMPILED_EXTENSION;
+    }
+
+    /**
+     * Returns the name of the compiled file that contains the entries of the given language, for the given text
+     * dictionary name.
+     *
+     * @param textName name or path of the text dictionary file
+     * @param language a language code, as listed by the available languages entry
+     * @return name or path of the corresponding language file
+     */
+    static String getLanguageName(String textName, String language) {
+        return getBaseName(textName)+"_"+language+COMPILED_EXTENSION;
+    }
+
+    private static String getBaseName(String textName) {
+        return textName.endsWith(TEXT_EXTENSION)?textName.substring(0, textName.length()-TEXT_EXTENSION.length()):textName;
+    }
+
+    /**
+     * Compiles the given text dictionary file into the given folder.
+     *
+     * @param textFile the text dictionary file
+     * @param destFolder the folder in which to create the compiled files
+     * @throws IOException if the dictionary could not be read or the compiled files could not be written
+     */
+    public static void compile(File textFile, File destFolder) throws IOException {
+        String[] languages = null;
+        // Entries of each language, keyed by the lower-cased language code
+        Map<String, Map<String, String>> entries = new LinkedHashMap<String, Map<String, String>>();
+
+        DictionaryReader reader = new DictionaryReader(new FileInputStream(textFile));
+        try {
+            while(reader.next()) {
+                if(reader.isAvailableLanguages()) {
+                    languages = reader.getAvailableLanguages();
+                    continue;
+                }
+
+                String lang = reader.getLanguage().toLowerCase();
+                Map<String, String> langEntries = entries.get(lang);
+                if(langEntries==null) {
+                    langEntries = new LinkedHashMap<String, String>();
+                    entries.put(lang, langEntries);
+                }
+                langEntries.put(reader.getKey(), reader.getValue());
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        if(languages==null)
+            throw new IOException("No "+Translator.AVAILABLE_LANGUAGES_KEY+" entry in "+textFile);
+
+        if(!destFolder.exists() && !destFolder.mkdirs())
+            throw new IOException("Could not create "+destFolder);
+
+        String textName = textFile.getName();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(destFolder, getIndexName(textName)))));
+        try {
+            writeHeader(out);
+            out.writeInt(languages.length);
+            for(String language : languages)
+                out.writeUTF(language);
+        }
+        finally {
+            out.close();
+        }
+
+        // Name language files after the case used by the available languages entry, that Translator relies on
+        Map<String, String> languageNames = new HashMap<String, String>();
+        for(String language : languages)
+            languageNames.put(language.toLowerCase(), language);
+
+        for(Map.Entry<String, Map<String, String>> langEntries : entries.entrySet()) {
+            String language = languageNames.get(langEntries.getKey());
+            if(language==null)
+                continue;   // Entries of undeclared languages are never used
+
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(destFolder, getLanguageName(textName, language)))));
+            try {
+                writeHeader(out);
+                out.writeInt(langEntries.getValue().size());
+                for(Map.Entry<String, String> entry : langEntries.getValue().entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue());
+                }
+            }
+            finally {
+                out.close();
+            }
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+    }
+
+    private static DataInputStream openCompiledFile(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(new BufferedInputStream(in, 32768));
+        if(din.readInt()!=MAGIC || din.readInt()!=FORMAT_VERSION) {
+            din.close();
+            throw new IOException("Not a compiled dictionary file, or compiled with another version");
+        }
+
+        return din;
+    }
+
+    /**
+     * Reads the languages listed by a compiled index file. The stream is closed by this method.
+     *
+     * @param in stream to an index file
+     * @return the available languages
+     * @throws IOException if an I/O error occurred or the stream is not an index file
+     */
+    static String[] readLanguages(InputStream in) throws IOException {
+        DataInputStream din = openCompiledFile(in);
+        try {
+            String[] languages = new String[din.readInt()];
+            for(int i=0; i<languages.length; i++)
+                languages[i] = din.readUTF();
+
+            return languages;
+        }
+        finally {
+            din.close();
+        }
+    }
+
+    /**
+     * Reads the entries of a compiled language file into the given map, skipping keys that are contained in
+     * <code>skip</code>. The stream is closed by this method.
+     *
+     * @param in stream to a language file
+     * @param entries the map to add the entries to
+     * @param skip keys that must not be added to <code>entries</code>, may be <code>null</code>
+     * @throws IOException if an I/O error occurred or the stream is not a language file
+     */
+    static void readEntries(InputStream in, Map<String, TextTemplate> entries, Map<String, TextTemplate> skip) throws IOException {
+        DataInputStream din = openCompiledFile(in);
+        try {
+            int nbEntries = din.readInt();
+            for(int i=0; i<nbEntries; i++) {
+                String key = din.readUTF();
+                String value = din.readUTF();
+                if(skip==null || !skip.containsKey(key))
+                    entries.put(key, TextTemplate.parse(value));
+            }
+        }
+        finally {
+            din.close();
+        }
+    }
+
+    /**
+     * Compiles a text dictionary file.
+     *
+     * @param args the text dictionary file and the destination folder
+     * @throws IOException if an I/O error occurred
+     */
+    public static void main(String args[]) throws IOException {
+        if(args.length<2) {
+            System.out.println("usage: DictionaryCompiler dictionaryFile destFolder");
+            return;
+        }
+
+        compile(new File(args[0]), new File(args[1]));
+    }
+}
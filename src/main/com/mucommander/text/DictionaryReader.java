@@ -0,0 +1,214 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.text;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.mucommander.commons.io.bom.BOMReader;
+
+/**
+ * Reads the entries of a text dictionary file, one <code>&lt;key&gt;:&lt;lang&gt;:&lt;value&gt;</code> line at a time.
+ * Comment and blank lines are skipped, keys are returned in lower case and the <code>\n</code> and
+ * <code>\\uxxxx</code> escape sequences of values are decoded in a single pass.
+ *
+ * <p>This class is used both by {@link Translator} when no compiled dictionary is available, and by
+ * {@link DictionaryCompiler} to produce the compiled dictionary.</p>
+ *
+ * @see Translator
+ * @see DictionaryCompiler
+ */
+class DictionaryReader {
+
+    /** Underlying reader */
+    private BufferedReader reader;
+
+    /** The line that was last read */
+    private String line;
+
+    /** Key of the entry that was last read, in lower case */
+    private String key;
+
+    /** Language of the entry that was last read, or <code>null</code> for the available languages entry */
+    private String language;
+
+    /** Decoded value of the entry that was last read */
+    private String value;
+
+    /** Reused to decode escape sequences */
+    private StringBuilder sb = new StringBuilder();
+
+
+    /**
+     * Creates a new <code>DictionaryReader</code> reading the given stream, which must be UTF-8 encoded (optionally
+     * with a BOM).
+     *
+     * @param in the stream to read the dictionary from
+     * @throws IOException if the stream could not be read
+     */
+    DictionaryReader(InputStream in) throws IOException {
+        reader = new BufferedReader(new BOMReader(in));
+    }
+
+    /**
+     * Advances to the next entry of the dictionary. Returns <code>false</code> once the end of the file has been
+     * reached.
+     *
+     * @return <code>true</code> if an entry was read
+     * @throws IOException if an I/O error occurred or if the line is not a valid entry
+     */
+    boolean next() throws IOException {
+        while((line = reader.readLine())!=null) {
+            int start = 0;
+            int length = line.length();
+            while(start<length && Character.isWhitespace(line.charAt(start)))
+                start++;
+            if(start==length || line.charAt(start)=='#')
+                continue;
+
+            int keyEnd = line.indexOf(':', start);
+            if(keyEnd==-1)
+                throw new IOException("Syntax error in line " + line);
+
+            key = line.substring(start, keyEnd).trim().toLowerCase();
+
+            // Special key that lists available languages
+            if(key.equals(Translator.AVAILABLE_LANGUAGES_KEY)) {
+                language = null;
+                value = line.substring(keyEnd+1);
+                return true;
+            }
+
+            int langEnd = line.indexOf(':', keyEnd+1);
+            if(langEnd==-1)
+                throw new IOException("Syntax error in line " + line);
+
+            language = line.substring(keyEnd+1, langEnd).trim();
+            value = decode(line, langEnd+1);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if the entry that was last read lists the available languages, in which case
+     * {@link #getAvailableLanguages()} can be called.
+     *
+     * @return <code>true</code> if the entry that was last read lists the available languages
+     */
+    boolean isAvailableLanguages() {
+        return language==null;
+    }
+
+    /**
+     * Returns the languages listed by the entry that was last read, which must be the
+     * {@link #isAvailableLanguages() available languages} entry.
+     *
+     * @return the languages listed by the entry that was last read
+     */
+    String[] getAvailableLanguages() {
+        String[] languages = value.split(",");
+        for(int i=0; i<languages.length; i++)
+            languages[i] = languages[i].trim();
+
+        return languages;
+    }
+
+    /**
+     * Returns the key of the entry that was last read, in lower case.
+     *
+     * @return the key of the entry that was last read
+     */
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the language of the entry that was last read, as it appears in the file.
+     *
+     * @return the language of the entry that was last read
+     */
+    String getLanguage() {
+        return language;
+    }
+
+    /**
+     * Returns the value of the entry that was last read, with escape sequences decoded.
+     *
+     * @return the value of the entry that was last read
+     */
+    String getValue() {
+        return value;
+    }
+
+    /**
+     * Closes the underlying stream.
+     *
+     * @throws IOException if an I/O error occurred
+     */
+    void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Returns the portion of the given line starting at <code>start</code>, with <code>\n</code> and
+     * <code>\\uxxxx</code> sequences replaced by the characters they designate.
+     *
+     * @param line the line to decode
+     * @param start index of the first character of the value
+     * @return the decoded value
+     * @throws IOException if a unicode escape sequence is malformed
+     */
+    private String decode(String line, int start) throws IOException {
+        int pos = line.indexOf('\\', start);
+        if(pos==-1)
+            return line.substring(start);
+
+        sb.setLength(0);
+        int length = line.length();
+        int from = start;
+        while(pos!=-1 && pos<length-1) {
+            char c = line.charAt(pos+1);
+            if(c=='n') {
+                sb.append(line, from, pos).append('\n');
+                from = pos+2;
+            }
+            else if(c=='u') {
+                if(pos+6>length)
+                    throw new IOException("Syntax error in line " + line);
+                try {
+                    sb.append(line, from, pos).append((char)Integer.parseInt(line.substring(pos+2, pos+6), 16));
+                }
+                catch(NumberFormatException e) {
+                    throw new IOException("Syntax error in line " + line);
+                }
+                from = pos+6;
+            }
+            // Any other backslash is not an escape sequence and is left untouched
+
+            pos = line.indexOf('\\', Math.max(pos+1, from));
+        }
+        sb.append(line, from, length);
+
+        return sb.toString();
+    }
+}
@@ -81,11 +81,20 @@ public class SizeFormat {
     /** Ten terabytes: (2^40)*10 */
     private final static long TB_10 = 10995116277760l;
 
-    /** DecimalFormat instance to localize thousands separators */
+    /** DecimalFormat instance of the current locale, only used to retrieve localized separators */
     private final static DecimalFormat DECIMAL_FORMAT = (DecimalFormat)NumberFormat.getInstance();
 
     /** Localized decimal separator */
-    private final static String DECIMAL_SEPARATOR = ""+DECIMAL_FORMAT.getDecimalFormatSymbols().getDecimalSeparator();
+    private final static char DECIMAL_SEPARATOR = DECIMAL_FORMAT.getDecimalFormatSymbols().getDecimalSeparator();
+
+    /** Localized thousands separator */
+    private final static char GROUPING_SEPARATOR = DECIMAL_FORMAT.getDecimalFormatSymbols().getGroupingSeparator();
+
+    /** Localized zero digit, digits of other locales are offset from it */
+    private final static char ZERO_DIGIT = DECIMAL_FORMAT.getDecimalFormatSymbols().getZeroDigit();
+
+    /** Number of digits between thousands separators, 0 if the current locale doesn't use them */
+    private final static int GROUPING_SIZE = DECIMAL_FORMAT.isGroupingUsed()?DECIMAL_FORMAT.getGroupingSize():0;
 
 
     /////////////////////
@@ -105,6 +114,10 @@ public class SizeFormat {
 
     /**
      * Returns a String representation of the given byte size.
+     * <p>
+     * This method is thread-safe and does not synchronize: the digits are written directly into the returned string's
+     * buffer, thousands separators included, without going through a shared <code>DecimalFormat</code>.
+     * </p>
      *
      * @param size the size to format
      * @param format format bitmask, see constant fields for allowed values
@@ -114,8 +127,8 @@ public class SizeFormat {
         if(size<0)
             return "?";
 
-        String digitsString;
         String unitString;
+        StringBuilder sb = new StringBuilder(24);
 		
         // Whether the unit string should be long or not
         boolean unitLong = (format&UNIT_LONG)!=0;
@@ -132,69 +145,61 @@ public class SizeFormat {
         if(size<KB_1) {
             if(roundToKb) {
                 // Note: ROUND_TO_KB must have precedence over DIGITS_FULL
-                digitsString = size==0?"0":"1";
+                sb.append(size==0?'0':'1');
                 unitString = noUnit?"":KB;
             }
             else {
-                digitsString = ""+size;
+                sb.append(size);
                 unitString = unitLong?(size<=1?BYTE:BYTES):unitShort?B:"";
             }
         }
         else if((format&DIGITS_FULL)!=0) {
-            // DecimalFormat localizes thousands separators
-
-            // Calls to DecimalFormat must be synchronized.
-            // Quote from DecimalFormat's Javadoc: "Decimal formats are generally not synchronized. It is recommended 
-            // to create separate format instances for each thread. If multiple threads access a format concurrently,
-            // it must be synchronized externally."
-            synchronized(DECIMAL_FORMAT) {
-                digitsString = DECIMAL_FORMAT.format(size);
-            }
+            appendGroupedDigits(sb, size);
             unitString = unitLong?BYTES:unitShort?B:"";
         }
         else {
             // size < 10KB	-> "9.6 KB"
             if(size<KB_10 && !digitsShort) {
                 int nKB = (int)size/KB_1;
-                digitsString = nKB+DECIMAL_SEPARATOR+(int)((size-nKB*KB_1)/(float)KB_1*10);
+                sb.append(nKB).append(DECIMAL_SEPARATOR).append((int)((size-nKB*KB_1)/(float)KB_1*10));
                 unitString = noUnit?"":KB;
             }
             // size < 1MB -> "436 KB"
             else if(size<MB_1) {
-                digitsString = ""+size/KB_1;
+                sb.append(size/KB_1);
                 unitString = noUnit?"":KB;
             }
             // size < 10MB -> "4.3 MB"
             else if(size<MB_10 && !digitsShort) {
                 int nMB = (int)size/MB_1;
-                digitsString = nMB+DECIMAL_SEPARATOR+(int)((size-nMB*MB_1)/(float)MB_1*10);
+                sb.append(nMB).append(DECIMAL_SEPARATOR).append((int)((size-nMB*MB_1)/(float)MB_1*10));
                 unitString = noUnit?"":MB;
             }
             // size < 1GB -> "548 MB"
             else if(size<GB_1) {
-                digitsString = ""+size/MB_1;
+                sb.append(size/MB_1);
                 unitString = noUnit?"":MB;
             }	
             // size < 10GB -> "4.8 GB"
             else if(size<GB_10 && !digitsShort) {
                 long nGB = size/GB_1;
-                digitsString = nGB+DECIMAL_SEPARATOR+(int)((size-nGB*GB_1)/(double)GB_1*10);
+                sb.append(nGB).append(DECIMAL_SEPARATOR).append((int)((size-nGB*GB_1)/(double)GB_1*10));
                 unitString = noUnit?"":GB;
             }
             // size < 1TB -> "216 GB"
             else if(size<TB_1) {
-                digitsString = ""+size/GB_1;
+                sb.append(size/GB_1);
                 unitString = noUnit?"":GB;
             }
             // size < 10TB -> "4.8 TB"
             else if(size<TB_10 && !digitsShort) {
                 long nTB = size/TB_1;
-                digitsString = nTB+DECIMAL_SEPARATOR+(int)((size-nTB*TB_1)/(double)TB_1*10);
+                sb.append(nTB).append(DECIMAL_SEPARATOR).append((int)((size-nTB*TB_1)/(double)TB_1*10));
                 unitString = noUnit?"":TB;
             }
             else {
                 // Will I live long enough to see files that large ??
-                digitsString = ""+size/TB_1;
+                sb.append(size/TB_1);
                 unitString = noUnit?"":TB;
             }
         }
@@ -203,7 +208,31 @@ public class SizeFormat {
         if((format&UNIT_SPEED)!=0)
             unitString = Translator.get(SPEED_KEY, unitString);
 
-        return digitsString+((format&INCLUDE_SPACE)!=0?" ":"")+unitString;
+        if((format&INCLUDE_SPACE)!=0)
+            sb.append(' ');
+
+        return sb.append(unitString).toString();
+    }
+
+    /**
+     * Appends the given positive number to the given buffer with localized thousands separators, the same way the
+     * default <code>DecimalFormat</code> of the current locale would.
+     */
+    private static void appendGroupedDigits(StringBuilder sb, long number) {
+        int start = sb.length();
+        sb.append(number);
+
+        if(ZERO_DIGIT!='0') {
+            for(int i=start; i<sb.length(); i++)
+                sb.setCharAt(i, (char)(ZERO_DIGIT+(sb.charAt(i)-'0')));
+        }
+
+        if(GROUPING_SIZE<=0)
+            return;
+
+        // Insert separators from right to left
+        for(int pos=sb.length()-GROUPING_SIZE; pos>start; pos-=GROUPING_SIZE)
+            sb.insert(pos, GROUPING_SEPARATOR);
     }
     
 
@@ -0,0 +1,146 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A dictionary value that has been split once and for all into literal text, parameters (<code>%1</code>,
+ * <code>%2</code>, ...) and references to other entries (<code>$[key]</code>), so that {@link Translator#get(String, String...)}
+ * doesn't have to scan and rebuild the value each time it is requested.
+ *
+ * <p>Values that contain neither parameters nor references, which are the vast majority, are not split at all and
+ * are returned as is.</p>
+ *
+ * @see Translator
+ */
+class TextTemplate {
+
+    /** Part type of literal text */
+    private final static int LITERAL = -1;
+    /** Part type of a reference to another entry. Parameters use their number (1 to 9) as type. */
+    private final static int REFERENCE = 0;
+
+    /** The unparsed value */
+    private final String text;
+
+    /** Literal text or referenced key of each part, <code>null</code> if the value is made of literal text only */
+    private final String[] parts;
+
+    /** Type of each part: {@link #LITERAL}, {@link #REFERENCE} or a parameter number */
+    private final int[] types;
+
+
+    private TextTemplate(String text, String[] parts, int[] types) {
+        this.text = text;
+        this.parts = parts;
+        this.types = types;
+    }
+
+    /**
+     * Parses the given dictionary value.
+     *
+     * @param text the dictionary value to parse
+     * @return the parsed template
+     */
+    static TextTemplate parse(String text) {
+        if(text.indexOf('%')==-1 && text.indexOf("$[")==-1)
+            return new TextTemplate(text, null, null);
+
+        List<String> parts = new ArrayList<String>();
+        List<Integer> types = new ArrayList<Integer>();
+        int length = text.length();
+        int from = 0;
+        int pos = 0;
+        while(pos<length-1) {
+            char c = text.charAt(pos);
+            char next = text.charAt(pos+1);
+            int end;
+            if(c=='%' && next>='1' && next<='9') {
+                addLiteral(text, from, pos, parts, types);
+                parts.add(null);
+                types.add(next-'0');
+                from = pos = pos+2;
+            }
+            else if(c=='$' && next=='[' && (end=text.indexOf(']', pos+2))!=-1) {
+                addLiteral(text, from, pos, parts, types);
+                parts.add(text.substring(pos+2, end));
+                types.add(REFERENCE);
+                from = pos = end+1;
+            }
+            else {
+                pos++;
+            }
+        }
+        addLiteral(text, from, length, parts, types);
+
+        int nbParts = types.size();
+        int[] typesArray = new int[nbParts];
+        for(int i=0; i<nbParts; i++)
+            typesArray[i] = types.get(i);
+
+        return new TextTemplate(text, parts.toArray(new String[nbParts]), typesArray);
+    }
+
+    private static void addLiteral(String text, int from, int to, List<String> parts, List<Integer> types) {
+        if(to>from) {
+            parts.add(text.substring(from, to));
+            types.add(LITERAL);
+        }
+    }
+
+    /**
+     * Returns the dictionary value this template was parsed from.
+     *
+     * @return the unparsed dictionary value
+     */
+    String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the value of this template, replacing parameters by the given values and references by the value of
+     * the entry they refer to. Parameters for which no value is specified are left untouched.
+     *
+     * @param paramValues values of the parameters, may be <code>null</code>
+     * @return the formatted value
+     */
+    String format(String[] paramValues) {
+        if(parts==null)
+            return text;
+
+        int nbParams = paramValues==null?0:paramValues.length;
+        StringBuilder sb = new StringBuilder(text.length()+16);
+        for(int i=0; i<parts.length; i++) {
+            int type = types[i];
+            if(type==LITERAL)
+                sb.append(parts[i]);
+            else if(type==REFERENCE)
+                sb.append(Translator.get(parts[i], paramValues));
+            else if(type<=nbParams)
+                sb.append(paramValues[type-1]);
+            else
+                sb.append('%').append(type);
+        }
+
+        return sb.toString();
+    }
+}
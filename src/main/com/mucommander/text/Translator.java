@@ -22,9 +22,11 @@ import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Locale;
@@ -55,10 +57,10 @@ public class Translator {
 	private static final Logger LOGGER = LoggerFactory.getLogger(Translator.class);
 	
     /** Contains key/value pairs for the current language */
-    private static Map<String, String> dictionary;
+    private static Map<String, TextTemplate> dictionary;
 
     /** Contains key/value pairs for the default language, for entries that are not defined in the current language */
-    private static Map<String, String> defaultDictionary;
+    private static Map<String, TextTemplate> defaultDictionary;
     
     /** List of all available languages in the dictionary file */
     private static List<String> availableLanguages;
@@ -70,7 +72,7 @@ public class Translator {
     private final static String DEFAULT_LANGUAGE = "EN";
 
     /** Key for available languages */
-    private final static String AVAILABLE_LANGUAGES_KEY = "available_languages";
+    final static String AVAILABLE_LANGUAGES_KEY = "available_languages";
 
     /**
      * Prevents instance creation.
@@ -141,82 +143,121 @@ public class Translator {
     }
 
     /**
-     * Loads the specified dictionary file, which contains localized text entries.
+     * Loads the specified dictionary file, which contains localized text entries. Only the entries of the current
+     * language and of the {@link #DEFAULT_LANGUAGE default language} are loaded.
+     * <p>
+     * If the dictionary has been compiled by {@link DictionaryCompiler} and the compiled files are found next to it,
+     * those are read instead of the text file.
+     * </p>
      *
      * @param filePath path to the dictionary file
      * @throws IOException thrown if an IO error occurs.
      */
     public static void loadDictionaryFile(String filePath) throws IOException {
-        availableLanguages = new Vector<String>();
-        dictionary         = new Hashtable<String, String>();
-        defaultDictionary  = new Hashtable<String, String>();
+        try {
+            if(loadCompiledDictionary(filePath))
+                return;
+        }
+        catch(IOException e) {
+            LOGGER.info("Could not load compiled dictionary, loading "+filePath, e);
+        }
 
-        BufferedReader br = new BufferedReader(new BOMReader(ResourceLoader.getResourceAsStream(filePath)));
-        String line;
-        String keyLC;
-        String lang;
-        String text;
-        StringTokenizer st;
+        loadTextDictionary(filePath);
+    }
 
-        while((line = br.readLine())!=null) {
-            if (!line.trim().startsWith("#") && !line.trim().equals("")) {
-                st = new StringTokenizer(line);
+    /**
+     * Loads the compiled version of the specified dictionary file, if there is one.
+     *
+     * @param filePath path to the text dictionary file
+     * @return <code>false</code> if the dictionary file has not been compiled
+     * @throws IOException if the compiled dictionary could not be read
+     */
+    private static boolean loadCompiledDictionary(String filePath) throws IOException {
+        InputStream in = ResourceLoader.getResourceAsStream(DictionaryCompiler.getIndexName(filePath));
+        if(in==null)
+            return false;
 
-                try {
-                    // Sets delimiter to ':'
-                    keyLC = st.nextToken(":").trim().toLowerCase();
+        List<String> languages = new Vector<String>(Arrays.asList(DictionaryCompiler.readLanguages(in)));
+        if(Translator.language==null)
+            setCurrentLanguage(languages);
 
-                    // Special key that lists available languages, must
-                    // be defined before any other entry
-                    if(Translator.language==null && keyLC.equals(AVAILABLE_LANGUAGES_KEY)) {
-                        // Parse comma separated languages
-                        st = new StringTokenizer(st.nextToken(), ",\n");
-                        while(st.hasMoreTokens())
-                            availableLanguages.add(st.nextToken().trim());
+        Map<String, TextTemplate> entries = new HashMap<String, TextTemplate>();
+        Map<String, TextTemplate> defaultEntries = new HashMap<String, TextTemplate>();
+        readCompiledLanguage(filePath, language, entries, null);
+        if(!language.equalsIgnoreCase(DEFAULT_LANGUAGE))
+            readCompiledLanguage(filePath, DEFAULT_LANGUAGE, defaultEntries, entries);
 
-                        LOGGER.debug("Available languages= "+availableLanguages);
+        availableLanguages = languages;
+        dictionary = entries;
+        defaultDictionary = defaultEntries;
 
-                        // Determines current language based on available languages and preferred language (if set) or system's language
-                        setCurrentLanguage(availableLanguages);
+        LOGGER.debug("Loaded compiled dictionary, available languages= "+availableLanguages);
 
-                        continue;
-                    }
+        return true;
+    }
 
-                    lang = st.nextToken().trim();
+    private static void readCompiledLanguage(String filePath, String lang, Map<String, TextTemplate> entries, Map<String, TextTemplate> skip) throws IOException {
+        InputStream in = ResourceLoader.getResourceAsStream(DictionaryCompiler.getLanguageName(filePath, lang));
+        // A language may be declared without having any entry yet
+        if(in!=null)
+            DictionaryCompiler.readEntries(in, entries, skip);
+    }
 
-                    // Delimiter is now line break
-                    text = st.nextToken("\n");
-                    text = text.substring(1, text.length());
+    /**
+     * Parses the specified text dictionary file.
+     *
+     * @param filePath path to the dictionary file
+     * @throws IOException thrown if an IO error occurs.
+     */
+    private static void loadTextDictionary(String filePath) throws IOException {
+        List<String> languages = new Vector<String>();
+        Map<String, TextTemplate> entries = new HashMap<String, TextTemplate>();
+        Map<String, TextTemplate> defaultEntries = new HashMap<String, TextTemplate>();
 
-                    // Replace "\n" strings in the text by \n characters
-                    int pos = 0;
+        DictionaryReader reader = new DictionaryReader(ResourceLoader.getResourceAsStream(filePath));
+        try {
+            while(reader.next()) {
+                String keyLC = reader.getKey();
 
-                    while ((pos = text.indexOf("\\n", pos))!=-1)
-                        text = text.substring(0, pos)+"\n"+text.substring(pos+2, text.length());
+                // Special key that lists available languages, must be defined before any other entry
+                if(reader.isAvailableLanguages()) {
+                    languages.addAll(Arrays.asList(reader.getAvailableLanguages()));
 
-                    // Replace "\\uxxxx" unicode strings by the designated character
-                    pos = 0;
+                    LOGGER.debug("Available languages= "+languages);
 
-                    while ((pos = text.indexOf("\\u", pos))!=-1)
-                        text = text.substring(0, pos)+(char)(Integer.parseInt(text.substring(pos+2, pos+6), 16))+text.substring(pos+6, text.length());
+                    // Determines current language based on available languages and preferred language (if set) or system's language
+                    if(Translator.language==null)
+                        setCurrentLanguage(languages);
 
-                    // Add entry for current language, or for default language if a value for current language wasn't already set
-                    if(lang.equalsIgnoreCase(language)) {
-                        dictionary.put(keyLC, text);
-                        // Remove the default dictionary entry as it will not be used (saves some memory).
-                        defaultDictionary.remove(keyLC);
-                    }
-                    else if(lang.equalsIgnoreCase(DEFAULT_LANGUAGE) && dictionary.get(keyLC)==null) {
-                        defaultDictionary.put(keyLC, text);
-                    }
+                    continue;
+                }
+
+                if(language==null)
+                    throw new IOException(AVAILABLE_LANGUAGES_KEY+" must be defined before any other entry");
+
+                // Add entry for current language, or for default language if a value for current language wasn't already set
+                String lang = reader.getLanguage();
+                if(lang.equalsIgnoreCase(language)) {
+                    entries.put(keyLC, TextTemplate.parse(reader.getValue()));
+                    // Remove the default dictionary entry as it will not be used (saves some memory).
+                    defaultEntries.remove(keyLC);
                 }
-                catch(Exception e) {
-                    LOGGER.info("error in line " + line + " (" + e + ")");
-                    throw new IOException("Syntax error in line " + line);
+                else if(lang.equalsIgnoreCase(DEFAULT_LANGUAGE) && !entries.containsKey(keyLC)) {
+                    defaultEntries.put(keyLC, TextTemplate.parse(reader.getValue()));
                 }
             }
         }
-        br.close();
+        catch(IOException e) {
+            LOGGER.info("error in dictionary file " + filePath + " (" + e + ")");
+            throw e;
+        }
+        finally {
+            reader.close();
+        }
+
+        availableLanguages = languages;
+        dictionary = entries;
+        defaultDictionary = defaultEntries;
     }
 
     /**
@@ -270,7 +311,7 @@ public class Translator {
      */
     public static String get(String key, String... paramValues) {
         // Returns the localized text
-        String text = dictionary.get(key.toLowerCase());
+        TextTemplate text = dictionary.get(key.toLowerCase());
 
         if (text==null) {
             text = defaultDictionary.get(key.toLowerCase());
@@ -285,27 +326,8 @@ public class Translator {
             }
         }
 
-        // Replace %1, %2 ... parameters by their value
-        if (paramValues!=null) {
-            int pos = -1;
-            for(int i=0; i<paramValues.length; i++) {
-                while(++pos<text.length()-1 && (pos = text.indexOf("%"+(i+1), pos))!=-1)
-                    text = text.substring(0, pos)+paramValues[i]+text.substring(pos+2, text.length());
-            }
-        }
-
-        // Replace $[key] occurrences by their value
-        int pos = 0;
-        int pos2;
-        String variable;
-
-        while ((pos = text.indexOf("$[", pos))!=-1) {
-            pos2 = text.indexOf("]", pos+1);
-            variable = text.substring(pos+2, pos2);
-            text = text.substring(0, pos)+get(variable, paramValues)+text.substring(pos2+1, text.length());
-        }
-
-        return text;
+        // Replace %1, %2 ... parameters and $[key] occurrences by their value
+        return text.format(paramValues);
     }
 
 
@@ -21,9 +21,12 @@ package com.mucommander.ui.action;
 import com.mucommander.ui.main.MainFrame;
 
 import javax.swing.*;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * This class manages keyboard associations with {@link MuAction} ids.
@@ -38,6 +41,8 @@ public class ActionKeymap {
     private static HashMap<String, KeyStroke> customAlternateActionKeymap = new HashMap<String, KeyStroke>();
     /** Maps Keystroke instances onto action id */
     private static AcceleratorMap acceleratorMap = new AcceleratorMap();
+    /** MainFrame instances to which action shortcuts have been registered, stored as weak references */
+    private static Map<MainFrame, Object> registeredMainFrames = new WeakHashMap<MainFrame, Object>();
 
     /******************
      * Public Methods *
@@ -45,22 +50,25 @@ public class ActionKeymap {
     
     /**
      * Register all action shortcuts to the given MainFrame's file tables.
+     * <p>
+     * Actions are not instantiated by this method: the file tables' action maps are given an {@link ActionProxy}
+     * instead, which instantiates the action the first time one of its shortcuts is pressed.
+     * </p>
      * 
      * @param mainFrame - MainFrame instance to which all action shortcuts would be registered.
      */
     public static void registerActions(MainFrame mainFrame) {
+        registeredMainFrames.put(mainFrame, null);
+
         Iterator<String> actionIds = ActionManager.getActionIds();
         String actionId;
-        ActionDescriptor actionDescriptor;
         while(actionIds.hasNext()) {
             actionId = actionIds.next();
-            actionDescriptor = ActionProperties.getActionDescriptor(actionId);
 
-            // Instantiate the action only if it is not parameterized: parameterized actions should only be instantiated
+            // Register the action only if it is not parameterized: parameterized actions should only be instantiated
             // when they are needed and with the required parameters.
-            if(!actionDescriptor.isParameterized()) {
-                registerAction(mainFrame, ActionManager.getActionInstance(actionId, mainFrame));
-            }
+            if(!isParameterized(actionId))
+                registerAction(mainFrame, actionId, getAccelerator(actionId), getAlternateAccelerator(actionId));
         }
     }
     
@@ -72,8 +80,9 @@ public class ActionKeymap {
      * @param condition - condition in which the action could be invoked. 
      */
     public static void registerActionAccelerators(MuAction action, JComponent comp, int condition) {
-    	registerActionAccelerator(action, action.getAccelerator(), comp, condition);
-    	registerActionAccelerator(action, action.getAlternateAccelerator(), comp, condition);
+    	String actionId = action.getDescriptor().getId();
+    	registerActionAccelerator(actionId, action, action.getAccelerator(), comp, condition);
+    	registerActionAccelerator(actionId, action, action.getAlternateAccelerator(), comp, condition);
     }
 
     /**
@@ -232,6 +241,14 @@ public class ActionKeymap {
      * Private Methods *
      *******************/
 
+    /**
+     * Return true if the action is parameterized, i.e. can't be instantiated without parameters.
+     */
+    private static boolean isParameterized(String actionId) {
+        ActionDescriptor actionDescriptor = ActionProperties.getActionDescriptor(actionId);
+        return actionDescriptor != null && actionDescriptor.isParameterized();
+    }
+
     /**
      * Register MuAction instance to MainFrame instance.
      */
@@ -240,45 +257,53 @@ public class ActionKeymap {
         registerActionAccelerators(action, mainFrame.getRightPanel().getFileTable(), JComponent.WHEN_FOCUSED);
     }
 
+    /**
+     * Register the accelerators of MuAction to MainFrame instance, without instantiating the action.
+     */
+    private static void registerAction(MainFrame mainFrame, String actionId, KeyStroke accelerator, KeyStroke alternateAccelerator) {
+        if(accelerator == null && alternateAccelerator == null)
+            return;
+
+        Action action = new ActionProxy(actionId, mainFrame);
+        for(JComponent comp : new JComponent[] {mainFrame.getLeftPanel().getFileTable(), mainFrame.getRightPanel().getFileTable()}) {
+            registerActionAccelerator(actionId, action, accelerator, comp, JComponent.WHEN_FOCUSED);
+            registerActionAccelerator(actionId, action, alternateAccelerator, comp, JComponent.WHEN_FOCUSED);
+        }
+    }
+
     /**
      * Register accelerator of MuAction to JComponent with a condition that states when the action can be invoked.
      */
-    private static void registerActionAccelerator(MuAction action, KeyStroke accelerator, JComponent comp, int condition) {
+    private static void registerActionAccelerator(String actionId, Action action, KeyStroke accelerator, JComponent comp, int condition) {
     	if(accelerator != null) {
     		InputMap inputMap = comp.getInputMap(condition);
     		ActionMap actionMap = comp.getActionMap();
-    		String actionId = action.getDescriptor().getId();
     		inputMap.put(accelerator, actionId);
     		actionMap.put(actionId, action);
     	}
     }
 
     /**
-     * Unregister MuAction instance from MainFrame instance.
+     * Unregister MuAction from MainFrame instance, whether it has been instantiated or not.
      */
-    private static void unregisterAction(MainFrame mainFrame, MuAction action) {
-        unregisterActionAccelerators(action, mainFrame.getLeftPanel().getFileTable(), JComponent.WHEN_FOCUSED);
-        unregisterActionAccelerators(action, mainFrame.getRightPanel().getFileTable(), JComponent.WHEN_FOCUSED);
+    private static void unregisterAction(MainFrame mainFrame, String actionId) {
+        unregisterActionAccelerators(actionId, mainFrame.getLeftPanel().getFileTable(), JComponent.WHEN_FOCUSED);
+        unregisterActionAccelerators(actionId, mainFrame.getRightPanel().getFileTable(), JComponent.WHEN_FOCUSED);
     }
     
     /**
-     * Unregister MuAction from JComponent.
+     * Unregister all accelerators of MuAction from JComponent.
      */
-    private static void unregisterActionAccelerators(MuAction action, JComponent comp, int condition) {
-    	unregisterActionAccelerator(action, action.getAccelerator(), comp, condition);
-    	unregisterActionAccelerator(action, action.getAlternateAccelerator(), comp, condition);
-    }
-    
-    /**
-     * Unregister accelerator of MuAction from JComponent.
-     */
-    private static void unregisterActionAccelerator(MuAction action, KeyStroke accelerator, JComponent comp, int condition) {
-    	if(accelerator != null) {
-    		InputMap inputMap = comp.getInputMap(condition);
-    		ActionMap actionMap = comp.getActionMap();
-    		inputMap.remove(accelerator);
-    		actionMap.remove(action.getDescriptor().getId());
+    private static void unregisterActionAccelerators(String actionId, JComponent comp, int condition) {
+    	InputMap inputMap = comp.getInputMap(condition);
+    	KeyStroke[] keyStrokes = inputMap.keys();
+    	if(keyStrokes != null) {
+    		for(KeyStroke keyStroke : keyStrokes) {
+    			if(actionId.equals(inputMap.get(keyStroke)))
+    				inputMap.remove(keyStroke);
+    		}
     	}
+    	comp.getActionMap().remove(actionId);
     }
     
     /**
@@ -309,19 +334,24 @@ public class ActionKeymap {
     		acceleratorMap.putAlternativeAccelerator(alternateAccelerator, actionId);
     	}
     	
-    	// Update each MainFrame's action instance and input map
-    	for(MuAction action : ActionManager.getActionInstances(actionId)) {
-    		MainFrame mainFrame = action.getMainFrame();
-
-    		// Remove action from MainFrame's action and input maps
-    		unregisterAction(mainFrame, action);
+    	// Update each MainFrame's input maps, including those of MainFrames in which the action hasn't been
+    	// instantiated yet
+    	boolean parameterized = isParameterized(actionId);
+    	for(MainFrame mainFrame : new ArrayList<MainFrame>(registeredMainFrames.keySet())) {
+    		unregisterAction(mainFrame, actionId);
+    		if(!parameterized)
+    			registerAction(mainFrame, actionId, accelerator, alternateAccelerator);
+    	}
 
+    	// Update existing action instances
+    	for(MuAction action : ActionManager.getActionInstances(actionId)) {
     		// Change action's accelerators
     		action.setAccelerator(accelerator);
     		action.setAlternateAccelerator(alternateAccelerator);
 
-    		// Add updated action to MainFrame's action and input maps
-    		registerAction(mainFrame, action);
+    		// Parameterized actions are registered to their MainFrame only once they have been instantiated
+    		if(parameterized)
+    			registerAction(action.getMainFrame(), action);
     	}
     }
     
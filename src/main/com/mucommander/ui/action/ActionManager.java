@@ -217,12 +217,14 @@ public class ActionManager {
     	registerAction(new ToggleExtensionColumnAction.Descriptor(),        new ToggleExtensionColumnAction.Factory());
     	registerAction(new ToggleGroupColumnAction.Descriptor(),            new ToggleGroupColumnAction.Factory());
     	registerAction(new ToggleHiddenFilesAction.Descriptor(),            new ToggleHiddenFilesAction.Factory());
+    	registerAction(new ToggleJobManagerAction.Descriptor(),             new ToggleJobManagerAction.Factory());
     	registerAction(new ToggleLockTabAction.Descriptor(),                new ToggleLockTabAction.Factory());
     	registerAction(new ToggleOwnerColumnAction.Descriptor(),            new ToggleOwnerColumnAction.Factory());
     	registerAction(new TogglePermissionsColumnAction.Descriptor(),      new TogglePermissionsColumnAction.Factory());
     	registerAction(new ToggleShowFoldersFirstAction.Descriptor(),       new ToggleShowFoldersFirstAction.Factory());
     	registerAction(new ToggleSizeColumnAction.Descriptor(),             new ToggleSizeColumnAction.Factory());
     	registerAction(new ToggleStatusBarAction.Descriptor(),              new ToggleStatusBarAction.Factory());
+    	registerAction(new ToggleThumbnailsAction.Descriptor(),             new ToggleThumbnailsAction.Factory());
     	registerAction(new ToggleToolBarAction.Descriptor(),                new ToggleToolBarAction.Factory());
     	registerAction(new ToggleTreeAction.Descriptor(),             	    new ToggleTreeAction.Factory());
     	registerAction(new UnmarkAllAction.Descriptor(),            		new UnmarkAllAction.Factory());
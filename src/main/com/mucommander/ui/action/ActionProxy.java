@@ -0,0 +1,84 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.ui.action;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.AbstractAction;
+
+import com.mucommander.ui.main.MainFrame;
+
+/**
+ * Stands for a {@link MuAction} in the action maps of a {@link MainFrame}'s components, so that the action doesn't
+ * have to be instantiated when its accelerators are registered. The action is retrieved from {@link ActionManager}
+ * the first time one of its accelerators is pressed, and then reused.
+ *
+ * @see ActionKeymap#registerActions(MainFrame)
+ */
+class ActionProxy extends AbstractAction {
+
+    /** Id of the action this proxy stands for */
+    private final String actionId;
+
+    /** The MainFrame the action belongs to */
+    private final MainFrame mainFrame;
+
+    /** The action, <code>null</code> until it is first needed */
+    private MuAction action;
+
+    ActionProxy(String actionId, MainFrame mainFrame) {
+        this.actionId = actionId;
+        this.mainFrame = mainFrame;
+    }
+
+    /**
+     * Returns the action this proxy stands for, instantiating it if it hasn't been already.
+     *
+     * @return the action this proxy stands for, <code>null</code> if it could not be instantiated
+     */
+    private MuAction getAction() {
+        if(action==null)
+            action = ActionManager.getActionInstance(actionId, mainFrame);
+
+        return action;
+    }
+
+    /**
+     * Returns the enabled state of the action. This method is called by Swing before the action is performed, so the
+     * action is instantiated at this point.
+     */
+    @Override
+    public boolean isEnabled() {
+        MuAction action = getAction();
+        return action!=null && action.isEnabled();
+    }
+
+    @Override
+    public Object getValue(String key) {
+        MuAction action = getAction();
+        return action==null?null:action.getValue(key);
+    }
+
+    public void actionPerformed(ActionEvent e) {
+        MuAction action = getAction();
+        if(action!=null)
+            action.actionPerformed(e);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.ui.autocomplete.completers.services;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Vector;
+
+/**
+ * A <code>CompletionIndex</code> holds the names of a directory's children, sorted in lower case, so that the names
+ * that start with a given prefix can be found with a binary search rather than by testing every name.
+ * <p>
+ * The index is created once for a directory and reused as long as the directory's date doesn't change, see
+ * {@link FilesService}.
+ * </p>
+ */
+class CompletionIndex {
+
+	/** Path of the indexed directory, ending with a separator */
+	private String directoryPath;
+
+	/** Date of the directory when it was listed */
+	private long directoryDate;
+
+	/** Names of the children, directories ending with a separator, sorted in lower case */
+	private String[] names;
+
+	/** Lower-cased names of the children, in the same order as names */
+	private String[] lowerCaseNames;
+
+	/** Time at which the directory's date was last checked against the one of the index */
+	private volatile long validationTime;
+
+	/**
+	 * Creates a new index of the given names.
+	 *
+	 * @param directoryPath path of the indexed directory, ending with a separator
+	 * @param directoryDate date of the directory when it was listed
+	 * @param fileNames names of the children, directories ending with a separator
+	 */
+	CompletionIndex(String directoryPath, long directoryDate, String[] fileNames) {
+		this.directoryPath = directoryPath;
+		this.directoryDate = directoryDate;
+		this.validationTime = System.currentTimeMillis();
+
+		int nbNames = fileNames.length;
+		final String[] lowerCaseFileNames = new String[nbNames];
+		Integer[] order = new Integer[nbNames];
+		for (int i=0; i<nbNames; i++) {
+			lowerCaseFileNames[i] = fileNames[i].toLowerCase();
+			order[i] = i;
+		}
+
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				return lowerCaseFileNames[i1].compareTo(lowerCaseFileNames[i2]);
+			}
+		});
+
+		names = new String[nbNames];
+		lowerCaseNames = new String[nbNames];
+		for (int i=0; i<nbNames; i++) {
+			names[i] = fileNames[order[i]];
+			lowerCaseNames[i] = lowerCaseFileNames[order[i]];
+		}
+	}
+
+	String getDirectoryPath() {
+		return directoryPath;
+	}
+
+	long getDirectoryDate() {
+		return directoryDate;
+	}
+
+	long getValidationTime() {
+		return validationTime;
+	}
+
+	/**
+	 * Records that the directory's date has just been checked and matches the one of this index.
+	 */
+	void validated() {
+		validationTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the names that start with the given prefix, ignoring case, in lower-case order. At most
+	 * <code>maxCompletions</code> names are returned, the other ones are not even looked at.
+	 *
+	 * @param prefix the prefix, <code>null</code> or an empty string to match all names
+	 * @param maxCompletions maximum number of names to return
+	 * @return the names that start with the given prefix
+	 */
+	Vector<String> getCompletions(String prefix, int maxCompletions) {
+		String lowerCasePrefix = prefix==null ? "" : prefix.toLowerCase();
+		int nbNames = lowerCaseNames.length;
+
+		Vector<String> result = new Vector<String>();
+		for (int i=getFirstIndex(lowerCasePrefix); i<nbNames && result.size()<maxCompletions; i++) {
+			// Names that start with the prefix are contiguous
+			if (!lowerCaseNames[i].startsWith(lowerCasePrefix))
+				break;
+			result.add(names[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the name that is equal to the given one, ignoring case, <code>null</code> if there is none.
+	 *
+	 * @param name a name
+	 * @return the indexed name that is equal to the given one ignoring case, null if there is none
+	 */
+	String getName(String name) {
+		String lowerCaseName = name.toLowerCase();
+		int i = getFirstIndex(lowerCaseName);
+		return i<lowerCaseNames.length && lowerCaseNames[i].equals(lowerCaseName) ? names[i] : null;
+	}
+
+	/**
+	 * Returns the index of the first lower-cased name that is greater than or equal to the given string.
+	 */
+	private int getFirstIndex(String lowerCaseString) {
+		int low = 0;
+		int high = lowerCaseNames.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (lowerCaseNames[mid].compareTo(lowerCaseString) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+}
@@ -19,33 +19,80 @@
 package com.mucommander.ui.autocomplete.completers.services;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.runtime.JavaVersions;
 
 /**
  * This <code>CompletionService</code> handles file paths completion.
+ * <p>
+ * The names of a directory's children are kept in a {@link CompletionIndex} that is reused across keystrokes, and
+ * only listed again once the directory's date has changed. The date is checked at most once every
+ * {@link #REVALIDATION_DELAY} milliseconds, so that typing in a remote directory doesn't cost a round-trip per
+ * keystroke. Directories are listed by a background thread: when the typed name matches a directory, that directory
+ * is listed in advance so that its children can be completed as soon as a separator is typed.
+ * </p>
  * 
  * @author Arik Hadas
  */
 
 public abstract class FilesService implements CompletionService {
 	private static final Logger LOGGER = LoggerFactory.getLogger(FilesService.class);
-	
-	private String cachedDirectoryName;
-	private String[] cachedDirectoryFileNames;
-	private long cachedDirectoryDate;
-	
-	public FilesService() {
-		cachedDirectoryFileNames = new String[0];
-		cachedDirectoryDate = -1;
+
+	/** Maximum number of completions that are returned */
+	public static final int MAX_COMPLETIONS = 500;
+
+	/** Minimum delay in milliseconds between two checks of an indexed directory's date */
+	private static final long REVALIDATION_DELAY = 2000;
+
+	/** Maximum number of directory indexes to keep */
+	private static final int MAX_CACHED_INDEXES = 8;
+
+	/** Lists directories in the background */
+	private static final ThreadPoolExecutor listingExecutor;
+
+	static {
+		listingExecutor = new ThreadPoolExecutor(2, 2, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Completion listing");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// Let idle threads terminate, this is only available in Java 1.6 and up
+		if(JavaVersions.JAVA_1_6.isCurrentOrHigher())
+			listingExecutor.allowCoreThreadTimeOut(true);
 	}
 
+	/** Indexes of the recently completed directories, keyed by typed directory path */
+	private final Map<String, CompletionIndex> indexes = new LinkedHashMap<String, CompletionIndex>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CompletionIndex> eldest) {
+			return size() > MAX_CACHED_INDEXES;
+		}
+	};
+
+	/** Directories that are being listed, keyed by typed directory path */
+	private final Map<String, Future<CompletionIndex>> pendingListings = new HashMap<String, Future<CompletionIndex>>();
+
+	/** Index of the directory whose children were last suggested */
+	private volatile CompletionIndex lastIndex;
+
 	/**
 	 * This abstract function gets a directory and should return it's children
 	 * files that match a certain criteria.
@@ -57,52 +104,146 @@ public abstract class FilesService implements CompletionService {
 	protected abstract AbstractFile[] getFiles(AbstractFile directory) throws IOException;
 	
 	public Vector<String> getPossibleCompletions(String path) {
-		Vector<String> result = new Vector<String>();
-		int index = Math.max(path.lastIndexOf('\\'), path.lastIndexOf('/'));	
-		if (index != -1) {
-	        String currentDirectoryName = path.substring(0, index+1);
-	        
-	        AbstractFile currentDirectory = FileFactory.getFile(currentDirectoryName);
-	        if (currentDirectory != null && currentDirectory.exists()) {	        
-		        long currentDirectoryDate = currentDirectory.getDate();
-		        if (cachedDirectoryName == null || !cachedDirectoryName.equals(currentDirectoryName) || currentDirectoryDate != cachedDirectoryDate) {
-		        	AbstractFile[] currentDirectoryFiles;
-					try {
-						currentDirectoryFiles = getFiles(currentDirectory);
-					} catch (IOException e) {
-                        LOGGER.debug("Caught exception", e);
-						return new Vector<String>();
-					}
-		
-		        	int nbCurrentDirectoryFiles = currentDirectoryFiles.length;
-		        	cachedDirectoryFileNames = new String[nbCurrentDirectoryFiles];
-		        	
-		        	for (int i=0; i<nbCurrentDirectoryFiles; i++) {
-		        		AbstractFile abstractFileI = currentDirectoryFiles[i];
-						cachedDirectoryFileNames[i] = abstractFileI.getName() + (abstractFileI.isDirectory() ? abstractFileI.getSeparator() : "");
-		        	}
-		        	
-		        	Arrays.sort(cachedDirectoryFileNames, String.CASE_INSENSITIVE_ORDER);
-		        	
-		        	cachedDirectoryName = currentDirectory.getAbsolutePath() + (currentDirectory.isDirectory() ? "" : currentDirectory.getSeparator());
-		        	cachedDirectoryDate = currentDirectoryDate;
-		        }
-				
-		        final String prefix = index==path.length()-1 ? null : path.substring(index + 1).toLowerCase();
-		        result = PrefixFilter.createPrefixFilter(prefix).filter(cachedDirectoryFileNames);
-	        }
+		int index = Math.max(path.lastIndexOf('\\'), path.lastIndexOf('/'));
+		if (index == -1)
+			return new Vector<String>();
+
+		String currentDirectoryName = path.substring(0, index+1);
+		CompletionIndex completionIndex = getIndex(currentDirectoryName);
+		if (completionIndex == null)
+			return new Vector<String>();
+		lastIndex = completionIndex;
+
+		String prefix = index==path.length()-1 ? null : path.substring(index + 1);
+		Vector<String> result = completionIndex.getCompletions(prefix, MAX_COMPLETIONS);
+
+		// If the typed name is the one of a directory, list it in advance as it's likely to be completed next
+		if (prefix != null) {
+			for (String completion : result) {
+				if (completion.length() == prefix.length()+1 && isSeparator(completion.charAt(prefix.length()))
+						&& completion.regionMatches(true, 0, prefix, 0, prefix.length())) {
+					prefetch(currentDirectoryName + completion);
+					break;
+				}
+			}
 		}
+
 		return result;
 	}
-	
+
 	public String complete(String selectedCompletion) {
-		String result = null;
-       	int nbCachedFileNames = cachedDirectoryFileNames.length;
-        for (int i=0; i < nbCachedFileNames; i++)
-        	if (cachedDirectoryFileNames[i].equalsIgnoreCase(selectedCompletion)) {
-        		result = cachedDirectoryName + cachedDirectoryFileNames[i];
-        		break;
-        	}
-        return result;
+		CompletionIndex completionIndex = lastIndex;
+		if (completionIndex == null)
+			return null;
+
+		String name = completionIndex.getName(selectedCompletion);
+		return name == null ? null : completionIndex.getDirectoryPath() + name;
+	}
+
+	private static boolean isSeparator(char c) {
+		return c == '/' || c == '\\';
+	}
+
+	/**
+	 * Returns the index of the given directory, listing it if it hasn't been indexed yet or if it has changed since.
+	 * Returns <code>null</code> if the directory doesn't exist or couldn't be listed.
+	 */
+	private CompletionIndex getIndex(String directoryName) {
+		CompletionIndex completionIndex;
+		synchronized (indexes) {
+			completionIndex = indexes.get(directoryName);
+		}
+
+		if (completionIndex != null) {
+			if (System.currentTimeMillis() - completionIndex.getValidationTime() < REVALIDATION_DELAY)
+				return completionIndex;
+
+			AbstractFile directory = FileFactory.getFile(directoryName);
+			if (directory != null && directory.getDate() == completionIndex.getDirectoryDate()) {
+				completionIndex.validated();
+				return completionIndex;
+			}
+		}
+
+		try {
+			return list(directoryName).get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch (ExecutionException e) {
+			LOGGER.debug("Caught exception", e.getCause());
+			return null;
+		}
+	}
+
+	/**
+	 * Lists the given directory in the background, unless it is indexed already.
+	 */
+	private void prefetch(String directoryName) {
+		synchronized (indexes) {
+			if (indexes.containsKey(directoryName))
+				return;
+		}
+
+		list(directoryName);
+	}
+
+	/**
+	 * Lists and indexes the given directory in the background. If the directory is being listed already, the pending
+	 * listing is returned.
+	 */
+	private Future<CompletionIndex> list(final String directoryName) {
+		synchronized (indexes) {
+			Future<CompletionIndex> pendingListing = pendingListings.get(directoryName);
+			if (pendingListing != null)
+				return pendingListing;
+
+			pendingListing = listingExecutor.submit(new Callable<CompletionIndex>() {
+				public CompletionIndex call() throws IOException {
+					try {
+						CompletionIndex completionIndex = createIndex(directoryName);
+						synchronized (indexes) {
+							if (completionIndex == null)
+								indexes.remove(directoryName);
+							else
+								indexes.put(directoryName, completionIndex);
+						}
+						return completionIndex;
+					}
+					finally {
+						synchronized (indexes) {
+							pendingListings.remove(directoryName);
+						}
+					}
+				}
+			});
+			pendingListings.put(directoryName, pendingListing);
+
+			return pendingListing;
+		}
+	}
+
+	/**
+	 * Lists the given directory and indexes its children, returns <code>null</code> if the directory doesn't exist.
+	 */
+	private CompletionIndex createIndex(String directoryName) throws IOException {
+		AbstractFile currentDirectory = FileFactory.getFile(directoryName);
+		if (currentDirectory == null || !currentDirectory.exists())
+			return null;
+
+		long currentDirectoryDate = currentDirectory.getDate();
+		AbstractFile[] currentDirectoryFiles = getFiles(currentDirectory);
+
+		int nbCurrentDirectoryFiles = currentDirectoryFiles.length;
+		String[] fileNames = new String[nbCurrentDirectoryFiles];
+		for (int i=0; i<nbCurrentDirectoryFiles; i++) {
+			AbstractFile abstractFileI = currentDirectoryFiles[i];
+			fileNames[i] = abstractFileI.getName() + (abstractFileI.isDirectory() ? abstractFileI.getSeparator() : "");
+		}
+
+		return new CompletionIndex(currentDirectory.getAbsolutePath() + (currentDirectory.isDirectory() ? "" : currentDirectory.getSeparator()),
+				currentDirectoryDate, fileNames);
 	}
 }
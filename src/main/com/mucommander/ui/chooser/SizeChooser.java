@@ -108,6 +108,22 @@ public class SizeChooser extends JPanel {
         return SizeFormat.getUnitBytes(unitComboBox.getSelectedIndex())* (Integer) valueSpinner.getValue();
     }
 
+    /**
+     * Sets the current value, expressed in bytes. The largest unit the value is a multiple of is selected, kilobytes
+     * if the value is 0.
+     *
+     * @param bytes the new value, expressed in bytes
+     */
+    public void setValue(long bytes) {
+        bytes = Math.max(0, bytes);
+        int unit = bytes==0?SizeFormat.KILOBYTE_UNIT:SizeFormat.GIGABYTE_UNIT;
+        while(unit>SizeFormat.BYTE_UNIT && bytes%SizeFormat.getUnitBytes(unit)!=0)
+            unit--;
+
+        unitComboBox.setSelectedIndex(unit);
+        valueSpinner.setValue((int)Math.min(MAX_SPINNER_VALUE, bytes/SizeFormat.getUnitBytes(unit)));
+    }
+
 
     /**
      * Adds the specified ChangedListener to the list of registered listeners.
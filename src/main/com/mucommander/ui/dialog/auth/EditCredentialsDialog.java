@@ -216,9 +216,7 @@ public class EditCredentialsDialog extends FocusDialog implements ActionListener
         super.dispose();
 
         // Write credentials file to disk, only if changes were made
-        try {CredentialsManager.writeCredentials(false);}
-        // We should probably pop an error dialog here...
-        catch(Exception e) {}
+        CredentialsManager.writeCredentialsLater();
     }
 
 
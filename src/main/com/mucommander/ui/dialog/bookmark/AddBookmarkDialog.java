@@ -131,9 +131,7 @@ public class AddBookmarkDialog extends FocusDialog implements ActionListener, Do
 
             // Add bookmark and write bookmarks file to disk
             BookmarkManager.addBookmark(new Bookmark(nameField.getText(), locationField.getText()));
-            try {BookmarkManager.writeBookmarks(false);}
-            // We should probably pop an error dialog here.
-            catch(Exception e2) {}
+            BookmarkManager.writeBookmarksLater();
         }
         else if (source==cancelButton)  {
             dispose();			
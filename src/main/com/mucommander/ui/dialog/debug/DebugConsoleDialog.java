@@ -43,6 +43,7 @@ import javax.swing.SwingUtilities;
 
 import com.mucommander.MuLogging;
 import com.mucommander.MuLogging.LogLevel;
+import com.mucommander.cache.RemoteFileCache;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.action.ActionProperties;
 import com.mucommander.ui.action.impl.RefreshAction;
@@ -74,6 +75,9 @@ public class DebugConsoleDialog extends FocusDialog implements ActionListener, I
     /** Refreshes the list with the latest log records when pressed */
     private JButton refreshButton;
 
+    /** Displays statistics about the remote file cache */
+    private JLabel fileCacheLabel;
+
     // Dialog size constraints
     private final static Dimension MINIMUM_DIALOG_DIMENSION = new Dimension(600,400);
     // Dialog width should not exceed 360, height is not an issue (always the same)
@@ -102,6 +106,10 @@ public class DebugConsoleDialog extends FocusDialog implements ActionListener, I
         JPanel southPanel = new JPanel(new BorderLayout());
         southPanel.add(createComboPanel(), BorderLayout.WEST);
 
+        fileCacheLabel = new JLabel();
+        refreshStatistics();
+        southPanel.add(fileCacheLabel, BorderLayout.NORTH);
+
         JPanel buttonPanel = new JPanel(new FlowLayout());
 
         refreshButton = new JButton(Translator.get(new RefreshAction.Descriptor().getLabel()));
@@ -169,6 +177,13 @@ public class DebugConsoleDialog extends FocusDialog implements ActionListener, I
         });
     }
     
+    /**
+     * Refreshes the statistics of the caches displayed below the log records.
+     */
+    private void refreshStatistics() {
+        fileCacheLabel.setText(Translator.get("debug_console_dialog.file_cache")+": "+RemoteFileCache.getInstance().getStatistics());
+    }
+
     /**
      * Changes the log level to the selected combo box value.
      */
@@ -188,6 +203,7 @@ public class DebugConsoleDialog extends FocusDialog implements ActionListener, I
 
         if(source==refreshButton) {
             refreshLogRecords();
+            refreshStatistics();
         }
         else if(source==closeButton) {
             dispose();
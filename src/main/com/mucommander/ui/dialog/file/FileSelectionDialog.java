@@ -239,13 +239,9 @@ public class FileSelectionDialog extends FocusDialog implements ActionListener {
                 );
             }
 
-            // Mark/unmark the files using the filter
-            activeTable.getFileTableModel().setFilesMarked(filter, addToSelection);
-
-            // Notify registered listeners that currently marked files have changed on this FileTable
-            activeTable.fireMarkedFilesChangedEvent();
-
-            activeTable.repaint();
+            // Mark/unmark the files using the filter, and notify registered listeners that currently marked files
+            // have changed on this FileTable
+            activeTable.setFilesMarked(filter, addToSelection);
         }
 		
         dispose();
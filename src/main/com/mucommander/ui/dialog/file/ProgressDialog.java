@@ -51,6 +51,7 @@ import org.slf4j.LoggerFactory;
 import com.mucommander.conf.MuConfigurations;
 import com.mucommander.conf.MuPreference;
 import com.mucommander.conf.MuPreferences;
+import com.mucommander.job.BandwidthManager;
 import com.mucommander.job.FileJob;
 import com.mucommander.job.FileJobListener;
 import com.mucommander.job.TransferFileJob;
@@ -87,6 +88,8 @@ public class ProgressDialog extends FocusDialog implements ActionListener, ItemL
     private JLabel currentSpeedLabel;
     private JCheckBox limitSpeedCheckBox;
     private SizeChooser speedChooser;
+    private JCheckBox limitTotalSpeedCheckBox;
+    private SizeChooser totalSpeedChooser;
     private JLabel elapsedTimeLabel;
 
     private SpeedGraph speedGraph;
@@ -97,13 +100,17 @@ public class ProgressDialog extends FocusDialog implements ActionListener, ItemL
     private JButton skipButton;
     private JButton stopButton;
     private JCheckBox closeWhenFinishedCheckBox;
-//    private JButton hideButton;
+    private JButton backgroundButton;
 
+    private MainFrame mainFrame;
     private FileJob job;
     private TransferFileJob transferFileJob;
 
     private boolean firstTimeActivated = true;
 
+    /** True while the dialog is hidden and the job runs in the background */
+    private boolean inBackground;
+
     // Button icons
     private final static String RESUME_ICON = "resume.png";
     private final static String PAUSE_ICON = "pause.png";
@@ -126,6 +133,7 @@ public class ProgressDialog extends FocusDialog implements ActionListener, ItemL
 
     public ProgressDialog(MainFrame mainFrame, String title) {
         super(mainFrame, title, mainFrame);
+        this.mainFrame = mainFrame;
 
         // Sets maximum and minimum dimensions for this dialog
         setMaximumSize(MAXIMUM_DIALOG_DIMENSION);
@@ -199,6 +207,24 @@ public class ProgressDialog extends FocusDialog implements ActionListener, ItemL
             advancedPanel.add(tempPanel2);
             advancedPanel.addSpace(5);
 
+            // Limit shared by all transfers
+            JPanel tempPanel3 = new JPanel(new BorderLayout());
+            long totalSpeedLimit = BandwidthManager.getInstance().getGlobalLimit();
+            this.limitTotalSpeedCheckBox = new JCheckBox(Translator.get("progress_dialog.limit_total_speed")+":", totalSpeedLimit>0);
+            limitTotalSpeedCheckBox.addItemListener(this);
+
+            tempPanel3.add(limitTotalSpeedCheckBox, BorderLayout.WEST);
+
+            totalSpeedChooser = new SizeChooser(true);
+            if(totalSpeedLimit>0)
+                totalSpeedChooser.setValue(totalSpeedLimit);
+            totalSpeedChooser.setEnabled(totalSpeedLimit>0);
+            totalSpeedChooser.addChangeListener(this);
+
+            tempPanel3.add(totalSpeedChooser, BorderLayout.EAST);
+            advancedPanel.add(tempPanel3);
+            advancedPanel.addSpace(5);
+
             this.collapseExpandButton = new CollapseExpandButton(Translator.get("progress_dialog.advanced"), advancedPanel, true);
             collapseExpandButton.setExpandedState(MuConfigurations.getPreferences().getVariable(MuPreference.PROGRESS_DIALOG_EXPANDED,
                                                                                    MuPreferences.DEFAULT_PROGRESS_DIALOG_EXPANDED));
@@ -229,11 +255,11 @@ public class ProgressDialog extends FocusDialog implements ActionListener, ItemL
         stopButton = new JButton(Translator.get("stop"), IconManager.getIcon(IconManager.PROGRESS_ICON_SET, STOP_ICON));
         stopButton.addActionListener(this);
 
-//        hideButton = new JButton(Translator.get("progress_dialog.hide"));
-//        hideButton.addActionListener(this);
+        backgroundButton = new JButton(Translator.get("progress_dialog.background"));
+        backgroundButton.addActionListener(this);
 
         this.buttonsChoicePanel = new ButtonChoicePanel(
-                skipButton==null?new JButton[] {pauseResumeButton, stopButton}:new JButton[] {pauseResumeButton, skipButton, stopButton},
+                skipButton==null?new JButton[] {pauseResumeButton, backgroundButton, stopButton}:new JButton[] {pauseResumeButton, skipButton, backgroundButton, stopButton},
                 0, getRootPane());
         contentPane.add(buttonsChoicePanel, BorderLayout.SOUTH);
 
@@ -271,6 +297,47 @@ public class ProgressDialog extends FocusDialog implements ActionListener, ItemL
     }
 
 
+    /**
+     * Hides this dialog while letting the job run. The job remains listed in the main frame's job manager panel,
+     * which is made visible if it isn't already, and from which the dialog can be brought back with
+     * {@link #bringToForeground()}. The dialog is disposed as soon as the job finishes or is interrupted.
+     */
+    public void sendToBackground() {
+        if(inBackground)
+            return;
+
+        inBackground = true;
+        setVisible(false);
+
+        mainFrame.setJobManagerVisible(true);
+    }
+
+
+    /**
+     * Shows this dialog again after it has been sent to the background. This method does nothing if the dialog is not
+     * in the background or has been disposed already.
+     */
+    public void bringToForeground() {
+        if(!inBackground || !isDisplayable())
+            return;
+
+        inBackground = false;
+        // Note: the dialog is modal, this call blocks until the dialog is hidden or disposed
+        setVisible(true);
+    }
+
+
+    /**
+     * Returns <code>true</code> if this dialog has been sent to the background and the job it controls is still
+     * running.
+     *
+     * @return true if this dialog is currently in the background
+     */
+    public boolean isInBackground() {
+        return inBackground;
+    }
+
+
 //    /**
 //     * This method is called by the registered FileJob starts each time a new file is being processed.
 //     */
@@ -283,6 +350,10 @@ public class ProgressDialog extends FocusDialog implements ActionListener, ItemL
         transferFileJob.setThroughputLimit(limitSpeedCheckBox.isSelected()?speedChooser.getValue():-1);
     }
 
+    private void updateTotalThroughputLimit() {
+        BandwidthManager.getInstance().setGlobalLimit(limitTotalSpeedCheckBox.isSelected()?totalSpeedChooser.getValue():0);
+    }
+
     private void updateCurrentSpeedLabel(String value) {
         currentSpeedLabel.setText(Translator.get("progress_dialog.current_speed")+": "+value);
     }
@@ -301,8 +372,8 @@ public class ProgressDialog extends FocusDialog implements ActionListener, ItemL
             dispose();
         }
         else if(newState==FileJob.FINISHED) {
-            //  Dispose dialog only if 'Close when finished option' is selected
-            if(closeWhenFinishedCheckBox.isSelected()) {
+            //  Dispose dialog only if 'Close when finished option' is selected, or if nobody is looking at it
+            if(inBackground || closeWhenFinishedCheckBox.isSelected()) {
                 // Stop repaint thread and dispose dialog
                 stop();
                 dispose();
@@ -317,6 +388,7 @@ public class ProgressDialog extends FocusDialog implements ActionListener, ItemL
 
                 // Disable components
                 pauseResumeButton.setEnabled(false);
+                backgroundButton.setEnabled(false);
 
                 if(transferFileJob!=null) {
                     skipButton.setEnabled(false);
@@ -335,7 +407,8 @@ public class ProgressDialog extends FocusDialog implements ActionListener, ItemL
             if(transferFileJob!=null)
                 updateCurrentSpeedLabel("N/A");
         }
-        else if(newState==FileJob.RUNNING) {
+        // A queued job can be paused and resumed before it actually starts
+        else if(newState==FileJob.RUNNING || newState==FileJob.QUEUED) {
             pauseResumeButton.setText(Translator.get("pause"));
             pauseResumeButton.setIcon(IconManager.getIcon(IconManager.PROGRESS_ICON_SET, PAUSE_ICON));
 
@@ -429,9 +502,9 @@ public class ProgressDialog extends FocusDialog implements ActionListener, ItemL
             // Pause/resume job
             job.setPaused(job.getState()!=FileJob.PAUSED);
         }
-//        else if(source==hideButton) {
-//            mainFrame.setState(Frame.ICONIFIED);
-//        }
+        else if(source==backgroundButton) {
+            sendToBackground();
+        }
     }
 
 
@@ -446,6 +519,10 @@ public class ProgressDialog extends FocusDialog implements ActionListener, ItemL
             speedChooser.setEnabled(isEnabled);
             updateThroughputLimit();
         }
+        else if(source==limitTotalSpeedCheckBox) {
+            totalSpeedChooser.setEnabled(limitTotalSpeedCheckBox.isSelected());
+            updateTotalThroughputLimit();
+        }
     }
 
 
@@ -457,6 +534,9 @@ public class ProgressDialog extends FocusDialog implements ActionListener, ItemL
         if(e.getSource()==speedChooser) {
             updateThroughputLimit();
         }
+        else if(e.getSource()==totalSpeedChooser) {
+            updateTotalThroughputLimit();
+        }
     }
 
 
@@ -22,12 +22,14 @@ import com.mucommander.commons.file.Credentials;
 import com.mucommander.commons.file.FileURL;
 import com.mucommander.commons.file.connection.ConnectionHandler;
 import com.mucommander.commons.file.connection.ConnectionPool;
+import com.mucommander.core.ConnectionManager;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.action.ActionProperties;
 import com.mucommander.ui.action.impl.ShowServerConnectionsAction;
 import com.mucommander.ui.dialog.FocusDialog;
 import com.mucommander.ui.helper.MnemonicHelper;
 import com.mucommander.ui.layout.XBoxPanel;
+import com.mucommander.ui.layout.YBoxPanel;
 import com.mucommander.ui.main.MainFrame;
 
 import javax.swing.*;
@@ -100,6 +102,24 @@ public class ShowServerConnectionsDialog extends FocusDialog implements ActionLi
                 new JScrollPane(connectionList, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED, JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED),
                 BorderLayout.CENTER);
 
+        // Add the statistics of the servers that have been connected to
+
+        java.util.List<ConnectionManager.ServerStatistics> statistics = ConnectionManager.getInstance().getStatistics();
+        if(statistics.size()>0) {
+            YBoxPanel statisticsPanel = new YBoxPanel();
+            statisticsPanel.setBorder(BorderFactory.createTitledBorder(Translator.get("server_connections_dialog.statistics")));
+            for(ConnectionManager.ServerStatistics serverStatistics : statistics) {
+                statisticsPanel.add(new JLabel(Translator.get("server_connections_dialog.server_statistics",
+                        serverStatistics.getServer(),
+                        ""+serverStatistics.getConnectionCount(),
+                        ""+serverStatistics.getBusyConnectionCount(),
+                        ""+serverStatistics.getOpenedCount(),
+                        ""+serverStatistics.getClosedCount())));
+            }
+
+            contentPane.add(statisticsPanel, BorderLayout.NORTH);
+        }
+
         // Add buttons
 
         XBoxPanel buttonsPanel = new XBoxPanel();
@@ -167,6 +187,7 @@ public class ShowServerConnectionsDialog extends FocusDialog implements ActionLi
                     @Override
                     public void run() {
                         connHandler.closeConnection();
+                        ConnectionManager.getInstance().connectionClosed(connHandler);
                     }
                 }.start();
 
@@ -0,0 +1,143 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.ui.dialog.startup;
+
+import javax.swing.SwingUtilities;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.util.FileSet;
+import com.mucommander.job.CopyJob;
+import com.mucommander.job.TransferJournal;
+import com.mucommander.text.Translator;
+import com.mucommander.ui.dialog.InformationDialog;
+import com.mucommander.ui.dialog.QuestionDialog;
+import com.mucommander.ui.dialog.file.ProgressDialog;
+import com.mucommander.ui.main.MainFrame;
+
+/**
+ * Offers the user to resume a file transfer that was interrupted the last time the application ran, as recorded by
+ * a {@link TransferJournal}. The transfer can be resumed, discarded, or left for a later time in which case the
+ * dialog will be shown again the next time the application starts.
+ */
+public class ResumeTransferDialog extends QuestionDialog {
+
+    /** Parent MainFrame instance */
+    private MainFrame mainFrame;
+
+    /** Journal of the interrupted transfer */
+    private TransferJournal journal;
+
+    private final static int RESUME_ACTION = 0;
+    private final static int DISCARD_ACTION = 1;
+    private final static int LATER_ACTION = 2;
+
+
+    /**
+     * Creates a new <code>ResumeTransferDialog</code> for the given interrupted transfer, without showing it.
+     *
+     * @param mainFrame parent MainFrame instance
+     * @param journal journal of the interrupted transfer
+     */
+    public ResumeTransferDialog(MainFrame mainFrame, TransferJournal journal) {
+        super(mainFrame,
+              Translator.get("resume_transfer_dialog.title"),
+              Translator.get("resume_transfer_dialog.message", journal.getDestinationURL(), String.valueOf(journal.getNbFilesDone())),
+              mainFrame,
+              new String[] {Translator.get("resume"), Translator.get("resume_transfer_dialog.discard"), Translator.get("resume_transfer_dialog.later")},
+              new int[] {RESUME_ACTION, DISCARD_ACTION, LATER_ACTION},
+              0);
+
+        this.mainFrame = mainFrame;
+        this.journal = journal;
+    }
+
+    /**
+     * Shows this dialog and performs the action selected by the user.
+     */
+    public void showAndPerformAction() {
+        switch(getActionValue()) {
+            case RESUME_ACTION:
+                resume();
+                break;
+            case DISCARD_ACTION:
+                journal.delete();
+                break;
+            // Later or dialog closed: keep the journal
+        }
+    }
+
+    /**
+     * Resolves the files of the interrupted transfer in a separate thread, as this may involve the network, and
+     * starts a job that resumes it.
+     */
+    private void resume() {
+        new Thread("Resume transfer") {
+            @Override
+            public void run() {
+                final AbstractFile destFolder = journal.resolveDestinationFolder();
+                final FileSet files = destFolder==null?null:journal.resolveFiles();
+
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if(destFolder==null) {
+                            showUnavailableDialog(Translator.get("resume_transfer_dialog.destination_unavailable", journal.getDestinationURL()));
+                            return;
+                        }
+
+                        if(files==null) {
+                            showUnavailableDialog(Translator.get("resume_transfer_dialog.source_unavailable", journal.getBaseFolderURL()));
+                            return;
+                        }
+
+                        // The files to transfer have all been removed, there is nothing left to resume
+                        if(files.isEmpty()) {
+                            journal.delete();
+                            InformationDialog.showWarningDialog(mainFrame, Translator.get("resume_transfer_dialog.nothing_to_resume", journal.getBaseFolderURL()));
+                            return;
+                        }
+
+                        ProgressDialog progressDialog = new ProgressDialog(mainFrame,
+                                Translator.get(journal.getMode()==CopyJob.DOWNLOAD_MODE?"download_dialog.downloading":"copy_dialog.copying"));
+                        progressDialog.start(journal.createJob(progressDialog, mainFrame, files, destFolder));
+                    }
+                });
+            }
+        }.start();
+    }
+
+    /**
+     * Tells the user that the transfer cannot be resumed for the given reason, and offers to discard it. Otherwise, the
+     * journal is kept, so that the transfer can be resumed once the missing folder is available again.
+     *
+     * @param message the reason why the transfer cannot be resumed
+     */
+    private void showUnavailableDialog(String message) {
+        QuestionDialog dialog = new QuestionDialog(mainFrame,
+                Translator.get("resume_transfer_dialog.title"),
+                message,
+                mainFrame,
+                new String[] {Translator.get("resume_transfer_dialog.discard"), Translator.get("resume_transfer_dialog.later")},
+                new int[] {DISCARD_ACTION, LATER_ACTION},
+                0);
+
+        if(dialog.getActionValue()==DISCARD_ACTION)
+            journal.delete();
+    }
+}
@@ -31,6 +31,7 @@ import com.mucommander.core.FolderChangeMonitor;
 import com.mucommander.core.GlobalLocationHistory;
 import com.mucommander.ui.main.ConfigurableFolderFilter;
 import com.mucommander.ui.main.FolderPanel;
+import com.mucommander.ui.main.table.ListingSnapshot;
 
 /**
  * @author Maxence Bernard
@@ -76,8 +77,50 @@ public class LocationManager {
     	LOGGER.trace("calling ls()");
     	AbstractFile[] children = folder.ls(configurableFolderFilter);
 
+    	setCurrentFolder(folder, children, fileToSelect, changeLockedTab);
+    }
+
+    /**
+     * Set the given {@link AbstractFile} as the folder presented in the {@link FolderPanel}, using the given children
+     * rather than listing the folder.
+     * 
+     * @param folder the {@link AbstractFile} that is going to be presented in the {@link FolderPanel}
+     * @param children the children of the folder
+     * @param fileToSelect the file to select, <code>null</code> for the default selection
+     * @param changeLockedTab flag that indicates whether to change the presented folder in the currently selected tab although it's locked
+     */
+    public void setCurrentFolder(AbstractFile folder, AbstractFile children[], AbstractFile fileToSelect, boolean changeLockedTab) {
     	folderPanel.setCurrentFolder(folder, children, fileToSelect, changeLockedTab);
 
+    	folderChanged(folder);
+    }
+
+    /**
+     * Presents the folder of the given snapshot in the {@link FolderPanel}, as it was when the snapshot was taken.
+     * The folder is not listed, see {@link #revalidateListingSnapshot(ListingSnapshot)}.
+     *
+     * @param snapshot the snapshot of the folder to present
+     */
+    public void restoreListingSnapshot(ListingSnapshot snapshot) {
+    	folderPanel.restoreListingSnapshot(snapshot);
+
+    	folderChanged(snapshot.getFolder());
+    }
+
+    /**
+     * Lists the folder of the given snapshot and merges its current children with the snapshot's.
+     *
+     * @param snapshot the snapshot to revalidate
+     * @return the merged children of the folder, <code>null</code> if the snapshot is up-to-date
+     * @throws IOException if the folder could not be listed
+     * @see ListingSnapshot#merge(AbstractFile[])
+     */
+    public AbstractFile[] revalidateListingSnapshot(ListingSnapshot snapshot) throws IOException {
+    	LOGGER.trace("calling ls()");
+    	return snapshot.merge(snapshot.getFolder().ls(configurableFolderFilter));
+    }
+
+    private void folderChanged(AbstractFile folder) {
     	this.currentFolder = folder;
 
     	// Notify listeners that the location has changed
@@ -63,6 +63,7 @@ import com.mucommander.ui.main.quicklist.RootFoldersQL;
 import com.mucommander.ui.main.quicklist.TabsQL;
 import com.mucommander.ui.main.table.FileTable;
 import com.mucommander.ui.main.table.FileTableConfiguration;
+import com.mucommander.ui.main.table.ListingSnapshot;
 import com.mucommander.ui.main.tabs.ConfFileTableTab;
 import com.mucommander.ui.main.tabs.FileTableTab;
 import com.mucommander.ui.main.tabs.FileTableTabs;
@@ -348,6 +349,10 @@ public class FolderPanel extends JPanel implements FocusListener, QuickListConta
     	locationChanger.tryChangeCurrentFolderInternal(folderURL, callback);
     }
 
+    public void tryRestoreListingSnapshot(ListingSnapshot snapshot, Callback callback) {
+    	locationChanger.tryRestoreListingSnapshot(snapshot, callback);
+    }
+
     public ChangeFolderThread tryChangeCurrentFolder(AbstractFile folder) {
     	return locationChanger.tryChangeCurrentFolder(folder, false);
     }
@@ -417,6 +422,15 @@ public class FolderPanel extends JPanel implements FocusListener, QuickListConta
     			fileTable.setCurrentFolder(folder, children, fileToSelect);
     }
 
+    /**
+     * This method updates the UI with the folder of the given snapshot, as it was when the snapshot was taken.
+     * 
+     * @param snapshot - the snapshot of the folder to be set
+     */
+    public void restoreListingSnapshot(ListingSnapshot snapshot) {
+    	fileTable.restoreListingSnapshot(snapshot);
+    }
+
     /**
      * Shows the pop up which is located the given index in fileTablePopups.
      * 
@@ -484,7 +498,21 @@ public class FolderPanel extends JPanel implements FocusListener, QuickListConta
     	}
     }
 
-    
+
+    /**
+     * Returns true if the contents of the current folder are displayed as thumbnails.
+     */
+    public boolean isThumbnailsVisible() {
+        return fileTable.isThumbnailsVisible();
+    }
+
+    /**
+     * Displays the contents of the current folder as thumbnails or as a table.
+     * Invoked by {@link com.mucommander.ui.action.impl.ToggleThumbnailsAction}.
+     */
+    public void setThumbnailsVisible(boolean thumbnailsVisible) {
+        fileTable.setThumbnailsVisible(thumbnailsVisible);
+    }
 
     ////////////////////////
     // Overridden methods //
@@ -31,6 +31,8 @@ import java.awt.event.WindowEvent;
 import java.util.Vector;
 import java.util.WeakHashMap;
 
+import javax.swing.InputMap;
+import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.JSplitPane;
@@ -51,6 +53,7 @@ import com.mucommander.conf.MuSnapshot;
 import com.mucommander.ui.action.ActionKeymap;
 import com.mucommander.ui.action.ActionManager;
 import com.mucommander.ui.action.impl.CloseWindowAction;
+import com.mucommander.ui.action.impl.ToggleJobManagerAction;
 import com.mucommander.ui.button.ToolbarMoreButton;
 import com.mucommander.ui.event.ActivePanelListener;
 import com.mucommander.ui.event.LocationEvent;
@@ -59,6 +62,7 @@ import com.mucommander.ui.icon.IconManager;
 import com.mucommander.ui.layout.ProportionalSplitPane;
 import com.mucommander.ui.layout.YBoxPanel;
 import com.mucommander.ui.main.commandbar.CommandBar;
+import com.mucommander.ui.main.jobs.JobManagerPanel;
 import com.mucommander.ui.main.menu.MainMenuBar;
 import com.mucommander.ui.main.table.Column;
 import com.mucommander.ui.main.table.FileTable;
@@ -76,6 +80,15 @@ public class MainFrame extends JFrame implements LocationListener {
 	
     private ProportionalSplitPane splitPane;
 
+    /** Split pane that docks the job manager below the folder panels */
+    private JSplitPane jobManagerSplitPane;
+
+    /** Lists the running jobs, hidden unless enabled in the preferences */
+    private JobManagerPanel jobManagerPanel;
+
+    /** Divider size of the job manager split pane when the job manager is visible */
+    private int jobManagerDividerSize;
+
     private FolderPanel leftFolderPanel;
     private FolderPanel rightFolderPanel;
 	
@@ -228,8 +241,21 @@ public class MainFrame extends JFrame implements LocationListener {
         // conflict with default mucommander action shortcuts (e.g. F6 and F8) 
         splitPane.disableAccessibilityShortcuts();
 
+        // Dock the job manager below the folder panels, the folder panels are given any extra space
+        this.jobManagerPanel = new JobManagerPanel(this);
+        jobManagerSplitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, true, splitPane, jobManagerPanel);
+        jobManagerSplitPane.setBorder(null);
+        jobManagerSplitPane.setResizeWeight(1);
+        // Disable JSplitPane accessibility shortcuts, see ProportionalSplitPane#disableAccessibilityShortcuts()
+        InputMap inputMap = jobManagerSplitPane.getInputMap(JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT);
+        inputMap.clear();
+        inputMap.setParent(null);
+        jobManagerDividerSize = jobManagerSplitPane.getDividerSize();
+        // Show job manager only if it has been enabled in the preferences
+        showJobManager(MuConfigurations.getPreferences().getVariable(MuPreference.JOB_MANAGER_VISIBLE, MuPreferences.DEFAULT_JOB_MANAGER_VISIBLE));
+
         // Split pane will be given any extra space
-        insetsPane.add(splitPane, BorderLayout.CENTER);
+        insetsPane.add(jobManagerSplitPane, BorderLayout.CENTER);
 
         // Add a 2-pixel gap between the file table and status bar
         YBoxPanel southPanel = new YBoxPanel();
@@ -403,6 +429,49 @@ public class MainFrame extends JFrame implements LocationListener {
     }
 
 
+    /**
+     * Returns the panel that lists the running jobs, docked below the folder panels.
+     * Note that a non-null instance of {@link JobManagerPanel} is returned even if it is currently hidden.
+     *
+     * @return the job manager panel
+     */
+    public JobManagerPanel getJobManagerPanel() {
+        return jobManagerPanel;
+    }
+
+    /**
+     * Returns <code>true</code> if the job manager panel is currently visible.
+     *
+     * @return true if the job manager panel is currently visible
+     */
+    public boolean isJobManagerVisible() {
+        return jobManagerPanel.isVisible();
+    }
+
+    /**
+     * Shows or hides the job manager panel, and updates the label of
+     * {@link com.mucommander.ui.action.impl.ToggleJobManagerAction} accordingly. Unlike the action, this method
+     * doesn't change the visibility used by default in new windows.
+     *
+     * @param visible true to show the job manager panel, false to hide it
+     */
+    public void setJobManagerVisible(boolean visible) {
+        if(visible==isJobManagerVisible())
+            return;
+
+        showJobManager(visible);
+        ((ToggleJobManagerAction)ActionManager.getActionInstance(ToggleJobManagerAction.Descriptor.ACTION_ID, this)).updateLabel(visible);
+        validate();
+    }
+
+    private void showJobManager(boolean visible) {
+        jobManagerPanel.setVisible(visible);
+        // Hide the divider along with the job manager
+        jobManagerSplitPane.setDividerSize(visible?jobManagerDividerSize:0);
+        if(visible)
+            jobManagerSplitPane.resetToPreferredSizes();
+    }
+
     /**
      * Returns the status bar, where information about selected files and volume are displayed.
      * Note that a non-null instance of {@link StatusBar} is returned even if it is currently hidden.
@@ -50,7 +50,9 @@ import com.mucommander.commons.runtime.JavaVersions;
 import com.mucommander.conf.MuConfigurations;
 import com.mucommander.conf.MuPreference;
 import com.mucommander.conf.MuPreferences;
+import com.mucommander.core.RemoteListingCache;
 import com.mucommander.desktop.DesktopManager;
+import com.mucommander.text.CustomDateFormat;
 import com.mucommander.text.SizeFormat;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.action.ActionManager;
@@ -287,6 +289,14 @@ public class StatusBar extends JPanel implements Runnable, MouseListener, Active
                 filesInfo += " - "+selectedFile.getName();
         }		
 
+        // Tell when the files were listed if they come from the cached listing of a remote folder
+        AbstractFile currentFolder = tableModel.getCurrentFolder();
+        if(currentFileTable.isListingFromSnapshot() && currentFolder!=null
+                && RemoteListingCache.getInstance().isCacheable(currentFolder.getURL())) {
+            String cachedListingInfo = Translator.get("status_bar.cached_listing", CustomDateFormat.format(currentFileTable.getListingDate()));
+            filesInfo = fileCount==0?cachedListingInfo:filesInfo+" - "+cachedListingInfo;
+        }
+
         // Update label
         setStatusInfo(filesInfo);
     }
@@ -0,0 +1,275 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.ui.main.jobs;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+import javax.swing.JButton;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.TableCellRenderer;
+
+import com.mucommander.commons.runtime.JavaVersions;
+import com.mucommander.job.FileJob;
+import com.mucommander.job.progress.JobProgressListener;
+import com.mucommander.job.progress.JobProgressMonitor;
+import com.mucommander.text.Translator;
+import com.mucommander.ui.dialog.file.ProgressDialog;
+import com.mucommander.ui.icon.IconManager;
+import com.mucommander.ui.layout.YBoxPanel;
+import com.mucommander.ui.main.MainFrame;
+
+/**
+ * This panel lists all the jobs monitored by {@link JobProgressMonitor} along with their progress, transfer speed and
+ * estimated remaining time, and allows to pause, resume or stop them, and to bring back the progress dialog of a job
+ * that has been sent to the background.
+ * <p>
+ * The panel is docked at the bottom of a {@link MainFrame} and can be shown or hidden with
+ * {@link com.mucommander.ui.action.impl.ToggleJobManagerAction}. It doesn't poll jobs itself: rows are repainted when
+ * the monitor delivers its periodic progress notifications, and only while the panel is showing.
+ * </p>
+ */
+public class JobManagerPanel extends JPanel implements JobProgressListener, ActionListener, ListSelectionListener {
+
+    private MainFrame mainFrame;
+
+    private JTable table;
+    private JobTableModel model;
+
+    private JButton showButton;
+    private JButton pauseResumeButton;
+    private JButton stopButton;
+
+    // Button icons, shared with the progress dialog
+    private final static String RESUME_ICON = "resume.png";
+    private final static String PAUSE_ICON = "pause.png";
+    private final static String STOP_ICON = "stop.png";
+
+    /** Height initially allocated to the panel */
+    private final static int PREFERRED_HEIGHT = 130;
+
+
+    public JobManagerPanel(MainFrame mainFrame) {
+        super(new BorderLayout());
+        this.mainFrame = mainFrame;
+
+        model = new JobTableModel();
+        table = new JTable(model);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setShowGrid(false);
+        // Stretch the table to the height of the viewport, this is only available in Java 1.6 and up
+        if(JavaVersions.JAVA_1_6.isCurrentOrHigher())
+            table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(JobTableModel.NAME_COLUMN).setPreferredWidth(150);
+        table.getColumnModel().getColumn(JobTableModel.STATUS_COLUMN).setPreferredWidth(250);
+        table.setDefaultRenderer(Integer.class, new ProgressRenderer());
+        table.getSelectionModel().addListSelectionListener(this);
+
+        // Double-clicking a job brings its progress dialog back
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if(e.getClickCount()==2)
+                    showSelectedJob();
+            }
+        });
+
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(0, PREFERRED_HEIGHT));
+        add(scrollPane, BorderLayout.CENTER);
+
+        YBoxPanel buttonsPanel = new YBoxPanel();
+
+        showButton = createButton(Translator.get("job_manager.show"), null);
+        buttonsPanel.add(showButton);
+        pauseResumeButton = createButton(Translator.get("pause"), PAUSE_ICON);
+        buttonsPanel.add(pauseResumeButton);
+        stopButton = createButton(Translator.get("stop"), STOP_ICON);
+        buttonsPanel.add(stopButton);
+
+        add(buttonsPanel, BorderLayout.EAST);
+
+        updateButtons();
+    }
+
+    private JButton createButton(String label, String iconName) {
+        JButton button = new JButton(label, iconName==null?null:IconManager.getIcon(IconManager.PROGRESS_ICON_SET, iconName));
+        button.setHorizontalAlignment(JButton.LEFT);
+        button.setMaximumSize(new Dimension(Integer.MAX_VALUE, button.getPreferredSize().height));
+        button.addActionListener(this);
+        return button;
+    }
+
+    /**
+     * Returns the <code>MainFrame</code> this panel is docked in.
+     *
+     * @return the MainFrame this panel is docked in
+     */
+    public MainFrame getMainFrame() {
+        return mainFrame;
+    }
+
+    /**
+     * Returns the currently selected job, <code>null</code> if there is none.
+     */
+    private FileJob getSelectedJob() {
+        return model.getJob(table.getSelectedRow());
+    }
+
+    /**
+     * Brings back the progress dialog of the selected job if it has been sent to the background.
+     */
+    private void showSelectedJob() {
+        FileJob job = getSelectedJob();
+        if(job==null)
+            return;
+
+        ProgressDialog dialog = job.getProgressDialog();
+        if(dialog!=null && dialog.isInBackground())
+            dialog.bringToForeground();
+    }
+
+    /**
+     * Enables/disables the buttons and updates the pause/resume button to reflect the state of the selected job.
+     */
+    private void updateButtons() {
+        FileJob job = getSelectedJob();
+        int state = job==null?FileJob.FINISHED:job.getState();
+        boolean alive = state!=FileJob.FINISHED && state!=FileJob.INTERRUPTED;
+        ProgressDialog dialog = job==null?null:job.getProgressDialog();
+
+        showButton.setEnabled(dialog!=null && dialog.isInBackground());
+        pauseResumeButton.setEnabled(alive);
+        stopButton.setEnabled(alive);
+
+        boolean paused = state==FileJob.PAUSED;
+        pauseResumeButton.setText(Translator.get(paused?"resume":"pause"));
+        pauseResumeButton.setIcon(IconManager.getIcon(IconManager.PROGRESS_ICON_SET, paused?RESUME_ICON:PAUSE_ICON));
+    }
+
+
+    ////////////////////////
+    // Overridden methods //
+    ////////////////////////
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        JobProgressMonitor.getInstance().addJobProgressListener(this);
+        model.fireTableDataChanged();
+    }
+
+    @Override
+    public void removeNotify() {
+        // Stop listening to the monitor once the panel has been removed from its window, so that it can be collected
+        JobProgressMonitor.getInstance().removeJobProgressListener(this);
+        super.removeNotify();
+    }
+
+
+    /////////////////////////////////////////
+    // JobProgressListener implementation  //
+    /////////////////////////////////////////
+
+    public void jobAdded(FileJob source, int idx) {
+        model.fireTableRowsInserted(idx, idx);
+    }
+
+    public void jobRemoved(FileJob source, int idx) {
+        if(idx!=-1)
+            model.fireTableRowsDeleted(idx, idx);
+        updateButtons();
+    }
+
+    public void jobProgress(FileJob source, int idx, boolean fullUpdate) {
+        // Nobody is looking, no need to repaint
+        if(!isShowing() || idx==-1)
+            return;
+
+        model.fireTableRowsUpdated(idx, idx);
+        if(idx==table.getSelectedRow())
+            updateButtons();
+    }
+
+
+    ///////////////////////////////////
+    // ActionListener implementation //
+    ///////////////////////////////////
+
+    public void actionPerformed(ActionEvent e) {
+        Object source = e.getSource();
+        FileJob job = getSelectedJob();
+        if(job==null)
+            return;
+
+        if(source==showButton) {
+            showSelectedJob();
+        }
+        else if(source==pauseResumeButton) {
+            job.setPaused(job.getState()!=FileJob.PAUSED);
+        }
+        else if(source==stopButton) {
+            job.interrupt();
+        }
+
+        updateButtons();
+    }
+
+
+    //////////////////////////////////////////
+    // ListSelectionListener implementation //
+    //////////////////////////////////////////
+
+    public void valueChanged(ListSelectionEvent e) {
+        if(!e.getValueIsAdjusting())
+            updateButtons();
+    }
+
+
+    /**
+     * Renders the progress column as a progress bar.
+     */
+    private static class ProgressRenderer extends JProgressBar implements TableCellRenderer {
+
+        private ProgressRenderer() {
+            super(0, 100);
+            setStringPainted(true);
+            setBorderPainted(false);
+        }
+
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+            int percent = value==null?0:(Integer)value;
+            setValue(percent);
+            setString(percent+"%");
+            return this;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.ui.main.jobs;
+
+import javax.swing.table.AbstractTableModel;
+
+import com.mucommander.job.FileJob;
+import com.mucommander.job.progress.JobProgress;
+import com.mucommander.job.progress.JobProgressMonitor;
+import com.mucommander.text.DurationFormat;
+import com.mucommander.text.SizeFormat;
+import com.mucommander.text.Translator;
+import com.mucommander.ui.dialog.file.ProgressDialog;
+
+/**
+ * Table model listing the jobs monitored by {@link JobProgressMonitor}, one row per job, in the order in which they
+ * were added to the monitor.
+ * <p>
+ * The values are read from the {@link JobProgress} of each job, which is only recalculated at the monitor's refresh
+ * rate: the model itself holds no state and is merely told which rows have changed by {@link JobManagerPanel}.
+ * </p>
+ */
+class JobTableModel extends AbstractTableModel {
+
+    static final int NAME_COLUMN = 0;
+    static final int STATUS_COLUMN = 1;
+    static final int PROGRESS_COLUMN = 2;
+    static final int TRANSFERRED_COLUMN = 3;
+    static final int SPEED_COLUMN = 4;
+    static final int REMAINING_COLUMN = 5;
+
+    private static final String COLUMN_KEYS[] = {
+        "job_manager.job",
+        "job_manager.status",
+        "job_manager.progress",
+        "job_manager.transferred",
+        "job_manager.speed",
+        "job_manager.remaining"
+    };
+
+    private String columnNames[];
+
+    JobTableModel() {
+        columnNames = new String[COLUMN_KEYS.length];
+        for(int i=0; i<COLUMN_KEYS.length; i++)
+            columnNames[i] = Translator.get(COLUMN_KEYS[i]);
+    }
+
+    /**
+     * Returns the job displayed in the specified row, <code>null</code> if there is no such row.
+     *
+     * @param row index of a row
+     * @return the job displayed in the row, null if there is no such row
+     */
+    FileJob getJob(int row) {
+        if(row<0)
+            return null;
+        return JobProgressMonitor.getInstance().getJob(row);
+    }
+
+    /**
+     * Returns the text describing the state of the given job, as displayed in the status column.
+     */
+    private static String getStatusText(FileJob job, JobProgress progress) {
+        if(job.getState()==FileJob.PAUSED)
+            return Translator.get("job_manager.paused");
+
+        // Status string is null until the progress has been calculated for the first time
+        String status = progress.getJobStatusString();
+        return status==null?job.getStatusString():status;
+    }
+
+
+    //////////////////////////////////
+    // AbstractTableModel overrides //
+    //////////////////////////////////
+
+    public int getRowCount() {
+        return JobProgressMonitor.getInstance().getJobCount();
+    }
+
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column==PROGRESS_COLUMN?Integer.class:String.class;
+    }
+
+    public Object getValueAt(int row, int column) {
+        FileJob job = getJob(row);
+        if(job==null)
+            return null;
+
+        JobProgress progress = job.getJobProgress();
+        boolean queued = job.isQueued();
+
+        switch(column) {
+            case NAME_COLUMN:
+                ProgressDialog dialog = job.getProgressDialog();
+                return dialog==null?Translator.get("job_manager.job"):dialog.getTitle();
+            case STATUS_COLUMN:
+                return getStatusText(job, progress);
+            case PROGRESS_COLUMN:
+                return progress.getTotalPercentInt();
+            case TRANSFERRED_COLUMN:
+                if(!progress.isTransferFileJob() || queued)
+                    return "";
+                return SizeFormat.format(progress.getBytesTotal(), SizeFormat.DIGITS_MEDIUM|SizeFormat.UNIT_SHORT|SizeFormat.ROUND_TO_KB);
+            case SPEED_COLUMN:
+                if(!progress.isTransferFileJob() || queued || job.getState()!=FileJob.RUNNING)
+                    return "";
+                return SizeFormat.format(progress.getCurrentBps(), SizeFormat.UNIT_SPEED|SizeFormat.DIGITS_MEDIUM|SizeFormat.UNIT_SHORT);
+            case REMAINING_COLUMN:
+                long remainingTime = progress.getTotalRemainingTime();
+                if(queued || remainingTime<=0)
+                    return "";
+                return DurationFormat.format(remainingTime);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.ui.main.table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.filter.FileFilter;
+import com.mucommander.commons.runtime.JavaVersions;
+
+/**
+ * Evaluates a {@link FileFilter} against a large number of files, splitting them into chunks that are evaluated
+ * concurrently by a pool of threads, one per available processor. Small arrays of files are evaluated in the calling
+ * thread.
+ * <p>
+ * The filter is invoked concurrently and must thus be thread-safe, which is the case of the filename and attribute
+ * filters. The files are meant to be {@link com.mucommander.commons.file.impl.CachedFile} instances whose attributes
+ * have already been fetched, so that evaluating the filter does not involve any I/O.
+ * </p>
+ *
+ * @see FileTableModel#setFilesMarked(FileFilter, boolean)
+ */
+class FileFilterEvaluator {
+    /** Number of files under which files are evaluated in the calling thread */
+    private final static int MIN_PARALLEL_FILES = 10000;
+
+    /** Number of chunks to evaluate per thread, so that threads that are done early can help the other ones */
+    private final static int CHUNKS_PER_THREAD = 4;
+
+    /** Number of evaluating threads */
+    private final static int NB_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /** The threads that evaluate chunks of files */
+    private final static ThreadPoolExecutor executor;
+
+    static {
+        executor = new ThreadPoolExecutor(NB_THREADS, NB_THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "File filter evaluator");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        // Let the threads die when no files are being evaluated, this is only available in Java 1.6 and up
+        if(JavaVersions.JAVA_1_6.isCurrentOrHigher())
+            executor.allowCoreThreadTimeOut(true);
+    }
+
+
+    /**
+     * Evaluates the given filter against the given files, and returns the result for each file.
+     *
+     * @param filter the filter to evaluate, must be thread-safe
+     * @param files the files to match against the filter
+     * @return an array that contains, for each file, <code>true</code> if it matches the filter
+     */
+    static boolean[] match(final FileFilter filter, final AbstractFile files[]) {
+        final boolean matches[] = new boolean[files.length];
+        int nbFiles = files.length;
+
+        if(NB_THREADS<2 || nbFiles<MIN_PARALLEL_FILES) {
+            evaluate(filter, files, matches, 0, nbFiles);
+            return matches;
+        }
+
+        int chunkSize = (nbFiles+NB_THREADS*CHUNKS_PER_THREAD-1)/(NB_THREADS*CHUNKS_PER_THREAD);
+        List<Future<?>> chunks = new ArrayList<Future<?>>();
+        for(int start=0; start<nbFiles; start+=chunkSize) {
+            final int from = start;
+            final int to = Math.min(start+chunkSize, nbFiles);
+            chunks.add(executor.submit(new Runnable() {
+                public void run() {
+                    evaluate(filter, files, matches, from, to);
+                }
+            }));
+        }
+
+        // Wait for all chunks to be evaluated. Note: waiting on a Future guarantees that the results written by its
+        // thread are visible to this one
+        boolean interrupted = false;
+        for(Future<?> chunk : chunks) {
+            while(true) {
+                try {
+                    chunk.get();
+                    break;
+                }
+                catch(InterruptedException e) {
+                    // The results must be complete: keep waiting and restore the interrupted status afterwards
+                    interrupted = true;
+                }
+                catch(ExecutionException e) {
+                    // The filter threw an exception: propagate it as if it had been evaluated in this thread
+                    Throwable cause = e.getCause();
+                    if(cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    if(cause instanceof Error)
+                        throw (Error)cause;
+                    throw new RuntimeException(cause);
+                }
+            }
+        }
+
+        if(interrupted)
+            Thread.currentThread().interrupt();
+
+        return matches;
+    }
+
+    /**
+     * Evaluates the filter against the files of the given range.
+     */
+    private static void evaluate(FileFilter filter, AbstractFile files[], boolean matches[], int from, int to) {
+        for(int i=from; i<to; i++)
+            matches[i] = filter.match(files[i]);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.ui.main.table;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.mucommander.commons.file.AbstractFile;
+
+/**
+ * Indexes the names of the files of a folder, to find the files whose name contains a given string, ignoring case,
+ * without testing every name.
+ * <p>
+ * The lower-cased names are computed once when the index is created. The trigrams (sequences of 3 characters) of the
+ * names are indexed the first time a string of at least 3 characters is searched: the files that contain such a
+ * string are found among the files that contain its least frequent trigram. Shorter strings are matched against all
+ * names.
+ * </p>
+ * <p>
+ * Since the search string is typed one character at a time, the results of the last searches are kept: a string
+ * that extends a previous one is only matched against the files that matched it, and a string that has been searched
+ * recently (e.g. after a backspace) is not searched again.
+ * </p>
+ * <p>
+ * This class is not thread-safe: it is meant to be used while holding the lock of the {@link FileTableModel} that
+ * owns it.
+ * </p>
+ */
+class FileNameIndex {
+
+    /** Number of search results to keep */
+    private final static int MAX_CACHED_RESULTS = 16;
+
+    /** Lower-cased file names, by file index */
+    private String lowerCaseNames[];
+
+    /** Files that contain each trigram, by trigram. Created the first time it is needed */
+    private Map<Long, Postings> trigrams;
+
+    /** Results of the last searches, by search string */
+    private Map<String, int[]> results = new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+            return size()>MAX_CACHED_RESULTS;
+        }
+    };
+
+    /** The last search string, <code>null</code> if no search was made yet */
+    private String lastString;
+
+
+    /**
+     * Creates a new index of the names of the given files.
+     *
+     * @param files the files to index
+     */
+    FileNameIndex(AbstractFile files[]) {
+        int nbFiles = files.length;
+        lowerCaseNames = new String[nbFiles];
+        for(int i=0; i<nbFiles; i++)
+            lowerCaseNames[i] = files[i].getName().toLowerCase();
+    }
+
+    /**
+     * Returns the lower-cased name of the file with the given index.
+     *
+     * @param fileIndex index of a file, in the array the index was created with
+     * @return the lower-cased name of the file
+     */
+    String getLowerCaseName(int fileIndex) {
+        return lowerCaseNames[fileIndex];
+    }
+
+    /**
+     * Returns <code>true</code> if the name of the file with the given index contains the given string.
+     *
+     * @param fileIndex index of a file, in the array the index was created with
+     * @param lowerCaseString a lower-cased string
+     * @return true if the name of the file contains the given string, ignoring case
+     */
+    boolean matches(int fileIndex, String lowerCaseString) {
+        return lowerCaseNames[fileIndex].indexOf(lowerCaseString)!=-1;
+    }
+
+    /**
+     * Returns the indexes of the files whose name contains the given string, in ascending order. The returned array
+     * must not be modified.
+     *
+     * @param lowerCaseString a lower-cased string
+     * @return the indexes of the files whose name contains the given string, ignoring case
+     */
+    int[] getMatchingFiles(String lowerCaseString) {
+        int matchingFiles[] = results.get(lowerCaseString);
+        if(matchingFiles!=null) {
+            lastString = lowerCaseString;
+            return matchingFiles;
+        }
+
+        if(lastString!=null && lowerCaseString.indexOf(lastString)!=-1) {
+            // Narrow down the files that matched the last string, which are the only candidates
+            matchingFiles = filter(results.get(lastString), lowerCaseString);
+        }
+        else if(lowerCaseString.length()>=3) {
+            matchingFiles = filter(getCandidates(lowerCaseString), lowerCaseString);
+        }
+        else {
+            matchingFiles = filter(null, lowerCaseString);
+        }
+
+        results.put(lowerCaseString, matchingFiles);
+        lastString = lowerCaseString;
+
+        return matchingFiles;
+    }
+
+    /**
+     * Returns the given candidates (or all files if <code>null</code>) that contain the given string.
+     */
+    private int[] filter(int candidates[], String lowerCaseString) {
+        int nbCandidates = candidates==null?lowerCaseNames.length:candidates.length;
+        int matchingFiles[] = new int[nbCandidates];
+        int nbMatches = 0;
+        int fileIndex;
+        for(int i=0; i<nbCandidates; i++) {
+            fileIndex = candidates==null?i:candidates[i];
+            if(lowerCaseNames[fileIndex].indexOf(lowerCaseString)!=-1)
+                matchingFiles[nbMatches++] = fileIndex;
+        }
+
+        if(nbMatches==nbCandidates)
+            return matchingFiles;
+
+        int trimmed[] = new int[nbMatches];
+        System.arraycopy(matchingFiles, 0, trimmed, 0, nbMatches);
+        return trimmed;
+    }
+
+    /**
+     * Returns the files that contain the least frequent trigram of the given string, which is at least 3 characters
+     * long.
+     */
+    private int[] getCandidates(String lowerCaseString) {
+        if(trigrams==null)
+            indexTrigrams();
+
+        Postings candidates = null;
+        for(int i=0, len=lowerCaseString.length(); i<=len-3; i++) {
+            Postings postings = trigrams.get(getTrigram(lowerCaseString, i));
+            // No file contains this trigram
+            if(postings==null)
+                return new int[0];
+
+            if(candidates==null || postings.size<candidates.size)
+                candidates = postings;
+        }
+
+        return candidates.toArray();
+    }
+
+    /**
+     * Indexes the trigrams of all names.
+     */
+    private void indexTrigrams() {
+        trigrams = new HashMap<Long, Postings>();
+        for(int fileIndex=0; fileIndex<lowerCaseNames.length; fileIndex++) {
+            String name = lowerCaseNames[fileIndex];
+            for(int i=0, len=name.length(); i<=len-3; i++) {
+                Long trigram = getTrigram(name, i);
+                Postings postings = trigrams.get(trigram);
+                if(postings==null) {
+                    postings = new Postings();
+                    trigrams.put(trigram, postings);
+                }
+                postings.add(fileIndex);
+            }
+        }
+    }
+
+    /**
+     * Packs the 3 characters of the given string starting at the given position into a long.
+     */
+    private static Long getTrigram(String s, int pos) {
+        return ((long)s.charAt(pos)<<32) | ((long)s.charAt(pos+1)<<16) | s.charAt(pos+2);
+    }
+
+
+    /**
+     * A growable list of file indexes, in ascending order and without duplicates.
+     */
+    private static class Postings {
+        private int fileIndexes[] = new int[4];
+        private int size;
+
+        private void add(int fileIndex) {
+            // A trigram may occur several times in a same name
+            if(size>0 && fileIndexes[size-1]==fileIndex)
+                return;
+
+            if(size==fileIndexes.length) {
+                int grown[] = new int[size*2];
+                System.arraycopy(fileIndexes, 0, grown, 0, size);
+                fileIndexes = grown;
+            }
+            fileIndexes[size++] = fileIndex;
+        }
+
+        private int[] toArray() {
+            int array[] = new int[size];
+            System.arraycopy(fileIndexes, 0, array, 0, size);
+            return array;
+        }
+    }
+}
@@ -57,12 +57,14 @@ import com.mucommander.commons.collections.Enumerator;
 import com.mucommander.commons.conf.ConfigurationEvent;
 import com.mucommander.commons.conf.ConfigurationListener;
 import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.filter.FileFilter;
 import com.mucommander.commons.file.util.FileSet;
 import com.mucommander.commons.runtime.OsFamilies;
 import com.mucommander.commons.runtime.OsVersions;
 import com.mucommander.conf.MuConfigurations;
 import com.mucommander.conf.MuPreference;
 import com.mucommander.conf.MuPreferences;
+import com.mucommander.core.RemoteListingCache;
 import com.mucommander.desktop.DesktopManager;
 import com.mucommander.job.MoveJob;
 import com.mucommander.text.CustomDateFormat;
@@ -132,6 +134,12 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
     /** Row currently selected */
     private int currentRow;
 
+    /** Time at which the displayed files were listed */
+    private volatile long listingDate;
+
+    /** True if the displayed files come from a snapshot that hasn't been revalidated yet */
+    private volatile boolean listingFromSnapshot;
+
     // Used when right button is pressed and mouse is dragged
     private boolean markOnRightClick;
     private int     lastDraggedRow = -1;
@@ -499,11 +507,82 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
                 fileToSelect = currentFolder;
         }
 
+        changeFolder(new FolderChangeThread(folder, children, markedFiles, fileToSelect));
+    }
+
+    /**
+     * Returns a snapshot of the folder currently displayed by this table, which can later be used to display the
+     * folder again without listing it, with {@link #restoreListingSnapshot(ListingSnapshot)}.
+     * This method must be called from the event dispatch thread.
+     *
+     * @return a snapshot of the current folder, <code>null</code> if there is no current folder
+     */
+    public ListingSnapshot createListingSnapshot() {
+        AbstractFile folder = folderPanel.getCurrentFolder();
+        AbstractFile cachedFolder = tableModel.getCurrentFolder();
+        if(folder==null || cachedFolder==null)
+            return null;
+
+        // Keep the files in the order in which they are sorted
+        AbstractFile files[] = tableModel.getSortedCachedFiles();
+
+        return new ListingSnapshot(folder, cachedFolder, files, getSelectedFile(), tableModel.getMarkedFiles(),
+                scrollpaneWrapper==null?null:scrollpaneWrapper.getViewport().getViewPosition(), sortInfo.clone(), listingDate);
+    }
+
+    /**
+     * Returns the time at which the displayed files were listed.
+     *
+     * @return the time at which the displayed files were listed
+     */
+    public long getListingDate() {
+        return listingDate;
+    }
+
+    /**
+     * Returns <code>true</code> if the displayed files come from a snapshot, i.e. were listed before the current
+     * folder was displayed, and haven't been found up-to-date since then.
+     *
+     * @return true if the displayed files come from a snapshot that hasn't been revalidated yet
+     * @see #listingRevalidated()
+     */
+    public boolean isListingFromSnapshot() {
+        return listingFromSnapshot;
+    }
+
+    /**
+     * Notifies this table that the folder has just been listed and that the displayed files were found up-to-date.
+     */
+    public void listingRevalidated() {
+        listingDate = System.currentTimeMillis();
+        listingFromSnapshot = false;
+    }
+
+    /**
+     * Changes the current folder to the one of the given snapshot, and restores the selected file, marked files and
+     * scroll position it was taken with. The folder is not listed: its contents are those of the snapshot, which may
+     * thus have to be revalidated.
+     *
+     * <p>Just like {@link #setCurrentFolder(AbstractFile, AbstractFile[], AbstractFile)}, this method returns only when
+     * the folder has actually been changed, should only be called by {@link FolderPanel} and MUST be synchronized
+     * externally.</p>
+     *
+     * @param snapshot the snapshot to restore
+     */
+    public void restoreListingSnapshot(ListingSnapshot snapshot) {
+        // Stop quick search in case it was being used before folder change
+        quickSearch.stop();
+
+        changeFolder(new FolderChangeThread(snapshot));
+    }
+
+    /**
+     * Changes the current folder in the event dispatch thread and waits for the change to complete.
+     */
+    private void changeFolder(Runnable folderChangeThread) {
         // Changes the current folder in the swing thread to make sure that repaints cannot
         // happen in the middle of the operation - this is used to prevent flickering, badly
         // refreshed frames and such unpleasant graphical artifacts.
-        Runnable folderChangeThread = new FolderChangeThread(folder, children, markedFiles, fileToSelect);
-
         // Wait for the task to complete, so that we return only when the folder has actually been changed and the
         // table updated to reflect the new folder.
         // Note: we use a wait/notify scheme rather than calling SwingUtilities#invokeAndWait to avoid deadlocks
@@ -575,6 +654,25 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
     }
 
 
+    /**
+     * Returns <code>true</code> if the files of this table are currently displayed as a grid of thumbnails.
+     *
+     * @return true if the files of this table are currently displayed as a grid of thumbnails
+     */
+    public boolean isThumbnailsVisible() {
+        return scrollpaneWrapper.isThumbnailsVisible();
+    }
+
+    /**
+     * Displays the files of this table as a grid of thumbnails, or as a table.
+     *
+     * @param visible true to display the files as a grid of thumbnails, false to display them as a table
+     */
+    public void setThumbnailsVisible(boolean visible) {
+        scrollpaneWrapper.setThumbnailsVisible(visible);
+    }
+
+
     /**
      * Controls whether folders are displayed first in this FileTable or mixed with regular files.
      * After calling this method, the table is refreshed to reflect the change.
@@ -645,6 +743,24 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
         fireMarkedFilesChangedEvent();
     }
 
+    /**
+     * Marks/unmarks the files that match the given filter in the table model, repaints the table and notifies
+     * registered {@link com.mucommander.ui.event.TableSelectionListener} once that the files currently marked on this
+     * FileTable have changed.
+     *
+     * @param filter the filter to match the files against, must be thread-safe
+     * @param marked true to mark the matching files, false to unmark them
+     * @see FileTableModel#setFilesMarked(FileFilter, boolean)
+     */
+    public void setFilesMarked(FileFilter filter, boolean marked) {
+        tableModel.setFilesMarked(filter, marked);
+
+        repaint();
+
+        // Notify registered listeners that currently marked files have changed on this FileTable
+        fireMarkedFilesChangedEvent();
+    }
+
     /**
      * Equivalent to calling {@link #setFileMarked(AbstractFile, boolean, boolean)} with <code>repaint</code> enabled.
      *
@@ -1230,6 +1346,28 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
         return getPreferredSize();
     }
 
+    /**
+     * Overridden to give the focus to the thumbnail grid when it is displayed in place of this table.
+     */
+    @Override
+    public void requestFocus() {
+        if(scrollpaneWrapper!=null && scrollpaneWrapper.isThumbnailsVisible())
+            scrollpaneWrapper.getThumbnailGrid().requestFocus();
+        else
+            super.requestFocus();
+    }
+
+    /**
+     * Overridden to give the focus to the thumbnail grid when it is displayed in place of this table.
+     */
+    @Override
+    public boolean requestFocusInWindow() {
+        if(scrollpaneWrapper!=null && scrollpaneWrapper.isThumbnailsVisible())
+            return scrollpaneWrapper.getThumbnailGrid().requestFocusInWindow();
+
+        return super.requestFocusInWindow();
+    }
+
     /**
      * Overridden to ensure that the table is always visible.
      */
@@ -1621,10 +1759,15 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
     }
 
     /**
-     * This inner class adds 'quick search' functionality to the FileTable
+     * This inner class adds 'quick search' functionality to the FileTable. Files are matched using the
+     * table model's name index. If enabled in the preferences, the files that do not match the search string are
+     * hidden while the quick search is active.
      */
     private class FileTableQuickSearch extends QuickSearch<AbstractFile> {
 
+        /** True if the files that do not match the search string are hidden during the current quick search */
+        private boolean filterRows;
+
         /**
          * Creates a new QuickSearch instance, only one instance per FileTable should be created.
          */
@@ -1634,6 +1777,8 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
         
         @Override
 		protected void searchStarted() {
+            filterRows = MuConfigurations.getPreferences().getVariable(MuPreference.QUICK_SEARCH_FILTER, MuPreferences.DEFAULT_QUICK_SEARCH_FILTER);
+
         	// Repaint the table to add the 'dim' effect on non-matching files
             scrollpaneWrapper.dimBackground();
 		}
@@ -1643,7 +1788,47 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
 			mainFrame.getStatusBar().updateSelectedFilesInfo();
             // Removes the 'dim' effect on non-matching files.
             scrollpaneWrapper.undimBackground();
+
+            // Show all files again, in the event dispatch thread as quick search may be stopped by its timeout thread
+            if(filterRows) {
+                if(SwingUtilities.isEventDispatchThread())
+                    removeFilter();
+                else {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            removeFilter();
+                        }
+                    });
+                }
+            }
 		}
+
+        /**
+         * Hides the files that do not match the current search string, if enabled for the current quick search.
+         */
+        private void updateFilter() {
+            if(!filterRows)
+                return;
+
+            tableModel.setNameFilter(getSearchString());
+            resizeAndRepaint();
+        }
+
+        /**
+         * Shows all files again, keeping the selected file selected. This method has no effect if no file is hidden,
+         * e.g. if the folder has changed since the quick search stopped.
+         */
+        private void removeFilter() {
+            if(tableModel.getNameFilter()==null)
+                return;
+
+            AbstractFile selectedFile = tableModel.getFileAtRow(currentRow);
+            tableModel.setNameFilter(null);
+            resizeAndRepaint();
+
+            if(selectedFile!=null)
+                selectFile(selectedFile);
+        }
 		
 		@Override
 		protected int getNumOfItems() {
@@ -1655,6 +1840,16 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
             return getFileNameAtRow(index);
 		}
 
+        @Override
+        protected String getItemStringLowerCase(int index) {
+            return tableModel.getLowerCaseNameAtRow(index);
+        }
+
+        @Override
+        protected int[] getMatchingItems(String searchStringLC) {
+            return tableModel.getMatchingRows(searchStringLC);
+        }
+
 		@Override
 		protected void searchStringBecameEmpty(String searchString) {
 			mainFrame.getStatusBar().setStatusInfo(searchString); // TODO: is needed?			
@@ -1717,6 +1912,7 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
 	                return;
 
 	            removeLastCharacterFromSearchString();
+	            updateFilter();
 
 	            // Find the row that best matches the new search string and select it
 	            findMatch(0, true, true);
@@ -1755,6 +1951,7 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
 	        // and a valid Unicode character, add it to the current search string
 	        else if(isValidQuickSearchInput(e)) {
 	            appendCharacterToSearchString(keyChar);
+	            updateFilter();
 
 	            // Find the row that best matches the new search string and select it
 	            findMatch(0, true, true);
@@ -1824,6 +2021,9 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
         private AbstractFile[] children;
         private FileSet        markedFiles;
         private AbstractFile   selectedFile;
+        /** Snapshot the children come from, null if they have just been listed */
+        private ListingSnapshot snapshot;
+        private Point          viewPosition;
 
         private FolderChangeThread(AbstractFile folder, AbstractFile[] children, FileSet markedFiles, AbstractFile selectedFile) {
             this.folder       = folder;
@@ -1832,10 +2032,26 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
             this.selectedFile = selectedFile;
         }
 
+        private FolderChangeThread(ListingSnapshot snapshot) {
+            this(snapshot.getCachedFolder(), snapshot.getFiles(), snapshot.getMarkedFiles(), snapshot.getSelectedFile());
+            this.snapshot     = snapshot;
+            this.viewPosition = snapshot.getViewPosition();
+        }
+
         public void run() {
             try {
+                // Keep the listing of the remote folder being left, so that going back to it is instant
+                AbstractFile previousFolder = folderPanel.getCurrentFolder();
+                if(previousFolder!=null && RemoteListingCache.getInstance().isCacheable(previousFolder.getURL())) {
+                    ListingSnapshot previousListing = createListingSnapshot();
+                    if(previousListing!=null)
+                        RemoteListingCache.getInstance().put(previousListing);
+                }
+
                 // Set the new current folder.
                 tableModel.setCurrentFolder(folder, children);
+                listingDate = snapshot==null?System.currentTimeMillis():snapshot.getDate();
+                listingFromSnapshot = snapshot!=null;
 
                 // Update the visibility state of conditional columns
                 FileTableColumnModel columnModel = getFileTableColumnModel();
@@ -1853,8 +2069,10 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
                 }
 
                 // Sort the new folder using the current sort criteria, ascending/descending order and
-                // 'show folders first' values.
-                tableModel.sortRows();
+                // 'show folders first' values. The files of a snapshot are already sorted if the sort criteria
+                // haven't changed since it was taken.
+                if(snapshot==null || !snapshot.isSortedBy(sortInfo))
+                    tableModel.sortRows();
 
                 // Computes the index of the new row selection.
                 int rowToSelect;
@@ -1890,6 +2108,15 @@ public class FileTable extends JTable implements MouseListener, MouseMotionListe
                 }
 
                 resizeAndRepaint();
+
+                // Restore the scroll position of the snapshot, once the viewport is aware of the new table dimensions
+                if(viewPosition!=null && scrollpaneWrapper!=null) {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            scrollpaneWrapper.getViewport().setViewPosition(viewPosition);
+                        }
+                    });
+                }
             }
 
             catch(Throwable e) {
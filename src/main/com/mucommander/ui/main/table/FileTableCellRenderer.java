@@ -179,7 +179,7 @@ public class FileTableCellRenderer implements TableCellRenderer, ThemeListener {
             matches = true;
         else {
             if(search.isActive())
-                matches = search.matches(this.table.getFileNameAtRow(rowIndex));
+                matches = search.matches(rowIndex);
             else
                 matches = true;
         }
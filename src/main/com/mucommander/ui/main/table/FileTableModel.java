@@ -18,7 +18,7 @@
 
 package com.mucommander.ui.main.table;
 
-import java.util.Date;
+import java.util.Arrays;
 
 import javax.swing.table.AbstractTableModel;
 
@@ -53,9 +53,21 @@ public class FileTableModel extends AbstractTableModel {
     /** Cached file instances */
     private AbstractFile cachedFiles[];
 
-    /** Index array */
+    /** Index array of the displayed rows: all files, unless a name filter is set */
     private int fileArrayIndex[];
 
+    /** Index array of all files, sorted. Same as fileArrayIndex when no name filter is set */
+    private int sortedFileArrayIndex[];
+
+    /** Row of each file (not counting the parent folder row), -1 for files that are not displayed. Created when needed */
+    private int fileRows[];
+
+    /** Index of the names of the current folder's files */
+    private FileNameIndex nameIndex;
+
+    /** Lower-cased string that the names of the displayed files contain, <code>null</code> to display all files */
+    private String nameFilter;
+
     /** Cell values cache */
     private Object cellValuesCache[][];
 
@@ -110,6 +122,8 @@ public class FileTableModel extends AbstractTableModel {
         // Init arrays to avoid NullPointerExceptions until setCurrentFolder() gets called for the first time
         cachedFiles = new AbstractFile[0];
         fileArrayIndex = new int[0];
+        sortedFileArrayIndex = fileArrayIndex;
+        nameIndex = new FileNameIndex(cachedFiles);
         cellValuesCache = new Object[0][Column.values().length-1];
         rowMarked = new boolean[0];
     }
@@ -193,7 +207,8 @@ public class FileTableModel extends AbstractTableModel {
         this.fileArrayIndex = new int[nbFiles];
         AbstractFile file;
         for(int i=0; i<nbFiles; i++) {
-            file = new CachedFile(children[i], true);
+            // Files coming from a listing snapshot are already cached
+            file = (children[i] instanceof CachedFile)?children[i]:new CachedFile(children[i], true);
 
             // Pre-fetch the attributes that are used by the table renderer and some actions.
             prefetchCachedFileAttributes(file);
@@ -201,6 +216,12 @@ public class FileTableModel extends AbstractTableModel {
             cachedFiles[i] = file;
             fileArrayIndex[i] = i;
         }
+        this.sortedFileArrayIndex = fileArrayIndex;
+        this.fileRows = null;
+
+        // Index the file names for quick search, and display all files
+        this.nameIndex = new FileNameIndex(cachedFiles);
+        this.nameFilter = null;
 
         // Reset marked files
         int nbRows = getRowCount();
@@ -221,7 +242,7 @@ public class FileTableModel extends AbstractTableModel {
      *
      * @param cachedFile a CachedFile instance from which to pre-fetch attributes
      */
-    private static void prefetchCachedFileAttributes(AbstractFile cachedFile) {
+    static void prefetchCachedFileAttributes(AbstractFile cachedFile) {
         cachedFile.isDirectory();
         cachedFile.isBrowsable();
         cachedFile.isHidden();
@@ -247,7 +268,7 @@ public class FileTableModel extends AbstractTableModel {
             cellValuesCache[0][Column.NAME.ordinal()-1] = "..";
             cellValuesCache[0][Column.SIZE.ordinal()-1] = DIRECTORY_SIZE_STRING;
             currentFolderDateSnapshot = currentFolder.getDate();
-            cellValuesCache[0][Column.DATE.ordinal()-1] =	CustomDateFormat.format(new Date(currentFolderDateSnapshot));
+            cellValuesCache[0][Column.DATE.ordinal()-1] =	CustomDateFormat.format(currentFolderDateSnapshot);
             // Don't display parent's permissions as they can have a different format from the folder contents
             // (e.g. for archives) and this looks weird
             cellValuesCache[0][Column.PERMISSIONS.ordinal()-1] = "";
@@ -255,20 +276,19 @@ public class FileTableModel extends AbstractTableModel {
             cellValuesCache[0][Column.GROUP.ordinal()-1] = "";
         }
 		
+        // Fill the cells of all files, including those that are hidden by the name filter
         AbstractFile file;
-        int fileIndex = 0;
+        int nbFiles = cachedFiles.length;
 
-        for(int i=parent==null?0:1; i<len; i++) {
-            file = getCachedFileAtRow(i);
-            int cellIndex = fileArrayIndex[fileIndex]+(parent==null?0:1);
+        for(int fileIndex=0; fileIndex<nbFiles; fileIndex++) {
+            file = cachedFiles[fileIndex];
+            int cellIndex = fileIndex+(parent==null?0:1);
             cellValuesCache[cellIndex][Column.NAME.ordinal()-1] = file.getName();
             cellValuesCache[cellIndex][Column.SIZE.ordinal()-1] = file.isDirectory()?DIRECTORY_SIZE_STRING:SizeFormat.format(file.getSize(), sizeFormat);
-            cellValuesCache[cellIndex][Column.DATE.ordinal()-1] = CustomDateFormat.format(new Date(file.getDate()));
+            cellValuesCache[cellIndex][Column.DATE.ordinal()-1] = CustomDateFormat.format(file.getDate());
             cellValuesCache[cellIndex][Column.PERMISSIONS.ordinal()-1] = file.getPermissionsString();
             cellValuesCache[cellIndex][Column.OWNER.ordinal()-1] = file.getOwner();
             cellValuesCache[cellIndex][Column.GROUP.ordinal()-1] = file.getGroup();
-
-            fileIndex++;
         }
     }
 	
@@ -313,6 +333,21 @@ public class FileTableModel extends AbstractTableModel {
         return cachedFilesCopy;
     }
 
+    /**
+     * Returns the current folder's children as {@link CachedFile} instances, in the order in which they are sorted.
+     * Contrary to the rows of the table, the returned array includes the files that are hidden by the name filter.
+     *
+     * @return the current folder's children, sorted
+     */
+    synchronized AbstractFile[] getSortedCachedFiles() {
+        int nbFiles = sortedFileArrayIndex.length;
+        AbstractFile[] sortedFiles = new AbstractFile[nbFiles];
+        for(int i=0; i<nbFiles; i++)
+            sortedFiles[i] = cachedFiles[sortedFileArrayIndex[i]];
+
+        return sortedFiles;
+    }
+
 
     /**
      * Returns the file located at the given row index. 
@@ -388,7 +423,8 @@ public class FileTableModel extends AbstractTableModel {
 
 	
     /**
-     * Returns the file located at the given index, not including the parent file.
+     * Returns the file located at the given index, not including the parent file. Files that are hidden by the name
+     * filter are included.
      * Returns <code>null</code> if fileIndex is lower than 0 or is greater than or equals {@link #getFileCount() getFileCount()}.
      *
      * @param fileIndex index of a file, comprised between 0 and #getFileCount()
@@ -398,8 +434,8 @@ public class FileTableModel extends AbstractTableModel {
         // Need to check that row index is not larger than actual number of rows
         // because if table has just been changed (rows have been removed),
         // JTable may have an old row count value and may try to repaint rows that are out of bounds.
-        if(fileIndex>=0 && fileIndex<fileArrayIndex.length) {
-            return ((CachedFile)cachedFiles[fileArrayIndex[fileIndex]]).getProxiedFile();
+        if(fileIndex>=0 && fileIndex<sortedFileArrayIndex.length) {
+            return ((CachedFile)cachedFiles[sortedFileArrayIndex[fileIndex]]).getProxiedFile();
         }
     	return null;
     }
@@ -407,6 +443,7 @@ public class FileTableModel extends AbstractTableModel {
 	
     /**
      * Returns the actual number of files the current folder contains, excluding the parent '..' file (if any).
+     * Files that are hidden by the name filter are counted.
      *
      * @return the actual number of files the current folder contains, excluding the parent '..' file (if any)
      */
@@ -509,22 +546,48 @@ public class FileTableModel extends AbstractTableModel {
 
 
     /**
-     * Marks/unmarks the files that match the given {@link FileFilter}.
+     * Marks/unmarks the files that match the given {@link FileFilter}. Only the displayed files are matched, i.e.
+     * not those that are hidden by the name filter.
+     * <p>
+     * On large folders, the filter is evaluated concurrently by several threads (see {@link FileFilterEvaluator}) and
+     * must thus be thread-safe. The marked files and their combined size are then updated in one pass.
+     * </p>
      *
      * @param filter the FileFilter to match the files against
      * @param marked if true, matching files will be marked, if false, they will be unmarked
      */
     public synchronized void setFilesMarked(FileFilter filter, boolean marked) {
-        int nbFiles = getRowCount();
-        for(int i=parent==null?0:1; i<nbFiles; i++) {
-            if(filter.match(getCachedFileAtRow(i)))
-                setRowMarked(i, marked);
+        // Take a snapshot of the displayed files, which have all their attributes cached
+        int nbFiles = fileArrayIndex.length;
+        AbstractFile files[] = new AbstractFile[nbFiles];
+        for(int i=0; i<nbFiles; i++)
+            files[i] = cachedFiles[fileArrayIndex[i]];
+
+        boolean matches[] = FileFilterEvaluator.match(filter, files);
+
+        int fileIndex;
+        long fileSize;
+        for(int i=0; i<nbFiles; i++) {
+            fileIndex = fileArrayIndex[i];
+            // Skip the files that don't match or are already marked/unmarked
+            if(!matches[i] || rowMarked[fileIndex]==marked)
+                continue;
+
+            // Do not call getSize() on directories, it's unnecessary and the value is most likely not cached by CachedFile yet
+            fileSize = files[i].isDirectory()?0:files[i].getSize();
+            // File size can equal -1 if not available, do not count that in total
+            if(fileSize>0)
+                markedTotalSize += marked?fileSize:-fileSize;
+
+            nbRowsMarked += marked?1:-1;
+            rowMarked[fileIndex] = marked;
         }
     }
 
 
     /**
-     * Returns a {@link com.mucommander.commons.file.util.FileSet FileSet} with all currently marked files.
+     * Returns a {@link com.mucommander.commons.file.util.FileSet FileSet} with all currently marked files,
+     * including those that are hidden by the name filter.
      * <p>
      * The returned <code>FileSet</code> is a freshly created instance, so it can be safely modified.
      & However, it won't be kept current : the returned FileSet is just a snapshot
@@ -536,20 +599,12 @@ public class FileTableModel extends AbstractTableModel {
      */
     public synchronized FileSet getMarkedFiles() {
         FileSet markedFiles = new FileSet(currentFolder, nbRowsMarked);
-        int nbRows = getRowCount();
 
-        if(parent==null) {
-            for(int i=0; i<nbRows; i++) {
-                if(rowMarked[fileArrayIndex[i]])
-                    markedFiles.add(getFileAtRow(i));
-            }
-        }
-        else {
-            for(int i=1, iMinusOne=0; i<nbRows; i++) {
-                if(rowMarked[fileArrayIndex[iMinusOne]])
-                    markedFiles.add(getFileAtRow(i));
-
-                iMinusOne = i;
+        AbstractFile file;
+        for(int fileIndex : sortedFileArrayIndex) {
+            if(rowMarked[fileIndex]) {
+                file = cachedFiles[fileIndex];
+                markedFiles.add(file instanceof CachedFile?((CachedFile)file).getProxiedFile():file);
             }
         }
 
@@ -577,6 +632,140 @@ public class FileTableModel extends AbstractTableModel {
         return markedTotalSize;
     }
 
+    /**
+     * Displays only the files whose name contains the given string, ignoring case. The parent folder row '..' is
+     * always displayed. Marked files that are hidden remain marked.
+     * <p>
+     * The filter is removed when the current folder changes. Each time the filter changes, only the files that match
+     * the new filter are tested if it extends the previous one (e.g. as the user types it), see
+     * {@link FileNameIndex}.
+     * </p>
+     *
+     * @param filter the string that the names of the displayed files must contain, <code>null</code> or an empty
+     * string to display all files
+     */
+    public synchronized void setNameFilter(String filter) {
+        String lowerCaseFilter = filter==null || filter.length()==0?null:filter.toLowerCase();
+        if(lowerCaseFilter==null?nameFilter==null:lowerCaseFilter.equals(nameFilter))
+            return;
+
+        String previousFilter = nameFilter;
+        nameFilter = lowerCaseFilter;
+
+        if(previousFilter!=null && lowerCaseFilter!=null && lowerCaseFilter.indexOf(previousFilter)!=-1) {
+            // The displayed files are the only ones that may match the new filter
+            int nbRows = fileArrayIndex.length;
+            int displayed[] = new int[nbRows];
+            int nbDisplayed = 0;
+            for(int i=0; i<nbRows; i++) {
+                if(nameIndex.matches(fileArrayIndex[i], lowerCaseFilter))
+                    displayed[nbDisplayed++] = fileArrayIndex[i];
+            }
+
+            fileArrayIndex = new int[nbDisplayed];
+            System.arraycopy(displayed, 0, fileArrayIndex, 0, nbDisplayed);
+            fileRows = null;
+        }
+        else {
+            applyNameFilter();
+        }
+    }
+
+    /**
+     * Returns the lower-cased string that the names of the displayed files contain, <code>null</code> if all files
+     * are displayed.
+     *
+     * @return the current name filter, <code>null</code> if there is none
+     */
+    public synchronized String getNameFilter() {
+        return nameFilter;
+    }
+
+    /**
+     * Updates the displayed rows to contain the sorted files that match the name filter.
+     */
+    private void applyNameFilter() {
+        fileRows = null;
+
+        if(nameFilter==null) {
+            fileArrayIndex = sortedFileArrayIndex;
+            return;
+        }
+
+        int matchingFiles[] = nameIndex.getMatchingFiles(nameFilter);
+        boolean matching[] = new boolean[cachedFiles.length];
+        for(int fileIndex : matchingFiles)
+            matching[fileIndex] = true;
+
+        // Keep the matching files in the order in which they are sorted
+        int displayed[] = new int[matchingFiles.length];
+        int nbDisplayed = 0;
+        for(int fileIndex : sortedFileArrayIndex) {
+            if(matching[fileIndex])
+                displayed[nbDisplayed++] = fileIndex;
+        }
+
+        fileArrayIndex = displayed;
+    }
+
+    /**
+     * Returns the rows of the files whose name contains the given string, ignoring case, in no particular order.
+     * The parent folder row is included if '..' contains the string.
+     *
+     * @param lowerCaseString a lower-cased string
+     * @return the rows whose file name contains the given string
+     */
+    synchronized int[] getMatchingRows(String lowerCaseString) {
+        int matchingFiles[] = nameIndex.getMatchingFiles(lowerCaseString);
+        boolean parentMatches = parent!=null && "..".indexOf(lowerCaseString)!=-1;
+        int rowOffset = parent==null?0:1;
+
+        if(fileRows==null) {
+            fileRows = new int[cachedFiles.length];
+            Arrays.fill(fileRows, -1);
+            for(int row=0; row<fileArrayIndex.length; row++)
+                fileRows[fileArrayIndex[row]] = row;
+        }
+
+        int matchingRows[] = new int[matchingFiles.length+(parentMatches?1:0)];
+        int nbMatchingRows = 0;
+        if(parentMatches)
+            matchingRows[nbMatchingRows++] = 0;
+
+        int row;
+        for(int fileIndex : matchingFiles) {
+            // Skip the files that are hidden by the name filter
+            if((row=fileRows[fileIndex])!=-1)
+                matchingRows[nbMatchingRows++] = row+rowOffset;
+        }
+
+        if(nbMatchingRows==matchingRows.length)
+            return matchingRows;
+
+        int trimmed[] = new int[nbMatchingRows];
+        System.arraycopy(matchingRows, 0, trimmed, 0, nbMatchingRows);
+        return trimmed;
+    }
+
+    /**
+     * Returns the lower-cased name of the file located at the given row, '..' for the parent folder row.
+     * Returns an empty string if the row index is out of bounds.
+     *
+     * @param rowIndex a row index, comprised between 0 and #getRowCount()
+     * @return the lower-cased name of the file located at the given row
+     */
+    synchronized String getLowerCaseNameAtRow(int rowIndex) {
+        if(rowIndex==0 && parent!=null)
+            return "..";
+
+        if(parent!=null)
+            rowIndex--;
+
+        if(rowIndex>=0 && rowIndex<fileArrayIndex.length)
+            return nameIndex.getLowerCaseName(fileArrayIndex[rowIndex]);
+        return "";
+    }
+
     /**
      * Makes the name column temporarily editable. This method should only be called by FileTable.
      *
@@ -600,7 +789,11 @@ public class FileTableModel extends AbstractTableModel {
      * Sorts rows by the current criterion, ascending/descending order and 'folders first' value.
      */
     synchronized void sortRows()  {
+        // Sort all files, including those that are hidden by the name filter
+        fileArrayIndex = sortedFileArrayIndex;
         sort(getFileComparator(sortInfo), 0, fileArrayIndex.length-1);
+
+        applyNameFilter();
     }
 
 
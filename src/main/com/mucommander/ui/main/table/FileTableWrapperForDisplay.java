@@ -37,6 +37,7 @@ import com.mucommander.ui.dnd.FileDropTargetListener;
 import com.mucommander.ui.main.FolderPanel;
 import com.mucommander.ui.main.MainFrame;
 import com.mucommander.ui.main.menu.TablePopupMenu;
+import com.mucommander.ui.main.thumbnail.ThumbnailGrid;
 import com.mucommander.ui.theme.ColorChangedEvent;
 import com.mucommander.ui.theme.FontChangedEvent;
 import com.mucommander.ui.theme.Theme;
@@ -49,6 +50,7 @@ import com.mucommander.ui.theme.ThemeManager;
  * 2. Sets the colors of the FileTable.
  * 3. Sets other presentation aspects of the FileTable component.
  * 4. Initiates a popup window on right click on the FileTable component.
+ * 5. Displays a thumbnail grid of the FileTable's files in place of the FileTable when requested.
  * 
  * @author Arik Hadas
  */
@@ -68,6 +70,11 @@ public class FileTableWrapperForDisplay extends JScrollPane implements FocusList
     private MainFrame mainFrame;
     /** Panel containing this file table */
     private FolderPanel folderPanel;
+
+    /** Grid displaying the files of the FileTable as thumbnails, created the first time it is displayed */
+    private ThumbnailGrid thumbnailGrid;
+    /** Is the thumbnail grid displayed in place of the FileTable */
+    private boolean thumbnailsVisible;
     
 	public FileTableWrapperForDisplay(final FileTable fileTable, final FolderPanel folderPanel, final MainFrame mainFrame) {
 		super(fileTable, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED, JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
@@ -134,6 +141,54 @@ public class FileTableWrapperForDisplay extends JScrollPane implements FocusList
 		return fileTable.requestFocusInWindow();
 	}
 	
+	/**
+	 * Returns <code>true</code> if the thumbnail grid is displayed in place of the FileTable.
+	 *
+	 * @return true if the thumbnail grid is displayed in place of the FileTable
+	 */
+	public boolean isThumbnailsVisible() {
+		return thumbnailsVisible;
+	}
+
+	/**
+	 * Returns the thumbnail grid, <code>null</code> if it has never been displayed.
+	 *
+	 * @return the thumbnail grid, <code>null</code> if it has never been displayed
+	 */
+	public ThumbnailGrid getThumbnailGrid() {
+		return thumbnailGrid;
+	}
+
+	/**
+	 * Displays the thumbnail grid in place of the FileTable, or the FileTable in place of the thumbnail grid.
+	 * The focus is transferred to the displayed component if the other one had it.
+	 *
+	 * @param visible true to display the thumbnail grid, false to display the FileTable
+	 */
+	public void setThumbnailsVisible(boolean visible) {
+		if (visible == thumbnailsVisible)
+			return;
+
+		boolean hadFocus = fileTable.hasFocus() || (thumbnailGrid != null && thumbnailGrid.hasFocus());
+		thumbnailsVisible = visible;
+
+		if (visible) {
+			if (thumbnailGrid == null) {
+				thumbnailGrid = new ThumbnailGrid(fileTable, mainFrame);
+				thumbnailGrid.addFocusListener(this);
+				thumbnailGrid.setDropTarget(new DropTarget(thumbnailGrid, new FileDropTargetListener(folderPanel, false)));
+			}
+			setViewportView(thumbnailGrid);
+		}
+		else {
+			setViewportView(fileTable);
+		}
+
+		// FileTable redirects the focus to the thumbnail grid when it is displayed
+		if (hadFocus)
+			fileTable.requestFocus();
+	}
+	
 	/**
      * Dims the scrollpane's background, called by {@link com.mucommander.ui.main.table.FileTable.QuickSearch} when a quick search is started.
      */
@@ -0,0 +1,227 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.ui.main.table;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.impl.CachedFile;
+import com.mucommander.commons.file.util.FileComparator;
+import com.mucommander.commons.file.util.FileSet;
+
+/**
+ * A snapshot of the folder displayed by a {@link FileTable}: the folder's files in the order in which they were
+ * displayed, along with the selected file, the marked files, the scroll position and the sort order of the table.
+ * <p>
+ * Snapshots are taken when a tab is left, and allow the tab to be displayed again instantly, without listing the
+ * folder. The files are kept as the {@link CachedFile} instances used by the table model, so that their attributes
+ * don't need to be fetched again. Since the folder may have changed in the meantime, a snapshot is meant to be
+ * revalidated against a fresh listing of the folder with {@link #merge(AbstractFile[])} once it has been displayed.
+ * </p>
+ *
+ * @see FileTable#createListingSnapshot()
+ * @see FileTable#restoreListingSnapshot(ListingSnapshot)
+ */
+public class ListingSnapshot {
+
+    /** The folder, as returned by the folder panel */
+    private AbstractFile folder;
+
+    /** The folder, as cached by the table model */
+    private AbstractFile cachedFolder;
+
+    /** The folder's files, in the order in which they were displayed */
+    private AbstractFile files[];
+
+    private AbstractFile selectedFile;
+
+    private FileSet markedFiles;
+
+    private Point viewPosition;
+
+    private SortInfo sortInfo;
+
+    /** Time at which the folder's files were listed */
+    private long date;
+
+
+    ListingSnapshot(AbstractFile folder, AbstractFile cachedFolder, AbstractFile files[], AbstractFile selectedFile,
+                    FileSet markedFiles, Point viewPosition, SortInfo sortInfo, long date) {
+        this.folder = folder;
+        this.cachedFolder = cachedFolder;
+        this.files = files;
+        this.selectedFile = selectedFile;
+        this.markedFiles = markedFiles;
+        this.viewPosition = viewPosition;
+        this.sortInfo = sortInfo;
+        this.date = date;
+    }
+
+    /**
+     * Creates a snapshot of the given folder from a listing of its children, as if the folder had been displayed
+     * by a table sorted according to the given sort info, with no file selected nor marked.
+     * <p>
+     * This method is I/O-bound: the attributes that the table displays are fetched from the files, so that the
+     * snapshot can later be displayed without any I/O.
+     * </p>
+     *
+     * @param folder the folder to create a snapshot of
+     * @param children the children of the folder
+     * @param sortInfo how the files should be sorted
+     * @return a snapshot of the folder
+     */
+    public static ListingSnapshot create(AbstractFile folder, AbstractFile children[], SortInfo sortInfo) {
+        AbstractFile cachedFolder = new CachedFile(folder, true);
+        AbstractFile parent = cachedFolder.getParent();
+        if(parent!=null)
+            FileTableModel.prefetchCachedFileAttributes(parent);
+
+        AbstractFile files[] = new AbstractFile[children.length];
+        for(int i=0; i<children.length; i++) {
+            files[i] = new CachedFile(children[i], true);
+            FileTableModel.prefetchCachedFileAttributes(files[i]);
+        }
+
+        Arrays.sort(files, new FileComparator(sortInfo.getCriterion().getFileComparatorCriterion(), sortInfo.getAscendingOrder(), sortInfo.getFoldersFirst()));
+
+        return new ListingSnapshot(folder, cachedFolder, files, null, null, null, sortInfo.clone(), System.currentTimeMillis());
+    }
+
+    /**
+     * Returns a copy of this snapshot that holds the same files but selects the given file, as if the folder had just
+     * been listed: the marked files and the scroll position the snapshot was taken with are not kept.
+     *
+     * @param selectedFile the file to select, <code>null</code> to select the first file
+     * @return a copy of this snapshot that selects the given file
+     */
+    public ListingSnapshot withSelectedFile(AbstractFile selectedFile) {
+        return new ListingSnapshot(folder, cachedFolder, files, selectedFile, null, null, sortInfo, date);
+    }
+
+    /**
+     * Returns the folder this snapshot was taken of.
+     *
+     * @return the folder this snapshot was taken of
+     */
+    public AbstractFile getFolder() {
+        return folder;
+    }
+
+    AbstractFile getCachedFolder() {
+        return cachedFolder;
+    }
+
+    /**
+     * Returns a copy of the folder's files, in the order in which they were displayed. The returned files are
+     * {@link CachedFile} instances.
+     *
+     * @return the folder's files, in the order in which they were displayed
+     */
+    AbstractFile[] getFiles() {
+        AbstractFile filesCopy[] = new AbstractFile[files.length];
+        System.arraycopy(files, 0, filesCopy, 0, files.length);
+        return filesCopy;
+    }
+
+    /**
+     * Returns the number of files contained by this snapshot, which gives an idea of the memory it takes.
+     *
+     * @return the number of files contained by this snapshot
+     */
+    public int getFileCount() {
+        return files.length;
+    }
+
+    AbstractFile getSelectedFile() {
+        return selectedFile;
+    }
+
+    FileSet getMarkedFiles() {
+        return markedFiles;
+    }
+
+    Point getViewPosition() {
+        return viewPosition;
+    }
+
+    SortInfo getSortInfo() {
+        return sortInfo;
+    }
+
+    /**
+     * Returns the time at which the files of this snapshot were listed, which may be earlier than the time at which
+     * the snapshot was taken.
+     *
+     * @return the time at which the files of this snapshot were listed
+     */
+    public long getDate() {
+        return date;
+    }
+
+    /**
+     * Returns <code>true</code> if the files of this snapshot are sorted according to the given sort info.
+     *
+     * @param sortInfo the sort info to compare against this snapshot's
+     * @return true if the files of this snapshot are sorted according to the given sort info
+     */
+    boolean isSortedBy(SortInfo sortInfo) {
+        return this.sortInfo.getCriterion()==sortInfo.getCriterion()
+            && this.sortInfo.getAscendingOrder()==sortInfo.getAscendingOrder()
+            && this.sortInfo.getFoldersFirst()==sortInfo.getFoldersFirst();
+    }
+
+    /**
+     * Merges the given, up-to-date children of the folder with the files of this snapshot. Files that haven't changed
+     * since the snapshot was taken, i.e. that have the same name, type, size and date, are replaced by the
+     * corresponding cached instance of the snapshot, so that their attributes don't need to be fetched again.
+     * <p>
+     * If no file has been added, removed or modified since the snapshot was taken, <code>null</code> is returned to
+     * indicate that the snapshot is still valid.
+     * </p>
+     *
+     * @param children the current children of the folder
+     * @return the merged children, <code>null</code> if the snapshot is up-to-date
+     */
+    public AbstractFile[] merge(AbstractFile children[]) {
+        Map<String, AbstractFile> cachedFiles = new HashMap<String, AbstractFile>(Math.max(16, files.length*4/3+1));
+        for(AbstractFile file : files)
+            cachedFiles.put(file.getName(), file);
+
+        boolean changed = children.length!=files.length;
+        AbstractFile merged[] = new AbstractFile[children.length];
+        for(int i=0; i<children.length; i++) {
+            AbstractFile child = children[i];
+            AbstractFile cachedFile = cachedFiles.get(child.getName());
+            if(cachedFile!=null && cachedFile.isDirectory()==child.isDirectory()
+                    && cachedFile.getDate()==child.getDate() && cachedFile.getSize()==child.getSize()) {
+                merged[i] = cachedFile;
+            }
+            else {
+                merged[i] = child;
+                changed = true;
+            }
+        }
+
+        return changed?merged:null;
+    }
+}
@@ -23,6 +23,7 @@ import com.mucommander.commons.file.impl.local.LocalFile;
 import com.mucommander.commons.file.util.PathUtils;
 import com.mucommander.commons.util.StringUtils;
 import com.mucommander.core.LocalLocationHistory;
+import com.mucommander.ui.main.table.ListingSnapshot;
 import com.mucommander.ui.tabs.Tab;
 
 /**
@@ -32,6 +33,9 @@ import com.mucommander.ui.tabs.Tab;
  */
 public abstract class FileTableTab implements Tab {
 
+	/** Snapshot of the listing presented in the tab when it was last left, null if there is none */
+	private ListingSnapshot listingSnapshot;
+
 	/**
 	 * Setter for the location presented in the tab
 	 * 
@@ -108,6 +112,24 @@ public abstract class FileTableTab implements Tab {
 			return filename == null ? "/" : filename;
 	}
 
+	/**
+	 * Returns the snapshot of the listing that was presented in the tab when it was last left
+	 * 
+	 * @return the snapshot of the tab's listing, null if there is none
+	 */
+	public ListingSnapshot getListingSnapshot() {
+		return listingSnapshot;
+	}
+
+	/**
+	 * Sets the snapshot of the listing presented in the tab, which allows to present it again without listing its location
+	 * 
+	 * @param listingSnapshot the snapshot of the tab's listing, null to discard the current one
+	 */
+	public void setListingSnapshot(ListingSnapshot listingSnapshot) {
+		this.listingSnapshot = listingSnapshot;
+	}
+
 	/**
 	 * Returns the tracker of the last accessed locations within the tab
 	 * 
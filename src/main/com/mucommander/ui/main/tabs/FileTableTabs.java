@@ -18,12 +18,21 @@
 
 package com.mucommander.ui.main.tabs;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.file.FileURL;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
 import com.mucommander.ui.event.LocationEvent;
 import com.mucommander.ui.event.LocationListener;
 import com.mucommander.ui.main.FolderPanel;
 import com.mucommander.ui.main.MainFrame;
+import com.mucommander.ui.main.table.ListingSnapshot;
 import com.mucommander.ui.tabs.HideableTabbedPane;
 import com.mucommander.ui.tabs.TabFactory;
 import com.mucommander.ui.tabs.TabUpdater;
@@ -45,6 +54,15 @@ public class FileTableTabs extends HideableTabbedPane<FileTableTab> implements L
 	/** Factory of instances of FileTableTab */
 	private TabFactory<FileTableTab, FileTableTab> clonedTabsFactory;
 
+	/** The tab whose location is presented in the folder panel */
+	private FileTableTab displayedTab;
+
+	/** True while the displayed tab is being presented from its listing snapshot */
+	private volatile boolean restoringSnapshot;
+
+	/** Tabs that hold a listing snapshot, the one that was left the longest time ago first */
+	private LinkedList<FileTableTab> snapshotTabs = new LinkedList<FileTableTab>();
+
 	public FileTableTabs(MainFrame mainFrame, FolderPanel folderPanel, ConfFileTableTab[] initialTabs) {
 		super(new FileTableTabsWithoutHeadersViewerFactory(folderPanel), new FileTableTabsWithHeadersViewerFactory(mainFrame, folderPanel));
 
@@ -70,13 +88,143 @@ public class FileTableTabs extends HideableTabbedPane<FileTableTab> implements L
 
 	@Override
 	protected void show(final int tabIndex) {
-		folderPanel.tryChangeCurrentFolderInternal(getTab(tabIndex).getLocation(), new Callback() {
+		FileTableTab tab = getTab(tabIndex);
+
+		if (tab != displayedTab) {
+			// Keep a snapshot of the listing of the tab that is being left, so that it can be presented again instantly
+			saveListingSnapshot();
+			displayedTab = tab;
+		}
+		// The tab is being presented from its snapshot already
+		else if (restoringSnapshot)
+			return;
+
+		Callback callback = new Callback() {
 			public void call() {
+				restoringSnapshot = false;
 				fireActiveTabChanged();
 			}
-		});
+		};
+
+		ListingSnapshot snapshot = tab.getListingSnapshot();
+		if (snapshot != null && snapshot.getFolder().getURL().equals(tab.getLocation())) {
+			// The snapshot is no longer needed once presented, a new one is taken when the tab is left
+			tab.setListingSnapshot(null);
+			untrackSnapshot(tab);
+
+			restoringSnapshot = true;
+			folderPanel.tryRestoreListingSnapshot(snapshot, callback);
+		}
+		else
+			folderPanel.tryChangeCurrentFolderInternal(tab.getLocation(), callback);
 	};
 
+	/**
+	 * Takes a snapshot of the listing presented in the displayed tab, and evicts the snapshots of the tabs that
+	 * have been left the longest time ago if the snapshots hold more files than allowed by the preferences.
+	 */
+	private void saveListingSnapshot() {
+		if (displayedTab == null || !isOpen(displayedTab))
+			return;
+
+		// The tab may not be presented yet, if it was left right after it was selected
+		ListingSnapshot snapshot = folderPanel.getFileTable().createListingSnapshot();
+		if (snapshot == null || !snapshot.getFolder().getURL().equals(displayedTab.getLocation()))
+			return;
+
+		storeListingSnapshot(displayedTab, snapshot, true);
+	}
+
+	/**
+	 * Returns the tabs that are not displayed and hold no listing snapshot, i.e. that would need their location
+	 * to be listed in order to be presented.
+	 * 
+	 * @return the tabs that have no listing snapshot
+	 */
+	List<FileTableTab> getTabsWithoutListingSnapshot() {
+		List<FileTableTab> tabs = new ArrayList<FileTableTab>();
+		for (Iterator<FileTableTab> iterator = iterator(); iterator.hasNext();) {
+			FileTableTab tab = iterator.next();
+			if (tab != displayedTab && tab.getListingSnapshot() == null)
+				tabs.add(tab);
+		}
+		return tabs;
+	}
+
+	/**
+	 * Gives a listing snapshot that was taken in the background to the given tab, provided that the tab still
+	 * needs it and that the snapshots of the other tabs leave enough room for it.
+	 * This method must be called from the event dispatch thread.
+	 * 
+	 * @param tab the tab the snapshot was taken for
+	 * @param snapshot a snapshot of the tab's location
+	 * @return true if the snapshot was given to the tab, false if it was discarded
+	 */
+	boolean addListingSnapshot(FileTableTab tab, ListingSnapshot snapshot) {
+		if (tab == displayedTab || tab.getListingSnapshot() != null || !isOpen(tab)
+				|| !snapshot.getFolder().getURL().equals(tab.getLocation()))
+			return false;
+
+		return storeListingSnapshot(tab, snapshot, false);
+	}
+
+	/**
+	 * Gives the snapshot to the tab while keeping the snapshots within the number of files allowed by the
+	 * preferences: either by evicting the snapshots of the tabs that have been left the longest time ago, or by
+	 * discarding the given snapshot if <code>evict</code> is false.
+	 */
+	private boolean storeListingSnapshot(FileTableTab tab, ListingSnapshot snapshot, boolean evict) {
+		// Forget about the tabs that have been closed
+		for (Iterator<FileTableTab> iterator = snapshotTabs.iterator(); iterator.hasNext();) {
+			if (!isOpen(iterator.next()))
+				iterator.remove();
+		}
+		untrackSnapshot(tab);
+
+		int maxFiles = MuConfigurations.getPreferences().getVariable(MuPreference.TAB_SNAPSHOTS_MAX_FILES, MuPreferences.DEFAULT_TAB_SNAPSHOTS_MAX_FILES);
+		int nbFiles = snapshot.getFileCount();
+		for (FileTableTab snapshotTab : snapshotTabs)
+			nbFiles += snapshotTab.getListingSnapshot().getFileCount();
+
+		if (!evict && nbFiles > maxFiles)
+			return false;
+
+		tab.setListingSnapshot(snapshot);
+		snapshotTabs.add(tab);
+
+		while (nbFiles > maxFiles && !snapshotTabs.isEmpty()) {
+			FileTableTab evictedTab = snapshotTabs.removeFirst();
+			nbFiles -= evictedTab.getListingSnapshot().getFileCount();
+			evictedTab.setListingSnapshot(null);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Removes the given tab from the tabs that hold a listing snapshot.
+	 * Note: tabs are compared by identity, as different tabs presenting the same location are equal.
+	 */
+	private void untrackSnapshot(FileTableTab tab) {
+		for (Iterator<FileTableTab> iterator = snapshotTabs.iterator(); iterator.hasNext();) {
+			if (iterator.next() == tab) {
+				iterator.remove();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the given tab is still one of the tabs, comparing tabs by identity
+	 */
+	private boolean isOpen(FileTableTab tab) {
+		for (Iterator<FileTableTab> iterator = iterator(); iterator.hasNext();) {
+			if (iterator.next() == tab)
+				return true;
+		}
+		return false;
+	}
+
 	/**
 	 * Return the currently selected tab
 	 * 
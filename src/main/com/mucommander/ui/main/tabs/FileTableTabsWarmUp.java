@@ -0,0 +1,249 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.mucommander.ui.main.tabs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.file.FileFactory;
+import com.mucommander.commons.file.FileURL;
+import com.mucommander.commons.file.filter.FileFilter;
+import com.mucommander.commons.runtime.JavaVersions;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+import com.mucommander.ui.main.ConfigurableFolderFilter;
+import com.mucommander.ui.main.FolderPanel;
+import com.mucommander.ui.main.MainFrame;
+import com.mucommander.ui.main.table.ListingSnapshot;
+import com.mucommander.ui.main.table.SortInfo;
+
+/**
+ * Lists the locations of the tabs that are not displayed in the background, so that they can be presented instantly
+ * from a {@link ListingSnapshot} when they are first selected, rather than having to wait for their location to be
+ * listed.
+ * <p>
+ * Locations are listed concurrently on a bounded pool of threads, with a limit on the number of locations of a same
+ * host that are listed at the same time, so that a slow server doesn't hold all the threads and isn't flooded with
+ * requests. Each location is listed only once, no matter how many tabs present it. The resulting snapshots are
+ * subject to the same memory budget as the snapshots of the tabs that have been left, see
+ * {@link FileTableTabs#addListingSnapshot(FileTableTab, ListingSnapshot)}.
+ * </p>
+ * <p>
+ * Warming up is enabled with the {@link MuPreferences#WARM_UP_TABS} preference.
+ * </p>
+ */
+public class FileTableTabsWarmUp {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileTableTabsWarmUp.class);
+
+    /** Listings that are waiting for a thread, by host */
+    private Map<String, LinkedList<Runnable>> pendingListings = new HashMap<String, LinkedList<Runnable>>();
+
+    /** Number of listings that are running, by host */
+    private Map<String, Integer> runningListings = new HashMap<String, Integer>();
+
+    /** Maximum number of listings of a same host that can run at the same time */
+    private int maxListingsPerHost;
+
+    private ThreadPoolExecutor executor;
+
+    /** Filters out unwanted files, just like the folder panels do */
+    private FileFilter filter = new ConfigurableFolderFilter();
+
+
+    private FileTableTabsWarmUp(int nbThreads, int maxListingsPerHost) {
+        this.maxListingsPerHost = maxListingsPerHost;
+
+        executor = new ThreadPoolExecutor(nbThreads, nbThreads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Tab warm-up");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // Let the threads die once all locations have been listed, this is only available in Java 1.6 and up
+        if(JavaVersions.JAVA_1_6.isCurrentOrHigher())
+            executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts listing the locations of the tabs that are not displayed in the given windows, if enabled in the
+     * preferences. This method returns immediately: the tabs are collected in the event dispatch thread once all
+     * pending UI events (including the painting of the windows) have been processed, and their locations are then
+     * listed in the background.
+     *
+     * @param mainFrames the windows whose tabs should be warmed up
+     */
+    public static void start(final List<MainFrame> mainFrames) {
+        if(!MuConfigurations.getPreferences().getVariable(MuPreference.WARM_UP_TABS, MuPreferences.DEFAULT_WARM_UP_TABS))
+            return;
+
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                int nbThreads = MuConfigurations.getPreferences().getVariable(MuPreference.WARM_UP_THREADS, MuPreferences.DEFAULT_WARM_UP_THREADS);
+                int maxListingsPerHost = MuConfigurations.getPreferences().getVariable(MuPreference.WARM_UP_THREADS_PER_HOST, MuPreferences.DEFAULT_WARM_UP_THREADS_PER_HOST);
+
+                new FileTableTabsWarmUp(Math.max(1, nbThreads), Math.max(1, maxListingsPerHost)).warmUp(mainFrames);
+            }
+        });
+    }
+
+    /**
+     * Collects the tabs of the given windows that have no listing snapshot, and schedules the listing of their
+     * locations. Must be called from the event dispatch thread.
+     */
+    private void warmUp(List<MainFrame> mainFrames) {
+        // Tabs to warm up, grouped by location so that each location is listed only once
+        Map<FileURL, List<Target>> targets = new LinkedHashMap<FileURL, List<Target>>();
+        for(MainFrame mainFrame : mainFrames) {
+            for(FolderPanel folderPanel : new FolderPanel[] {mainFrame.getLeftPanel(), mainFrame.getRightPanel()}) {
+                FileTableTabs tabs = folderPanel.getTabs();
+                SortInfo sortInfo = folderPanel.getFileTable().getSortInfo().clone();
+
+                for(FileTableTab tab : tabs.getTabsWithoutListingSnapshot()) {
+                    List<Target> locationTargets = targets.get(tab.getLocation());
+                    if(locationTargets==null) {
+                        locationTargets = new ArrayList<Target>();
+                        targets.put(tab.getLocation(), locationTargets);
+                    }
+                    locationTargets.add(new Target(tabs, tab, sortInfo));
+                }
+            }
+        }
+
+        LOGGER.debug("Warming up "+targets.size()+" tab locations");
+
+        for(Map.Entry<FileURL, List<Target>> entry : targets.entrySet())
+            schedule(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Schedules the listing of the given location, to be run as soon as the limit of listings of its host allows.
+     */
+    private synchronized void schedule(FileURL location, List<Target> targets) {
+        String host = location.getScheme()+"://"+location.getHost();
+
+        LinkedList<Runnable> hostListings = pendingListings.get(host);
+        if(hostListings==null) {
+            hostListings = new LinkedList<Runnable>();
+            pendingListings.put(host, hostListings);
+        }
+        hostListings.add(new Listing(location, host, targets));
+
+        dispatch(host);
+    }
+
+    /**
+     * Hands the pending listings of the given host to the pool, within the limit of listings per host.
+     */
+    private synchronized void dispatch(String host) {
+        LinkedList<Runnable> hostListings = pendingListings.get(host);
+        Integer nbRunning = runningListings.get(host);
+        int running = nbRunning==null?0:nbRunning;
+
+        while(running<maxListingsPerHost && hostListings!=null && !hostListings.isEmpty()) {
+            executor.execute(hostListings.removeFirst());
+            running++;
+        }
+
+        runningListings.put(host, running);
+        if(hostListings!=null && hostListings.isEmpty())
+            pendingListings.remove(host);
+    }
+
+    /**
+     * Called when a listing of the given host has completed.
+     */
+    private synchronized void listingDone(String host) {
+        runningListings.put(host, runningListings.get(host)-1);
+        dispatch(host);
+    }
+
+
+    /**
+     * A tab to warm up, along with the tabs it belongs to and the sort order of their table.
+     */
+    private static class Target {
+        private FileTableTabs tabs;
+        private FileTableTab tab;
+        private SortInfo sortInfo;
+
+        private Target(FileTableTabs tabs, FileTableTab tab, SortInfo sortInfo) {
+            this.tabs = tabs;
+            this.tab = tab;
+            this.sortInfo = sortInfo;
+        }
+    }
+
+    /**
+     * Lists a location and hands the resulting snapshot to the tabs that present it.
+     */
+    private class Listing implements Runnable {
+        private FileURL location;
+        private String host;
+        private List<Target> targets;
+
+        private Listing(FileURL location, String host, List<Target> targets) {
+            this.location = location;
+            this.host = host;
+            this.targets = targets;
+        }
+
+        public void run() {
+            try {
+                AbstractFile folder = FileFactory.getFile(location);
+                if(folder==null || !folder.isBrowsable())
+                    return;
+
+                // Note: the snapshot is sorted the way the first tab's table is, the other tables will sort it again
+                // if theirs is sorted differently
+                final ListingSnapshot snapshot = ListingSnapshot.create(folder, folder.ls(filter), targets.get(0).sortInfo);
+
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        for(Target target : targets)
+                            target.tabs.addListingSnapshot(target.tab, snapshot);
+                    }
+                });
+            }
+            catch(Exception e) {
+                // The tab will list its location when it is selected, like it would have without warming up
+                LOGGER.debug("Could not warm up "+location, e);
+            }
+            finally {
+                listingDone(host);
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.main.thumbnail;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.PlatformManager;
+import com.mucommander.cache.FastLRUCache;
+import com.mucommander.cache.LRUCache;
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.conf.MuConfigurations;
+import com.mucommander.conf.MuPreference;
+import com.mucommander.conf.MuPreferences;
+
+/**
+ * Caches the thumbnails of image files, both in memory and on disk.
+ * <p>
+ * Thumbnails are identified by the path and date of the file they were generated from, so that a thumbnail becomes
+ * stale as soon as its file is modified. A bounded number of thumbnails are kept in memory; all of them are stored on
+ * disk as PNG files, in a <code>thumbnails</code> folder located in the preferences folder, so that folders that have
+ * been displayed once can be displayed again without decoding any image.
+ * </p>
+ * <p>
+ * The size of the thumbnails stored on disk is bounded by the {@link MuPreferences#THUMBNAIL_CACHE_SIZE} preference:
+ * the least recently used thumbnails are deleted when the budget is exceeded, which also gets rid of the thumbnails of
+ * files that have been modified or deleted. The thumbnails on disk are indexed the first time the disk is accessed.
+ * </p>
+ */
+public class ThumbnailCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThumbnailCache.class);
+
+    /** Name of the folder in which thumbnails are stored, relative to the preferences folder */
+    private final static String CACHE_FOLDER_NAME = "thumbnails";
+
+    /** Extension of the thumbnail files */
+    private final static String THUMBNAIL_EXTENSION = ".png";
+
+    /** Maximum number of thumbnails kept in memory */
+    private final static int MEMORY_CAPACITY = 256;
+
+    private final static long MEGABYTE = 1024*1024;
+
+    private final static char HEX_DIGITS[] = "0123456789abcdef".toCharArray();
+
+    /** Shared instance */
+    private static ThumbnailCache instance;
+
+    /** Folder in which thumbnails are stored */
+    private File cacheFolder;
+
+    /** Most recently used thumbnails */
+    private LRUCache<String, BufferedImage> memoryCache = new FastLRUCache<String, BufferedImage>(MEMORY_CAPACITY);
+
+    /** Sizes of the thumbnails stored on disk keyed by their key, in access order (least recently used first).
+     * <code>null</code> until the thumbnails on disk have been indexed. */
+    private LinkedHashMap<String, Long> diskEntries;
+
+    /** Total size of the thumbnails stored on disk, in bytes */
+    private long totalDiskSize;
+
+
+    /**
+     * Creates a new <code>ThumbnailCache</code> that stores thumbnails in the given folder.
+     *
+     * @param cacheFolder the folder in which thumbnails are stored
+     */
+    ThumbnailCache(File cacheFolder) {
+        this.cacheFolder = cacheFolder;
+    }
+
+    /**
+     * Returns the shared <code>ThumbnailCache</code> instance, creating it if necessary.
+     *
+     * @return the shared <code>ThumbnailCache</code> instance
+     */
+    public static synchronized ThumbnailCache getInstance() {
+        if(instance==null)
+            instance = new ThumbnailCache(new File(PlatformManager.getPreferencesFolder().getAbsolutePath(), CACHE_FOLDER_NAME));
+
+        return instance;
+    }
+
+    /**
+     * Returns the key identifying the thumbnail of the given file and size: the hexadecimal SHA-1 digest of the file's
+     * URL (without credentials), date and thumbnail size.
+     *
+     * @param file the file the thumbnail is generated from
+     * @param size the maximum width and height of the thumbnail
+     * @return the key identifying the thumbnail
+     */
+    public static String getKey(AbstractFile file, int size) {
+        String identity = file.getURL().toString(false)+'\n'+file.getDate()+'\n'+size;
+        try {
+            byte digest[] = MessageDigest.getInstance("SHA-1").digest(identity.getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder(digest.length*2);
+            for(byte b : digest) {
+                key.append(HEX_DIGITS[(b>>4)&0x0F]);
+                key.append(HEX_DIGITS[b&0x0F]);
+            }
+            return key.toString();
+        }
+        catch(NoSuchAlgorithmException e) {
+            // SHA-1 is always available
+            throw new IllegalStateException(e);
+        }
+        catch(UnsupportedEncodingException e) {
+            // UTF-8 is always available
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the thumbnail with the given key if it is held in memory, <code>null</code> otherwise. This method does
+     * not access the disk and can be called from the event dispatch thread.
+     *
+     * @param key the key identifying the thumbnail
+     * @return the thumbnail, <code>null</code> if it is not held in memory
+     */
+    public BufferedImage getFromMemory(String key) {
+        return memoryCache.get(key);
+    }
+
+    /**
+     * Returns the thumbnail with the given key, reading it from disk if it is not held in memory. Returns
+     * <code>null</code> if the thumbnail is not cached.
+     *
+     * @param key the key identifying the thumbnail
+     * @return the thumbnail, <code>null</code> if it is not cached
+     */
+    public BufferedImage get(String key) {
+        BufferedImage thumbnail = memoryCache.get(key);
+        if(thumbnail!=null)
+            return thumbnail;
+
+        File thumbnailFile = getThumbnailFile(key);
+        synchronized(this) {
+            if(getDiskEntries().get(key)==null)
+                return null;
+
+            // Record the access date, used to rebuild the LRU order when the thumbnails are indexed
+            thumbnailFile.setLastModified(System.currentTimeMillis());
+        }
+
+        try {
+            thumbnail = ImageIO.read(thumbnailFile);
+        }
+        catch(IOException e) {
+            LOGGER.debug("Could not read thumbnail "+thumbnailFile, e);
+        }
+
+        if(thumbnail==null) {
+            // Corrupt or deleted file
+            synchronized(this) {
+                removeDiskEntry(key);
+            }
+            return null;
+        }
+
+        memoryCache.add(key, thumbnail);
+        return thumbnail;
+    }
+
+    /**
+     * Adds the given thumbnail to the cache, storing it on disk.
+     *
+     * @param key the key identifying the thumbnail
+     * @param thumbnail the thumbnail to cache
+     */
+    public void put(String key, BufferedImage thumbnail) {
+        memoryCache.add(key, thumbnail);
+
+        // Index the thumbnails on disk before writing, as leftover temporary files are deleted while indexing
+        synchronized(this) {
+            getDiskEntries();
+        }
+
+        File thumbnailFile = getThumbnailFile(key);
+        File folder = thumbnailFile.getParentFile();
+        if(!folder.exists() && !folder.mkdirs()) {
+            LOGGER.debug("Could not create thumbnail folder "+folder);
+            return;
+        }
+
+        // Write to a temporary file first so that a thumbnail being written is never read
+        File tempFile = new File(folder, key+".tmp");
+        try {
+            if(ImageIO.write(thumbnail, "png", tempFile) && (thumbnailFile.delete() || !thumbnailFile.exists()) && tempFile.renameTo(thumbnailFile)) {
+                long size = thumbnailFile.length();
+                synchronized(this) {
+                    Long previousSize = getDiskEntries().put(key, size);
+                    totalDiskSize += size - (previousSize==null?0:previousSize);
+                    evictDiskEntries();
+                }
+                return;
+            }
+        }
+        catch(IOException e) {
+            LOGGER.debug("Could not write thumbnail "+thumbnailFile, e);
+        }
+
+        tempFile.delete();
+    }
+
+    /**
+     * Returns the index of the thumbnails stored on disk, indexing them the first time this method is called. Files
+     * that were not accessed recently come first. Must be called while holding this object's lock.
+     */
+    private LinkedHashMap<String, Long> getDiskEntries() {
+        if(diskEntries!=null)
+            return diskEntries;
+
+        diskEntries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+        totalDiskSize = 0;
+
+        // Gather the thumbnail files and their access date
+        final Map<File, Long> dates = new LinkedHashMap<File, Long>();
+        File folders[] = cacheFolder.listFiles();
+        if(folders!=null) {
+            for(File folder : folders) {
+                File thumbnailFiles[] = folder.listFiles();
+                if(thumbnailFiles==null)
+                    continue;
+
+                for(File thumbnailFile : thumbnailFiles) {
+                    if(thumbnailFile.getName().endsWith(THUMBNAIL_EXTENSION))
+                        dates.put(thumbnailFile, thumbnailFile.lastModified());
+                    else
+                        thumbnailFile.delete();     // Leftover of an interrupted write
+                }
+            }
+        }
+
+        // Least recently accessed thumbnails first
+        File thumbnailFiles[] = dates.keySet().toArray(new File[dates.size()]);
+        Arrays.sort(thumbnailFiles, new Comparator<File>() {
+            public int compare(File f1, File f2) {
+                long date1 = dates.get(f1);
+                long date2 = dates.get(f2);
+                return date1<date2?-1:date1==date2?0:1;
+            }
+        });
+
+        for(File thumbnailFile : thumbnailFiles) {
+            String name = thumbnailFile.getName();
+            long size = thumbnailFile.length();
+            diskEntries.put(name.substring(0, name.length()-THUMBNAIL_EXTENSION.length()), size);
+            totalDiskSize += size;
+        }
+
+        evictDiskEntries();
+        LOGGER.debug("Indexed "+diskEntries.size()+" thumbnails, "+(totalDiskSize/MEGABYTE)+" MB");
+
+        return diskEntries;
+    }
+
+    /**
+     * Deletes the least recently used thumbnails from disk until they fit the budget. Must be called while holding
+     * this object's lock.
+     */
+    private void evictDiskEntries() {
+        long maxSize = MuConfigurations.getPreferences().getVariable(MuPreference.THUMBNAIL_CACHE_SIZE, MuPreferences.DEFAULT_THUMBNAIL_CACHE_SIZE)*MEGABYTE;
+        Iterator<Map.Entry<String, Long>> iterator = diskEntries.entrySet().iterator();
+        while(totalDiskSize>maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            iterator.remove();
+            totalDiskSize -= entry.getValue();
+            getThumbnailFile(entry.getKey()).delete();
+        }
+    }
+
+    /**
+     * Removes the thumbnail with the given key from disk. Must be called while holding this object's lock.
+     */
+    private void removeDiskEntry(String key) {
+        Long size = getDiskEntries().remove(key);
+        if(size!=null)
+            totalDiskSize -= size;
+        getThumbnailFile(key).delete();
+    }
+
+    /**
+     * Returns the file in which the thumbnail with the given key is stored. Thumbnails are spread over 256
+     * sub-folders named after the first two characters of their key, to keep folders reasonably small.
+     */
+    private File getThumbnailFile(String key) {
+        return new File(new File(cacheFolder, key.substring(0, 2)), key+THUMBNAIL_EXTENSION);
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.main.thumbnail;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.commons.runtime.JavaVersions;
+import com.mucommander.ui.viewer.image.ImageDecoder;
+
+/**
+ * Generates the thumbnails of image files in the background, using a bounded pool of low-priority threads, and
+ * stores them in the {@link ThumbnailCache}.
+ * <p>
+ * Images are decoded with subsampling, so that only a fraction of their pixels is ever read. Requests are
+ * processed most recent batch first and, within a batch, in the order in which they were made: the thumbnails that
+ * were requested by the last repaint of a view are generated before those of the previous ones. Before generating a
+ * thumbnail, the {@link ThumbnailConsumer} that requested it is asked whether it is still needed, so that the
+ * thumbnails of files that have been scrolled out of view are not generated.
+ * </p>
+ */
+public class ThumbnailGenerator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThumbnailGenerator.class);
+
+    /** Maximum number of threads generating thumbnails */
+    private final static int MAX_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** Maximum number of failed thumbnails that are remembered */
+    private final static int MAX_FAILED_KEYS = 10000;
+
+    /** Shared instance */
+    private static ThumbnailGenerator instance;
+
+    /** Where generated thumbnails are stored */
+    private ThumbnailCache cache;
+
+    /** The threads generating thumbnails */
+    private ThreadPoolExecutor executor;
+
+    /** Keys of the thumbnails that have been requested and are not available yet */
+    private Set<String> pendingKeys = Collections.synchronizedSet(new HashSet<String>());
+
+    /** Keys of the thumbnails that could not be generated, which are not requested again */
+    private Set<String> failedKeys = Collections.synchronizedSet(new HashSet<String>());
+
+    /** Sequence number given to the next request */
+    private long nextSequence;
+
+
+    /**
+     * Interface to be implemented by classes that request thumbnails.
+     */
+    public interface ThumbnailConsumer {
+
+        /**
+         * Returns <code>true</code> if the thumbnail of the given file is still needed. This method is called from a
+         * generator thread right before the thumbnail is generated.
+         *
+         * @param file the file the thumbnail is generated from
+         * @param index the index that was specified when the thumbnail was requested
+         * @return true if the thumbnail should be generated
+         */
+        public boolean isThumbnailNeeded(AbstractFile file, int index);
+
+        /**
+         * Called from a generator thread when the requested thumbnail of the given file has been added to the cache.
+         *
+         * @param file the file the thumbnail was generated from
+         * @param index the index that was specified when the thumbnail was requested
+         */
+        public void thumbnailAvailable(AbstractFile file, int index);
+    }
+
+
+    /**
+     * Creates a new <code>ThumbnailGenerator</code> that stores thumbnails in the given cache.
+     *
+     * @param cache where generated thumbnails are stored
+     */
+    ThumbnailGenerator(ThumbnailCache cache) {
+        this.cache = cache;
+
+        executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private int nbThreads;
+
+                    public synchronized Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "ThumbnailGenerator thread "+(++nbThreads));
+                        thread.setDaemon(true);
+                        // Thumbnails must not slow down the rest of the application
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                });
+        // Let idle threads terminate, this is only available in Java 1.6 and up
+        if(JavaVersions.JAVA_1_6.isCurrentOrHigher())
+            executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the shared <code>ThumbnailGenerator</code> instance, creating it if necessary.
+     *
+     * @return the shared <code>ThumbnailGenerator</code> instance
+     */
+    public static synchronized ThumbnailGenerator getInstance() {
+        if(instance==null)
+            instance = new ThumbnailGenerator(ThumbnailCache.getInstance());
+
+        return instance;
+    }
+
+    /**
+     * Returns the cache in which generated thumbnails are stored.
+     *
+     * @return the cache in which generated thumbnails are stored
+     */
+    public ThumbnailCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Requests the thumbnail of the given file to be generated, or read from disk if it has been generated
+     * before. This method returns immediately, the consumer is notified when the thumbnail is available. Requests
+     * for thumbnails that are already pending or that could not be generated are ignored.
+     *
+     * @param file the file to generate the thumbnail of
+     * @param key the key of the thumbnail, as returned by {@link ThumbnailCache#getKey(AbstractFile, int)}
+     * @param size the maximum width and height of the thumbnail
+     * @param index an index identifying the file for the consumer
+     * @param batch the batch the request belongs to, requests of greater batches are processed first
+     * @param consumer the consumer to notify when the thumbnail is available
+     */
+    public void request(AbstractFile file, String key, int size, int index, long batch, ThumbnailConsumer consumer) {
+        if(failedKeys.contains(key) || !pendingKeys.add(key))
+            return;
+
+        long sequence;
+        synchronized(this) {
+            sequence = nextSequence++;
+        }
+
+        executor.execute(new ThumbnailTask(file, key, size, index, batch, sequence, consumer));
+    }
+
+    /**
+     * Returns <code>true</code> if the thumbnail with the given key could not be generated.
+     *
+     * @param key the key of the thumbnail
+     * @return true if the thumbnail with the given key could not be generated
+     */
+    public boolean hasFailed(String key) {
+        return failedKeys.contains(key);
+    }
+
+    /**
+     * Decodes the given image file with subsampling and scales it down so that it fits in a square of the given
+     * size, preserving its aspect ratio.
+     */
+    private static BufferedImage createThumbnail(AbstractFile file, int size) throws IOException {
+        ImageDecoder decoder = new ImageDecoder(file);
+        try {
+            int width = decoder.getWidth();
+            int height = decoder.getHeight();
+            int largestSide = Math.max(width, height);
+
+            // Decode at no less than twice the thumbnail size, so that scaling down with interpolation looks smooth
+            BufferedImage image = decoder.decode(Math.max(1, largestSide/(2*size)));
+
+            double scale = Math.min(1.0, size/(double)largestSide);
+            int thumbnailWidth = Math.max(1, (int)Math.round(width*scale));
+            int thumbnailHeight = Math.max(1, (int)Math.round(height*scale));
+
+            BufferedImage thumbnail = new BufferedImage(thumbnailWidth, thumbnailHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = thumbnail.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, thumbnailWidth, thumbnailHeight, null);
+            g.dispose();
+
+            return thumbnail;
+        }
+        finally {
+            decoder.close();
+        }
+    }
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * Reads a thumbnail from the disk cache or generates it, ordered by batch then sequence number.
+     */
+    private class ThumbnailTask implements Runnable, Comparable<ThumbnailTask> {
+
+        private AbstractFile file;
+        private String key;
+        private int size;
+        private int index;
+        private long batch;
+        private long sequence;
+        private ThumbnailConsumer consumer;
+
+        private ThumbnailTask(AbstractFile file, String key, int size, int index, long batch, long sequence, ThumbnailConsumer consumer) {
+            this.file = file;
+            this.key = key;
+            this.size = size;
+            this.index = index;
+            this.batch = batch;
+            this.sequence = sequence;
+            this.consumer = consumer;
+        }
+
+        public int compareTo(ThumbnailTask other) {
+            if(batch!=other.batch)
+                return batch>other.batch?-1:1;
+
+            return sequence<other.sequence?-1:(sequence==other.sequence?0:1);
+        }
+
+        public void run() {
+            try {
+                if(!consumer.isThumbnailNeeded(file, index))
+                    return;
+
+                if(cache.get(key)==null) {
+                    try {
+                        cache.put(key, createThumbnail(file, size));
+                    }
+                    catch(Exception e) {
+                        // Includes runtime exceptions thrown by image readers on corrupt images
+                        LOGGER.debug("Could not generate thumbnail of "+file, e);
+
+                        if(failedKeys.size()>=MAX_FAILED_KEYS)
+                            failedKeys.clear();
+                        failedKeys.add(key);
+                        return;
+                    }
+                }
+            }
+            finally {
+                pendingKeys.remove(key);
+            }
+
+            consumer.thumbnailAvailable(file, index);
+        }
+    }
+}
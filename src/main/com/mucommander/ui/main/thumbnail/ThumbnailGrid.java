@@ -0,0 +1,579 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.main.thumbnail;
+
+import java.awt.Color;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.KeyboardFocusManager;
+import java.awt.Rectangle;
+import java.awt.event.FocusEvent;
+import java.awt.event.FocusListener;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.swing.Icon;
+import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+
+import com.mucommander.commons.file.AbstractFile;
+import com.mucommander.desktop.DesktopManager;
+import com.mucommander.ui.action.ActionManager;
+import com.mucommander.ui.event.TableSelectionListener;
+import com.mucommander.ui.icon.FileIcons;
+import com.mucommander.ui.main.MainFrame;
+import com.mucommander.ui.main.menu.TablePopupMenu;
+import com.mucommander.ui.main.table.FileTable;
+import com.mucommander.ui.main.table.FileTableModel;
+import com.mucommander.ui.theme.Theme;
+import com.mucommander.ui.theme.ThemeManager;
+import com.mucommander.ui.viewer.image.ImageDecoder;
+
+/**
+ * Displays the contents of a {@link FileTable} as a grid of thumbnails.
+ * <p>
+ * The grid is a view of the table: it displays the files of the table's model in the same order, and selecting or
+ * marking a file in the grid selects or marks it in the table. Arrow keys move the selection within the grid, all
+ * other key events are forwarded to the table so that actions and quick search work in the same way as in the table.
+ * </p>
+ * <p>
+ * Only the cells that are visible are painted. Image files are displayed by their thumbnail, which is requested from
+ * the {@link ThumbnailGenerator} the first time the cell is painted and displayed as soon as it is available; other
+ * files, and images whose thumbnail is not available yet, are displayed by their icon.
+ * </p>
+ * <p>
+ * The grid listens to the table only while it is displayed. Generator threads never access the table or its model:
+ * they are given a snapshot of the files that were visible the last time the grid was painted.
+ * </p>
+ */
+public class ThumbnailGrid extends JComponent implements Scrollable, KeyListener, FocusListener, TableSelectionListener,
+        TableModelListener, ThumbnailGenerator.ThumbnailConsumer {
+
+    /** Maximum width and height of thumbnails */
+    public final static int THUMBNAIL_SIZE = 128;
+
+    /** Space around thumbnails, within cells */
+    private final static int CELL_PADDING = 6;
+
+    /** Width of a cell */
+    private final static int CELL_WIDTH = THUMBNAIL_SIZE+2*CELL_PADDING;
+
+    /** Width of the outline of the selected cell */
+    private final static int OUTLINE_WIDTH = 2;
+
+    private MainFrame mainFrame;
+    private FileTable fileTable;
+    private FileTableModel tableModel;
+    private ThumbnailGenerator generator;
+
+    /** Files that were visible the last time the grid was painted, null if the grid is not displayed */
+    private volatile VisibleFiles visibleFiles;
+
+    /** Batch of the thumbnail requests made by the current repaint */
+    private long paintBatch;
+
+    /** Thumbnail keys of the files of the table, so that they are computed only once for each file */
+    private Map<AbstractFile, String> thumbnailKeys = new IdentityHashMap<AbstractFile, String>();
+
+
+    /**
+     * Creates a new <code>ThumbnailGrid</code> displaying the contents of the given table.
+     *
+     * @param fileTable the table whose contents are displayed
+     * @param mainFrame the frame containing the table
+     */
+    public ThumbnailGrid(FileTable fileTable, MainFrame mainFrame) {
+        this.fileTable = fileTable;
+        this.mainFrame = mainFrame;
+        this.tableModel = fileTable.getFileTableModel();
+        this.generator = ThumbnailGenerator.getInstance();
+
+        setFocusable(true);
+        setOpaque(true);
+        // Tab and Shift+Tab must be forwarded to the table like any other key
+        setFocusTraversalKeysEnabled(false);
+
+        addKeyListener(this);
+        addFocusListener(this);
+        addMouseListener(new GridMouseListener());
+        // The folder panel must be made active when the grid gains the focus, as it is with the table
+        addFocusListener(fileTable.getFolderPanel());
+    }
+
+    /**
+     * Returns the key of the thumbnail of the given file, computing it the first time it is requested.
+     */
+    private String getThumbnailKey(AbstractFile file) {
+        String key = thumbnailKeys.get(file);
+        if(key==null) {
+            key = ThumbnailCache.getKey(file, THUMBNAIL_SIZE);
+            thumbnailKeys.put(file, key);
+        }
+
+        return key;
+    }
+
+    /**
+     * Returns the height of a cell, which depends on the font of file names.
+     */
+    private int getCellHeight() {
+        return THUMBNAIL_SIZE+3*CELL_PADDING+getFontMetrics(getFileFont()).getHeight();
+    }
+
+    /**
+     * Returns the number of columns of the grid, which depends on the width of the viewport.
+     */
+    private int getColumnCount() {
+        Container parent = getParent();
+        int width = parent instanceof JViewport?parent.getWidth():getWidth();
+
+        return Math.max(1, width/CELL_WIDTH);
+    }
+
+    /**
+     * Returns the bounds of the cell of the file with the given index.
+     */
+    private Rectangle getCellBounds(int index) {
+        int nbColumns = getColumnCount();
+        int cellHeight = getCellHeight();
+
+        return new Rectangle((index%nbColumns)*CELL_WIDTH, (index/nbColumns)*cellHeight, CELL_WIDTH, cellHeight);
+    }
+
+    /**
+     * Returns the index of the file displayed at the given location, <code>-1</code> if there is none.
+     */
+    private int getIndexAt(int x, int y) {
+        int nbColumns = getColumnCount();
+        int column = x/CELL_WIDTH;
+        if(column>=nbColumns || x<0 || y<0)
+            return -1;
+
+        int index = (y/getCellHeight())*nbColumns+column;
+        return index<tableModel.getRowCount()?index:-1;
+    }
+
+    /**
+     * Selects the file with the given index in the table, clamped to the valid range.
+     */
+    private void selectIndex(int index) {
+        int nbFiles = tableModel.getRowCount();
+        if(nbFiles==0)
+            return;
+
+        fileTable.selectRow(Math.max(0, Math.min(nbFiles-1, index)));
+    }
+
+    /**
+     * Forwards the given key event to the table, and consumes it if the table did.
+     */
+    private void forwardToTable(KeyEvent e) {
+        KeyEvent tableEvent = new KeyEvent(fileTable, e.getID(), e.getWhen(), e.getModifiers(), e.getKeyCode(), e.getKeyChar(), e.getKeyLocation());
+        KeyboardFocusManager.getCurrentKeyboardFocusManager().redispatchEvent(fileTable, tableEvent);
+
+        // Events that are not consumed by the table are left to the bindings of the grid's window
+        if(tableEvent.isConsumed())
+            e.consume();
+
+        repaint();
+    }
+
+    private static Font getFileFont() {
+        return ThemeManager.getCurrentFont(Theme.FILE_TABLE_FONT);
+    }
+
+    /**
+     * Returns the name of the given file truncated with an ellipsis so that it fits in the given width.
+     */
+    private static String getDisplayedName(String name, FontMetrics fm, int width) {
+        if(fm.stringWidth(name)<=width)
+            return name;
+
+        String ellipsis = "...";
+        int end = name.length();
+        while(end>0 && fm.stringWidth(name.substring(0, end))+fm.stringWidth(ellipsis)>width)
+            end--;
+
+        return name.substring(0, end)+ellipsis;
+    }
+
+    /**
+     * Paints the cell of the file with the given index.
+     */
+    private void paintCell(Graphics g, int index, boolean selected, boolean hasFocus, FontMetrics fm) {
+        Rectangle bounds = getCellBounds(index);
+        AbstractFile file = tableModel.getCachedFileAtRow(index);
+        boolean parentFolder = fileTable.isParentFolder(index);
+        boolean marked = tableModel.isRowMarked(index);
+
+        if(selected) {
+            g.setColor(ThemeManager.getCurrentColor(hasFocus?Theme.FILE_TABLE_SELECTED_BACKGROUND_COLOR:Theme.FILE_TABLE_INACTIVE_SELECTED_BACKGROUND_COLOR));
+            g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+            g.setColor(ThemeManager.getCurrentColor(hasFocus?Theme.FILE_TABLE_SELECTED_OUTLINE_COLOR:Theme.FILE_TABLE_INACTIVE_SELECTED_OUTLINE_COLOR));
+            for(int i=0; i<OUTLINE_WIDTH; i++)
+                g.drawRect(bounds.x+i, bounds.y+i, bounds.width-2*i-1, bounds.height-2*i-1);
+        }
+
+        // Thumbnail or icon, centered in the thumbnail area
+        int areaX = bounds.x+CELL_PADDING;
+        int areaY = bounds.y+CELL_PADDING;
+        BufferedImage thumbnail = null;
+        if(!parentFolder && ImageDecoder.isSupported(file)) {
+            String key = getThumbnailKey(file);
+            thumbnail = generator.getCache().getFromMemory(key);
+            if(thumbnail==null)
+                generator.request(file, key, THUMBNAIL_SIZE, index, paintBatch, this);
+        }
+
+        if(thumbnail!=null) {
+            g.drawImage(thumbnail, areaX+(THUMBNAIL_SIZE-thumbnail.getWidth())/2, areaY+(THUMBNAIL_SIZE-thumbnail.getHeight())/2, null);
+        }
+        else {
+            Icon icon = FileIcons.getFileIcon(file);
+            if(icon!=null)
+                icon.paintIcon(this, g, areaX+(THUMBNAIL_SIZE-icon.getIconWidth())/2, areaY+(THUMBNAIL_SIZE-icon.getIconHeight())/2);
+        }
+
+        // File name, centered below the thumbnail
+        String name = getDisplayedName(parentFolder?"..":file.getName(), fm, CELL_WIDTH-2*CELL_PADDING);
+        int foregroundColorId;
+        if(marked)
+            foregroundColorId = selected?Theme.MARKED_SELECTED_FOREGROUND_COLOR:Theme.MARKED_FOREGROUND_COLOR;
+        else
+            foregroundColorId = selected?Theme.FILE_SELECTED_FOREGROUND_COLOR:Theme.FILE_FOREGROUND_COLOR;
+        g.setColor(ThemeManager.getCurrentColor(foregroundColorId));
+        g.drawString(name, bounds.x+(CELL_WIDTH-fm.stringWidth(name))/2, areaY+THUMBNAIL_SIZE+CELL_PADDING+fm.getAscent());
+    }
+
+
+    ////////////////////////
+    // Overridden methods //
+    ////////////////////////
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        boolean hasFocus = hasFocus();
+        g.setColor(ThemeManager.getCurrentColor(hasFocus?Theme.FILE_TABLE_BACKGROUND_COLOR:Theme.FILE_TABLE_INACTIVE_BACKGROUND_COLOR));
+        Rectangle clip = g.getClipBounds();
+        if(clip==null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        int nbFiles = tableModel.getRowCount();
+        int nbColumns = getColumnCount();
+        int cellHeight = getCellHeight();
+
+        // Remember which files are visible, thumbnails of other files are not worth generating anymore. The row
+        // above and the row below the visible ones are included, so that their thumbnails are ready when scrolling.
+        Rectangle visibleRect = getVisibleRect();
+        int firstVisibleIndex = Math.max(0, (visibleRect.y/cellHeight-1)*nbColumns);
+        int lastVisibleIndex = Math.min(nbFiles, ((visibleRect.y+visibleRect.height-1)/cellHeight+2)*nbColumns)-1;
+        AbstractFile files[] = new AbstractFile[Math.max(0, lastVisibleIndex-firstVisibleIndex+1)];
+        for(int i=0; i<files.length; i++)
+            files[i] = tableModel.getCachedFileAtRow(firstVisibleIndex+i);
+        visibleFiles = new VisibleFiles(firstVisibleIndex, files, nbColumns, cellHeight);
+        paintBatch++;
+
+        g.setFont(getFileFont());
+        FontMetrics fm = g.getFontMetrics();
+        int selectedIndex = fileTable.getSelectedRow();
+        int lastIndex = Math.min(nbFiles, ((clip.y+clip.height-1)/cellHeight+1)*nbColumns)-1;
+        for(int index=(clip.y/cellHeight)*nbColumns; index<=lastIndex; index++)
+            paintCell(g, index, index==selectedIndex, hasFocus, fm);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+
+        // The table may have changed while the grid was not displayed
+        fileTable.addTableSelectionListener(this);
+        tableModel.addTableModelListener(this);
+        thumbnailKeys.clear();
+        revalidate();
+    }
+
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+
+        // Stop listening to the table and generating thumbnails while the grid is not displayed, and let the
+        // grid be garbage collected along with the table
+        fileTable.removeTableSelectionListener(this);
+        tableModel.removeTableModelListener(this);
+        visibleFiles = null;
+        thumbnailKeys.clear();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        int nbColumns = getColumnCount();
+        int nbRows = (tableModel.getRowCount()+nbColumns-1)/nbColumns;
+
+        return new Dimension(nbColumns*CELL_WIDTH, nbRows*getCellHeight());
+    }
+
+    @Override
+    public void setBounds(int x, int y, int width, int height) {
+        boolean widthChanged = width!=getWidth();
+        super.setBounds(x, y, width, height);
+
+        // The number of rows, and thus the preferred height, depends on the width
+        if(widthChanged)
+            revalidate();
+    }
+
+
+    ////////////////////////
+    // Scrollable methods //
+    ////////////////////////
+
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation==SwingConstants.VERTICAL?getCellHeight()/4:CELL_WIDTH/4;
+    }
+
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        if(orientation==SwingConstants.HORIZONTAL)
+            return visibleRect.width;
+
+        int cellHeight = getCellHeight();
+        return Math.max(cellHeight, (visibleRect.height/cellHeight)*cellHeight);
+    }
+
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    public boolean getScrollableTracksViewportHeight() {
+        Container parent = getParent();
+        return parent instanceof JViewport && parent.getHeight()>getPreferredSize().height;
+    }
+
+
+    /////////////////////////
+    // KeyListener methods //
+    /////////////////////////
+
+    public void keyPressed(KeyEvent e) {
+        // Discard key events while in 'no events mode'
+        if(mainFrame.getNoEventsMode())
+            return;
+
+        int selectedIndex = fileTable.getSelectedRow();
+        int nbColumns = getColumnCount();
+
+        // Plain arrow and page keys move the selection within the grid, other keys are handled by the table
+        if(e.getModifiersEx()==0) {
+            switch(e.getKeyCode()) {
+            case KeyEvent.VK_LEFT:
+                selectIndex(selectedIndex-1);
+                e.consume();
+                return;
+            case KeyEvent.VK_RIGHT:
+                selectIndex(selectedIndex+1);
+                e.consume();
+                return;
+            case KeyEvent.VK_UP:
+                selectIndex(selectedIndex-nbColumns);
+                e.consume();
+                return;
+            case KeyEvent.VK_DOWN:
+                selectIndex(selectedIndex+nbColumns);
+                e.consume();
+                return;
+            case KeyEvent.VK_PAGE_UP:
+            case KeyEvent.VK_PAGE_DOWN:
+                int nbRows = Math.max(1, getVisibleRect().height/getCellHeight());
+                selectIndex(selectedIndex+(e.getKeyCode()==KeyEvent.VK_PAGE_UP?-1:1)*nbRows*nbColumns);
+                e.consume();
+                return;
+            }
+        }
+
+        forwardToTable(e);
+    }
+
+    public void keyTyped(KeyEvent e) {
+        if(!mainFrame.getNoEventsMode())
+            forwardToTable(e);
+    }
+
+    public void keyReleased(KeyEvent e) {
+        if(!mainFrame.getNoEventsMode())
+            forwardToTable(e);
+    }
+
+
+    ///////////////////////////
+    // FocusListener methods //
+    ///////////////////////////
+
+    public void focusGained(FocusEvent e) {
+        repaint();
+    }
+
+    public void focusLost(FocusEvent e) {
+        repaint();
+    }
+
+
+    ////////////////////////////////////
+    // TableSelectionListener methods //
+    ////////////////////////////////////
+
+    public void selectedFileChanged(FileTable source) {
+        int selectedIndex = fileTable.getSelectedRow();
+        if(selectedIndex>=0 && isShowing())
+            scrollRectToVisible(getCellBounds(selectedIndex));
+
+        repaint();
+    }
+
+    public void markedFilesChanged(FileTable source) {
+        repaint();
+    }
+
+
+    ////////////////////////////////
+    // TableModelListener methods //
+    ////////////////////////////////
+
+    public void tableChanged(TableModelEvent e) {
+        // The files of the table have changed, their keys are not needed anymore
+        thumbnailKeys.clear();
+        revalidate();
+        repaint();
+    }
+
+
+    //////////////////////////////////////
+    // ThumbnailConsumer implementation //
+    //////////////////////////////////////
+
+    public boolean isThumbnailNeeded(AbstractFile file, int index) {
+        // Called from a generator thread: the table must not be accessed
+        VisibleFiles visibleFiles = this.visibleFiles;
+        return visibleFiles!=null && file.equals(visibleFiles.getFile(index));
+    }
+
+    public void thumbnailAvailable(AbstractFile file, int index) {
+        VisibleFiles visibleFiles = this.visibleFiles;
+        if(visibleFiles==null)
+            return;
+
+        // Note: repaint() can safely be called from any thread
+        int nbColumns = visibleFiles.nbColumns;
+        int cellHeight = visibleFiles.cellHeight;
+        repaint((index%nbColumns)*CELL_WIDTH, (index/nbColumns)*cellHeight, CELL_WIDTH, cellHeight);
+    }
+
+
+    ///////////////////
+    // Inner classes //
+    ///////////////////
+
+    /**
+     * Snapshot of the files that are visible in the grid, and of the layout of the grid, taken on the event dispatch
+     * thread when the grid is painted.
+     */
+    private static class VisibleFiles {
+        private final int firstIndex;
+        private final AbstractFile files[];
+        private final int nbColumns;
+        private final int cellHeight;
+
+        private VisibleFiles(int firstIndex, AbstractFile files[], int nbColumns, int cellHeight) {
+            this.firstIndex = firstIndex;
+            this.files = files;
+            this.nbColumns = nbColumns;
+            this.cellHeight = cellHeight;
+        }
+
+        /**
+         * Returns the file with the given index, <code>null</code> if it is not visible.
+         */
+        private AbstractFile getFile(int index) {
+            return index>=firstIndex && index-firstIndex<files.length?files[index-firstIndex]:null;
+        }
+    }
+
+    /**
+     * Selects, marks and opens files when the grid is clicked, in the same way as the table does.
+     */
+    private class GridMouseListener extends MouseAdapter {
+
+        @Override
+        public void mousePressed(MouseEvent e) {
+            // Discard mouse events while in 'no events mode'
+            if(mainFrame.getNoEventsMode())
+                return;
+
+            if(!hasFocus())
+                requestFocus();
+
+            int index = getIndexAt(e.getX(), e.getY());
+            if(index==-1)
+                return;
+
+            if(DesktopManager.isRightMouseButton(e)) {
+                boolean parentFolderClicked = fileTable.isParentFolder(index);
+                fileTable.selectRow(index);
+                new TablePopupMenu(mainFrame, fileTable.getFolderPanel().getCurrentFolder(), parentFolderClicked?null:tableModel.getFileAtRow(index), parentFolderClicked, tableModel.getMarkedFiles()).show(ThumbnailGrid.this, e.getX(), e.getY());
+            }
+            // Middle-click or Control left-click marks or unmarks a file
+            else if(DesktopManager.isMiddleMouseButton(e) || (DesktopManager.isLeftMouseButton(e) && e.isControlDown())) {
+                fileTable.setRowMarked(index, !tableModel.isRowMarked(index));
+                repaint();
+            }
+            else if(DesktopManager.isLeftMouseButton(e)) {
+                fileTable.selectRow(index);
+            }
+        }
+
+        @Override
+        public void mouseClicked(MouseEvent e) {
+            if(mainFrame.getNoEventsMode())
+                return;
+
+            // Double-clicking on a file opens it
+            if(DesktopManager.isLeftMouseButton(e) && e.getClickCount()==2 && getIndexAt(e.getX(), e.getY())!=-1) {
+                ActionManager.performAction(e.isShiftDown()
+                        ?com.mucommander.ui.action.impl.OpenNativelyAction.Descriptor.ACTION_ID
+                        :com.mucommander.ui.action.impl.OpenAction.Descriptor.ACTION_ID
+                    , mainFrame);
+            }
+        }
+    }
+}
@@ -40,6 +40,9 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
 	/** Quick search string */
     private String searchString;
 
+    /** Quick search string in lower case */
+    private String searchStringLC;
+
 	/** Timestamp of the last search string change, used when quick search is active */
     private long lastSearchStringChange;
 
@@ -74,6 +77,7 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
         if(!isActive()) {
             // Reset search string
             searchString = "";
+            searchStringLC = "";
             // Start the thread that's responsible for canceling the quick search on timeout
             timeoutThread = new Thread(this, "QuickSearch timeout thread");
             timeoutThread.start();
@@ -112,7 +116,18 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
      * @return true if the current quick search string matches the given string
      */
     public boolean matches(String string) {
-        return isActive() && string.toLowerCase().indexOf(searchString.toLowerCase())!=-1;
+        return isActive() && string.toLowerCase().indexOf(searchStringLC)!=-1;
+    }
+
+    /**
+     * Returns <code>true</code> if the current quick search string matches the item at the given index.
+     * Always returns <code>false</code> when the quick search is inactive.
+     *
+     * @param index index of the item to test against the quick search string
+     * @return true if the current quick search string matches the item at the given index
+     */
+    public boolean matches(int index) {
+        return isActive() && getItemStringLowerCase(index).indexOf(searchStringLC)!=-1;
     }
 
 
@@ -146,6 +161,10 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
 		this.lastSearchStringChange = lastSearchStringChange;
 	}
 
+	protected String getSearchString() {
+		return searchString;
+	}
+
 	protected boolean isSearchStringEmpty() {
 		return searchString.length() == 0;
 	}
@@ -158,6 +177,7 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
         // the cancel() method will be called, and repainting twice would result in an
         // unpleasant graphical artifact.
         searchString = searchString.substring(0, searchString.length()-1);
+        searchStringLC = searchString.toLowerCase();
         if(searchString.length() != 0)
             component.repaint();
 	}
@@ -167,6 +187,7 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
         // Since the search string has been updated, match information has changed as well
         // and we need to repaint the table.
         searchString += keyChar;
+        searchStringLC = searchString.toLowerCase();
         component.repaint();
 	}
 	
@@ -195,7 +216,11 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
     }
 	
 	private int getBestMatch(int startRow, boolean descending, boolean findBestMatch) {
-    	String searchStringLC = searchString.toLowerCase();
+        // Only test the items that contain the search string, if they can be found without testing every item
+        int matchingItems[] = getMatchingItems(searchStringLC);
+        if(matchingItems!=null)
+            return getBestMatch(matchingItems, startRow, descending, findBestMatch);
+
     	int searchStringLen = searchString.length();
         int startsWithCaseMatch = -1;
         int startsWithNoCaseMatch = -1;
@@ -278,6 +303,75 @@ public abstract class QuickSearch<T> extends KeyAdapter implements Runnable {
         return bestMatch;
     }
 
+    /**
+     * Same as {@link #getBestMatch(int, boolean, boolean)}, but only tests the given items which contain the search
+     * string, ignoring case. The items can be in any order: the best match is the one of the first of the following
+     * tests that an item passes, and the closest item to the start row among those that pass it.
+     */
+    private int getBestMatch(int matchingItems[], int startRow, boolean descending, boolean findBestMatch) {
+        // Best row for each test, in the order of importance :
+        // - search string matches the beginning of the string with the same case
+        // - search string matches the beginning of the string with a different case
+        // - string contains search string with the same case
+        // - string contains search string with a different case
+        int matches[] = {-1, -1, -1, -1};
+
+        for(int item : matchingItems) {
+            // Skip the items that are before the start row
+            if(descending?item<startRow:item>startRow)
+                continue;
+
+            int test;
+            // If findBestMatch was not specified, the first match (i.e. the closest item) is the best one
+            if(!findBestMatch)
+                test = 0;
+            else {
+                String itemString = getItemString(item);
+                if(itemString.startsWith(searchString))
+                    test = 0;
+                else if(getItemStringLowerCase(item).startsWith(searchStringLC))
+                    test = 1;
+                else if(itemString.indexOf(searchString)!=-1)
+                    test = 2;
+                else
+                    test = 3;
+            }
+
+            if(matches[test]==-1 || (descending?item<matches[test]:item>matches[test]))
+                matches[test] = item;
+        }
+
+        for(int match : matches) {
+            if(match!=-1)
+                return match;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the indexes of the items that contain the given lower-cased search string, ignoring case, in any order,
+     * or <code>null</code> if they can't be found without testing every item. This implementation returns
+     * <code>null</code>, subclasses that index their items should override it.
+     *
+     * @param searchStringLC the search string in lower case
+     * @return the indexes of the items that contain the search string, <code>null</code> if unknown
+     */
+    protected int[] getMatchingItems(String searchStringLC) {
+        return null;
+    }
+
+    /**
+     * Return item at a given index as a lower-cased String. This implementation lower-cases the value returned by
+     * {@link #getItemString(int)}, subclasses that already know it should override it.
+     *
+     * @param index - index of item
+     * @return item at index as a lower-cased String
+     */
+    protected String getItemStringLowerCase(int index) {
+        return getItemString(index).toLowerCase();
+    }
+
 	//////////////////////
 	// Abstract methods //
 	//////////////////////
@@ -106,9 +106,7 @@ public abstract class FileEditor extends FilePresenter implements ActionListener
                 }
             }
 
-            if (trySave(destFile)) {
-                setCurrentFile(destFile);
-            }
+            trySave(destFile);
         }
     }
 
@@ -116,6 +114,8 @@ public abstract class FileEditor extends FilePresenter implements ActionListener
     private boolean trySave(AbstractFile destFile) {
         try {
             saveAs(destFile);
+            // Contents must now be read from the saved file rather than from a cached copy
+            setCurrentFile(destFile);
             return true;
         }
         catch(IOException e) {
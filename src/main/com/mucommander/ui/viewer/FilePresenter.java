@@ -14,6 +14,7 @@ import javax.swing.JMenuBar;
 import javax.swing.JScrollPane;
 import javax.swing.KeyStroke;
 
+import com.mucommander.cache.RemoteFileCache;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.commons.runtime.OsFamilies;
 
@@ -30,6 +31,9 @@ public abstract class FilePresenter extends JScrollPane {
     /** File currently being presented. */
     private AbstractFile file;
 
+    /** Local copy of the file currently being presented from which its contents are read, may be the file itself. */
+    private AbstractFile contentFile;
+
     protected final static String CUSTOM_FULL_SCREEN_EVENT = "CUSTOM_FULL_SCREEN_EVENT";
     private final static String CUSTOM_DISPOSE_EVENT = "CUSTOM_DISPOSE_EVENT";
 	
@@ -108,6 +112,16 @@ public abstract class FilePresenter extends JScrollPane {
         return file;
     }
 
+    /**
+     * Returns the file from which the contents of the file being presented should be read. For remote files, this is
+     * the copy held by the {@link RemoteFileCache}, if any. For other files, the current file itself is returned.
+     *
+     * @return the file from which the contents of the file being presented should be read
+     */
+    protected AbstractFile getContentFile() {
+        return contentFile==null?file:contentFile;
+    }
+
     /**
      * Sets the file that is to be presented.
      * This method will automatically be called after a file presenter is created and should not be called directly.
@@ -116,6 +130,8 @@ public abstract class FilePresenter extends JScrollPane {
      */
     protected final void setCurrentFile(AbstractFile file) {
         this.file = file;
+        // The file's contents may have changed, they must be read from the file itself
+        this.contentFile = null;
         // Update frame's title
         getFrame().setTitle(getTitle());
     }
@@ -127,8 +143,12 @@ public abstract class FilePresenter extends JScrollPane {
 	 * @throws IOException in case of an I/O problem
 	 */
     public void open(AbstractFile file) throws IOException {
-    	show(file);
+        // Remote files are read from the remote file cache, so that they are not downloaded again when re-opened
+        AbstractFile contentFile = RemoteFileCache.getInstance().getLocalCopy(file);
+
+    	show(contentFile);
     	setCurrentFile(file);
+    	this.contentFile = contentFile;
     }
     
 	//////////////////////
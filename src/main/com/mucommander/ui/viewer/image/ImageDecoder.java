@@ -0,0 +1,209 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.ui.viewer.image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+
+import com.mucommander.commons.file.AbstractFile;
+
+/**
+ * Decodes the first image of a file with <code>ImageIO</code>, either as a whole or by regions, optionally
+ * subsampling the pixels that are read so that large images can be displayed at a reduced scale without ever holding
+ * their full resolution in memory.
+ * <p>
+ * Local files are read directly from disk, allowing the reader to seek to the requested region. Other files are read
+ * from their input stream, which <code>ImageIO</code> buffers as needed.
+ * </p>
+ * <p>
+ * <code>ImageReader</code> instances are not thread-safe: all the decoding methods of this class are synchronized.
+ * </p>
+ */
+public class ImageDecoder {
+
+    /** Lower-cased extensions of the image formats that can be decoded, without the leading '.' */
+    private final static Set<String> SUPPORTED_EXTENSIONS = new HashSet<String>();
+
+    static {
+        // Note: ImageIO#getReaderFileSuffixes() is only available in Java 1.6 and up
+        Iterator<ImageReaderSpi> providers = IIORegistry.getDefaultInstance().getServiceProviders(ImageReaderSpi.class, true);
+        while(providers.hasNext()) {
+            String suffixes[] = providers.next().getFileSuffixes();
+            if(suffixes==null)
+                continue;
+
+            for(String suffix : suffixes)
+                SUPPORTED_EXTENSIONS.add(suffix.toLowerCase());
+        }
+    }
+
+    /** The reader used to decode the image */
+    private ImageReader reader;
+
+    /** The stream the image is read from */
+    private ImageInputStream imageIn;
+
+    /** Width of the image, in pixels */
+    private int width;
+
+    /** Height of the image, in pixels */
+    private int height;
+
+
+    /**
+     * Creates a new <code>ImageDecoder</code> for the given file and reads the dimensions of the image.
+     *
+     * @param file the image file to decode
+     * @throws IOException if the file could not be read or if its format is not supported by <code>ImageIO</code>
+     */
+    public ImageDecoder(AbstractFile file) throws IOException {
+        Object underlyingFile = file.getUnderlyingFileObject();
+        if(underlyingFile instanceof File) {
+            imageIn = new FileImageInputStream((File)underlyingFile);
+        }
+        else {
+            InputStream in = file.getInputStream();
+            try {
+                imageIn = ImageIO.createImageInputStream(in);
+            }
+            finally {
+                if(imageIn==null)
+                    in.close();
+            }
+        }
+
+        if(imageIn==null)
+            throw new IOException("Could not create an image stream for "+file);
+
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(imageIn);
+        if(!readers.hasNext()) {
+            imageIn.close();
+            throw new IOException("Unsupported image format: "+file);
+        }
+
+        reader = readers.next();
+        reader.setInput(imageIn, true, true);
+
+        try {
+            width = reader.getWidth(0);
+            height = reader.getHeight(0);
+        }
+        catch(IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the given file has the extension of an image format that can be decoded. The file's
+     * contents are not read.
+     *
+     * @param file the file to test
+     * @return true if the file looks like an image that can be decoded
+     */
+    public static boolean isSupported(AbstractFile file) {
+        String extension = file.getExtension();
+        return extension!=null && !file.isDirectory() && SUPPORTED_EXTENSIONS.contains(extension.toLowerCase());
+    }
+
+    /**
+     * Returns the width of the image, in pixels.
+     *
+     * @return the width of the image, in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the image, in pixels.
+     *
+     * @return the height of the image, in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Decodes the whole image, reading only one pixel out of <code>subsampling</code> in each dimension.
+     *
+     * @param subsampling the subsampling factor, <code>1</code> to decode the image at full resolution
+     * @return the decoded image
+     * @throws IOException if an error occurred while decoding the image
+     */
+    public BufferedImage decode(int subsampling) throws IOException {
+        return decode(new Rectangle(0, 0, width, height), subsampling);
+    }
+
+    /**
+     * Decodes the given region of the image, reading only one pixel out of <code>subsampling</code> in each dimension.
+     * The region is clipped to the bounds of the image.
+     *
+     * @param region the region to decode, in image coordinates
+     * @param subsampling the subsampling factor, <code>1</code> to decode the region at full resolution
+     * @return the decoded region
+     * @throws IOException if an error occurred while decoding the image, or if the region lies outside the image
+     */
+    public synchronized BufferedImage decode(Rectangle region, int subsampling) throws IOException {
+        if(reader==null)
+            throw new IOException("Decoder has been closed");
+
+        Rectangle sourceRegion = region.intersection(new Rectangle(0, 0, width, height));
+        if(sourceRegion.isEmpty())
+            throw new IOException("Region "+region+" lies outside the image");
+
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(sourceRegion);
+        param.setSourceSubsampling(Math.max(1, subsampling), Math.max(1, subsampling), 0, 0);
+
+        return reader.read(0, param);
+    }
+
+    /**
+     * Releases the reader and closes the stream the image is read from. This decoder cannot be used anymore after
+     * this method has been called.
+     */
+    public synchronized void close() {
+        if(reader!=null) {
+            reader.dispose();
+            reader = null;
+        }
+
+        try {
+            imageIn.close();
+        }
+        catch(IOException e) {
+            // Nothing we can do about it
+        }
+    }
+}
@@ -16,22 +16,27 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-
 package com.mucommander.ui.viewer.image;
 
 import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Graphics;
-import java.awt.Image;
-import java.awt.MediaTracker;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
-import java.io.ByteArrayOutputStream;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
@@ -39,6 +44,11 @@ import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.KeyStroke;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mucommander.cache.FastLRUCache;
+import com.mucommander.cache.LRUCache;
 import com.mucommander.commons.file.AbstractFile;
 import com.mucommander.text.Translator;
 import com.mucommander.ui.helper.MenuToolkit;
@@ -54,13 +64,42 @@ import com.mucommander.ui.viewer.FileViewer;
 
 /**
  * A simple image viewer, capable of displaying <code>PNG</code>, <code>GIF</code> and <code>JPEG</code> images. 
+ * <p>
+ * Images are decoded with an {@link ImageDecoder}: when the image is opened, it is decoded with subsampling so that it
+ * fits the screen, which never requires its full resolution to be held in memory. When the zoom factor differs from
+ * that of this preview, the image is displayed as a grid of tiles that are decoded on demand, off the event dispatch
+ * thread, from the corresponding region of the image. Tiles are kept in a bounded cache, and the preview is
+ * displayed in place of the tiles that haven't been decoded yet.
+ * </p>
  *
  * @author Maxence Bernard, Arik Hadas
  */
 class ImageViewer extends FileViewer implements ActionListener {
-    private Image image;
-    private Image scaledImage;
-    private double zoomFactor;
+	private static final Logger LOGGER = LoggerFactory.getLogger(ImageViewer.class);
+	
+    /** Width and height of the tiles the image is displayed with, in screen pixels */
+    private final static int TILE_SIZE = 256;
+
+    /** Maximum number of decoded tiles to keep in memory (16MB worth of ARGB pixels with 256x256 tiles) */
+    private final static int TILE_CACHE_CAPACITY = 64;
+
+    /** Maximum zoom factor */
+    private final static double MAX_ZOOM_FACTOR = 4.0;
+
+    private ImageDecoder decoder;
+    /** The whole image, decoded with subsampling at previewZoomFactor */
+    private BufferedImage preview;
+    private double previewZoomFactor;
+    private volatile double zoomFactor;
+
+    /** Decoded tiles, keyed by zoom factor and tile position */
+    private LRUCache<String, BufferedImage> tileCache = new FastLRUCache<String, BufferedImage>(TILE_CACHE_CAPACITY);
+    /** Keys of the tiles that have been requested and are not decoded yet */
+    private Set<String> pendingTiles = Collections.synchronizedSet(new HashSet<String>());
+    /** Decodes tiles off the event dispatch thread, created the first time a tile is requested */
+    private ExecutorService tileLoader;
+    /** Region of the scaled image that was last painted, tiles outside of it are not worth decoding anymore */
+    private volatile Rectangle visibleRegion = new Rectangle();
 	
     /** Menu bar */
     // Menus //
@@ -101,64 +140,88 @@ class ImageViewer extends FileViewer implements ActionListener {
     private synchronized void loadImage(AbstractFile file) throws IOException {
         FileFrame frame = getFrame();
         frame.setCursor(new Cursor(Cursor.WAIT_CURSOR));
-		
-        int read;
-        byte buffer[] = new byte[1024];
-        ByteArrayOutputStream bout = new ByteArrayOutputStream();
-        InputStream in = file.getInputStream();
-        while ((read=in.read(buffer, 0, buffer.length))!=-1)
-            bout.write(buffer, 0, read);
-
-        byte imageBytes[] = bout.toByteArray();
-        bout.close();
-        in.close();
-
-        this.scaledImage = null;
-        this.image = imageViewerImpl.getToolkit().createImage(imageBytes);
-
-        waitForImage(image);
-
-        int width = image.getWidth(null);
-        int height = image.getHeight(null);
-        this.zoomFactor = 1.0;
-        Dimension d = Toolkit.getDefaultToolkit().getScreenSize();
-
-        while(width>d.width || height>d.height) {
-            width = width/2;
-            height = height/2;
-            zoomFactor = zoomFactor/2;
+
+        try {
+            this.decoder = new ImageDecoder(file);
+
+            int width = decoder.getWidth();
+            int height = decoder.getHeight();
+            int subsampling = 1;
+            Dimension d = Toolkit.getDefaultToolkit().getScreenSize();
+
+            while(width>d.width || height>d.height) {
+                width = width/2;
+                height = height/2;
+                subsampling = subsampling*2;
+            }
+
+            // Only one pixel out of 'subsampling' is read in each dimension, the full resolution image is never
+            // held in memory
+            this.preview = decoder.decode(subsampling);
+            this.previewZoomFactor = 1.0/subsampling;
+            this.zoomFactor = previewZoomFactor;
+
+            checkZoom();
+        }
+        finally {
+            frame.setCursor(Cursor.getDefaultCursor());
         }
-		
-        if(zoomFactor==1.0)
-            this.scaledImage = image;
-        else
-            zoom(zoomFactor);
-			
-        checkZoom();
-        frame.setCursor(Cursor.getDefaultCursor());
     }
 
-	
-    private void waitForImage(Image image) {
-        //AppLogger.finest("Waiting for image to load "+image);
-        MediaTracker tracker = new MediaTracker(imageViewerImpl);
-        tracker.addImage(image, 0);
-        try { tracker.waitForID(0); }
-        catch(InterruptedException e) {}
-        tracker.removeImage(image);
-        //AppLogger.finest("Image loaded "+image);
-    }
-	
-	
     private synchronized void zoom(double factor) {
-        FileFrame frame = getFrame();
+        this.zoomFactor = factor;
 
-        frame.setCursor(new Cursor(Cursor.WAIT_CURSOR));
+        // Tiles requested at the previous zoom factor are not needed anymore
+        pendingTiles.clear();
+    }
+
+    /**
+     * Returns the key identifying the given tile in the tile cache.
+     */
+    private static String getTileKey(double zoomFactor, int column, int row) {
+        return zoomFactor+":"+column+":"+row;
+    }
 
-        this.scaledImage = image.getScaledInstance((int)(image.getWidth(null)*factor), (int)(image.getHeight(null)*factor), Image.SCALE_DEFAULT);
-        waitForImage(scaledImage);
+    /**
+     * Asks for the given tile to be decoded in the background, unless it has been requested already.
+     */
+    private synchronized void requestTile(int column, int row, Rectangle tileBounds) {
+        // The viewer has been disposed
+        if(decoder==null)
+            return;
+
+        if(!pendingTiles.add(getTileKey(zoomFactor, column, row)))
+            return;
+
+        if(tileLoader==null) {
+            tileLoader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ImageViewer tile loader");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
 
-        frame.setCursor(Cursor.getDefaultCursor());
+        tileLoader.execute(new TileLoader(zoomFactor, column, row, tileBounds));
+    }
+
+    /**
+     * Stops decoding tiles and releases the decoder and the decoded images.
+     */
+    private synchronized void dispose() {
+        if(tileLoader!=null) {
+            tileLoader.shutdownNow();
+            tileLoader = null;
+        }
+
+        pendingTiles.clear();
+        tileCache.clearAll();
+
+        if(decoder!=null) {
+            decoder.close();
+            decoder = null;
+        }
     }
 
     private void updateFrame() {
@@ -172,13 +235,10 @@ class ImageViewer extends FileViewer implements ActionListener {
     }
 
     private void checkZoom() {
-        Dimension d = Toolkit.getDefaultToolkit().getScreenSize();
-		
-        zoomInItem.setEnabled(zoomFactor<1.0 || (2*zoomFactor*image.getWidth(null) < d.width
-                                                 && 2*zoomFactor*image.getHeight(null) < d.height));
+        zoomInItem.setEnabled(zoomFactor<MAX_ZOOM_FACTOR);
 
-        zoomOutItem.setEnabled(zoomFactor>1.0 || (zoomFactor/2*image.getWidth(null)>160
-                                                  && zoomFactor/2*image.getHeight(null)>120));
+        zoomOutItem.setEnabled(zoomFactor>1.0 || (zoomFactor/2*decoder.getWidth()>160
+                                                  && zoomFactor/2*decoder.getHeight()>120));
     }
 
     ///////////////////////////////
@@ -196,7 +256,7 @@ class ImageViewer extends FileViewer implements ActionListener {
 
     @Override
     public String getTitle() {
-        return super.getTitle()+" - "+image.getWidth(null)+"x"+image.getHeight(null)+" - "+((int)(zoomFactor*100))+"%";
+        return super.getTitle()+" - "+decoder.getWidth()+"x"+decoder.getHeight()+" - "+((int)(zoomFactor*100))+"%";
     }
 
     public void actionPerformed(ActionEvent e) {
@@ -209,13 +269,11 @@ class ImageViewer extends FileViewer implements ActionListener {
         //		else {
 
         if(source==zoomInItem && zoomInItem.isEnabled()) {
-            zoomFactor = zoomFactor*2;
-            zoom(zoomFactor);
+            zoom(zoomFactor*2);
             updateFrame();
         }
         else if(source==zoomOutItem && zoomOutItem.isEnabled()) {
-            zoomFactor = zoomFactor/2;
-            zoom(zoomFactor);
+            zoom(zoomFactor/2);
             updateFrame();
         }
         else {
@@ -226,6 +284,66 @@ class ImageViewer extends FileViewer implements ActionListener {
         checkZoom();
         //		}
     }
+
+    /**
+     * Decodes a tile of the image at a given zoom factor and adds it to the tile cache. Tiles that are no longer
+     * visible by the time they are about to be decoded are skipped.
+     */
+    private class TileLoader implements Runnable {
+
+        private double tileZoomFactor;
+        private String key;
+        /** Bounds of the tile within the scaled image */
+        private Rectangle tileBounds;
+
+        private TileLoader(double tileZoomFactor, int column, int row, Rectangle tileBounds) {
+            this.tileZoomFactor = tileZoomFactor;
+            this.key = getTileKey(tileZoomFactor, column, row);
+            this.tileBounds = tileBounds;
+        }
+
+        public void run() {
+            try {
+                if(tileZoomFactor!=zoomFactor || !tileBounds.intersects(visibleRegion))
+                    return;
+
+                // Region of the original image covered by the tile
+                int x = (int)Math.floor(tileBounds.x/tileZoomFactor);
+                int y = (int)Math.floor(tileBounds.y/tileZoomFactor);
+                Rectangle region = new Rectangle(x, y,
+                        (int)Math.ceil((tileBounds.x+tileBounds.width)/tileZoomFactor)-x,
+                        (int)Math.ceil((tileBounds.y+tileBounds.height)/tileZoomFactor)-y);
+
+                ImageDecoder decoder;
+                synchronized(ImageViewer.this) {
+                    decoder = ImageViewer.this.decoder;
+                }
+                if(decoder==null)
+                    return;
+
+                // Skip the pixels that would be dropped by the scaling anyway
+                BufferedImage tile = decoder.decode(region, Math.max(1, (int)Math.floor(1/tileZoomFactor)));
+
+                if(tile.getWidth()!=tileBounds.width || tile.getHeight()!=tileBounds.height) {
+                    BufferedImage scaledTile = new BufferedImage(tileBounds.width, tileBounds.height, BufferedImage.TYPE_INT_ARGB);
+                    Graphics2D g = scaledTile.createGraphics();
+                    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    g.drawImage(tile, 0, 0, tileBounds.width, tileBounds.height, null);
+                    g.dispose();
+                    tile = scaledTile;
+                }
+
+                tileCache.add(key, tile);
+                imageViewerImpl.repaintImageRegion(tileBounds);
+            }
+            catch(IOException e) {
+                LOGGER.debug("Could not decode image tile "+key, e);
+            }
+            finally {
+                pendingTiles.remove(key);
+            }
+        }
+    }
     
     private class ImageViewerImpl extends JPanel implements ThemeListener {
 
@@ -235,6 +353,60 @@ class ImageViewer extends FileViewer implements ActionListener {
     		backgroundColor = ThemeManager.getCurrentColor(Theme.EDITOR_BACKGROUND_COLOR);
             ThemeManager.addCurrentThemeListener(this);
     	}
+
+        /**
+         * Returns the location at which the scaled image is painted.
+         */
+        private Rectangle getImageBounds() {
+            Dimension imageSize = getPreferredSize();
+            return new Rectangle(Math.max(0, (getWidth()-imageSize.width)/2), Math.max(0, (getHeight()-imageSize.height)/2),
+                    imageSize.width, imageSize.height);
+        }
+
+        /**
+         * Repaints the given region of the scaled image. This method can be called from any thread.
+         */
+        void repaintImageRegion(Rectangle region) {
+            Rectangle imageBounds = getImageBounds();
+            repaint(imageBounds.x+region.x, imageBounds.y+region.y, region.width, region.height);
+        }
+
+        /**
+         * Paints the visible tiles of the scaled image, requesting those that haven't been decoded yet and painting
+         * the corresponding region of the preview in the meantime.
+         */
+        private void paintTiles(Graphics g, Rectangle imageBounds, double zoomFactor) {
+            Rectangle clip = g.getClipBounds();
+            Rectangle region = clip==null?imageBounds:clip.intersection(imageBounds);
+            if(region.isEmpty())
+                return;
+            region.translate(-imageBounds.x, -imageBounds.y);
+            visibleRegion = region;
+
+            double previewScale = preview.getWidth()/(double)imageBounds.width;
+            int lastColumn = (region.x+region.width-1)/TILE_SIZE;
+            int lastRow = (region.y+region.height-1)/TILE_SIZE;
+            for(int row=region.y/TILE_SIZE; row<=lastRow; row++) {
+                for(int column=region.x/TILE_SIZE; column<=lastColumn; column++) {
+                    Rectangle tileBounds = new Rectangle(column*TILE_SIZE, row*TILE_SIZE, TILE_SIZE, TILE_SIZE)
+                            .intersection(new Rectangle(0, 0, imageBounds.width, imageBounds.height));
+                    int x = imageBounds.x+tileBounds.x;
+                    int y = imageBounds.y+tileBounds.y;
+
+                    BufferedImage tile = tileCache.get(getTileKey(zoomFactor, column, row));
+                    if(tile!=null) {
+                        g.drawImage(tile, x, y, null);
+                    }
+                    else {
+                        g.drawImage(preview, x, y, x+tileBounds.width, y+tileBounds.height,
+                                (int)(tileBounds.x*previewScale), (int)(tileBounds.y*previewScale),
+                                (int)Math.ceil((tileBounds.x+tileBounds.width)*previewScale), (int)Math.ceil((tileBounds.y+tileBounds.height)*previewScale),
+                                null);
+                        requestTile(column, row, tileBounds);
+                    }
+                }
+            }
+        }
     	
     	////////////////////////
         // Overridden methods //
@@ -248,16 +420,30 @@ class ImageViewer extends FileViewer implements ActionListener {
             g.setColor(backgroundColor);
             g.fillRect(0, 0, width, height);
 
-            if(scaledImage!=null) {
-                int imageWidth = scaledImage.getWidth(null);
-                int imageHeight = scaledImage.getHeight(null);
-                g.drawImage(scaledImage, Math.max(0, (width-imageWidth)/2), Math.max(0, (height-imageHeight)/2), null);
+            if(preview!=null) {
+                Rectangle imageBounds = getImageBounds();
+                double zoomFactor = ImageViewer.this.zoomFactor;
+                if(zoomFactor==previewZoomFactor)
+                    g.drawImage(preview, imageBounds.x, imageBounds.y, null);
+                else
+                    paintTiles(g, imageBounds, zoomFactor);
             }
         }
         
         @Override
-        public synchronized Dimension getPreferredSize() {
-            return new Dimension(scaledImage.getWidth(null), scaledImage.getHeight(null));
+        public Dimension getPreferredSize() {
+            if(decoder==null)
+                return new Dimension(0, 0);
+
+            return new Dimension((int)Math.ceil(decoder.getWidth()*zoomFactor), (int)Math.ceil(decoder.getHeight()*zoomFactor));
+        }
+
+        @Override
+        public void removeNotify() {
+            super.removeNotify();
+
+            // The viewer's frame has been disposed
+            dispose();
         }
     	
     	//////////////////////////////////
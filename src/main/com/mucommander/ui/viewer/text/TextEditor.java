@@ -262,7 +262,7 @@ class TextEditor extends FileEditor implements DocumentListener, EncodingListene
     	try {
     		// Reload the file using the new encoding
     		// Note: loadDocument closes the InputStream
-    		loadDocument(getCurrentFile().getInputStream(), newEncoding, null);
+    		loadDocument(getContentFile().getInputStream(), newEncoding, null);
     	}
     	catch(IOException ex) {
     		InformationDialog.showErrorDialog(getFrame(), Translator.get("read_error"), Translator.get("file_editor.cannot_read_file", getCurrentFile().getName()));
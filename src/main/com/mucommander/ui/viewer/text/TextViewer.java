@@ -294,7 +294,7 @@ public class TextViewer extends FileViewer implements EncodingListener {
     	try {
     		// Reload the file using the new encoding
     		// Note: loadDocument closes the InputStream
-    		loadDocument(getCurrentFile().getInputStream(), newEncoding, null);
+    		loadDocument(getContentFile().getInputStream(), newEncoding, null);
     	}
     	catch(IOException ex) {
     		InformationDialog.showErrorDialog(getFrame(), Translator.get("read_error"), Translator.get("file_editor.cannot_read_file", getCurrentFile().getName()));
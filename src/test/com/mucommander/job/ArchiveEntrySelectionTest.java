@@ -0,0 +1,65 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job;
+
+import com.mucommander.commons.file.ArchiveEntry;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+/**
+ * A test case for {@link ArchiveEntrySelection}.
+ */
+public class ArchiveEntrySelectionTest {
+
+    private static ArchiveEntry entry(String path, boolean directory) {
+        return new ArchiveEntry(path, directory, 0, 0, true);
+    }
+
+    /**
+     * Asserts that a selected directory matches itself and its contents, whether or not the paths end with a '/'.
+     */
+    @Test
+    public void testDirectoryMatches() {
+        ArchiveEntrySelection selection = new ArchiveEntrySelection(Arrays.asList(entry("dir", true)));
+
+        assert selection.matches("dir");
+        assert selection.matches("dir/");
+        assert selection.matches("dir/file");
+        assert selection.matches("dir/sub/file");
+        assert !selection.matches("dir2");
+        assert !selection.matches("dir2/file");
+        assert !selection.matches("file");
+        assert !selection.isComplete();
+    }
+
+    /**
+     * Asserts that a selected regular file is matched only once, after which the selection is complete.
+     */
+    @Test
+    public void testFileMatches() {
+        ArchiveEntrySelection selection = new ArchiveEntrySelection(Arrays.asList(entry("dir/file", false)));
+
+        assert !selection.matches("dir");
+        assert !selection.matches("dir/other");
+        assert selection.matches("dir/file");
+        assert !selection.matches("dir/file");
+        assert selection.isComplete();
+    }
+}
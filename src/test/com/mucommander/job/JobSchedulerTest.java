@@ -0,0 +1,130 @@
+/*
+ * This file is part of muCommander, http://www.mucommander.com
+ * Copyright (C) 2002-2012 Maxence Bernard
+ *
+ * muCommander is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * muCommander is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.mucommander.job;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A test case for the admission logic of {@link JobScheduler}.
+ */
+public class JobSchedulerTest {
+
+    private final static String VOLUME_1 = JobScheduler.VOLUME_PREFIX+"/";
+    private final static String VOLUME_2 = JobScheduler.VOLUME_PREFIX+"/Volumes/disk";
+    private final static String HOST_1 = JobScheduler.HOST_PREFIX+"ftp://user@host1";
+    private final static String HOST_2 = JobScheduler.HOST_PREFIX+"ftp://user@host2";
+
+    private static Set<String> resources(String... resources) {
+        return new HashSet<String>(Arrays.asList(resources));
+    }
+
+    /**
+     * Asserts that a job is let in on a volume until the volume limit is reached, and again once a job is done.
+     */
+    @Test
+    public void testVolumeLimit() {
+        Map<String, Integer> usage = new HashMap<String, Integer>();
+        Set<String> job = resources(VOLUME_1);
+
+        assert JobScheduler.isAvailable(job, usage, 2, 1);
+        JobScheduler.acquire(job, usage);
+        assert JobScheduler.isAvailable(job, usage, 2, 1);
+        JobScheduler.acquire(job, usage);
+        assert !JobScheduler.isAvailable(job, usage, 2, 1);
+
+        // Other volumes are not affected
+        assert JobScheduler.isAvailable(resources(VOLUME_2), usage, 2, 1);
+
+        JobScheduler.release(job, usage);
+        assert JobScheduler.isAvailable(job, usage, 2, 1);
+    }
+
+    /**
+     * Asserts that hosts are limited by the host limit, and not by the volume limit.
+     */
+    @Test
+    public void testHostLimit() {
+        Map<String, Integer> usage = new HashMap<String, Integer>();
+        Set<String> job = resources(HOST_1);
+
+        JobScheduler.acquire(job, usage);
+        assert JobScheduler.isAvailable(job, usage, 1, 2);
+        JobScheduler.acquire(job, usage);
+        assert !JobScheduler.isAvailable(job, usage, 1, 2);
+        assert JobScheduler.isAvailable(resources(HOST_2), usage, 1, 2);
+    }
+
+    /**
+     * Asserts that a limit of 0 never holds jobs back.
+     */
+    @Test
+    public void testNoLimit() {
+        Map<String, Integer> usage = new HashMap<String, Integer>();
+        Set<String> job = resources(VOLUME_1, HOST_1);
+
+        for(int i=0; i<100; i++) {
+            assert JobScheduler.isAvailable(job, usage, 0, 0);
+            JobScheduler.acquire(job, usage);
+        }
+
+        // Jobs that access no volume nor host are never held back either
+        assert JobScheduler.isAvailable(resources(), usage, 1, 1);
+    }
+
+    /**
+     * Asserts that a job accessing several resources is let in only if all of them are available.
+     */
+    @Test
+    public void testSeveralResources() {
+        Map<String, Integer> usage = new HashMap<String, Integer>();
+        JobScheduler.acquire(resources(VOLUME_2), usage);
+
+        assert !JobScheduler.isAvailable(resources(VOLUME_1, VOLUME_2), usage, 1, 1);
+        assert !JobScheduler.isAvailable(resources(HOST_1, VOLUME_2), usage, 1, 1);
+        assert JobScheduler.isAvailable(resources(VOLUME_1, HOST_1), usage, 1, 1);
+    }
+
+    /**
+     * Asserts that resources are forgotten once no job uses them anymore, so that the usage map doesn't grow.
+     */
+    @Test
+    public void testRelease() {
+        Map<String, Integer> usage = new HashMap<String, Integer>();
+        Set<String> job = resources(VOLUME_1, HOST_1);
+
+        JobScheduler.acquire(job, usage);
+        JobScheduler.acquire(job, usage);
+        assert usage.get(VOLUME_1)==2;
+
+        JobScheduler.release(job, usage);
+        assert usage.get(VOLUME_1)==1;
+        JobScheduler.release(job, usage);
+        assert usage.isEmpty();
+
+        // Releasing more than was acquired is harmless
+        JobScheduler.release(job, usage);
+        assert usage.isEmpty();
+    }
+}
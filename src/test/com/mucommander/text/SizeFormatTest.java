@@ -156,7 +156,11 @@ public class SizeFormatTest {
     }
 
     private void testDigitsFull(long size) {
-        assert size == DECIMAL_FORMAT.parse(SizeFormat.format(size, SizeFormat.DIGITS_FULL | SizeFormat.UNIT_NONE), new ParsePosition(0)).longValue();
+        String formatted = SizeFormat.format(size, SizeFormat.DIGITS_FULL | SizeFormat.UNIT_NONE);
+        assert size == DECIMAL_FORMAT.parse(formatted, new ParsePosition(0)).longValue();
+        // Sizes < 1KB are not localized
+        if (size >= KB_1)
+            assert DECIMAL_FORMAT.format(size).equals(formatted);
     }
 
     /**